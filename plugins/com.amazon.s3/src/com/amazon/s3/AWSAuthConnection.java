@@ -285,20 +285,167 @@ public class AWSAuthConnection {
      * @throws IOException If anything goes wrong.
      */
     private Response verifyCopy( Response response ) throws IOException {
-        if (response.connection.getResponseCode() < 400) {
-            byte[] body = GetResponse.slurpInputStream(response.connection.getInputStream());
-            String message = new String( body );
-            if ( message.indexOf( "<Error" ) != -1 ) {
-                throw new IOException( message.substring( message.indexOf( "<Error" ) ) );
-            } else if ( message.indexOf( "</CopyObjectResult>" ) != -1 ) {
-                // It worked!
-            } else {
-                throw new IOException( "Unexpected response: " + message );
-            }
-        }
+        verifyResult( response.connection, "</CopyObjectResult>" );
         return response;
     }
 
+    /**
+     * Drains the body of a successful response, which may be an error document
+     * even though the status code says otherwise.
+     * @param connection The connection of the request.
+     * @param resultEnd The closing tag of the document expected on success.
+     * @return The body of the response, or null if the status code is an error.
+     * @throws IOException If the body is an error or unknown.
+     */
+    static String verifyResult( HttpURLConnection connection, String resultEnd ) throws IOException {
+        if (connection.getResponseCode() >= 400) {
+            return null;
+        }
+        byte[] body = GetResponse.slurpInputStream(connection.getInputStream());
+        String message = new String( body, "UTF-8" );
+        if ( message.indexOf( "<Error" ) != -1 ) {
+            throw new IOException( message.substring( message.indexOf( "<Error" ) ) );
+        } else if ( message.indexOf( resultEnd ) == -1 ) {
+            throw new IOException( "Unexpected response: " + message );
+        }
+        return message;
+    }
+
+    /**
+     * Starts a multipart upload.  The parts are sent with uploadPart() or
+     * copyPart(), possibly concurrently and in any order, and the object is
+     * only created once completeMultipartUpload() is called.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public InitiateMultipartUploadResponse initiateMultipartUpload(String bucket, String key, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploads", null);
+        HttpURLConnection request = makeRequest("POST", bucket, Utils.urlencode(key), pathArgs, headers);
+
+        request.setDoOutput(true);
+        request.getOutputStream().write(new byte[] {});
+
+        return new InitiateMultipartUploadResponse(request);
+    }
+
+    /**
+     * Uploads one part of a multipart upload.  Every part but the last one
+     * must be at least 5 MB.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param partNumber The number of the part, from 1 to 10000.
+     * @param data The buffer holding the part.
+     * @param length The number of bytes of the buffer to send.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public PartResponse uploadPart(String bucket, String key, String uploadId, int partNumber, byte[] data,
+                                   int length, Map headers)
+        throws MalformedURLException, IOException
+    {
+        HttpURLConnection request =
+            makeRequest("PUT", bucket, Utils.urlencode(key), partArgs(uploadId, partNumber), headers);
+
+        request.setDoOutput(true);
+        request.setFixedLengthStreamingMode(length);
+        request.getOutputStream().write(data, 0, length);
+
+        return new PartResponse(request, false);
+    }
+
+    /**
+     * Copies a range of an existing object as one part of a multipart upload.
+     * This is how objects larger than the 5 GB a plain copy is limited to are
+     * copied.
+     * @param sourceBucket The name of the bucket where the source object lives.
+     * @param sourceKey The name of the key to copy.
+     * @param first The offset of the first byte of the range.
+     * @param last The offset of the last byte of the range.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param partNumber The number of the part, from 1 to 10000.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public PartResponse copyPart(String sourceBucket, String sourceKey, long first, long last, String bucket,
+                                 String key, String uploadId, int partNumber, Map headers)
+        throws MalformedURLException, IOException
+    {
+        headers = headers == null ? new HashMap() : new HashMap(headers);
+        headers.put("x-amz-copy-source", Arrays.asList( new String[] { sourceBucket + "/" + sourceKey } ) );
+        headers.put("x-amz-copy-source-range", Arrays.asList( new String[] { "bytes=" + first + "-" + last } ) );
+        HttpURLConnection request =
+            makeRequest("PUT", bucket, Utils.urlencode(key), partArgs(uploadId, partNumber), headers);
+
+        request.setDoOutput(true);
+        request.getOutputStream().write(new byte[] {});
+
+        return new PartResponse(request, true);
+    }
+
+    /**
+     * Completes a multipart upload, creating the object from its parts.
+     * @param bucket The name of the bucket to which the object will be added.
+     * @param key The name of the key to use.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param eTags The ETags of the parts, in part number order starting at 1.
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     * @throws IOException If the upload could not be completed, even though
+     * the status code may say otherwise.
+     */
+    public Response completeMultipartUpload(String bucket, String key, String uploadId, List eTags, Map headers)
+        throws MalformedURLException, IOException
+    {
+        StringBuffer body = new StringBuffer("<CompleteMultipartUpload>");
+        for (int i = 0; i < eTags.size(); ++i) {
+            body.append("<Part><PartNumber>").append(i + 1).append("</PartNumber><ETag>")
+                .append(eTags.get(i)).append("</ETag></Part>");
+        }
+        body.append("</CompleteMultipartUpload>");
+
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        HttpURLConnection request = makeRequest("POST", bucket, Utils.urlencode(key), pathArgs, headers);
+
+        request.setDoOutput(true);
+        request.getOutputStream().write(body.toString().getBytes("UTF-8"));
+
+        // like copy, this can fail after the response started
+        verifyResult(request, "</CompleteMultipartUploadResult>");
+        return new Response(request);
+    }
+
+    /**
+     * Aborts a multipart upload, discarding the parts uploaded so far.
+     * @param bucket The name of the bucket to which the object was being added.
+     * @param key The name of the key.
+     * @param uploadId The id returned by initiateMultipartUpload().
+     * @param headers A Map of String to List of Strings representing the http
+     * headers to pass (can be null).
+     */
+    public Response abortMultipartUpload(String bucket, String key, String uploadId, Map headers)
+        throws MalformedURLException, IOException
+    {
+        Map pathArgs = new HashMap();
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        return new Response(makeRequest("DELETE", bucket, Utils.urlencode(key), pathArgs, headers));
+    }
+
+    private static Map partArgs(String uploadId, int partNumber) {
+        Map pathArgs = new HashMap();
+        pathArgs.put("partNumber", Integer.toString(partNumber));
+        pathArgs.put("uploadId", Utils.urlencode(uploadId));
+        return pathArgs;
+    }
+
     /**
      * Reads an object from S3.
      * @param bucket The name of the bucket where the object lives.
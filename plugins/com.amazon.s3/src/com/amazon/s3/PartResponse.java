@@ -0,0 +1,45 @@
+//  This software code is made available "AS IS" without warranties of any
+//  kind.  You may copy, display, modify and redistribute the software
+//  code either by itself or as incorporated into your code; provided that
+//  you do not remove any proprietary notices.  Your use of this software
+//  code is at your own risk and you waive any claim against Amazon
+//  Digital Services, Inc. or its affiliates with respect to your use of
+//  this software code. (c) 2006-2007 Amazon Digital Services, Inc. or its
+//  affiliates.
+
+package com.amazon.s3;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Returned by AWSAuthConnection.uploadPart() and AWSAuthConnection.copyPart()
+ */
+public class PartResponse extends Response {
+
+    /**
+     * The ETag of the part, which is needed to complete the upload.  Null if
+     * the request fails.
+     */
+    public String eTag = null;
+
+    /**
+     * @param copy Whether this is the response to a part copy, which reports
+     * the ETag in its body rather than in a header.
+     */
+    public PartResponse(HttpURLConnection connection, boolean copy) throws IOException {
+        super(connection);
+        if (copy) {
+            String body = AWSAuthConnection.verifyResult(connection, "</CopyPartResult>");
+            if (body != null) {
+                int start = body.indexOf("<ETag>");
+                int end = body.indexOf("</ETag>");
+                if (start != -1 && end > start) {
+                    this.eTag = body.substring(start + 6, end).replaceAll("&quot;", "\"");
+                }
+            }
+        } else if (connection.getResponseCode() < 400) {
+            this.eTag = connection.getHeaderField("ETag");
+        }
+    }
+}
@@ -131,6 +131,15 @@ public class Utils {
 	            buf.append("?logging");
                 } else if (pathArgs.containsKey("location")) {
                     buf.append("?location");
+                } else if (pathArgs.containsKey("uploads")) {
+                    buf.append("?uploads");
+                } else if (pathArgs.containsKey("uploadId")) {
+                    // multipart sub-resources, in lexicographical order
+                    buf.append("?");
+                    if (pathArgs.containsKey("partNumber")) {
+                        buf.append("partNumber=").append(pathArgs.get("partNumber")).append("&");
+                    }
+                    buf.append("uploadId=").append(pathArgs.get("uploadId"));
                 }
         }
 
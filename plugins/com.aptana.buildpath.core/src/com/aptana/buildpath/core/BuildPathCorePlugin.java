@@ -8,10 +8,14 @@
 package com.aptana.buildpath.core;
 
 import org.eclipse.core.runtime.Plugin;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
 import org.osgi.framework.BundleContext;
 
 import com.aptana.core.build.IBuildParticipantManager;
 import com.aptana.core.internal.build.BuildParticipantManager;
+import com.aptana.core.internal.build.ContentIndexPreferenceListener;
+import com.aptana.core.util.EclipseUtil;
+import com.aptana.index.core.IndexPlugin;
 
 public class BuildPathCorePlugin extends Plugin
 {
@@ -20,6 +24,7 @@ public class BuildPathCorePlugin extends Plugin
 	public static final String PLUGIN_ID = "com.aptana.buildpath.core"; //$NON-NLS-1$
 
 	private IBuildParticipantManager fBuildParticipantManager;
+	private IPreferenceChangeListener fContentIndexListener;
 
 	/**
 	 * Returns the shared instance
@@ -39,6 +44,9 @@ public class BuildPathCorePlugin extends Plugin
 	{
 		super.start(bundleContext);
 		plugin = this;
+
+		fContentIndexListener = new ContentIndexPreferenceListener();
+		EclipseUtil.instanceScope().getNode(IndexPlugin.PLUGIN_ID).addPreferenceChangeListener(fContentIndexListener);
 	}
 
 	/*
@@ -47,6 +55,12 @@ public class BuildPathCorePlugin extends Plugin
 	 */
 	public void stop(BundleContext bundleContext) throws Exception
 	{
+		if (fContentIndexListener != null)
+		{
+			EclipseUtil.instanceScope().getNode(IndexPlugin.PLUGIN_ID).removePreferenceChangeListener(
+					fContentIndexListener);
+			fContentIndexListener = null;
+		}
 		fBuildParticipantManager = null;
 		plugin = null;
 		super.stop(bundleContext);
@@ -0,0 +1,23 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.buildpath.core;
+
+public interface IPreferenceConstants
+{
+	/**
+	 * Whether the builder runs the build participants declared as concurrent at the same time on each file
+	 */
+	public static final String CONCURRENT_BUILD_PARTICIPANTS = "CONCURRENT_BUILD_PARTICIPANTS"; //$NON-NLS-1$
+
+	/**
+	 * How long, in milliseconds, the builder waits for a concurrent build participant to finish with a file
+	 */
+	public static final String BUILD_PARTICIPANT_TIME_BUDGET = "BUILD_PARTICIPANT_TIME_BUDGET"; //$NON-NLS-1$
+
+	public static final int DEFAULT_BUILD_PARTICIPANT_TIME_BUDGET = 10000;
+}
@@ -67,9 +67,11 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 	private static final String NAME = "name"; //$NON-NLS-1$
 	private static final String ID = "id"; //$NON-NLS-1$
 	private static final String ATTR_PRIORITY = "priority"; //$NON-NLS-1$
+	private static final String ATTR_CONCURRENT = "concurrent"; //$NON-NLS-1$
 	public static final int DEFAULT_PRIORITY = 50;
 
 	private int fPriority = DEFAULT_PRIORITY;
+	private boolean fConcurrent;
 	private Set<IContentType> contentTypes = Collections.emptySet();
 	private String fId;
 	private String fName;
@@ -86,6 +88,17 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 		return fPriority;
 	}
 
+	/**
+	 * Whether the participant only reads the build context of a file, so the builder may run it concurrently with other
+	 * such participants. Declared through the "concurrent" attribute of the extension.
+	 * 
+	 * @return
+	 */
+	public boolean isConcurrent()
+	{
+		return fConcurrent;
+	}
+
 	public Set<IContentType> getContentTypes()
 	{
 		return Collections.unmodifiableSet(contentTypes);
@@ -361,6 +374,7 @@ public abstract class AbstractBuildParticipant implements IBuildParticipant, IEx
 						"Unable to parse priority value ({0}) as an integer, defaulting to 50.", rawPriority), e); //$NON-NLS-1$
 			}
 		}
+		this.fConcurrent = Boolean.parseBoolean(config.getAttribute(ATTR_CONCURRENT));
 		this.fId = config.getAttribute(ID);
 		this.fName = config.getAttribute(NAME);
 		this.contributor = config.getContributor().getName();
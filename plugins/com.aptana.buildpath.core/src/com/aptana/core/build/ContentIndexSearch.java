@@ -0,0 +1,302 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.build;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.resources.ICommand;
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.ResourceUtil;
+import com.aptana.index.core.ContentIndex;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexManager;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.filter.IIndexFilterParticipant;
+
+/**
+ * Narrows down the resources a text search has to look at, using the {@link ContentIndex} of the projects the
+ * {@link UnifiedBuilder} keeps it up to date for. Files the index doesn't know about, because they're derived, linked or
+ * filtered out of indexing, are always searched.
+ */
+public class ContentIndexSearch
+{
+	private static final String INDEX_PARTICIPANT_ID = "com.aptana.core.build.IndexBuildParticipant"; //$NON-NLS-1$
+
+	/**
+	 * The most resources a project is narrowed down to, before its files are searched through the project itself
+	 */
+	private static final int MAX_ROOTS = 500;
+
+	private ContentIndexSearch()
+	{
+	}
+
+	/**
+	 * Returns the resources a search has to look at to find all matches within some roots
+	 *
+	 * @param roots
+	 *            the workspace root, projects, folders or files to search
+	 * @param searchText
+	 *            the text, as entered for an Eclipse file search
+	 * @param isRegEx
+	 *            whether the text is a regular expression
+	 * @param dirtyFiles
+	 *            files whose unsaved contents the search looks at. They're always searched
+	 * @return the roots themselves, or the files and folders of their projects that hold the files that may contain
+	 *         matches
+	 */
+	public static IResource[] getSearchRoots(IResource[] roots, String searchText, boolean isRegEx,
+			Collection<IFile> dirtyFiles)
+	{
+		if (!ContentIndex.isEnabled())
+		{
+			return roots;
+		}
+
+		List<IResource> result = new ArrayList<IResource>();
+		for (IResource root : roots)
+		{
+			IProject[] projects;
+			if (root instanceof IWorkspaceRoot)
+			{
+				projects = ((IWorkspaceRoot) root).getProjects();
+			}
+			else if (root instanceof IProject)
+			{
+				projects = new IProject[] { (IProject) root };
+			}
+			else
+			{
+				result.add(root);
+				continue;
+			}
+
+			for (IProject project : projects)
+			{
+				Set<String> candidates = null;
+				URI uri = project.getLocationURI();
+				if (uri != null && isIndexed(project))
+				{
+					candidates = ContentIndex.getCandidates(getIndexManager().getIndex(uri), searchText, isRegEx);
+				}
+				if (candidates == null)
+				{
+					result.add(project);
+				}
+				else
+				{
+					addFiles(project, candidates, dirtyFiles, result);
+				}
+			}
+		}
+		return result.toArray(new IResource[result.size()]);
+	}
+
+	/**
+	 * Returns whether the builder keeps the contents of a project in its index
+	 *
+	 * @param project
+	 * @return
+	 */
+	public static boolean isIndexed(IProject project)
+	{
+		if (!ResourceUtil.isAccessible(project))
+		{
+			return false;
+		}
+
+		try
+		{
+			boolean hasBuilder = false;
+			for (ICommand command : project.getDescription().getBuildSpec())
+			{
+				if (UnifiedBuilder.ID.equals(command.getBuilderName()))
+				{
+					hasBuilder = true;
+					break;
+				}
+			}
+			if (!hasBuilder)
+			{
+				return false;
+			}
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+			return false;
+		}
+
+		for (IBuildParticipant participant : getBuildParticipantManager().getAllBuildParticipants())
+		{
+			if (INDEX_PARTICIPANT_ID.equals(participant.getId()))
+			{
+				return participant.isEnabled(project);
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds the resources of a project that hold the files that are candidates, or that the index doesn't know about.
+	 * A file search scope is quadratic in the number of its roots, so these files are added through the topmost
+	 * containers they fill up, and the whole project is added once there are more than {@link #MAX_ROOTS} of them.
+	 */
+	private static void addFiles(IProject project, final Set<String> candidates, final Collection<IFile> dirtyFiles,
+			List<IResource> result)
+	{
+		final List<IFile> searched = new ArrayList<IFile>();
+		final List<IFile> indexed = new ArrayList<IFile>();
+		try
+		{
+			project.accept(new IResourceProxyVisitor()
+			{
+				public boolean visit(IResourceProxy proxy) throws CoreException
+				{
+					if (proxy.getType() != IResource.FILE)
+					{
+						return true;
+					}
+
+					IFile file = (IFile) proxy.requestResource();
+					URI location = file.getLocationURI();
+					if (location == null || candidates.contains(location.toString())
+							|| file.isLinked(IResource.CHECK_ANCESTORS) || ResourceUtil.shouldIgnore(file)
+							|| dirtyFiles.contains(file))
+					{
+						searched.add(file);
+					}
+					else
+					{
+						indexed.add(file);
+					}
+					return false;
+				}
+			}, IResource.NONE);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(BuildPathCorePlugin.getDefault(), e);
+			result.add(project);
+			return;
+		}
+
+		Collection<IFile> skipped = removeUnindexed(indexed, searched);
+		if (skipped.isEmpty())
+		{
+			result.add(project);
+			return;
+		}
+
+		// the containers that hold files which aren't searched
+		Set<IContainer> partial = new HashSet<IContainer>();
+		for (IFile file : skipped)
+		{
+			IContainer parent = file.getParent();
+			while (parent != null && partial.add(parent))
+			{
+				parent = parent.getParent();
+			}
+		}
+		Set<IResource> roots = new LinkedHashSet<IResource>();
+		for (IFile file : searched)
+		{
+			IResource root = file;
+			while (!partial.contains(root.getParent()))
+			{
+				root = root.getParent();
+			}
+			if (roots.add(root) && roots.size() > MAX_ROOTS)
+			{
+				result.add(project);
+				return;
+			}
+		}
+		result.addAll(roots);
+	}
+
+	/**
+	 * Moves the files the builder doesn't index, because the index filters exclude them, to the files to search
+	 *
+	 * @param indexed
+	 *            the files whose contents are in the index, as far as they're not excluded
+	 * @param searched
+	 *            the files to search
+	 * @return the files that are indexed
+	 */
+	private static Collection<IFile> removeUnindexed(List<IFile> indexed, List<IFile> searched)
+	{
+		List<IIndexFilterParticipant> filters = getIndexManager().getFilterParticipants();
+		if (filters.isEmpty())
+		{
+			return indexed;
+		}
+		Map<IFileStore, IFile> files = new HashMap<IFileStore, IFile>(indexed.size());
+		for (IFile file : indexed)
+		{
+			IPath path = file.getLocation();
+			if (path == null)
+			{
+				searched.add(file);
+			}
+			else
+			{
+				files.put(EFS.getLocalFileSystem().getStore(path), file);
+			}
+		}
+		Set<IFileStore> stores = new HashSet<IFileStore>(files.keySet());
+		for (IIndexFilterParticipant filter : filters)
+		{
+			stores = filter.applyFilter(stores);
+		}
+		List<IFile> result = new ArrayList<IFile>(stores.size());
+		for (Map.Entry<IFileStore, IFile> entry : files.entrySet())
+		{
+			if (stores.contains(entry.getKey()))
+			{
+				result.add(entry.getValue());
+			}
+			else
+			{
+				searched.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	private static IndexManager getIndexManager()
+	{
+		return IndexPlugin.getDefault().getIndexManager();
+	}
+
+	private static IBuildParticipantManager getBuildParticipantManager()
+	{
+		return BuildPathCorePlugin.getDefault().getBuildParticipantManager();
+	}
+}
@@ -33,16 +33,20 @@ import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
 import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.buildpath.core.IPreferenceConstants;
 import com.aptana.core.CorePlugin;
 import com.aptana.core.IDebugScopes;
 import com.aptana.core.IFilter;
 import com.aptana.core.IMap;
 import com.aptana.core.build.IBuildParticipant.BuildType;
+import com.aptana.core.internal.build.BuildParticipantRunner;
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
 import com.aptana.core.resources.IMarkerConstants;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
@@ -59,6 +63,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 
 	public static final String ID = "com.aptana.ide.core.unifiedBuilder"; //$NON-NLS-1$
 	private boolean traceParticipantsEnabled = false;
+	private BuildParticipantRunner participantRunner;
 
 	public UnifiedBuilder()
 	{
@@ -142,6 +147,9 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		// in sub-methods. We do pre- and post- setups on them, so we need to retain instances.
 		List<IBuildParticipant> participants = getBuildParticipantManager().getAllBuildParticipants();
 		participants = filterToEnabled(participants, project);
+		// If the build fails before the runner gets disposed, its idle threads still go away after a while
+		participantRunner = new BuildParticipantRunner(concurrentParticipantsEnabled(), getParticipantTimeBudget(),
+				traceParticipantsEnabled);
 		buildStarting(participants, kind, sub.newChild(10));
 
 		if (kind == IncrementalProjectBuilder.FULL_BUILD)
@@ -150,7 +158,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 			{
 				logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingFullBuld, projectName));
 			}
-			fullBuild(participants, sub.newChild(80));
+			fullBuild(participants, sub.newChild(75));
 		}
 		else
 		{
@@ -161,7 +169,7 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				{
 					logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingFullBuildNullDelta, projectName));
 				}
-				fullBuild(participants, sub.newChild(80));
+				fullBuild(participants, sub.newChild(75));
 			}
 			else
 			{
@@ -169,12 +177,20 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 				{
 					logTrace(MessageFormat.format(Messages.UnifiedBuilder_PerformingIncrementalBuild, projectName));
 				}
-				incrementalBuild(participants, delta, sub.newChild(80));
+				incrementalBuild(participants, delta, sub.newChild(75));
 			}
 		}
 
+		buildDeferredFiles(sub.newChild(5));
 		buildEnding(participants, sub.newChild(10));
 
+		if (traceParticipantsEnabled)
+		{
+			logParticipantTimes(projectName);
+		}
+		participantRunner.dispose();
+		participantRunner = null;
+
 		if (logTraceEnabled)
 		{
 			double endTime = ((double) System.nanoTime() - startTime) / 1000000;
@@ -188,6 +204,39 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		return IdeLog.isTraceEnabled(CorePlugin.getDefault(), IDebugScopes.BUILDER);
 	}
 
+	/**
+	 * Whether the participants declared as concurrent run at the same time on each file
+	 * 
+	 * @return
+	 */
+	protected boolean concurrentParticipantsEnabled()
+	{
+		return Platform.getPreferencesService().getBoolean(BuildPathCorePlugin.PLUGIN_ID,
+				IPreferenceConstants.CONCURRENT_BUILD_PARTICIPANTS, false, null);
+	}
+
+	/**
+	 * How long, in milliseconds, the builder waits for a concurrent participant to finish with a file
+	 * 
+	 * @return
+	 */
+	protected long getParticipantTimeBudget()
+	{
+		return Platform.getPreferencesService().getInt(BuildPathCorePlugin.PLUGIN_ID,
+				IPreferenceConstants.BUILD_PARTICIPANT_TIME_BUDGET,
+				IPreferenceConstants.DEFAULT_BUILD_PARTICIPANT_TIME_BUDGET, null);
+	}
+
+	private void logParticipantTimes(String projectName)
+	{
+		for (Map.Entry<IBuildParticipant, Long> entry : participantRunner.getElapsedTimes().entrySet())
+		{
+			String msg = MessageFormat.format("Build participant ''{0}'' took {1} ms on ''{2}''.", //$NON-NLS-1$
+					entry.getKey().getName(), entry.getValue(), projectName);
+			IdeLog.logTrace(BuildPathCorePlugin.getDefault(), msg, IDebugScopes.BUILDER_PARTICIPANTS);
+		}
+	}
+
 	private static void logTrace(String msg)
 	{
 		IdeLog.logInfo(CorePlugin.getDefault(), msg, IDebugScopes.BUILDER);
@@ -519,26 +568,35 @@ public class UnifiedBuilder extends IncrementalProjectBuilder
 		}
 
 		SubMonitor sub = SubMonitor.convert(monitor, 2 * participants.size());
-		for (IBuildParticipant participant : participants)
+		long startTime = System.nanoTime();
+		participantRunner.buildFile(context, participants, sub.newChild(participants.size()));
+		long markersTime = System.nanoTime();
+		updateMarkers(context, sub.newChild(participants.size()));
+		sub.done();
+
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		if (metrics.isEnabled())
 		{
-			long startTime = System.nanoTime();
-			participant.buildFile(context, sub.newChild(1));
-			if (traceParticipantsEnabled)
-			{
-				double endTime = ((double) System.nanoTime() - startTime) / 1000000;
-				IdeLog.logTrace(
-						BuildPathCorePlugin.getDefault(),
-						MessageFormat
-								.format("Executed build participant ''{0}'' on ''{1}'' in {2} ms.", participant.getName(), context.getURI(), endTime), IDebugScopes.BUILDER_PARTICIPANTS); //$NON-NLS-1$
-			}
+			metrics.record(MetricsRegistry.CONTENT_TYPE, context.getContentType(), markersTime - startTime);
+			metrics.record(MetricsRegistry.PHASE, MetricsRegistry.PHASE_MARKERS, System.nanoTime() - markersTime);
+		}
+	}
 
-			// stop building if it has been canceled
-			if (sub.isCanceled())
-			{
-				break;
-			}
+	/**
+	 * Updates the markers of the files that concurrent participants got skipped on or ran out of time on, once they
+	 * built those files again.
+	 * 
+	 * @param monitor
+	 */
+	private void buildDeferredFiles(IProgressMonitor monitor)
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, 2);
+		List<BuildContext> contexts = participantRunner.buildDeferredFiles(sub.newChild(1));
+		SubMonitor markersMonitor = sub.newChild(1).setWorkRemaining(contexts.size());
+		for (BuildContext context : contexts)
+		{
+			updateMarkers(context, markersMonitor.newChild(1));
 		}
-		updateMarkers(context, sub.newChild(participants.size()));
 		sub.done();
 	}
 
@@ -0,0 +1,460 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+import com.aptana.buildpath.core.BuildPathCorePlugin;
+import com.aptana.core.IDebugScopes;
+import com.aptana.core.build.AbstractBuildParticipant;
+import com.aptana.core.build.IBuildParticipant;
+import com.aptana.core.build.IProblem;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
+import com.aptana.index.core.build.BuildContext;
+
+/**
+ * Runs build participants on the files of a build, and keeps the time each of them took over all files. Participants
+ * run one after the other in priority order, except for the ones declared as concurrent when this runner is
+ * concurrent: those run at the same time once the others are done with a file. The runner stops waiting for any of
+ * them that runs out of time, and skips it on the following files until it's done. Since their problems on those files
+ * are lost, they build each of them once more at the end, within the same time budget, see
+ * {@link #buildDeferredFiles(IProgressMonitor)}.
+ */
+public class BuildParticipantRunner
+{
+
+	/**
+	 * How often, in milliseconds, we check whether the build got canceled while waiting for participants
+	 */
+	private static final long CANCEL_CHECK_INTERVAL = 100;
+
+	/**
+	 * How waiting for a participant ended
+	 */
+	private enum Outcome
+	{
+		DONE, OUT_OF_TIME, CANCELED
+	}
+
+	/**
+	 * A participant running on a file in the background
+	 */
+	private static class Task
+	{
+		final IBuildParticipant participant;
+		final IProgressMonitor monitor;
+		final Future<?> future;
+		final long deadline;
+
+		Task(IBuildParticipant participant, IProgressMonitor monitor, Future<?> future, long deadline)
+		{
+			this.participant = participant;
+			this.monitor = monitor;
+			this.future = future;
+			this.deadline = deadline;
+		}
+	}
+
+	private final boolean concurrent;
+	private final long timeBudget;
+	private final boolean trace;
+
+	private final Map<IBuildParticipant, Long> elapsedTimes = new LinkedHashMap<IBuildParticipant, Long>();
+	private final Set<IBuildParticipant> running = Collections.synchronizedSet(new HashSet<IBuildParticipant>());
+	// only ever used on the builder's thread
+	private final Map<IBuildParticipant, Task> lastRuns = new HashMap<IBuildParticipant, Task>();
+	private final Map<IFile, List<IBuildParticipant>> deferred = new LinkedHashMap<IFile, List<IBuildParticipant>>();
+	private ExecutorService executor;
+
+	/**
+	 * BuildParticipantRunner
+	 *
+	 * @param concurrent
+	 *            whether the participants declared as concurrent run at the same time
+	 * @param timeBudget
+	 *            how long, in milliseconds, to wait for a concurrent participant to finish with a file
+	 * @param trace
+	 *            whether to log the time each participant takes on each file
+	 */
+	public BuildParticipantRunner(boolean concurrent, long timeBudget, boolean trace)
+	{
+		this.concurrent = concurrent;
+		this.timeBudget = TimeUnit.MILLISECONDS.toNanos(timeBudget);
+		this.trace = trace;
+	}
+
+	/**
+	 * Runs participants on a file
+	 *
+	 * @param context
+	 * @param participants
+	 *            the participants, in priority order
+	 * @param monitor
+	 */
+	public void buildFile(BuildContext context, List<IBuildParticipant> participants, IProgressMonitor monitor)
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size());
+		List<IBuildParticipant> concurrentParticipants = new ArrayList<IBuildParticipant>();
+		for (IBuildParticipant participant : participants)
+		{
+			if (concurrent && isConcurrent(participant))
+			{
+				concurrentParticipants.add(participant);
+				continue;
+			}
+
+			long startTime = System.nanoTime();
+			participant.buildFile(context, sub.newChild(1));
+			addElapsedTime(participant, context, System.nanoTime() - startTime);
+
+			// stop building if it has been canceled
+			if (sub.isCanceled())
+			{
+				return;
+			}
+		}
+
+		if (!concurrentParticipants.isEmpty())
+		{
+			buildFileConcurrently(context, concurrentParticipants, sub.newChild(concurrentParticipants.size()));
+		}
+		sub.done();
+	}
+
+	private void buildFileConcurrently(final BuildContext context, List<IBuildParticipant> participants,
+			IProgressMonitor monitor)
+	{
+		SubMonitor sub = SubMonitor.convert(monitor, participants.size());
+		List<Task> tasks = new ArrayList<Task>(participants.size());
+		for (final IBuildParticipant participant : participants)
+		{
+			// participants keep state while they build a file, so one that ran out of time can't start on another
+			if (!running.add(participant))
+			{
+				String msg = MessageFormat.format(
+						"Skipped build participant ''{0}'' on ''{1}'', still building another file.", //$NON-NLS-1$
+						participant.getName(), context.getURI());
+				IdeLog.logWarning(BuildPathCorePlugin.getDefault(), msg, IDebugScopes.BUILDER_PARTICIPANTS);
+				defer(context, participant);
+				sub.worked(1);
+				continue;
+			}
+
+			tasks.add(submit(participant, context));
+		}
+
+		for (Task task : tasks)
+		{
+			Outcome outcome = waitFor(task, task.deadline, sub);
+			if (outcome == Outcome.CANCELED)
+			{
+				// let the others know they can stop as well
+				for (Task other : tasks)
+				{
+					other.monitor.setCanceled(true);
+				}
+				return;
+			}
+			if (outcome == Outcome.OUT_OF_TIME)
+			{
+				String msg = MessageFormat.format(
+						"Build participant ''{0}'' ran out of time after {1} ms.", //$NON-NLS-1$
+						task.participant.getName(), TimeUnit.NANOSECONDS.toMillis(timeBudget));
+				IdeLog.logWarning(BuildPathCorePlugin.getDefault(), msg, IDebugScopes.BUILDER_PARTICIPANTS);
+				defer(context, task.participant);
+			}
+			sub.worked(1);
+		}
+		sub.done();
+	}
+
+	/**
+	 * Starts a participant on a file in the background. The caller must have added it to the running ones.
+	 */
+	private Task submit(final IBuildParticipant participant, final BuildContext context)
+	{
+		final IProgressMonitor taskMonitor = new NullProgressMonitor();
+		final long startTime = System.nanoTime();
+		Future<?> future = getExecutor().submit(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					participant.buildFile(context, taskMonitor);
+				}
+				catch (Exception e)
+				{
+					IdeLog.logError(BuildPathCorePlugin.getDefault(), MessageFormat.format(
+							"Build participant ''{0}'' failed on ''{1}''", participant.getName(), //$NON-NLS-1$
+							context.getURI()), e);
+				}
+				finally
+				{
+					addElapsedTime(participant, context, System.nanoTime() - startTime);
+					running.remove(participant);
+				}
+			}
+		});
+		Task task = new Task(participant, taskMonitor, future, startTime + timeBudget);
+		lastRuns.put(participant, task);
+		return task;
+	}
+
+	/**
+	 * Waits for a participant to finish, for a deadline to pass, or for the build to get canceled. A participant that
+	 * is still running at the deadline gets its monitor canceled.
+	 */
+	private Outcome waitFor(Task task, long deadline, IProgressMonitor monitor)
+	{
+		while (!monitor.isCanceled())
+		{
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0)
+			{
+				// the participant finds out if it checks its monitor. Either way, we don't wait for it any longer
+				task.monitor.setCanceled(true);
+				return Outcome.OUT_OF_TIME;
+			}
+
+			try
+			{
+				task.future.get(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(CANCEL_CHECK_INTERVAL)),
+						TimeUnit.NANOSECONDS);
+				return Outcome.DONE;
+			}
+			catch (TimeoutException e)
+			{
+				// check for cancellation, then keep waiting
+			}
+			catch (ExecutionException e)
+			{
+				// the task logs what went wrong
+				return Outcome.DONE;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return Outcome.CANCELED;
+			}
+		}
+		return Outcome.CANCELED;
+	}
+
+	/**
+	 * Has a participant build a file again later, since the problems it finds on it now don't get to the markers
+	 */
+	private void defer(BuildContext context, IBuildParticipant participant)
+	{
+		IFile file = context.getFile();
+		if (file == null)
+		{
+			// not a workspace file, so there are no markers to update
+			return;
+		}
+		List<IBuildParticipant> participants = deferred.get(file);
+		if (participants == null)
+		{
+			participants = new ArrayList<IBuildParticipant>();
+			deferred.put(file, participants);
+		}
+		participants.add(participant);
+	}
+
+	/**
+	 * Builds the files the concurrent participants got skipped on, or ran out of time on, once more with those
+	 * participants, one after the other. Each one first gets to finish whatever file it was still building, then
+	 * builds the file in the background, and both within the time budget. A participant that runs out of time again
+	 * leaves its markers on that file and on the rest of its files as they are.
+	 *
+	 * @param monitor
+	 * @return a new context for each of those files, with the problems the participants found
+	 */
+	public List<BuildContext> buildDeferredFiles(IProgressMonitor monitor)
+	{
+		List<BuildContext> contexts = new ArrayList<BuildContext>(deferred.size());
+		Set<IBuildParticipant> outOfTime = new HashSet<IBuildParticipant>();
+		SubMonitor sub = SubMonitor.convert(monitor, deferred.size());
+		for (Map.Entry<IFile, List<IBuildParticipant>> entry : deferred.entrySet())
+		{
+			BuildContext context = new BuildContext(entry.getKey());
+			SubMonitor fileMonitor = sub.newChild(1).setWorkRemaining(entry.getValue().size());
+			for (IBuildParticipant participant : entry.getValue())
+			{
+				if (outOfTime.contains(participant))
+				{
+					fileMonitor.worked(1);
+					continue;
+				}
+
+				Outcome outcome = buildAgain(participant, context, fileMonitor.newChild(1));
+				if (outcome == Outcome.CANCELED)
+				{
+					return contexts;
+				}
+				if (outcome == Outcome.OUT_OF_TIME)
+				{
+					String msg = MessageFormat.format(
+							"Build participant ''{0}'' ran out of time again on ''{1}'', kept its markers.", //$NON-NLS-1$
+							participant.getName(), context.getURI());
+					IdeLog.logWarning(BuildPathCorePlugin.getDefault(), msg, IDebugScopes.BUILDER_PARTICIPANTS);
+					outOfTime.add(participant);
+				}
+			}
+			contexts.add(context);
+		}
+		deferred.clear();
+		sub.done();
+		return contexts;
+	}
+
+	/**
+	 * Has a participant build a file once more, and adds the problems it finds to the file's context if it gets done
+	 * in time
+	 */
+	private Outcome buildAgain(IBuildParticipant participant, BuildContext context, IProgressMonitor monitor)
+	{
+		// participants keep state while they build a file, so it has to be done with the last one first
+		Task lastRun = lastRuns.get(participant);
+		if (lastRun != null)
+		{
+			Outcome outcome = waitFor(lastRun, System.nanoTime() + timeBudget, monitor);
+			if (outcome != Outcome.DONE)
+			{
+				return outcome;
+			}
+		}
+		if (!running.add(participant))
+		{
+			return Outcome.OUT_OF_TIME;
+		}
+
+		// a context of its own, where whatever it reports after running out of time goes unnoticed
+		BuildContext participantContext = new BuildContext(context.getFile());
+		Task task = submit(participant, participantContext);
+		Outcome outcome = waitFor(task, task.deadline, monitor);
+		if (outcome == Outcome.DONE)
+		{
+			for (Map.Entry<String, Collection<IProblem>> entry : participantContext.getProblems().entrySet())
+			{
+				context.putProblems(entry.getKey(), entry.getValue());
+			}
+		}
+		return outcome;
+	}
+
+	private static boolean isConcurrent(IBuildParticipant participant)
+	{
+		return (participant instanceof AbstractBuildParticipant)
+				&& ((AbstractBuildParticipant) participant).isConcurrent();
+	}
+
+	private static boolean isIndexing(IBuildParticipant participant)
+	{
+		// the manager hands out participants from extensions wrapped, until they get to build something
+		if (participant instanceof LazyBuildParticipant)
+		{
+			participant = ((LazyBuildParticipant) participant).getParticipant();
+		}
+		return participant instanceof IndexBuildParticipant;
+	}
+
+	private void addElapsedTime(IBuildParticipant participant, BuildContext context, long elapsedTime)
+	{
+		synchronized (elapsedTimes)
+		{
+			Long total = elapsedTimes.get(participant);
+			elapsedTimes.put(participant, (total == null) ? elapsedTime : total + elapsedTime);
+		}
+
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		if (metrics.isEnabled())
+		{
+			metrics.record(MetricsRegistry.PARTICIPANT, participant.getName(), elapsedTime);
+			metrics.record(MetricsRegistry.PHASE, isIndexing(participant) ? MetricsRegistry.PHASE_INDEX
+					: MetricsRegistry.PHASE_VALIDATE, elapsedTime);
+		}
+
+		if (trace)
+		{
+			IdeLog.logTrace(BuildPathCorePlugin.getDefault(), MessageFormat.format(
+					"Executed build participant ''{0}'' on ''{1}'' in {2} ms.", participant.getName(), //$NON-NLS-1$
+					context.getURI(), (double) elapsedTime / 1000000), IDebugScopes.BUILDER_PARTICIPANTS);
+		}
+	}
+
+	/**
+	 * Returns the time each participant took so far, over all files, in milliseconds
+	 *
+	 * @return
+	 */
+	public Map<IBuildParticipant, Long> getElapsedTimes()
+	{
+		Map<IBuildParticipant, Long> result = new LinkedHashMap<IBuildParticipant, Long>();
+		synchronized (elapsedTimes)
+		{
+			for (Map.Entry<IBuildParticipant, Long> entry : elapsedTimes.entrySet())
+			{
+				result.put(entry.getKey(), TimeUnit.NANOSECONDS.toMillis(entry.getValue()));
+			}
+		}
+		return result;
+	}
+
+	private synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newCachedThreadPool(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "Build Participant"); //$NON-NLS-1$
+					// participants that ran out of time must not keep the workbench from shutting down
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the threads concurrent participants ran on, once they're done
+	 */
+	public synchronized void dispose()
+	{
+		if (executor != null)
+		{
+			executor.shutdown();
+			executor = null;
+		}
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.internal.build;
+
+import java.net.URI;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent;
+
+import com.aptana.core.build.ContentIndexSearch;
+import com.aptana.index.core.ContentIndex;
+import com.aptana.index.core.IPreferenceConstants;
+import com.aptana.index.core.Index;
+import com.aptana.index.core.IndexManager;
+import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.RebuildIndexJob;
+
+/**
+ * Brings the indices of projects in line when indexing file contents gets turned on or off. When it's turned on, the
+ * indices of the projects the builder maintains are rebuilt; the contents are only used once that is done. When it's
+ * turned off, the contents are dropped, since they won't be kept up to date.
+ */
+public class ContentIndexPreferenceListener implements IPreferenceChangeListener
+{
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.eclipse.core.runtime.preferences.IEclipsePreferences.IPreferenceChangeListener#preferenceChange(org.eclipse
+	 * .core.runtime.preferences.IEclipsePreferences.PreferenceChangeEvent)
+	 */
+	public void preferenceChange(PreferenceChangeEvent event)
+	{
+		if (!IPreferenceConstants.INDEX_FILE_CONTENTS.equals(event.getKey()))
+		{
+			return;
+		}
+
+		IndexManager manager = IndexPlugin.getDefault().getIndexManager();
+		if (ContentIndex.isEnabled())
+		{
+			for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects())
+			{
+				URI uri = project.getLocationURI();
+				if (uri != null && ContentIndexSearch.isIndexed(project))
+				{
+					// contents indexed before they were last turned off may be out of date
+					Index index = manager.getIndex(uri);
+					if (index != null)
+					{
+						index.removeCategories(ContentIndex.CATEGORIES);
+						new RebuildIndexJob(uri).schedule();
+					}
+				}
+			}
+		}
+		else
+		{
+			for (URI uri : manager.getIndexPaths())
+			{
+				Index index = manager.getIndex(uri);
+				if (index != null)
+				{
+					index.removeCategories(ContentIndex.CATEGORIES);
+				}
+			}
+		}
+	}
+}
@@ -13,6 +13,7 @@ import java.text.MessageFormat;
 import java.util.List;
 
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
@@ -23,6 +24,7 @@ import com.aptana.core.IDebugScopes;
 import com.aptana.core.build.RequiredBuildParticipant;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.CollectionsUtil;
+import com.aptana.index.core.ContentIndex;
 import com.aptana.index.core.IFileStoreIndexingParticipant;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
@@ -33,6 +35,7 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 {
 
 	private Index fIndex;
+	private boolean fIndexingAllContents;
 	private boolean index_trace_enabled = false;
 	private boolean advanced_trace_enabled = false;
 
@@ -55,12 +58,19 @@ public class IndexBuildParticipant extends RequiredBuildParticipant
 	public void buildStarting(IProject project, int kind, IProgressMonitor monitor)
 	{
 		fIndex = getIndex(project);
+		fIndexingAllContents = kind == IncrementalProjectBuilder.FULL_BUILD && ContentIndex.isEnabled();
 	}
 
 	public void buildEnding(IProgressMonitor monitor)
 	{
 		if (fIndex != null)
 		{
+			// a full build went through every file, so the contents of all of them are in the index now
+			if (fIndexingAllContents && ContentIndex.isEnabled() && !monitor.isCanceled())
+			{
+				ContentIndex.setComplete(fIndex);
+			}
+			fIndexingAllContents = false;
 			try
 			{
 				fIndex.save();
@@ -15,7 +15,9 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -27,8 +29,12 @@ import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.aptana.core.IFilter;
+import com.aptana.core.io.vfs.FileHash;
 import com.aptana.core.io.vfs.IConnectionFileManager;
+import com.aptana.core.io.vfs.IExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.IFileHashProvider;
 import com.aptana.core.io.vfs.IFileTreeVisitor;
 import com.aptana.core.util.URLEncoder;
 import com.aptana.ide.core.io.InfiniteProgressMonitor;
@@ -38,7 +44,7 @@ import com.aptana.ide.core.io.InfiniteProgressMonitor;
  *
  */
 @SuppressWarnings("restriction")
-public class VirtualFile extends FileStore implements IExtendedFileStore {
+public class VirtualFile extends FileStore implements IExtendedFileStore, IFileHashProvider {
 
 	private IConnectionFileManager fileManager;
 	private URI baseURI;
@@ -85,6 +91,13 @@ public class VirtualFile extends FileStore implements IExtendedFileStore {
 		return fileManager.fetchInfo(path, options, monitor);
 	}
 
+	/* (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IFileHashProvider#fetchHash(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public FileHash fetchHash(IProgressMonitor monitor) throws CoreException {
+		return fileManager.fetchHash(path, monitor);
+	}
+
 	/* (non-Javadoc)
 	 * @see org.eclipse.core.filesystem.provider.FileStore#getChild(java.lang.String)
 	 */
@@ -218,8 +231,15 @@ public class VirtualFile extends FileStore implements IExtendedFileStore {
 	public IFileTree fetchFileTree(IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
 		monitor = Policy.monitorFor(monitor);
 		try {
+			VisitorFilter filter = (visitor != null) ? new VisitorFilter(visitor) : null;
+			monitor = new InfiniteProgressMonitor(monitor);
+			monitor.beginTask(MessageFormat.format(Messages.VirtualFile_ListingDirectory, path), 20);
+			Map<IPath, IExtendedFileInfo[]> tree = fileManager.childInfosTree(path, IExtendedFileStore.DETAILED, filter, monitor);
+			if (filter != null && filter.exception != null) {
+				throw filter.exception;
+			}
 			FileTree fileTree = new FileTree(this);
-			buildFileTree(fileTree, this, visitor, new InfiniteProgressMonitor(monitor));
+			buildFileTree(fileTree, this, tree, filter);
 			return fileTree;
 			} finally {
 				monitor.done();
@@ -230,25 +250,63 @@ public class VirtualFile extends FileStore implements IExtendedFileStore {
 	    return toCanonicalURI().toString();
 	}
 
-	private static void buildFileTree(FileTree fileTree, VirtualFile parent, IFileTreeVisitor visitor, IProgressMonitor monitor) throws CoreException {
-		monitor.beginTask(MessageFormat.format(Messages.VirtualFile_ListingDirectory, parent.path), 20);
-		IFileInfo[] infos = parent.fileManager.childInfos(parent.path, IExtendedFileStore.DETAILED, monitor);
+	private static void buildFileTree(FileTree fileTree, VirtualFile parent, Map<IPath, IExtendedFileInfo[]> tree, VisitorFilter filter) throws CoreException {
+		IFileInfo[] infos = tree.get(parent.path);
+		if (infos == null) {
+			return;
+		}
 		List<IFileStore> stores = new ArrayList<IFileStore>();
-		List<IFileStore> dirs = new ArrayList<IFileStore>();
+		List<IFileInfo> storeInfos = new ArrayList<IFileInfo>();
+		List<VirtualFile> dirs = new ArrayList<VirtualFile>();
 		for (IFileInfo fileInfo : infos) {
-			IFileStore store = parent.getChild(fileInfo.getName());
-			if (visitor != null && !visitor.include(store)) {
+			VirtualFile store = (VirtualFile) parent.getChild(fileInfo.getName());
+			if (filter != null && !filter.includeStore(store)) {
 				continue;
 			}
 			stores.add(store);
+			storeInfos.add(fileInfo);
 			if (fileInfo.isDirectory()) {
 				dirs.add(store);
 			}
 		}
-		fileTree.addChildren(parent, stores.toArray(new IFileStore[stores.size()]), infos);
-		monitor.worked(1);
-		for (IFileStore store : dirs) {
-			buildFileTree(fileTree, (VirtualFile) store, visitor, monitor);
+		fileTree.addChildren(parent, stores.toArray(new IFileStore[stores.size()]), storeInfos.toArray(new IFileInfo[storeInfos.size()]));
+		for (VirtualFile store : dirs) {
+			buildFileTree(fileTree, store, tree, filter);
+		}
+	}
+
+	/**
+	 * Adapts the tree visitor to the path filter used by the connection file manager,
+	 * so that every store is offered to the visitor only once.
+	 */
+	private class VisitorFilter implements IFilter<IPath> {
+
+		private final IFileTreeVisitor visitor;
+		private final Map<IPath, Boolean> decisions = new HashMap<IPath, Boolean>();
+		private CoreException exception;
+
+		private VisitorFilter(IFileTreeVisitor visitor) {
+			this.visitor = visitor;
+		}
+
+		public boolean include(IPath item) {
+			try {
+				return includeStore(new VirtualFile(fileManager, baseURI, item));
+			} catch (CoreException e) {
+				if (exception == null) {
+					exception = e;
+				}
+				return false;
+			}
+		}
+
+		private boolean includeStore(VirtualFile store) throws CoreException {
+			Boolean decision = decisions.get(store.path);
+			if (decision == null) {
+				decision = Boolean.valueOf(visitor.include(store));
+				decisions.put(store.path, decision);
+			}
+			return decision.booleanValue();
 		}
 	}
 }
@@ -21,6 +21,7 @@ import java.io.OutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +37,7 @@ import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ExpiringMap;
 import com.aptana.core.util.ProgressMonitorInterrupter;
@@ -236,6 +238,89 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#childInfosTree(org.eclipse.core.runtime.IPath, int,
+	 * com.aptana.core.IFilter, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public final synchronized Map<IPath, IExtendedFileInfo[]> childInfosTree(IPath path, int options,
+			final IFilter<IPath> filter, IProgressMonitor monitor) throws CoreException
+	{
+		monitor = Policy.monitorFor(monitor);
+		monitor.beginTask(
+				MessageFormat.format(Messages.BaseConnectionFileManager_gethering_details, path.toPortableString()),
+				IProgressMonitor.UNKNOWN);
+		options = (options & IExtendedFileStore.DETAILED);
+		final boolean absolute = path.isAbsolute();
+		IFilter<IPath> absoluteFilter = null;
+		if (filter != null)
+		{
+			absoluteFilter = new IFilter<IPath>()
+			{
+				public boolean include(IPath item)
+				{
+					return filter.include(toRelativePath(item, absolute));
+				}
+			};
+		}
+		Map<IPath, IExtendedFileInfo[]> result = new LinkedHashMap<IPath, IExtendedFileInfo[]>();
+		try
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(interruptDelegate);
+			testOrConnect(monitor);
+			List<IPath> roots = new ArrayList<IPath>();
+			roots.add(path);
+			Set<IPath> linkTargets = new HashSet<IPath>();
+			while (!roots.isEmpty())
+			{
+				IPath root = roots.remove(0);
+				Map<IPath, ExtendedFileInfo[]> tree;
+				try
+				{
+					tree = fetchFileTree(basePath.append(root), options, absoluteFilter, monitor);
+				}
+				catch (PermissionDeniedException e)
+				{
+					setLastOperationTime();
+					throw new CoreException(new Status(IStatus.ERROR, CoreIOPlugin.PLUGIN_ID, MessageFormat.format(
+							Messages.BaseConnectionFileManager_PermissionDenied0, root.toPortableString()), e));
+				}
+				// populate caches in bulk, symlinked directories are fetched as separate trees
+				for (Map.Entry<IPath, ExtendedFileInfo[]> entry : tree.entrySet())
+				{
+					IPath absoluteDirPath = entry.getKey();
+					IPath dirPath = toRelativePath(absoluteDirPath, absolute);
+					ExtendedFileInfo[] fileInfos = cache(dirPath, entry.getValue());
+					for (ExtendedFileInfo fileInfo : fileInfos)
+					{
+						String linkTarget = fileInfo.getStringAttribute(EFS.ATTRIBUTE_LINK_TARGET);
+						postProcessFileInfo(fileInfo, absoluteDirPath, options, monitor);
+						IPath filePath = dirPath.append(fileInfo.getName());
+						cache(filePath, fileInfo);
+						if (fileInfo.getAttribute(EFS.ATTRIBUTE_SYMLINK) && fileInfo.isDirectory()
+								&& !result.containsKey(filePath) && (filter == null || filter.include(filePath)))
+						{
+							IPath linkPath = absoluteDirPath.append(fileInfo.getName());
+							IPath targetPath = resolveLinkTarget(linkPath, linkTarget);
+							if (targetPath != null && !targetPath.isPrefixOf(linkPath) && linkTargets.add(targetPath))
+							{
+								roots.add(filePath);
+							}
+						}
+					}
+					result.put(dirPath, fileInfos.clone());
+				}
+				setLastOperationTime();
+			}
+			return result;
+		}
+		finally
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(null);
+			monitor.done();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#openInputStream(org.eclipse.core.runtime.IPath, int,
@@ -288,6 +373,31 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IConnectionFileManager#fetchHash(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public final synchronized FileHash fetchHash(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		monitor = Policy.monitorFor(monitor);
+		monitor.beginTask(
+				MessageFormat.format(Messages.BaseConnectionFileManager_gethering_details, path.toPortableString()), 2);
+		try
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(interruptDelegate);
+			testOrConnect(monitor);
+			FileHash hash = fetchFileHash(basePath.append(path), Policy.subMonitorFor(monitor, 1));
+			setLastOperationTime();
+			return hash;
+		}
+		finally
+		{
+			ProgressMonitorInterrupter.setCurrentThreadInterruptDelegate(null);
+			monitor.done();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.core.io.vfs.IConnectionFileManager#openOutputStream(org.eclipse.core.runtime.IPath, int,
@@ -694,6 +804,52 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 	protected abstract void changeFileGroup(IPath path, String group, IProgressMonitor monitor) throws CoreException,
 			FileNotFoundException;
 
+	/**
+	 * Lists the tree under the specified directory (absolute path), descending into sub-directories accepted by the
+	 * filter. Returns the listings keyed by absolute directory path. The default implementation lists directories one
+	 * by one on the current connection; subclasses may fan the listings out over additional connections or use
+	 * server-side recursive listing.
+	 */
+	protected Map<IPath, ExtendedFileInfo[]> fetchFileTree(IPath path, final int options, IFilter<IPath> filter,
+			IProgressMonitor monitor) throws CoreException, PermissionDeniedException
+	{
+		return new ParallelFileTreeFetcher<Object>(0)
+		{
+			@Override
+			protected Object openConnection(IProgressMonitor monitor)
+			{
+				return null;
+			}
+
+			@Override
+			protected void closeConnection(Object connection)
+			{
+			}
+
+			@Override
+			protected ExtendedFileInfo[] listDirectory(Object connection, IPath dirPath, IProgressMonitor monitor)
+			{
+				return null;
+			}
+
+			@Override
+			protected ExtendedFileInfo[] listDirectory(IPath dirPath, IProgressMonitor monitor)
+					throws CoreException, FileNotFoundException, PermissionDeniedException
+			{
+				return fetchFilesInternal(dirPath, options, monitor);
+			}
+		}.fetch(path, null, filter, monitor);
+	}
+
+	/**
+	 * Asks the server for the hash of the file contents (absolute path). The default implementation returns
+	 * <code>null</code>; subclasses override it when the protocol offers a way to hash files remotely.
+	 */
+	protected FileHash fetchFileHash(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		return null;
+	}
+
 	protected final ExtendedFileInfo[] fetchFilesInternal(IPath path, int options, IProgressMonitor monitor)
 			throws CoreException, FileNotFoundException, PermissionDeniedException
 	{
@@ -883,6 +1039,26 @@ public abstract class BaseConnectionFileManager implements IConnectionFileManage
 		return new ExtendedFileInfo();
 	}
 
+	private IPath toRelativePath(IPath absolutePath, boolean absolute)
+	{
+		IPath path = absolutePath.removeFirstSegments(basePath.segmentCount());
+		return absolute ? path.makeAbsolute() : path.makeRelative();
+	}
+
+	private static IPath resolveLinkTarget(IPath linkPath, String linkTarget)
+	{
+		if (linkTarget == null || linkTarget.length() == 0)
+		{
+			return null;
+		}
+		IPath targetPath = Path.fromPortableString(linkTarget);
+		if (!targetPath.isAbsolute())
+		{
+			targetPath = linkPath.removeLastSegments(1).append(targetPath);
+		}
+		return targetPath;
+	}
+
 	private final ExtendedFileInfo getCachedFileInfo(IPath path)
 	{
 		return (fileInfoCache != null) ? fileInfoCache.get(path) : null;
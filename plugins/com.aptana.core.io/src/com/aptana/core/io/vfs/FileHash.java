@@ -0,0 +1,130 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.core.io.vfs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+
+/**
+ * Content hash of a file as reported by the server or computed locally. Algorithm names follow
+ * {@link MessageDigest} naming, values are lowercase hex strings.
+ */
+public final class FileHash
+{
+
+	public static final String MD5 = "MD5"; //$NON-NLS-1$
+	public static final String SHA1 = "SHA-1"; //$NON-NLS-1$
+	public static final String SHA256 = "SHA-256"; //$NON-NLS-1$
+	public static final String SHA512 = "SHA-512"; //$NON-NLS-1$
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final String algorithm;
+	private final String value;
+
+	/**
+	 * @param algorithm
+	 *            algorithm name, e.g. "SHA1" or "SHA-1"
+	 * @param value
+	 *            hex digest
+	 */
+	public FileHash(String algorithm, String value)
+	{
+		this.algorithm = normalizeAlgorithm(algorithm);
+		this.value = value.toLowerCase(Locale.ENGLISH);
+	}
+
+	public String getAlgorithm()
+	{
+		return algorithm;
+	}
+
+	public String getValue()
+	{
+		return value;
+	}
+
+	/**
+	 * Computes the hash of the stream contents using the specified algorithm. The stream is read to the end but not
+	 * closed.
+	 */
+	public static FileHash compute(String algorithm, InputStream in) throws IOException, NoSuchAlgorithmException
+	{
+		MessageDigest digest = MessageDigest.getInstance(normalizeAlgorithm(algorithm));
+		byte[] buffer = new byte[8192];
+		int length;
+		while ((length = in.read(buffer)) != -1)
+		{
+			digest.update(buffer, 0, length);
+		}
+		byte[] bytes = digest.digest();
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+			chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+		}
+		return new FileHash(algorithm, new String(chars));
+	}
+
+	/**
+	 * Maps the algorithm names used by servers (e.g. "SHA1", "sha-256") to {@link MessageDigest} names.
+	 */
+	public static String normalizeAlgorithm(String algorithm)
+	{
+		String name = algorithm.toUpperCase(Locale.ENGLISH);
+		if (name.startsWith("SHA") && name.indexOf('-') == -1) //$NON-NLS-1$
+		{
+			name = "SHA-" + name.substring(3); //$NON-NLS-1$
+		}
+		return name;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+		{
+			return true;
+		}
+		if (!(obj instanceof FileHash))
+		{
+			return false;
+		}
+		FileHash other = (FileHash) obj;
+		return algorithm.equals(other.algorithm) && value.equals(other.value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#hashCode()
+	 */
+	@Override
+	public int hashCode()
+	{
+		return 31 * algorithm.hashCode() + value.hashCode();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return algorithm + ':' + value;
+	}
+}
@@ -11,12 +11,15 @@ package com.aptana.core.io.vfs;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.util.Map;
 
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 
+import com.aptana.core.IFilter;
+
 
 /**
  * @author Max Stepanov
@@ -33,10 +36,22 @@ public interface IConnectionFileManager {
 	public IExtendedFileInfo fetchInfo(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public String[] childNames(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public IExtendedFileInfo[] childInfos(IPath path, int options, IProgressMonitor monitor) throws CoreException;
+
+	/**
+	 * Returns child infos of the directory and of all its sub-directories accepted by the filter,
+	 * keyed by directory path.
+	 */
+	public Map<IPath, IExtendedFileInfo[]> childInfosTree(IPath path, int options, IFilter<IPath> filter, IProgressMonitor monitor) throws CoreException;
 	
 	public InputStream openInputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public OutputStream openOutputStream(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 
+	/**
+	 * Returns the hash of the file contents as computed by the server,
+	 * or <code>null</code> if the server cannot provide one.
+	 */
+	public FileHash fetchHash(IPath path, IProgressMonitor monitor) throws CoreException;
+
 	public void delete(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	public void mkdir(IPath path, int options, IProgressMonitor monitor) throws CoreException;
 	
@@ -0,0 +1,29 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+
+package com.aptana.core.io.vfs;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * Implemented by file stores able to obtain the content hash of a file without transferring its contents.
+ */
+public interface IFileHashProvider
+{
+
+	/**
+	 * Returns the hash of the file contents as computed by the server.
+	 * 
+	 * @param monitor
+	 * @return file hash, or <code>null</code> if the server cannot provide one
+	 * @throws CoreException
+	 */
+	public FileHash fetchHash(IProgressMonitor monitor) throws CoreException;
+
+}
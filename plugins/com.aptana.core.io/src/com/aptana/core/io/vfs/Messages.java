@@ -30,6 +30,7 @@ public class Messages extends NLS // NO_UCD
 	public static String BaseConnectionFileManager_gethering_details;
 
 	public static String BaseConnectionFileManager_listing_directory;
+	public static String BaseConnectionFileManager_listing_tree_failed;
 	public static String BaseConnectionFileManager_moving;
 	public static String BaseConnectionFileManager_no_such_file;
 	public static String BaseConnectionFileManager_opening_file;
@@ -0,0 +1,306 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+// $codepro.audit.disable declaredExceptions
+// $codepro.audit.disable variableDeclaredInLoop
+
+package com.aptana.core.io.vfs;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.core.IFilter;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.ide.core.io.CoreIOPlugin;
+import com.aptana.ide.core.io.PermissionDeniedException;
+
+/**
+ * Lists a remote directory tree breadth-first, fanning the directory listings out over a number of additional
+ * connections. Every worker thread owns its connection; the filter is evaluated and the result is collected on the
+ * calling thread only. When no additional connection can be opened, the remaining directories are listed on the
+ * caller's own connection. An instance fetches a single tree.
+ *
+ * @param <C>
+ *            the connection type
+ */
+public abstract class ParallelFileTreeFetcher<C>
+{
+
+	private static final long POLL_INTERVAL = 100;
+	private static final ExtendedFileInfo[] EMPTY_FILEINFO_ARRAY = new ExtendedFileInfo[0];
+
+	private final int maxConnections;
+	private final BlockingQueue<IPath> pending = new LinkedBlockingQueue<IPath>();
+	private final BlockingQueue<Listing> listings = new LinkedBlockingQueue<Listing>();
+	private volatile boolean stopped;
+	private int workers;
+	private int liveWorkers;
+
+	protected ParallelFileTreeFetcher(int maxConnections)
+	{
+		this.maxConnections = Math.max(0, maxConnections);
+	}
+
+	/**
+	 * Opens an additional connection for a worker thread.
+	 */
+	protected abstract C openConnection(IProgressMonitor monitor) throws Exception;
+
+	/**
+	 * Closes or returns the connection obtained from {@link #openConnection(IProgressMonitor)}.
+	 */
+	protected abstract void closeConnection(C connection);
+
+	/**
+	 * Lists a directory (absolute path) using a worker connection. Called on worker threads.
+	 */
+	protected abstract ExtendedFileInfo[] listDirectory(C connection, IPath path, IProgressMonitor monitor)
+			throws Exception;
+
+	/**
+	 * Lists a directory (absolute path) on the caller's own connection. Called on the calling thread.
+	 */
+	protected abstract ExtendedFileInfo[] listDirectory(IPath path, IProgressMonitor monitor) throws CoreException,
+			FileNotFoundException, PermissionDeniedException;
+
+	/**
+	 * Fetches the tree under the specified directory.
+	 *
+	 * @param path
+	 *            absolute path of the tree root
+	 * @param known
+	 *            listings already known for some of the directories (e.g. from a server-side recursive listing); may
+	 *            be <code>null</code>
+	 * @param filter
+	 *            decides which sub-directories to descend into; may be <code>null</code>
+	 * @param monitor
+	 * @return directory listings keyed by absolute directory path, in breadth-first order
+	 */
+	public final Map<IPath, ExtendedFileInfo[]> fetch(IPath path, Map<IPath, ExtendedFileInfo[]> known,
+			IFilter<IPath> filter, IProgressMonitor monitor) throws CoreException, PermissionDeniedException
+	{
+		Map<IPath, ExtendedFileInfo[]> result = new LinkedHashMap<IPath, ExtendedFileInfo[]>();
+		int outstanding = enqueue(path, known, filter, result);
+		try
+		{
+			while (outstanding > 0)
+			{
+				Policy.checkCanceled(monitor);
+				Listing listing;
+				// once the last worker retired, its listings and the directories it handed back are all in
+				IPath dirPath = (liveWorkers == 0) ? pending.poll() : null;
+				if (dirPath != null)
+				{
+					// no worker connection available, continue on the caller's connection without waiting
+					try
+					{
+						listing = new Listing(dirPath, listDirectory(dirPath, monitor));
+					}
+					catch (FileNotFoundException e)
+					{
+						listing = new Listing(dirPath, EMPTY_FILEINFO_ARRAY);
+					}
+				}
+				else
+				{
+					listing = listings.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (listing == null)
+					{
+						continue;
+					}
+					if (listing.path == null)
+					{
+						--liveWorkers;
+						continue;
+					}
+				}
+				if (listing.exception != null)
+				{
+					throw listing.exception;
+				}
+				--outstanding;
+				monitor.subTask(MessageFormat.format(Messages.BaseConnectionFileManager_listing_directory,
+						listing.path.toPortableString()));
+				monitor.worked(1);
+				outstanding += collect(listing.path, listing.fileInfos, known, filter, result);
+			}
+			return result;
+		}
+		catch (InterruptedException e)
+		{
+			throw new OperationCanceledException();
+		}
+		catch (CoreException e)
+		{
+			throw e;
+		}
+		catch (PermissionDeniedException e)
+		{
+			throw e;
+		}
+		catch (OperationCanceledException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, CoreIOPlugin.PLUGIN_ID, MessageFormat.format(
+					Messages.BaseConnectionFileManager_listing_tree_failed, path.toPortableString()), e));
+		}
+		finally
+		{
+			stopped = true;
+		}
+	}
+
+	/**
+	 * Records the listing of a directory and queues its sub-directories. Listings which are already known are
+	 * consumed right away.
+	 *
+	 * @return number of directories queued for listing
+	 */
+	private int collect(IPath dirPath, ExtendedFileInfo[] fileInfos, Map<IPath, ExtendedFileInfo[]> known,
+			IFilter<IPath> filter, Map<IPath, ExtendedFileInfo[]> result)
+	{
+		result.put(dirPath, fileInfos);
+		int count = 0;
+		for (ExtendedFileInfo fileInfo : fileInfos)
+		{
+			// symlinks are resolved by the connection manager afterwards
+			if (!fileInfo.isDirectory() || fileInfo.getAttribute(EFS.ATTRIBUTE_SYMLINK))
+			{
+				continue;
+			}
+			IPath childPath = dirPath.append(fileInfo.getName());
+			if (result.containsKey(childPath) || (filter != null && !filter.include(childPath)))
+			{
+				continue;
+			}
+			count += enqueue(childPath, known, filter, result);
+		}
+		return count;
+	}
+
+	private int enqueue(IPath dirPath, Map<IPath, ExtendedFileInfo[]> known, IFilter<IPath> filter,
+			Map<IPath, ExtendedFileInfo[]> result)
+	{
+		ExtendedFileInfo[] fileInfos = (known != null) ? known.get(dirPath) : null;
+		if (fileInfos != null)
+		{
+			return collect(dirPath, fileInfos, known, filter, result);
+		}
+		pending.add(dirPath);
+		if (workers < maxConnections)
+		{
+			++workers;
+			++liveWorkers;
+			Thread thread = new Thread(new Worker(), "Remote Tree Fetcher"); //$NON-NLS-1$
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return 1;
+	}
+
+	private class Worker implements Runnable
+	{
+
+		public void run()
+		{
+			IProgressMonitor monitor = new NullProgressMonitor()
+			{
+				@Override
+				public boolean isCanceled()
+				{
+					return stopped;
+				}
+			};
+			C connection = null;
+			try
+			{
+				connection = openConnection(monitor);
+				while (!stopped)
+				{
+					IPath dirPath = pending.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (dirPath == null)
+					{
+						continue;
+					}
+					try
+					{
+						listings.add(new Listing(dirPath, listDirectory(connection, dirPath, monitor)));
+					}
+					catch (FileNotFoundException e)
+					{
+						listings.add(new Listing(dirPath, EMPTY_FILEINFO_ARRAY));
+					}
+					catch (IOException e)
+					{
+						// connection is broken, hand the directory back and retire
+						pending.add(dirPath);
+						break;
+					}
+					catch (Exception e)
+					{
+						listings.add(new Listing(dirPath, e));
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+			}
+			catch (Exception e)
+			{
+				IdeLog.logWarning(CoreIOPlugin.getDefault(), e.getLocalizedMessage(), e);
+			}
+			finally
+			{
+				if (connection != null)
+				{
+					closeConnection(connection);
+				}
+				listings.add(new Listing(null, EMPTY_FILEINFO_ARRAY));
+			}
+		}
+	}
+
+	private static class Listing
+	{
+
+		private final IPath path;
+		private final ExtendedFileInfo[] fileInfos;
+		private final Exception exception;
+
+		private Listing(IPath path, ExtendedFileInfo[] fileInfos)
+		{
+			this.path = path;
+			this.fileInfos = fileInfos;
+			this.exception = null;
+		}
+
+		private Listing(IPath path, Exception exception)
+		{
+			this.path = path;
+			this.fileInfos = EMPTY_FILEINFO_ARRAY;
+			this.exception = exception;
+		}
+	}
+}
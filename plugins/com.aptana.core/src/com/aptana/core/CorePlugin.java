@@ -8,10 +8,13 @@
 package com.aptana.core;
 
 import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Formatter;
 
+import javax.management.ObjectName;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
@@ -23,6 +26,7 @@ import org.eclipse.core.runtime.preferences.IEclipsePreferences.PreferenceChange
 import org.osgi.framework.BundleContext;
 
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.IOUtil;
 import com.eaio.uuid.MACAddress;
@@ -78,6 +82,40 @@ public class CorePlugin extends Plugin implements IPreferenceChangeListener
 		};
 		EclipseUtil.setSystemForJob(job);
 		job.schedule();
+
+		registerMetrics();
+	}
+
+	/**
+	 * Makes the metrics registry available to JMX consoles
+	 */
+	private void registerMetrics()
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(MetricsRegistry.getDefault(),
+					new ObjectName(MetricsRegistry.OBJECT_NAME));
+		}
+		catch (Exception e)
+		{
+			IdeLog.logWarning(this, "Failed to register the metrics MBean", e); //$NON-NLS-1$
+		}
+	}
+
+	private void unregisterMetrics()
+	{
+		try
+		{
+			ObjectName name = new ObjectName(MetricsRegistry.OBJECT_NAME);
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			}
+		}
+		catch (Exception e)
+		{
+			IdeLog.logWarning(this, "Failed to unregister the metrics MBean", e); //$NON-NLS-1$
+		}
 	}
 
 	/**
@@ -115,6 +153,7 @@ public class CorePlugin extends Plugin implements IPreferenceChangeListener
 		{
 			// Don't listen to debug changes anymore
 			EclipseUtil.instanceScope().getNode(CorePlugin.PLUGIN_ID).removePreferenceChangeListener(this);
+			unregisterMetrics();
 		}
 		finally
 		{
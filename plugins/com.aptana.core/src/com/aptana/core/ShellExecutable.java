@@ -9,24 +9,32 @@
 package com.aptana.core;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
 import java.util.StringTokenizer;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.osgi.service.prefs.BackingStoreException;
 
@@ -67,11 +75,55 @@ public final class ShellExecutable {
 	private static final String BASH = "bash"; //$NON-NLS-1$
 	private static final String RCFILE = "$os$/.aptanarc"; //$NON-NLS-1$
 
+	/**
+	 * The variables the login shell adds to the environment Studio was started with are persisted here, so we don't
+	 * have to wait on a shell on every startup
+	 */
+	private static final String ENV_CACHE_FILE = "shell_environment.properties"; //$NON-NLS-1$
+	private static final String ENV_CACHE_FINGERPRINT = "fingerprint"; //$NON-NLS-1$
+	private static final String ENV_CACHE_PREFIX = "env."; //$NON-NLS-1$
+
+	/**
+	 * Files sourced by the login shell, directly or by the tools commonly set up from it (rbenv, nvm, rvm,
+	 * path_helper). A change to any of them invalidates the persisted environment
+	 */
+	private static final String[] ENV_CACHE_DEPENDENCIES = new String[] {
+			"/etc/profile", //$NON-NLS-1$
+			"/etc/bashrc", //$NON-NLS-1$
+			"/etc/paths", //$NON-NLS-1$
+			"/etc/paths.d", //$NON-NLS-1$
+			"~/.bash_profile", //$NON-NLS-1$
+			"~/.bash_login", //$NON-NLS-1$
+			"~/.profile", //$NON-NLS-1$
+			"~/.bashrc", //$NON-NLS-1$
+			"~/.aptanarc", //$NON-NLS-1$
+			"~/.rbenv/version", //$NON-NLS-1$
+			"~/.nvm/alias/default", //$NON-NLS-1$
+			"~/.rvm/config/alias" //$NON-NLS-1$
+	};
+
+	/**
+	 * Variables that belong to the session Studio was started in rather than to the shell init files. They are never
+	 * persisted, so a restored environment always has the current values
+	 */
+	private static final String[] ENV_CACHE_EXCLUDED = new String[] {
+			"SSH_AUTH_SOCK", //$NON-NLS-1$
+			"SSH_AGENT_PID", //$NON-NLS-1$
+			"TMPDIR", //$NON-NLS-1$
+			"DISPLAY", //$NON-NLS-1$
+			"XAUTHORITY", //$NON-NLS-1$
+			"DBUS_SESSION_BUS_ADDRESS", //$NON-NLS-1$
+			"SHLVL", //$NON-NLS-1$
+			"PWD", //$NON-NLS-1$
+			"OLDPWD" //$NON-NLS-1$
+	};
+
 	private static boolean initializing = false;
 	private static IPath shellPath = null;
 	private static IPath shellRCPath = null;
 	private static Map<String, String> shellEnvironment;
 	private static Map<IPath, Map<String, String>> workingDirToEnvCache = new HashMap<IPath, Map<String, String>>();
+	private static boolean refreshingEnvironment = false;
 
 	/**
 	 * 
@@ -173,7 +225,22 @@ public final class ShellExecutable {
 				if (shellPath == null) {
 					return System.getenv();
 				}
-				shellEnvironment = getEnvironment(null);
+				// Use the environment persisted by an earlier session if the shell init files haven't changed since,
+				// and check it against a fresh one in the background
+				String fingerprint = getEnvironmentFingerprint(shellPath);
+				Map<String, String> cached = readCachedEnvironment(getEnvironmentCacheFile(), fingerprint,
+						System.getenv());
+				if (cached != null) {
+					shellEnvironment = cached;
+					workingDirToEnvCache.put(null, cached);
+					refreshEnvironment(shellPath, fingerprint);
+				} else {
+					shellEnvironment = getEnvironment(null);
+					if (workingDirToEnvCache.get(null) == shellEnvironment) {
+						writeCachedEnvironment(getEnvironmentCacheFile(), fingerprint, shellEnvironment,
+								System.getenv());
+					}
+				}
 			} catch (CoreException e) {
 				return System.getenv();
 			}
@@ -199,25 +266,7 @@ public final class ShellExecutable {
 			Map<String, String> result = null;
 			if (shellPath != null) {
 				// OK, we do have a shell.
-				String envCommand = "env"; //$NON-NLS-1$
-				if (Platform.OS_WIN32.equals(Platform.getOS())) {
-					IPath envPath = shellPath.removeLastSegments(1).append("env.exe"); //$NON-NLS-1$
-					if (envPath.toFile().isFile()) {
-						envCommand = envPath.toPortableString();
-					}
-				}
-				try {
-					IStatus status = ProcessUtil.processResult(run(envCommand, workingDirectory, null));
-					if (status.isOK()) {
-						result = buildEnvironment(status.getMessage());
-					} else {
-						IdeLog.logError(CorePlugin.getDefault(), "Get shell environment failed: "+status.getMessage()); //$NON-NLS-1$
-					}
-				} catch (Exception e) {
-					IdeLog.logError(CorePlugin.getDefault(), "Get shell environment failed.", e); //$NON-NLS-1$
-					// failed to generate an env, we'll use JVM env and not
-					// cache, see below...
-				}
+				result = captureEnvironment(shellPath, workingDirectory);
 			}
 
 			if (result == null) {
@@ -230,6 +279,207 @@ public final class ShellExecutable {
 		return workingDirToEnvCache.get(workingDirectory);
 	}
 
+	/**
+	 * Runs "env" in a login shell.
+	 * 
+	 * @return the environment, or null if the shell failed
+	 */
+	private static Map<String, String> captureEnvironment(IPath shellPath, IPath workingDirectory) {
+		String envCommand = "env"; //$NON-NLS-1$
+		if (Platform.OS_WIN32.equals(Platform.getOS())) {
+			IPath envPath = shellPath.removeLastSegments(1).append("env.exe"); //$NON-NLS-1$
+			if (envPath.toFile().isFile()) {
+				envCommand = envPath.toPortableString();
+			}
+		}
+		try {
+			IStatus status = ProcessUtil.processResult(run(envCommand, workingDirectory, null));
+			if (status.isOK()) {
+				return buildEnvironment(status.getMessage());
+			}
+			IdeLog.logError(CorePlugin.getDefault(), "Get shell environment failed: "+status.getMessage()); //$NON-NLS-1$
+		} catch (Exception e) {
+			IdeLog.logError(CorePlugin.getDefault(), "Get shell environment failed.", e); //$NON-NLS-1$
+			// failed to generate an env, we'll use JVM env and not
+			// cache, see below...
+		}
+		return null;
+	}
+
+	/**
+	 * Captures the shell environment again in the background, replacing the one in use and the persisted one when it
+	 * succeeds.
+	 */
+	private static void refreshEnvironment(final IPath shellPath, final String fingerprint) {
+		if (refreshingEnvironment) {
+			return;
+		}
+		refreshingEnvironment = true;
+		Job job = new Job("Refresh shell environment") { //$NON-NLS-1$
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				try {
+					Map<String, String> result = captureEnvironment(shellPath, null);
+					if (result != null) {
+						synchronized (ShellExecutable.class) {
+							// the shell may have been changed meanwhile, in which case this env is of no use
+							if (shellPath.equals(ShellExecutable.shellPath)) {
+								shellEnvironment = result;
+								workingDirToEnvCache.put(null, result);
+							}
+						}
+						writeCachedEnvironment(getEnvironmentCacheFile(), fingerprint, result, System.getenv());
+					}
+				} finally {
+					synchronized (ShellExecutable.class) {
+						refreshingEnvironment = false;
+					}
+				}
+				return Status.OK_STATUS;
+			}
+		};
+		EclipseUtil.setSystemForJob(job);
+		job.setPriority(Job.LONG);
+		job.schedule();
+	}
+
+	/**
+	 * Describes everything the login shell environment depends on that we can check without running the shell: the
+	 * shell itself, the environment Studio was started with and the shell init files.
+	 */
+	private static String getEnvironmentFingerprint(IPath shellPath) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(shellPath.toOSString()).append('|');
+		sb.append(CorePlugin.getAptanaStudioVersion()).append('|');
+		sb.append(System.getProperty("user.home")).append('|'); //$NON-NLS-1$
+		sb.append(System.getenv("PATH")).append('|'); //$NON-NLS-1$
+		List<File> files = new ArrayList<File>();
+		IPath rcPath = getShellRCPath();
+		if (rcPath != null) {
+			files.add(rcPath.toFile());
+		}
+		for (String name : ENV_CACHE_DEPENDENCIES) {
+			files.add(new File(name.startsWith("~/") ? System.getProperty("user.home") + name.substring(1) : name)); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		for (File file : files) {
+			// a missing file is recorded as 0:0, so creating one changes the fingerprint too
+			sb.append(file.getPath()).append(':').append(file.lastModified()).append(':').append(file.length()).append('|');
+		}
+		return sb.toString();
+	}
+
+	private static File getEnvironmentCacheFile() {
+		CorePlugin plugin = CorePlugin.getDefault();
+		if (plugin == null) {
+			return null;
+		}
+		return plugin.getStateLocation().append(ENV_CACHE_FILE).toFile();
+	}
+
+	/**
+	 * Reads the persisted shell variables and lays them over the live environment, so variables of the current
+	 * session (SSH_AUTH_SOCK, DISPLAY, ...) are never stale.
+	 * 
+	 * @param file
+	 *            the file written by {@link #writeCachedEnvironment(File, String, Map, Map)}
+	 * @param fingerprint
+	 *            the current fingerprint, see {@link #getEnvironmentFingerprint(IPath)}
+	 * @param liveEnvironment
+	 *            the environment Studio runs in
+	 * @return the environment, or null if nothing was persisted for this fingerprint
+	 */
+	static Map<String, String> readCachedEnvironment(File file, String fingerprint,
+			Map<String, String> liveEnvironment) {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		Properties properties = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(file);
+			properties.load(in);
+		} catch (IOException e) {
+			IdeLog.logWarning(CorePlugin.getDefault(), "Reading cached shell environment failed.", e, null); //$NON-NLS-1$
+			return null;
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+		if (!fingerprint.equals(properties.getProperty(ENV_CACHE_FINGERPRINT))) {
+			return null;
+		}
+		Map<String, String> env = new HashMap<String, String>(liveEnvironment);
+		for (Enumeration<?> keys = properties.propertyNames(); keys.hasMoreElements();) {
+			String key = (String) keys.nextElement();
+			if (key.startsWith(ENV_CACHE_PREFIX)) {
+				env.put(key.substring(ENV_CACHE_PREFIX.length()), properties.getProperty(key));
+			}
+		}
+		return filterEnvironment(env);
+	}
+
+	/**
+	 * Persists the variables the shell init files set: those the login shell environment adds to or changes in the
+	 * environment Studio was started with, except for the session ones. The rest of the environment, which may well
+	 * hold secrets, is left out.
+	 * 
+	 * @param file
+	 * @param fingerprint
+	 *            see {@link #getEnvironmentFingerprint(IPath)}
+	 * @param shellEnvironment
+	 *            the login shell environment
+	 * @param inheritedEnvironment
+	 *            the environment Studio was started with
+	 */
+	static void writeCachedEnvironment(File file, String fingerprint, Map<String, String> shellEnvironment,
+			Map<String, String> inheritedEnvironment) {
+		if (file == null) {
+			return;
+		}
+		Properties properties = new Properties();
+		properties.setProperty(ENV_CACHE_FINGERPRINT, fingerprint);
+		for (Map.Entry<String, String> entry : getShellVariables(shellEnvironment, inheritedEnvironment).entrySet()) {
+			properties.setProperty(ENV_CACHE_PREFIX + entry.getKey(), entry.getValue());
+		}
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			properties.store(out, null);
+		} catch (IOException e) {
+			IdeLog.logWarning(CorePlugin.getDefault(), "Saving shell environment failed.", e, null); //$NON-NLS-1$
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ignore) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the variables of the shell environment that aren't in the inherited environment, or have another value
+	 * there, leaving out the session variables.
+	 */
+	static Map<String, String> getShellVariables(Map<String, String> shellEnvironment,
+			Map<String, String> inheritedEnvironment) {
+		Map<String, String> result = new HashMap<String, String>();
+		for (Map.Entry<String, String> entry : shellEnvironment.entrySet()) {
+			String value = entry.getValue();
+			if (value != null && !value.equals(inheritedEnvironment.get(entry.getKey()))) {
+				result.put(entry.getKey(), value);
+			}
+		}
+		for (String var : ENV_CACHE_EXCLUDED) {
+			result.remove(var);
+		}
+		return result;
+	}
+
 	private static Map<String, String> buildEnvironment(String envp) {
 		Map<String, String> env = new HashMap<String, String>();
 		env.put("HOME", PlatformUtil.expandEnvironmentStrings("~")); //$NON-NLS-1$ //$NON-NLS-2$
@@ -241,6 +491,10 @@ public final class ShellExecutable {
 				env.put(envstring.substring(0, eqlsign), envstring.substring(eqlsign + 1));
 			}
 		}
+		return filterEnvironment(env);
+	}
+
+	private static Map<String, String> filterEnvironment(Map<String, String> env) {
 		for (String var : ENV_FILTER) {
 			if (var.charAt(var.length() - 1) == '*') {
 				String prefix = var.substring(0, var.length() - 1);
@@ -0,0 +1,117 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What a {@link MetricsRegistry} recorded for one name of a category, as of when it was asked for
+ */
+public class Metric
+{
+	private final String category;
+	private final String name;
+	private final long count;
+	private final long hits;
+	private final long totalTime;
+	private final long maxTime;
+
+	/**
+	 * Metric
+	 *
+	 * @param category
+	 * @param name
+	 * @param count
+	 *            the number of times something was timed or looked up
+	 * @param hits
+	 *            the number of lookups that hit, or -1 if nothing was looked up
+	 * @param totalTime
+	 *            in nanoseconds
+	 * @param maxTime
+	 *            in nanoseconds
+	 */
+	public Metric(String category, String name, long count, long hits, long totalTime, long maxTime)
+	{
+		this.category = category;
+		this.name = name;
+		this.count = count;
+		this.hits = hits;
+		this.totalTime = totalTime;
+		this.maxTime = maxTime;
+	}
+
+	public String getCategory()
+	{
+		return category;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns whether this counts lookups that hit or missed, rather than timing something
+	 *
+	 * @return
+	 */
+	public boolean isHitRatio()
+	{
+		return hits >= 0;
+	}
+
+	/**
+	 * Returns the share of lookups that hit, between 0 and 1
+	 *
+	 * @return
+	 */
+	public double getHitRate()
+	{
+		return (hits <= 0 || count == 0) ? 0 : (double) hits / count;
+	}
+
+	/**
+	 * Returns the total time, in milliseconds
+	 *
+	 * @return
+	 */
+	public double getTotalTime()
+	{
+		return toMillis(totalTime);
+	}
+
+	/**
+	 * Returns the average time, in milliseconds
+	 *
+	 * @return
+	 */
+	public double getAverageTime()
+	{
+		return (count == 0) ? 0 : toMillis(totalTime) / count;
+	}
+
+	/**
+	 * Returns the longest time, in milliseconds
+	 *
+	 * @return
+	 */
+	public double getMaxTime()
+	{
+		return toMillis(maxTime);
+	}
+
+	private static double toMillis(long nanos)
+	{
+		return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+}
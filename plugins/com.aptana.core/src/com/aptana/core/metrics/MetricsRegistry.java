@@ -0,0 +1,327 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps counts and timings of what the builder, the reconciler, the parsing engine and the indices do, so we can tell
+ * where the time goes. Nothing gets recorded until it's enabled, either from the Metrics view or over JMX. Callers
+ * that have to do more than read the clock to record something should check {@link #isEnabled()} first.
+ */
+public class MetricsRegistry implements MetricsRegistryMBean
+{
+
+	/**
+	 * The name this registry is registered under with the platform MBean server
+	 */
+	public static final String OBJECT_NAME = "com.aptana.core:type=Metrics"; //$NON-NLS-1$
+
+	/**
+	 * Build participants, by name
+	 */
+	public static final String PARTICIPANT = "participant"; //$NON-NLS-1$
+
+	/**
+	 * Participants running in the editor reconciler, by name
+	 */
+	public static final String RECONCILE_PARTICIPANT = "reconcile"; //$NON-NLS-1$
+
+	/**
+	 * All participants building a file, by content type of the file
+	 */
+	public static final String CONTENT_TYPE = "contentType"; //$NON-NLS-1$
+
+	/**
+	 * The phases of building a file, see the PHASE_* names
+	 */
+	public static final String PHASE = "phase"; //$NON-NLS-1$
+
+	/**
+	 * Hits of the parsing engine's cache, by content type
+	 */
+	public static final String PARSE_CACHE = "parseCache"; //$NON-NLS-1$
+
+	/**
+	 * Index queries, by category
+	 */
+	public static final String INDEX_QUERY = "indexQuery"; //$NON-NLS-1$
+
+	public static final String PHASE_PARSE = "parse"; //$NON-NLS-1$
+	public static final String PHASE_VALIDATE = "validate"; //$NON-NLS-1$
+	public static final String PHASE_INDEX = "index"; //$NON-NLS-1$
+	public static final String PHASE_MARKERS = "markers"; //$NON-NLS-1$
+
+	private static final String SEPARATOR = "/"; //$NON-NLS-1$
+
+	/**
+	 * What is recorded for one name of a category
+	 */
+	private static class Entry
+	{
+		final String category;
+		final String name;
+		long count;
+		long hits = -1;
+		long totalTime;
+		long maxTime;
+
+		Entry(String category, String name)
+		{
+			this.category = category;
+			this.name = name;
+		}
+
+		synchronized void add(long time)
+		{
+			count++;
+			totalTime += time;
+			maxTime = Math.max(maxTime, time);
+		}
+
+		synchronized void hit(boolean hit)
+		{
+			count++;
+			if (hits < 0)
+			{
+				hits = 0;
+			}
+			if (hit)
+			{
+				hits++;
+			}
+		}
+
+		synchronized Metric toMetric()
+		{
+			return new Metric(category, name, count, hits, totalTime, maxTime);
+		}
+	}
+
+	private static MetricsRegistry instance;
+
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private volatile boolean enabled;
+
+	/**
+	 * Returns the registry the plugins record their metrics in
+	 *
+	 * @return
+	 */
+	public static synchronized MetricsRegistry getDefault()
+	{
+		if (instance == null)
+		{
+			instance = new MetricsRegistry();
+		}
+		return instance;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.metrics.MetricsRegistryMBean#isEnabled()
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.metrics.MetricsRegistryMBean#setEnabled(boolean)
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Records how long something took
+	 *
+	 * @param category
+	 * @param name
+	 * @param time
+	 *            in nanoseconds
+	 */
+	public void record(String category, String name, long time)
+	{
+		if (enabled)
+		{
+			getEntry(category, name).add(time);
+		}
+	}
+
+	/**
+	 * Records whether a lookup hit a cache
+	 *
+	 * @param category
+	 * @param name
+	 * @param hit
+	 */
+	public void recordHit(String category, String name, boolean hit)
+	{
+		if (enabled)
+		{
+			getEntry(category, name).hit(hit);
+		}
+	}
+
+	private Entry getEntry(String category, String name)
+	{
+		name = String.valueOf(name);
+		String key = category + SEPARATOR + name;
+		Entry entry = entries.get(key);
+		if (entry == null)
+		{
+			Entry newEntry = new Entry(category, name);
+			entry = entries.putIfAbsent(key, newEntry);
+			if (entry == null)
+			{
+				entry = newEntry;
+			}
+		}
+		return entry;
+	}
+
+	/**
+	 * Returns what was recorded so far, sorted by category and name
+	 *
+	 * @return
+	 */
+	public List<Metric> getMetrics()
+	{
+		List<Metric> result = new ArrayList<Metric>(entries.size());
+		for (Entry entry : entries.values())
+		{
+			result.add(entry.toMetric());
+		}
+		Collections.sort(result, new Comparator<Metric>()
+		{
+			public int compare(Metric m1, Metric m2)
+			{
+				int result = m1.getCategory().compareTo(m2.getCategory());
+				return (result != 0) ? result : m1.getName().compareTo(m2.getName());
+			}
+		});
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.metrics.MetricsRegistryMBean#reset()
+	 */
+	public void reset()
+	{
+		entries.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.metrics.MetricsRegistryMBean#toCSV()
+	 */
+	public String toCSV()
+	{
+		StringBuilder builder = new StringBuilder();
+		builder.append("category,name,count,totalMs,averageMs,maxMs,hitRate\n"); //$NON-NLS-1$
+		for (Metric metric : getMetrics())
+		{
+			builder.append(csv(metric.getCategory())).append(',');
+			builder.append(csv(metric.getName())).append(',');
+			builder.append(metric.getCount()).append(',');
+			builder.append(metric.getTotalTime()).append(',');
+			builder.append(metric.getAverageTime()).append(',');
+			builder.append(metric.getMaxTime()).append(',');
+			if (metric.isHitRatio())
+			{
+				builder.append(metric.getHitRate());
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.metrics.MetricsRegistryMBean#toJSON()
+	 */
+	public String toJSON()
+	{
+		StringBuilder builder = new StringBuilder("["); //$NON-NLS-1$
+		boolean first = true;
+		for (Metric metric : getMetrics())
+		{
+			if (!first)
+			{
+				builder.append(',');
+			}
+			first = false;
+			builder.append("\n  {\"category\": ").append(json(metric.getCategory())); //$NON-NLS-1$
+			builder.append(", \"name\": ").append(json(metric.getName())); //$NON-NLS-1$
+			builder.append(", \"count\": ").append(metric.getCount()); //$NON-NLS-1$
+			builder.append(", \"totalMs\": ").append(metric.getTotalTime()); //$NON-NLS-1$
+			builder.append(", \"averageMs\": ").append(metric.getAverageTime()); //$NON-NLS-1$
+			builder.append(", \"maxMs\": ").append(metric.getMaxTime()); //$NON-NLS-1$
+			if (metric.isHitRatio())
+			{
+				builder.append(", \"hitRate\": ").append(metric.getHitRate()); //$NON-NLS-1$
+			}
+			builder.append('}');
+		}
+		return builder.append("\n]\n").toString(); //$NON-NLS-1$
+	}
+
+	private static String csv(String value)
+	{
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+		{
+			return value;
+		}
+		return '"' + value.replace("\"", "\"\"") + '"'; //$NON-NLS-1$ //$NON-NLS-2$
+	}
+
+	private static String json(String value)
+	{
+		StringBuilder builder = new StringBuilder(value.length() + 2);
+		builder.append('"');
+		for (int i = 0; i < value.length(); i++)
+		{
+			char c = value.charAt(i);
+			switch (c)
+			{
+				case '"':
+				case '\\':
+					builder.append('\\').append(c);
+					break;
+				case '\n':
+					builder.append("\\n"); //$NON-NLS-1$
+					break;
+				case '\r':
+					builder.append("\\r"); //$NON-NLS-1$
+					break;
+				case '\t':
+					builder.append("\\t"); //$NON-NLS-1$
+					break;
+				default:
+					if (c < ' ')
+					{
+						builder.append(String.format("\\u%04x", (int) c)); //$NON-NLS-1$
+					}
+					else
+					{
+						builder.append(c);
+					}
+			}
+		}
+		return builder.append('"').toString();
+	}
+}
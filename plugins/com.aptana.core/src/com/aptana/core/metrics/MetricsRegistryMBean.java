@@ -0,0 +1,48 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.metrics;
+
+/**
+ * The management interface of the {@link MetricsRegistry}, registered with the platform MBean server as
+ * {@link MetricsRegistry#OBJECT_NAME}
+ */
+public interface MetricsRegistryMBean
+{
+	/**
+	 * Returns whether metrics get recorded
+	 *
+	 * @return
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Starts or stops recording metrics
+	 *
+	 * @param enabled
+	 */
+	public void setEnabled(boolean enabled);
+
+	/**
+	 * Forgets everything recorded so far
+	 */
+	public void reset();
+
+	/**
+	 * Returns what was recorded so far, one metric per line, with a header line
+	 *
+	 * @return
+	 */
+	public String toCSV();
+
+	/**
+	 * Returns what was recorded so far, as a JSON array of metric objects
+	 *
+	 * @return
+	 */
+	public String toJSON();
+}
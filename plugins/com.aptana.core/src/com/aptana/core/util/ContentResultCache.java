@@ -0,0 +1,127 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, least recently used cache of results computed from file contents, such as the problems a validator found.
+ * Results are keyed by a hash of the contents plus whatever else the result depends on (options, filters, profiles),
+ * but not by the file, so identical contents are only processed once. Thread-safe.
+ *
+ * @param <V>
+ *            the type of results
+ */
+public class ContentResultCache<V>
+{
+
+	private static final char SEPARATOR = '|';
+
+	private final Map<String, V> results;
+	private int hits;
+
+	/**
+	 * ContentResultCache
+	 *
+	 * @param maxSize
+	 *            the number of results to keep, the least recently used ones are dropped beyond that
+	 */
+	public ContentResultCache(final int maxSize)
+	{
+		results = new LinkedHashMap<String, V>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, V> eldest)
+			{
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the key of the result for some contents.
+	 *
+	 * @param contents
+	 * @param qualifiers
+	 *            anything else the result depends on, in a fixed order. Their string values become part of the key.
+	 * @return null if the contents couldn't be hashed, in which case the result shouldn't be cached
+	 */
+	public static String getKey(String contents, Object... qualifiers)
+	{
+		String hash = StringUtil.md5(contents);
+		if (hash == null)
+		{
+			return null;
+		}
+		StringBuilder key = new StringBuilder(hash).append(SEPARATOR).append(contents.length());
+		if (qualifiers != null)
+		{
+			for (Object qualifier : qualifiers)
+			{
+				key.append(SEPARATOR).append(qualifier);
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns the result stored under a key.
+	 *
+	 * @param key
+	 *            see {@link #getKey(String, Object...)}
+	 * @return null if there is no result for the key, or the key is null
+	 */
+	public synchronized V get(String key)
+	{
+		V result = (key == null) ? null : results.get(key);
+		if (result != null)
+		{
+			hits++;
+		}
+		return result;
+	}
+
+	/**
+	 * Stores a result. Does nothing if the key is null.
+	 *
+	 * @param key
+	 *            see {@link #getKey(String, Object...)}
+	 * @param result
+	 */
+	public synchronized void put(String key, V result)
+	{
+		if (key != null)
+		{
+			results.put(key, result);
+		}
+	}
+
+	public synchronized int size()
+	{
+		return results.size();
+	}
+
+	/**
+	 * Returns how many times {@link #get(String)} found a result since the cache was created or cleared.
+	 *
+	 * @return
+	 */
+	public synchronized int getHits()
+	{
+		return hits;
+	}
+
+	public synchronized void clear()
+	{
+		results.clear();
+		hits = 0;
+	}
+}
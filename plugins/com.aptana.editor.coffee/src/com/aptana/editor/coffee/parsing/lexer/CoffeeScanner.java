@@ -164,7 +164,6 @@ public class CoffeeScanner extends Scanner
 	private static final Pattern HEREDOC_INDENT = Pattern.compile("\\n+([^\\n\\S]*)");
 	private static final Pattern HEREDOC_ILLEGAL = Pattern.compile("\\*\\/");
 	private static final Pattern LINE_CONTINUER = Pattern.compile("^\\s*(?:,|\\??\\.(?![.\\d])|::)");
-	private static final Pattern TRAILING_SPACES = Pattern.compile("\\s+$");
 
 	private static final Set<String> COMPOUND_ASSIGN = new HashSet<String>();
 	static
@@ -298,7 +297,7 @@ public class CoffeeScanner extends Scanner
 	private int fIndebt;
 	private int fOutdebt;
 	private List<CoffeeSymbol> fTokens;
-	private String fChunk;
+	private int fTokenIndex;
 	private boolean fSeenFor;
 	private List<Integer> fIndents;
 	private List<CoffeeCommentNode> fComments;
@@ -311,11 +310,11 @@ public class CoffeeScanner extends Scanner
 		{
 			tokenize(fCode, null);
 		}
-		if (this.fTokens.isEmpty())
+		if (this.fTokenIndex >= this.fTokens.size())
 		{
 			return new CoffeeSymbol(Terminals.EOF, null);
 		}
-		return this.fTokens.remove(0);
+		return this.fTokens.get(this.fTokenIndex++);
 	}
 
 	private List<CoffeeSymbol> tokenize(String code, Map<String, Object> opts) throws SyntaxError
@@ -324,11 +323,11 @@ public class CoffeeScanner extends Scanner
 		{
 			opts = new HashMap<String, Object>();
 		}
-		if (WHITESPACE.matcher(code).find())
+		if (code.length() > 0 && isSpace(code.charAt(0)) && code.charAt(0) != '\n')
 		{
 			code = "\n" + code;
 		}
-		code = code.replaceAll("\r", "").replaceFirst(TRAILING_SPACES.pattern(), "");
+		code = trimTrailingSpaces(code.replace("\r", ""));
 		this.fCode = code;
 		this.fLine = 0;
 		if (opts.containsKey("fLine"))
@@ -355,10 +354,13 @@ public class CoffeeScanner extends Scanner
 		this.fOutdebt = 0;
 		this.fIndents = new ArrayList<Integer>();
 		this.fTokens = new ArrayList<CoffeeSymbol>();
+		this.fTokenIndex = 0;
 		this.fComments = new ArrayList<CoffeeCommentNode>();
 		this.fOffset = 0;
 
-		while (fOffset < code.length() && (this.fChunk = code.substring(fOffset)).length() > 0)
+		// All the token methods match against fCode starting at fOffset. Never copy the rest of the source here, that
+		// makes lexing quadratic in the file size.
+		while (fOffset < code.length())
 		{
 			int value = this.identifierToken();
 			if (value > 0)
@@ -424,8 +426,7 @@ public class CoffeeScanner extends Scanner
 		this.closeIndentation();
 		this.fTokens = new CoffeeRewriter().rewrite(this.fTokens);
 
-		// Let GC reclaim the memory from the last chunk and the underlying source code.
-		this.fChunk = null;
+		// Let GC reclaim the memory from the underlying source code.
 		this.fCode = null;
 		this.fIndents = null;
 
@@ -435,14 +436,14 @@ public class CoffeeScanner extends Scanner
 	private int identifierToken() throws SyntaxError
 	{
 		// PERF fix, check first char to be sure it's letter, $, _ or unicode points defined in regexp
-		char c = this.fChunk.charAt(0);
+		char c = this.fCode.charAt(this.fOffset);
 		if (!Character.isLetter(c) && c != '$' && c != '_' && (((int) c > 65535) || ((int) c < 127)))
 		{
 			return 0;
 		}
 
-		Matcher m = IDENTIFIER.matcher(this.fChunk);
-		if (!m.find())
+		Matcher m = match(IDENTIFIER);
+		if (m == null)
 		{
 			return 0;
 		}
@@ -679,14 +680,14 @@ public class CoffeeScanner extends Scanner
 	private int numberToken()
 	{
 		// PERF fix, check for digit as first char before we try the regexp
-		char c = this.fChunk.charAt(0);
+		char c = this.fCode.charAt(this.fOffset);
 		if (!Character.isDigit(c))
 		{
 			return 0;
 		}
 
-		Matcher m = NUMBER.matcher(this.fChunk);
-		if (!m.find())
+		Matcher m = match(NUMBER);
+		if (m == null)
 		{
 			return 0;
 		}
@@ -698,11 +699,11 @@ public class CoffeeScanner extends Scanner
 	private int stringToken() throws SyntaxError
 	{
 		String string;
-		switch (this.fChunk.charAt(0))
+		switch (this.fCode.charAt(this.fOffset))
 		{
 			case '\'':
-				Matcher m = SIMPLESTR.matcher(this.fChunk);
-				if (!m.find())
+				Matcher m = match(SIMPLESTR);
+				if (m == null)
 				{
 					return 0;
 				}
@@ -710,7 +711,7 @@ public class CoffeeScanner extends Scanner
 				this.token(Terminals.STRING, string.replaceAll(MULTILINER.pattern(), "\\\n"), string.length());
 				break;
 			case '"':
-				string = this.balancedString(this.fChunk, '"');
+				string = this.balancedString(this.fCode, this.fOffset, '"');
 				if (string == null)
 				{
 					return 0;
@@ -734,14 +735,14 @@ public class CoffeeScanner extends Scanner
 	private int heredocToken() throws SyntaxError
 	{
 		// PERF Fix, check first char before doing expensive regexp
-		char c = this.fChunk.charAt(0);
+		char c = this.fCode.charAt(this.fOffset);
 		if (c != '"' && c != '\'')
 		{
 			return 0;
 		}
 
-		Matcher m = HEREDOC.matcher(this.fChunk);
-		if (!m.find())
+		Matcher m = match(HEREDOC);
+		if (m == null)
 		{
 			return 0;
 		}
@@ -764,27 +765,26 @@ public class CoffeeScanner extends Scanner
 	private int commentToken()
 	{
 		// PERF fix, check first char for space or # before trying to match the regexp
-		char c = this.fChunk.charAt(0);
+		char c = this.fCode.charAt(this.fOffset);
 		if (!Character.isWhitespace(c) && c != '#')
 		{
 			return 0;
 		}
-		// Must be a '#' somewhere or we're definitely not at a comment.
-		int index = this.fChunk.indexOf('#');
-		if (index == -1)
+		// The first non-whitespace char must be a '#' or we're definitely not at a comment.
+		int index = this.fOffset;
+		int length = this.fCode.length();
+		while (index < length && this.fCode.charAt(index) <= ' ')
 		{
-			return 0;
+			index++;
 		}
-		// if it's not just whitespace before '#', also not a comment.
-		String leading = fChunk.substring(0, index);
-		if (leading.trim().length() != 0)
+		if (index == length || this.fCode.charAt(index) != '#')
 		{
 			return 0;
 		}
 		// END PERF fix.
 
-		Matcher m = COMMENT.matcher(this.fChunk);
-		if (!m.find())
+		Matcher m = match(COMMENT);
+		if (m == null)
 		{
 			return 0;
 		}
@@ -817,13 +817,13 @@ public class CoffeeScanner extends Scanner
 
 	private int jsToken()
 	{
-		if (this.fChunk.charAt(0) != '`')
+		if (this.fCode.charAt(this.fOffset) != '`')
 		{
 			return 0;
 		}
 
-		Matcher match = JSTOKEN.matcher(this.fChunk);
-		if (!match.find())
+		Matcher match = match(JSTOKEN);
+		if (match == null)
 		{
 			return 0;
 		}
@@ -834,13 +834,13 @@ public class CoffeeScanner extends Scanner
 
 	private int regexToken() throws SyntaxError
 	{
-		if (this.fChunk.charAt(0) != '/')
+		if (this.fCode.charAt(this.fOffset) != '/')
 		{
 			return 0;
 		}
 
-		Matcher m = HEREGEX.matcher(this.fChunk);
-		if (m.find())
+		Matcher m = match(HEREGEX);
+		if (m != null)
 		{
 			int length = this.heregexToken(m);
 			this.fLine += count(m.group(0), "\n");
@@ -851,8 +851,8 @@ public class CoffeeScanner extends Scanner
 		{
 			return 0;
 		}
-		m = REGEX.matcher(this.fChunk);
-		if (!m.find())
+		m = match(REGEX);
+		if (m == null)
 		{
 			return 0;
 		}
@@ -918,13 +918,13 @@ public class CoffeeScanner extends Scanner
 	private int lineToken()
 	{
 		// PERF Fix, check char before doing expensive regexp...
-		if (this.fChunk.charAt(0) != '\n')
+		if (this.fCode.charAt(this.fOffset) != '\n')
 		{
 			return 0;
 		}
 
-		Matcher m = MULTI_DENT.matcher(this.fChunk);
-		if (!m.find())
+		Matcher m = match(MULTI_DENT);
+		if (m == null)
 		{
 			return 0;
 		}
@@ -1009,15 +1009,15 @@ public class CoffeeScanner extends Scanner
 	private int whitespaceToken()
 	{
 		// PERF Fix, check first character before doing expensive regexp
-		char c = this.fChunk.charAt(0);
+		char c = this.fCode.charAt(this.fOffset);
 		if (!Character.isWhitespace(c) || c == '\n')
 		{
 			return 0;
 		}
 
-		Matcher match = WHITESPACE.matcher(this.fChunk);
-		boolean nline = (this.fChunk.length() > 0 && this.fChunk.charAt(0) == '\n');
-		boolean matched = match.find();
+		Matcher match = match(WHITESPACE);
+		boolean nline = (c == '\n');
+		boolean matched = (match != null);
 		if (!(matched || nline))
 		{
 			return 0;
@@ -1062,8 +1062,8 @@ public class CoffeeScanner extends Scanner
 	private int literalToken() throws SyntaxError
 	{
 		String value;
-		Matcher match = OPERATOR.matcher(this.fChunk);
-		if (match.find())
+		Matcher match = match(OPERATOR);
+		if (match != null)
 		{
 			value = match.group(0);
 			// checking for "->" or "=>"
@@ -1074,7 +1074,7 @@ public class CoffeeScanner extends Scanner
 		}
 		else
 		{
-			value = Character.toString(this.fChunk.charAt(0));
+			value = Character.toString(this.fCode.charAt(this.fOffset));
 		}
 		short tag = terminal(value);
 		CoffeeSymbol prev = last(this.fTokens);
@@ -1239,15 +1239,17 @@ public class CoffeeScanner extends Scanner
 				+ " can't be assigned");
 	}
 
-	private String balancedString(String str, char end)
+	/**
+	 * Returns the balanced string starting at the specified offset of str, which is the opening delimiter.
+	 */
+	private String balancedString(String str, int start, char end)
 	{
 		Stack<Character> stack = new Stack<Character>();
 		stack.push(end);
 
 		int len = str.length();
-		boolean small = (1 <= len);
 		char prev = ' ';
-		for (int i = 1; (small ? (i < len) : (i > len)); i += (small ? 1 : -1))
+		for (int i = start + 1; i < len; i++)
 		{
 			char letter = str.charAt(i);
 			switch (letter)
@@ -1261,7 +1263,7 @@ public class CoffeeScanner extends Scanner
 						stack.pop();
 						if (stack.isEmpty())
 						{
-							return str.substring(0, i + 1);
+							return str.substring(start, i + 1);
 						}
 						end = stack.get(stack.size() - 1);
 						continue;
@@ -1299,7 +1301,7 @@ public class CoffeeScanner extends Scanner
 				i += 1;
 				continue;
 			}
-			if (!(letter == '#' && str.charAt(i + 1) == '{' && (expr = this.balancedString(str.substring(i + 1), '}')) != null))
+			if (!(letter == '#' && str.charAt(i + 1) == '{' && (expr = this.balancedString(str, i + 1, '}')) != null))
 			{
 				continue;
 			}
@@ -1427,7 +1429,7 @@ public class CoffeeScanner extends Scanner
 
 	private boolean unfinished()
 	{
-		if (LINE_CONTINUER.matcher(this.fChunk).find())
+		if (match(LINE_CONTINUER) != null)
 		{
 			return true;
 		}
@@ -1465,6 +1467,37 @@ public class CoffeeScanner extends Scanner
 		// && !CODE.matcher((String) value.getValue()).find() && !ASSIGNED.matcher(this.fChunk).find());
 	}
 
+	/**
+	 * Matches the pattern at the current offset. The matcher works on a region of the source, so the patterns'
+	 * leading '^' anchors at the offset and nothing is copied.
+	 * 
+	 * @return the matcher if the pattern matches at the current offset, otherwise null
+	 */
+	private Matcher match(Pattern pattern)
+	{
+		Matcher m = pattern.matcher(this.fCode);
+		m.region(this.fOffset, this.fCode.length());
+		return m.lookingAt() ? m : null;
+	}
+
+	/**
+	 * Same as the regular expression \s character class.
+	 */
+	private static boolean isSpace(char c)
+	{
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	private static String trimTrailingSpaces(String code)
+	{
+		int end = code.length();
+		while (end > 0 && isSpace(code.charAt(end - 1)))
+		{
+			end--;
+		}
+		return (end == code.length()) ? code : code.substring(0, end);
+	}
+
 	private String escapeLines(String string)
 	{
 		return escapeLines(string, false);
@@ -1542,6 +1575,7 @@ public class CoffeeScanner extends Scanner
 	private void reset()
 	{
 		this.fTokens = null;
+		this.fTokenIndex = 0;
 		this.fIndents = null;
 		this.fCode = null;
 	}
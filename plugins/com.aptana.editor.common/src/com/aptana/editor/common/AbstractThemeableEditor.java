@@ -356,10 +356,21 @@ public abstract class AbstractThemeableEditor extends AbstractFoldingEditor impl
 	protected void installOccurrencesUpdater()
 	{
 		// Initialize the occurrences annotations marker
-		occurrencesUpdater = new CommonOccurrencesUpdater(this);
+		occurrencesUpdater = createOccurrencesUpdater();
 		occurrencesUpdater.initialize(getPreferenceStore());
 	}
 
+	/**
+	 * Creates the updater that marks the occurrences of the selected word. Subclasses may return one that knows more
+	 * about their language
+	 * 
+	 * @return
+	 */
+	protected CommonOccurrencesUpdater createOccurrencesUpdater()
+	{
+		return new CommonOccurrencesUpdater(this);
+	}
+
 	@Override
 	protected void initializeDragAndDrop(ISourceViewer viewer)
 	{
@@ -7,7 +7,9 @@
  */
 package com.aptana.editor.common;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -21,6 +23,7 @@ import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.DocumentEvent;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.ITextInputListener;
 import org.eclipse.jface.text.ITextSelection;
@@ -41,6 +44,8 @@ import org.eclipse.ui.texteditor.IDocumentProvider;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.editor.common.preferences.IPreferenceConstants;
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ScopeSelector;
 
 /**
  * CommonOccurrenceUpdater
@@ -73,6 +78,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (oldInput != null) {
 				oldInput.removeDocumentListener(this);
 			}
+			uninstallIndex();
 		}
 
 		/*
@@ -82,6 +88,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		public void inputDocumentChanged(IDocument oldInput, IDocument newInput) {
 			if (newInput != null) {
 				newInput.addDocumentListener(this);
+				installIndex(newInput);
 			}
 		}
 
@@ -98,6 +105,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 
 			if (document != null) {
 				document.addDocumentListener(this);
+				installIndex(document);
 			}
 		}
 
@@ -115,6 +123,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			if (document != null) {
 				document.removeDocumentListener(this);
 			}
+			uninstallIndex();
 		}
 
 	}
@@ -123,13 +132,16 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		private IDocument document;
 		private ITextSelection selection;
 		private IAnnotationModel model;
+		private OccurrenceIndex index;
 
-		public FindOccurrencesJob(IDocument document, ITextSelection selection, IAnnotationModel model) {
+		public FindOccurrencesJob(IDocument document, ITextSelection selection, IAnnotationModel model,
+				OccurrenceIndex index) {
 			super(Messages.CommonOccurrencesUpdater_Mark_Word_Occurrences);
 
 			this.document = document;
 			this.selection = selection;
 			this.model = model;
+			this.index = index;
 		}
 
 		/**
@@ -199,7 +211,27 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 				// find a "word" to search using the current selection
 				String word = getWord();
 
-				if (word != null && word.length() > 0) {
+				if (index != null && OccurrenceIndex.isIdentifier(word)) {
+					List<IRegion> occurrences = index.getOccurrences(word);
+
+					if (occurrences == null) {
+						// the document is changing, so this job is about to be canceled anyway
+						return Status.CANCEL_STATUS;
+					}
+
+					occurrences = filterOccurrences(document, selection.getOffset(), word, occurrences);
+
+					for (IRegion occurrence : occurrences) {
+						if (monitor.isCanceled()) {
+							status = Status.CANCEL_STATUS;
+							break;
+						}
+
+						// @formatter:off
+						annotationMap.put(new Annotation(ANNOTION_ID, false, ANNOTION_DESCRIPTION), new Position(occurrence.getOffset(), occurrence.getLength()));
+						// @formatter:on
+					}
+				} else if (word != null && word.length() > 0) {
 					String source = document.get();
 					Pattern wordPattern = createWordPattern(word);
 					Matcher matcher = wordPattern.matcher(source);
@@ -239,6 +271,8 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 	}
 
 	private static final String ANNOTION_ID = "com.aptana.editor.common.occurrence"; //$NON-NLS-1$
+	private static final IScopeSelector COMMENT_SELECTOR = new ScopeSelector("comment"); //$NON-NLS-1$
+	private static final IScopeSelector STRING_SELECTOR = new ScopeSelector("string"); //$NON-NLS-1$
 	private static final String ANNOTION_DESCRIPTION = Messages.CommonOccurrencesUpdater_Word_Occurrence_Description;
 
 	private AbstractThemeableEditor editor;
@@ -247,6 +281,7 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 	private Annotation[] annotations;
 	private FindOccurrencesJob findOccurrencesJob;
 	private CancelerJob cancelerJob;
+	private OccurrenceIndex occurrenceIndex;
 
 	/**
 	 * CommonOccurrencesUpdater
@@ -279,6 +314,69 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		return Pattern.compile(regexSource);
 	}
 
+	/**
+	 * Narrows down the occurrences of an identifier to the ones that refer to the same thing as the one that is
+	 * selected. By default, occurrences in comments and strings only count when the selected one is in a comment or a
+	 * string too. Subclasses may restrict occurrences further, to the same scope for instance.
+	 * 
+	 * @param document
+	 * @param offset
+	 *            the offset of the selection
+	 * @param word
+	 *            the selected identifier
+	 * @param occurrences
+	 *            all occurrences of the identifier, by offset
+	 * @return
+	 */
+	protected List<IRegion> filterOccurrences(IDocument document, int offset, String word, List<IRegion> occurrences) {
+		Map<String, String> kinds = new HashMap<String, String>();
+		String selectedKind = getKind(document, offset, kinds);
+		List<IRegion> result = new ArrayList<IRegion>(occurrences.size());
+
+		for (IRegion occurrence : occurrences) {
+			if (selectedKind.equals(getKind(document, occurrence.getOffset(), kinds))) {
+				result.add(occurrence);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Tells whether an offset is in a comment, a string or code
+	 * 
+	 * @param document
+	 * @param offset
+	 * @param kinds
+	 *            the kinds found so far, by scope
+	 * @return
+	 */
+	private String getKind(IDocument document, int offset, Map<String, String> kinds) {
+		String scope;
+
+		try {
+			scope = CommonEditorPlugin.getDefault().getDocumentScopeManager().getScopeAtOffset(document, offset);
+		} catch (BadLocationException e) {
+			return StringUtil.EMPTY;
+		}
+
+		String kind = kinds.get(scope);
+
+		if (kind == null) {
+			if (COMMENT_SELECTOR.matches(scope)) {
+				kind = "comment"; //$NON-NLS-1$
+			} else if (STRING_SELECTOR.matches(scope)) {
+				kind = "string"; //$NON-NLS-1$
+			} else {
+				kind = StringUtil.EMPTY;
+			}
+
+			kinds.put(scope, kind);
+		}
+
+		return kind;
+	}
+
 	/**
 	 * getAnnotationModel
 	 * 
@@ -454,6 +552,28 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 		}
 	}
 
+	/**
+	 * installIndex
+	 * 
+	 * @param document
+	 */
+	private synchronized void installIndex(IDocument document) {
+		uninstallIndex();
+
+		occurrenceIndex = new OccurrenceIndex(document);
+		occurrenceIndex.install();
+	}
+
+	/**
+	 * uninstallIndex
+	 */
+	private synchronized void uninstallIndex() {
+		if (occurrenceIndex != null) {
+			occurrenceIndex.uninstall();
+			occurrenceIndex = null;
+		}
+	}
+
 	/**
 	 * uninstall
 	 */
@@ -490,7 +610,13 @@ public class CommonOccurrencesUpdater implements IPropertyChangeListener {
 			IAnnotationModel annotationModel = getAnnotationModel();
 
 			if (document != null && annotationModel != null) {
-				findOccurrencesJob = new FindOccurrencesJob(document, textSelection, annotationModel);
+				OccurrenceIndex index;
+
+				synchronized (this) {
+					index = occurrenceIndex;
+				}
+
+				findOccurrencesJob = new FindOccurrencesJob(document, textSelection, annotationModel, index);
 				findOccurrencesJob.schedule();
 			}
 		}
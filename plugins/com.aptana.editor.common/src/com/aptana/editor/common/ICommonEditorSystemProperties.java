@@ -22,4 +22,6 @@ public interface ICommonEditorSystemProperties
 	public static String RECONCILER_BACKGROUND_DELAY = "studio.reconcilerBackgroundDelay"; //$NON-NLS-1$
 	public static String RECONCILER_ITERATION_DELAY = "studio.reconcilerIterationDelay"; //$NON-NLS-1$
 	public static String RECONCILER_MINIMAL_VISIBLE_LENGTH = "studio.reconcilerMinimalVisibleLength"; //$NON-NLS-1$
+	public static String RECONCILER_LOOK_AHEAD_LENGTH = "studio.reconcilerLookAheadLength"; //$NON-NLS-1$
+	public static String RECONCILER_SCANNER_THREADS = "studio.reconcilerScannerThreads"; //$NON-NLS-1$
 }
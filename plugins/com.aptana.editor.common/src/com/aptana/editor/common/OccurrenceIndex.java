@@ -0,0 +1,379 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IDocumentExtension4;
+import org.eclipse.jface.text.IDocumentListener;
+import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.Region;
+
+/**
+ * An index of the identifiers of a document, by name. It answers "where does this identifier occur" in time
+ * proportional to the number of occurrences, instead of scanning the whole document.
+ * <p>
+ * The document is scanned once, on the first lookup. After that, an edit only drops the identifiers it touched and
+ * shifts the ones after it; the edited text is scanned again on the next lookup.
+ */
+/* package */class OccurrenceIndex implements IDocumentListener
+{
+
+	/**
+	 * An identifier of the document. The offset is updated as the document changes
+	 */
+	private static class Token
+	{
+		int offset;
+		final String name;
+
+		Token(int offset, String name)
+		{
+			this.offset = offset;
+			this.name = name;
+		}
+
+		int getEnd()
+		{
+			return offset + name.length();
+		}
+	}
+
+	private final IDocument document;
+
+	/**
+	 * All identifiers, by offset
+	 */
+	private final List<Token> tokens = new ArrayList<Token>();
+
+	/**
+	 * The identifiers by name. Tokens don't override equals, so each set holds distinct tokens
+	 */
+	private final Map<String, Set<Token>> tokensByName = new HashMap<String, Set<Token>>();
+
+	private boolean built;
+
+	/**
+	 * The region that changed since the last lookup and needs to be scanned again, or -1 if there's none
+	 */
+	private int dirtyStart = -1;
+	private int dirtyEnd;
+
+	/**
+	 * The modification stamp of the document the index is up to date with, as far as the offsets go
+	 */
+	private long modificationStamp = IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+
+	/**
+	 * OccurrenceIndex
+	 *
+	 * @param document
+	 */
+	OccurrenceIndex(IDocument document)
+	{
+		this.document = document;
+	}
+
+	/**
+	 * Starts tracking the changes of the document
+	 */
+	void install()
+	{
+		document.addDocumentListener(this);
+	}
+
+	/**
+	 * Stops tracking the changes of the document
+	 */
+	void uninstall()
+	{
+		document.removeDocumentListener(this);
+	}
+
+	/**
+	 * Returns whether a word is an identifier, and so could be looked up in the index
+	 *
+	 * @param word
+	 * @return
+	 */
+	static boolean isIdentifier(String word)
+	{
+		if (word == null || word.length() == 0)
+		{
+			return false;
+		}
+		for (int i = 0; i < word.length(); i++)
+		{
+			if (!Character.isUnicodeIdentifierPart(word.charAt(i)))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the regions of all occurrences of an identifier, by offset
+	 *
+	 * @param name
+	 * @return the occurrences, or null if the document changed while they were looked up
+	 */
+	synchronized List<IRegion> getOccurrences(String name)
+	{
+		long stamp = getModificationStamp();
+		if (built && stamp != modificationStamp)
+		{
+			// the document changed, and the change event is still on its way
+			return null;
+		}
+		try
+		{
+			if (!built)
+			{
+				tokens.clear();
+				tokensByName.clear();
+				dirtyStart = -1;
+				modificationStamp = stamp;
+				scan(0, document.getLength());
+				built = true;
+			}
+			else if (dirtyStart != -1)
+			{
+				scan(dirtyStart, dirtyEnd);
+				dirtyStart = -1;
+			}
+		}
+		catch (BadLocationException e)
+		{
+			built = false;
+			return null;
+		}
+		if (stamp != getModificationStamp())
+		{
+			// the document changed while it was scanned
+			built = false;
+			return null;
+		}
+
+		Set<Token> occurrences = tokensByName.get(name);
+		if (occurrences == null)
+		{
+			return Collections.emptyList();
+		}
+		List<IRegion> result = new ArrayList<IRegion>(occurrences.size());
+		for (Token token : occurrences)
+		{
+			result.add(new Region(token.offset, token.name.length()));
+		}
+		Collections.sort(result, new Comparator<IRegion>()
+		{
+			public int compare(IRegion r1, IRegion r2)
+			{
+				return r1.getOffset() - r2.getOffset();
+			}
+		});
+		return result;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentAboutToBeChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public void documentAboutToBeChanged(DocumentEvent event)
+	{
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.jface.text.IDocumentListener#documentChanged(org.eclipse.jface.text.DocumentEvent)
+	 */
+	public synchronized void documentChanged(DocumentEvent event)
+	{
+		if (!built)
+		{
+			return;
+		}
+		if (modificationStamp != IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP
+				&& modificationStamp == event.getModificationStamp())
+		{
+			// the index was built after this change
+			return;
+		}
+
+		int start = event.getOffset();
+		int oldEnd = start + event.getLength();
+		int newLength = (event.getText() == null) ? 0 : event.getText().length();
+		int delta = newLength - event.getLength();
+
+		// identifiers that touch the edit may now be longer, shorter or gone
+		int first = ceilingIndex(start);
+		if (first > 0 && tokens.get(first - 1).getEnd() >= start)
+		{
+			first--;
+		}
+		int last = first;
+		int changedStart = start;
+		int changedEnd = start + newLength;
+		while (last < tokens.size() && tokens.get(last).offset <= oldEnd)
+		{
+			Token token = tokens.get(last);
+			changedStart = Math.min(changedStart, token.offset);
+			changedEnd = Math.max(changedEnd, token.getEnd() + delta);
+			removeByName(token);
+			last++;
+		}
+		tokens.subList(first, last).clear();
+
+		for (int i = first; i < tokens.size(); i++)
+		{
+			tokens.get(i).offset += delta;
+		}
+
+		if (dirtyStart == -1)
+		{
+			dirtyStart = changedStart;
+			dirtyEnd = changedEnd;
+		}
+		else
+		{
+			if (dirtyEnd >= oldEnd)
+			{
+				dirtyEnd += delta;
+			}
+			else if (dirtyEnd > start)
+			{
+				dirtyEnd = start + newLength;
+			}
+			if (dirtyStart > oldEnd)
+			{
+				dirtyStart += delta;
+			}
+			else if (dirtyStart > start)
+			{
+				dirtyStart = start;
+			}
+			dirtyStart = Math.min(dirtyStart, changedStart);
+			dirtyEnd = Math.max(dirtyEnd, changedEnd);
+		}
+		modificationStamp = event.getModificationStamp();
+	}
+
+	/**
+	 * Indexes the identifiers of a region of the document again
+	 */
+	private void scan(int start, int end) throws BadLocationException
+	{
+		int length = document.getLength();
+		end = Math.min(end, length);
+		start = Math.min(start, end);
+		// don't split identifiers at either end
+		while (start > 0 && Character.isUnicodeIdentifierPart(document.getChar(start - 1)))
+		{
+			start--;
+		}
+		while (end < length && Character.isUnicodeIdentifierPart(document.getChar(end)))
+		{
+			end++;
+		}
+
+		int first = ceilingIndex(start);
+		int last = first;
+		while (last < tokens.size() && tokens.get(last).offset < end)
+		{
+			removeByName(tokens.get(last));
+			last++;
+		}
+		tokens.subList(first, last).clear();
+
+		String text = document.get(start, end - start);
+		List<Token> scanned = new ArrayList<Token>();
+		int i = 0;
+		while (i < text.length())
+		{
+			if (!Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				i++;
+				continue;
+			}
+			int tokenStart = i;
+			while (i < text.length() && Character.isUnicodeIdentifierPart(text.charAt(i)))
+			{
+				i++;
+			}
+			Token token = new Token(start + tokenStart, text.substring(tokenStart, i));
+			scanned.add(token);
+			addByName(token);
+		}
+		tokens.addAll(first, scanned);
+	}
+
+	/**
+	 * Returns the index of the first token at or after an offset
+	 */
+	private int ceilingIndex(int offset)
+	{
+		int low = 0;
+		int high = tokens.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (tokens.get(mid).offset < offset)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private void addByName(Token token)
+	{
+		Set<Token> set = tokensByName.get(token.name);
+		if (set == null)
+		{
+			set = new LinkedHashSet<Token>();
+			tokensByName.put(token.name, set);
+		}
+		set.add(token);
+	}
+
+	private void removeByName(Token token)
+	{
+		Set<Token> set = tokensByName.get(token.name);
+		if (set != null)
+		{
+			set.remove(token);
+			if (set.isEmpty())
+			{
+				tokensByName.remove(token.name);
+			}
+		}
+	}
+
+	private long getModificationStamp()
+	{
+		if (document instanceof IDocumentExtension4)
+		{
+			return ((IDocumentExtension4) document).getModificationStamp();
+		}
+		return IDocumentExtension4.UNKNOWN_MODIFICATION_STAMP;
+	}
+}
@@ -27,7 +27,8 @@ import com.aptana.parsing.lexer.IRange;
 import com.aptana.parsing.lexer.Range;
 
 public class CommonCompletionProposal implements ICommonCompletionProposal, ICompletionProposalExtension,
-		ICompletionProposalExtension2, ICompletionProposalExtension3, Comparable<ICompletionProposal>
+		ICompletionProposalExtension2, ICompletionProposalExtension3, IFilterableCompletionProposal,
+		Comparable<ICompletionProposal>
 {
 	protected String _replacementString;
 	protected int _replacementOffset;
@@ -373,10 +374,7 @@ public class CommonCompletionProposal implements ICommonCompletionProposal, ICom
 		if (offset < this._replacementOffset)
 			return false;
 
-		int overlapIndex = getDisplayString().length() - _replacementString.length();
-		overlapIndex = Math.max(0, overlapIndex);
-		String endPortion = getDisplayString().substring(overlapIndex);
-		boolean validated = isValidPrefix(getPrefix(document, offset), endPortion);
+		boolean validated = isValidPrefix(getPrefix(document, offset), getFilterString());
 
 		if (validated && event != null)
 		{
@@ -389,6 +387,27 @@ public class CommonCompletionProposal implements ICommonCompletionProposal, ICom
 		return validated;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.contentassist.IFilterableCompletionProposal#getFilterOffset()
+	 */
+	public int getFilterOffset()
+	{
+		return _replacementOffset;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.editor.common.contentassist.IFilterableCompletionProposal#getFilterString()
+	 */
+	public String getFilterString()
+	{
+		// the end of the display string that the replacement string covers
+		int overlapIndex = getDisplayString().length() - _replacementString.length();
+		overlapIndex = Math.max(0, overlapIndex);
+		return getDisplayString().substring(overlapIndex);
+	}
+
 	/**
 	 * Returns the prefix string from the replacement-offset to the given offset. In case the given offset appears
 	 * before the replacement offset, we return an empty string.
@@ -107,7 +107,7 @@ public class CommonOutlinePage extends ContentOutlinePage implements IPropertyCh
 
 	private Composite fMainControl;
 	private Text fSearchBox;
-	private TreeViewer fTreeViewer;
+	private OutlineTreeViewer fTreeViewer;
 	private ITreeContentProvider fContentProvider;
 	private ILabelProvider fLabelProvider;
 
@@ -184,7 +184,7 @@ public class CommonOutlinePage extends ContentOutlinePage implements IPropertyCh
 			}
 		});
 
-		fTreeViewer = new TreeViewer(fMainControl, SWT.VIRTUAL | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+		fTreeViewer = new OutlineTreeViewer(fMainControl, SWT.VIRTUAL | SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
 		fTreeViewer.addSelectionChangedListener(this);
 		fTreeViewer.getControl().setLayoutData(GridDataFactory.fillDefaults().grab(true, true).create());
 
@@ -300,12 +300,12 @@ public class CommonOutlinePage extends ContentOutlinePage implements IPropertyCh
 
 	public void refresh(IParseRootNode ast)
 	{
-		// Just change the internal ast and call refresh, that way we keep
-		// the expanded state of items.
+		// Just change the internal ast and update the items that changed, that way we keep
+		// the expanded state of items and don't rebuild the whole tree after each reconcile.
 		if (!isDisposed())
 		{
 			fInput.ast = ast;
-			getTreeViewer().refresh();
+			fTreeViewer.updateStructure();
 		}
 	}
 
@@ -0,0 +1,119 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.outline;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Matches the children an outline element had with the ones it has after a reparse. Children are matched by key, and
+ * children with the same key by their relative position: the first old one with a key goes with the first new one with
+ * that key, and so on. Children that changed order are not matched, so the old children that are kept stay in the same
+ * order in the new list, and the outline can be updated in place.
+ */
+/* package */final class OutlineDiff
+{
+
+	private OutlineDiff()
+	{
+	}
+
+	/**
+	 * Returns the old child each new child is matched with
+	 *
+	 * @param oldKeys
+	 *            the keys of the old children, in order
+	 * @param newKeys
+	 *            the keys of the new children, in order
+	 * @return for each new child, the index of the old one it is matched with, or -1 if it is an addition. Old children
+	 *         that aren't matched are removals.
+	 */
+	static int[] match(Object[] oldKeys, Object[] newKeys)
+	{
+		Map<Object, LinkedList<Integer>> oldIndices = new HashMap<Object, LinkedList<Integer>>();
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			LinkedList<Integer> indices = oldIndices.get(oldKeys[i]);
+			if (indices == null)
+			{
+				indices = new LinkedList<Integer>();
+				oldIndices.put(oldKeys[i], indices);
+			}
+			indices.add(i);
+		}
+
+		int[] result = new int[newKeys.length];
+		for (int i = 0; i < newKeys.length; i++)
+		{
+			LinkedList<Integer> indices = oldIndices.get(newKeys[i]);
+			result[i] = (indices == null || indices.isEmpty()) ? -1 : indices.removeFirst();
+		}
+
+		keepIncreasing(result);
+		return result;
+	}
+
+	/**
+	 * Unmatches as few children as possible so the matched old indices increase, i.e. keeps the longest increasing
+	 * subsequence of them
+	 *
+	 * @param matches
+	 */
+	private static void keepIncreasing(int[] matches)
+	{
+		// tails.get(k) is the position in matches of the smallest old index ending an increasing run of length k + 1
+		List<Integer> tails = new ArrayList<Integer>();
+		int[] previous = new int[matches.length];
+		for (int i = 0; i < matches.length; i++)
+		{
+			if (matches[i] < 0)
+			{
+				continue;
+			}
+			int low = 0;
+			int high = tails.size();
+			while (low < high)
+			{
+				int mid = (low + high) >>> 1;
+				if (matches[tails.get(mid)] < matches[i])
+				{
+					low = mid + 1;
+				}
+				else
+				{
+					high = mid;
+				}
+			}
+			previous[i] = (low > 0) ? tails.get(low - 1) : -1;
+			if (low == tails.size())
+			{
+				tails.add(i);
+			}
+			else
+			{
+				tails.set(low, i);
+			}
+		}
+
+		boolean[] kept = new boolean[matches.length];
+		for (int i = tails.isEmpty() ? -1 : tails.get(tails.size() - 1); i >= 0; i = previous[i])
+		{
+			kept[i] = true;
+		}
+		for (int i = 0; i < matches.length; i++)
+		{
+			if (!kept[i])
+			{
+				matches[i] = -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.outline;
+
+import org.eclipse.jface.viewers.IBaseLabelProvider;
+import org.eclipse.jface.viewers.ILabelProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Item;
+import org.eclipse.swt.widgets.Widget;
+
+import com.aptana.parsing.ast.ILanguageNode;
+import com.aptana.parsing.ast.IParseNode;
+
+/**
+ * A tree viewer that can bring the outline up to date with a new AST without rebuilding it. The children of each
+ * expanded element are matched with the ones they had by node type, label and relative position (see
+ * {@link OutlineDiff}); matched items are kept, along with their expansion state, and only get the new element, while
+ * the others are removed or added.
+ */
+/* package */class OutlineTreeViewer extends TreeViewer
+{
+
+	OutlineTreeViewer(Composite parent, int style)
+	{
+		super(parent, style);
+	}
+
+	/**
+	 * Updates the tree to the current content of the input
+	 */
+	void updateStructure()
+	{
+		if (getInput() == null)
+		{
+			return;
+		}
+		preservingSelection(new Runnable()
+		{
+			public void run()
+			{
+				updateChildren(getControl(), getInput());
+			}
+		});
+	}
+
+	private void updateChildren(Widget widget, Object parent)
+	{
+		Item[] items = getChildren(widget);
+		Object[] children = getSortedChildren(parent);
+
+		Object[] oldKeys = new Object[items.length];
+		for (int i = 0; i < items.length; i++)
+		{
+			Object data = items[i].getData();
+			if (data == null)
+			{
+				// not materialized; let the viewer sort it out
+				internalRefresh(widget, parent, true, true);
+				return;
+			}
+			oldKeys[i] = getKey(data, items[i].getText());
+		}
+		ILabelProvider labelProvider = getTextProvider();
+		Object[] newKeys = new Object[children.length];
+		for (int i = 0; i < children.length; i++)
+		{
+			newKeys[i] = getKey(children[i], (labelProvider == null) ? null : labelProvider.getText(children[i]));
+		}
+
+		int[] matches = OutlineDiff.match(oldKeys, newKeys);
+		boolean[] kept = new boolean[items.length];
+		for (int match : matches)
+		{
+			if (match >= 0)
+			{
+				kept[match] = true;
+			}
+		}
+		for (int i = 0; i < items.length; i++)
+		{
+			if (!kept[i])
+			{
+				disassociate(items[i]);
+				items[i].dispose();
+			}
+		}
+
+		// the kept items are in order, so each child ends up at its index
+		for (int i = 0; i < children.length; i++)
+		{
+			if (matches[i] < 0)
+			{
+				createTreeItem(widget, children[i], i);
+			}
+			else
+			{
+				update(items[matches[i]], children[i], labelProvider);
+			}
+		}
+	}
+
+	private void update(Item item, Object element, ILabelProvider labelProvider)
+	{
+		associate(element, item);
+		if (labelProvider != null)
+		{
+			Image image = labelProvider.getImage(element);
+			if (image != item.getImage())
+			{
+				doUpdateItem(item, element);
+			}
+		}
+
+		if (getExpanded(item))
+		{
+			updateChildren(item, element);
+		}
+		else
+		{
+			// children seen before the item was collapsed are stale; they get created again on expansion
+			Item[] children = getChildren(item);
+			if (children.length > 0 && children[0].getData() != null)
+			{
+				for (Item child : children)
+				{
+					disassociate(child);
+					child.dispose();
+				}
+			}
+			updatePlus(item, element);
+		}
+	}
+
+	private ILabelProvider getTextProvider()
+	{
+		IBaseLabelProvider labelProvider = getLabelProvider();
+		return (labelProvider instanceof ILabelProvider) ? (ILabelProvider) labelProvider : null;
+	}
+
+	private static Object getKey(Object element, String label)
+	{
+		StringBuilder key = new StringBuilder(element.getClass().getName());
+		if (element instanceof ILanguageNode)
+		{
+			key.append('/').append(((ILanguageNode) element).getLanguage());
+		}
+		IParseNode node = null;
+		if (element instanceof CommonOutlineItem)
+		{
+			node = ((CommonOutlineItem) element).getReferenceNode();
+		}
+		else if (element instanceof IParseNode)
+		{
+			node = (IParseNode) element;
+		}
+		if (node != null)
+		{
+			key.append('/').append(node.getNodeType());
+		}
+		key.append('/').append(label);
+		return key.toString();
+	}
+}
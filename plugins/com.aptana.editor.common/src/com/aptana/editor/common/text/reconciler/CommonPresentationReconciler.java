@@ -9,10 +9,24 @@
 package com.aptana.editor.common.text.reconciler;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.BadLocationException;
@@ -21,11 +35,13 @@ import org.eclipse.jface.text.IRegion;
 import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.IViewportListener;
 import org.eclipse.jface.text.Region;
 import org.eclipse.jface.text.TextPresentation;
 import org.eclipse.jface.text.TextUtilities;
 import org.eclipse.jface.text.presentation.IPresentationRepairer;
 import org.eclipse.jface.text.presentation.PresentationReconciler;
+import org.eclipse.swt.custom.StyleRange;
 import org.eclipse.swt.custom.StyledText;
 
 import com.aptana.core.logging.IdeLog;
@@ -39,20 +55,47 @@ import com.aptana.theme.ThemePlugin;
 import com.aptana.ui.util.UIUtils;
 
 /**
+ * Presentation reconciler which colors the visible part of the document first and defers the rest of the damage to a
+ * background job. The background job prefers the viewport and a configurable look-ahead around it over the remaining
+ * damage, and a viewport change preempts whatever slice is being processed outside of the new viewport. Independent
+ * partitions of a slice may be scanned concurrently on worker threads; only the application of the resulting
+ * {@link TextPresentation} happens on the UI thread.
+ *
  * @author Max Stepanov
  */
 public class CommonPresentationReconciler extends PresentationReconciler
 {
+	private static final long SCANNER_KEEP_ALIVE = 30;
+
+	private static ExecutorService scannerPool;
+
 	private int iterationPartitionLimit = 4000;
 	private int backgroundReconcileDelay = 2000;
 	private int iterationDelay = 500;
 	private int minimalVisibleLength = 20000;
+	private int lookAheadLength = 50000;
+	private int scannerThreads = Math.min(4, Runtime.getRuntime().availableProcessors());
 
 	private ITextViewer textViewer;
 	private Regions delayedRegions = new Regions();
-	private IRegion viewerVisibleRegion;
+	private volatile IRegion viewerVisibleRegion;
+	private volatile IRegion lookAheadRegion;
+	private volatile int viewportGeneration;
 	private Job job;
 
+	private final IViewportListener viewportListener = new IViewportListener()
+	{
+		public void viewportChanged(int verticalOffset)
+		{
+			ITextViewer viewer = textViewer;
+			if (viewer != null)
+			{
+				updateVisibleRegion(viewer);
+				preemptDelayedCreatePresentation();
+			}
+		}
+	};
+
 	/*
 	 * (non-Javadoc)
 	 * @see org.eclipse.jface.text.presentation.PresentationReconciler#install(org.eclipse.jface.text.ITextViewer)
@@ -70,14 +113,19 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		iterationDelay = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_ITERATION_DELAY, iterationDelay);
 		minimalVisibleLength = Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_MINIMAL_VISIBLE_LENGTH,
 				minimalVisibleLength);
+		lookAheadLength = Math.max(0,
+				Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_LOOK_AHEAD_LENGTH, lookAheadLength));
+		scannerThreads = Math.max(1,
+				Integer.getInteger(ICommonEditorSystemProperties.RECONCILER_SCANNER_THREADS, scannerThreads));
+		viewer.addViewportListener(viewportListener);
 		if (IdeLog.isTraceEnabled(CommonEditorPlugin.getDefault(), IDebugScopes.PRESENTATION))
 		{
 			IdeLog.logTrace(
 					CommonEditorPlugin.getDefault(),
 					MessageFormat
-							.format("Reconciling process set for partition limit of {0} partitions, background delay of {1}ms, iteration delay of {2}ms, and minimal visible length of {3} lines", //$NON-NLS-1$
+							.format("Reconciling process set for partition limit of {0} partitions, background delay of {1}ms, iteration delay of {2}ms, minimal visible length of {3} lines, look-ahead of {4} characters and {5} scanner threads", //$NON-NLS-1$
 									iterationPartitionLimit, backgroundReconcileDelay, iterationDelay,
-									minimalVisibleLength), IDebugScopes.PRESENTATION);
+									minimalVisibleLength, lookAheadLength, scannerThreads), IDebugScopes.PRESENTATION);
 		}
 	}
 
@@ -93,8 +141,14 @@ public class CommonPresentationReconciler extends PresentationReconciler
 			job.cancel();
 			job = null;
 		}
+		if (textViewer != null)
+		{
+			textViewer.removeViewportListener(viewportListener);
+		}
 		delayedRegions.clear();
 		textViewer = null;
+		viewerVisibleRegion = null;
+		lookAheadRegion = null;
 		super.uninstall();
 	}
 
@@ -166,19 +220,33 @@ public class CommonPresentationReconciler extends PresentationReconciler
 						processingLength, document.getLength()));
 			}
 
-			for (int i = 0; i < limit; ++i)
+			if (canScanInParallel(document, limit))
 			{
-				ITypedRegion r = partitioning[i];
-				IPresentationRepairer repairer = getRepairer(r.getType());
-				if (monitor.isCanceled())
+				if (!createPresentationInParallel(presentation, partitioning, limit, monitor))
 				{
 					return null;
 				}
-				if (repairer != null)
+			}
+			else
+			{
+				Object lock = getLockObject(document);
+				synchronized ((lock == null) ? document : lock)
 				{
-					repairer.createPresentation(presentation, r);
+					for (int i = 0; i < limit; ++i)
+					{
+						ITypedRegion r = partitioning[i];
+						IPresentationRepairer repairer = getRepairer(r.getType());
+						if (monitor.isCanceled())
+						{
+							return null;
+						}
+						if (repairer != null)
+						{
+							repairer.createPresentation(presentation, r);
+						}
+						monitor.worked(r.getLength());
+					}
 				}
-				monitor.worked(r.getLength());
 			}
 
 			synchronized (this)
@@ -198,6 +266,138 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		}
 	}
 
+	/**
+	 * Partitions are scanned on worker threads only if there are worker threads to use, there is more than one
+	 * partition to scan and the document is not guarded by a lock object. A document lock is held by the background job
+	 * during the whole slice (see {@link #processDamage(IRegion, IDocument, IProgressMonitor)}) and would block the
+	 * workers, which take it to update scope positions.
+	 */
+	private boolean canScanInParallel(IDocument document, int partitions)
+	{
+		if (scannerThreads < 2 || partitions < 2)
+		{
+			return false;
+		}
+		return getLockObject(document) == null;
+	}
+
+	/**
+	 * Scans the first <code>limit</code> partitions concurrently and merges the resulting style ranges into
+	 * <code>presentation</code> in document order. Partitions sharing a repairer are scanned on the same thread since
+	 * repairers and their scanners keep per-scan state.
+	 *
+	 * @return <code>false</code> if the scan was canceled
+	 */
+	private boolean createPresentationInParallel(TextPresentation presentation, final ITypedRegion[] partitioning,
+			int limit, final IProgressMonitor monitor)
+	{
+		Map<IPresentationRepairer, List<Integer>> groups = new LinkedHashMap<IPresentationRepairer, List<Integer>>();
+		for (int i = 0; i < limit; ++i)
+		{
+			IPresentationRepairer repairer = getRepairer(partitioning[i].getType());
+			if (repairer == null)
+			{
+				continue;
+			}
+			List<Integer> group = groups.get(repairer);
+			if (group == null)
+			{
+				group = new ArrayList<Integer>();
+				groups.put(repairer, group);
+			}
+			group.add(i);
+		}
+
+		final TextPresentation[] parts = new TextPresentation[limit];
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>(groups.size());
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>(groups.size());
+		for (Map.Entry<IPresentationRepairer, List<Integer>> entry : groups.entrySet())
+		{
+			final IPresentationRepairer repairer = entry.getKey();
+			final List<Integer> indices = entry.getValue();
+			tasks.add(new Callable<Boolean>()
+			{
+				public Boolean call() throws Exception
+				{
+					for (int index : indices)
+					{
+						if (monitor.isCanceled())
+						{
+							return Boolean.FALSE;
+						}
+						ITypedRegion r = partitioning[index];
+						TextPresentation part = new TextPresentation(r, 16);
+						repairer.createPresentation(part, r);
+						parts[index] = part;
+					}
+					return Boolean.TRUE;
+				}
+			});
+		}
+
+		boolean completed = true;
+		try
+		{
+			// the calling thread takes the last group itself rather than idling while the workers scan
+			ExecutorService pool = getScannerPool(scannerThreads - 1);
+			for (int i = 0; i < tasks.size() - 1; ++i)
+			{
+				futures.add(pool.submit(tasks.get(i)));
+			}
+			if (!tasks.isEmpty())
+			{
+				completed = tasks.get(tasks.size() - 1).call();
+			}
+			for (Future<Boolean> future : futures)
+			{
+				completed &= future.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			completed = false;
+		}
+		catch (ExecutionException e)
+		{
+			IdeLog.logError(CommonEditorPlugin.getDefault(), e.getCause());
+			completed = false;
+		}
+		catch (Exception e)
+		{
+			IdeLog.logError(CommonEditorPlugin.getDefault(), e);
+			completed = false;
+		}
+		finally
+		{
+			if (!completed)
+			{
+				for (Future<Boolean> future : futures)
+				{
+					future.cancel(false);
+				}
+			}
+		}
+		if (!completed || monitor.isCanceled())
+		{
+			return false;
+		}
+
+		for (int i = 0; i < limit; ++i)
+		{
+			TextPresentation part = parts[i];
+			if (part != null)
+			{
+				for (Iterator<?> iterator = part.getAllStyleRangeIterator(); iterator.hasNext();)
+				{
+					presentation.addStyleRange((StyleRange) iterator.next());
+				}
+			}
+			monitor.worked(partitioning[i].getLength());
+		}
+		return true;
+	}
+
 	protected Theme getCurrentTheme()
 	{
 		return ThemePlugin.getDefault().getThemeManager().getCurrentTheme();
@@ -208,10 +408,7 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		if (damage != null && damage.getLength() > 0)
 		{
 			final TextPresentation[] presentation = new TextPresentation[1];
-			synchronized (getLockObject(document))
-			{
-				presentation[0] = createPresentation(damage, document, monitor);
-			}
+			presentation[0] = createLockedPresentation(damage, document, monitor);
 			if (presentation[0] != null)
 			{
 				UIUtils.getDisplay().syncExec(new Runnable()
@@ -227,9 +424,7 @@ public class CommonPresentationReconciler extends PresentationReconciler
 								viewer.changeTextPresentation(presentation[0], true);
 							}
 							// save visible region here since UI thread access required
-							int topOffset = viewer.getTopIndexStartOffset();
-							int length = viewer.getBottomIndexEndOffset() - topOffset;
-							viewerVisibleRegion = new Region(topOffset, Math.max(length, minimalVisibleLength));
+							updateVisibleRegion(viewer);
 						}
 					}
 				});
@@ -237,6 +432,63 @@ public class CommonPresentationReconciler extends PresentationReconciler
 		}
 	}
 
+	/**
+	 * Records the visible region of the viewer and the look-ahead region around it, and bumps the viewport generation
+	 * if either moved. Must be called on the UI thread.
+	 */
+	private void updateVisibleRegion(ITextViewer viewer)
+	{
+		StyledText widget = viewer.getTextWidget();
+		if (widget == null || widget.isDisposed())
+		{
+			return;
+		}
+		int topOffset = viewer.getTopIndexStartOffset();
+		int length = Math.max(viewer.getBottomIndexEndOffset() - topOffset, minimalVisibleLength);
+		IRegion visible = viewerVisibleRegion;
+		if (visible != null && visible.getOffset() == topOffset && visible.getLength() == length)
+		{
+			return;
+		}
+		int lookAheadOffset = Math.max(0, topOffset - lookAheadLength);
+		lookAheadRegion = new Region(lookAheadOffset, topOffset - lookAheadOffset + length + lookAheadLength);
+		viewerVisibleRegion = new Region(topOffset, length);
+		viewportGeneration++;
+	}
+
+	/**
+	 * Makes the background job pick up the new viewport right away instead of after the background delay or the
+	 * iteration delay.
+	 */
+	private synchronized void preemptDelayedCreatePresentation()
+	{
+		IRegion lookAhead = lookAheadRegion;
+		if (job == null || lookAhead == null || delayedRegions.isEmpty() || delayedRegions.overlap(lookAhead) == null)
+		{
+			return;
+		}
+		if (job.getState() == Job.RUNNING)
+		{
+			notifyAll();
+		}
+		else
+		{
+			job.cancel();
+			job.schedule();
+		}
+	}
+
+	private boolean isPrioritized(IRegion region)
+	{
+		IRegion lookAhead = lookAheadRegion;
+		if (lookAhead == null)
+		{
+			return false;
+		}
+		return region.getOffset() < lookAhead.getOffset() + lookAhead.getLength()
+				&& lookAhead.getOffset() < region.getOffset() + region.getLength();
+	}
+
 	private synchronized void triggerDelayedCreatePresentation()
 	{
 		if (job != null)
@@ -248,7 +500,7 @@ public class CommonPresentationReconciler extends PresentationReconciler
 			// TODO Is there any reason this needs to be a job? can we just use a Thread?
 			job = new Job("Delayed Presentation Reconciler") { //$NON-NLS-1$
 				@Override
-				protected IStatus run(IProgressMonitor monitor)
+				protected IStatus run(final IProgressMonitor monitor)
 				{
 					int priority = Thread.currentThread().getPriority();
 					Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
@@ -260,15 +512,37 @@ public class CommonPresentationReconciler extends PresentationReconciler
 					monitor.beginTask("Reconciling document", document.getLength()); //$NON-NLS-1$
 					while (textViewer != null && !monitor.isCanceled())
 					{
-						IRegion damage = nextDamagedRegion();
+						final IRegion damage = nextDamagedRegion();
 						if (damage == null || monitor.isCanceled() || textViewer == null)
 						{
 							break;
 						}
-						processDamage(damage, textViewer.getDocument(), monitor);
+						final int generation = viewportGeneration;
+						final boolean prioritized = isPrioritized(damage);
+						// A viewport change abandons the slice unless it is still in the look-ahead. The abandoned
+						// damage stays queued and is picked up again later.
+						processDamage(damage, textViewer.getDocument(), new ProgressMonitorWrapper(monitor)
+						{
+							@Override
+							public boolean isCanceled()
+							{
+								return super.isCanceled()
+										|| (generation != viewportGeneration && !isPrioritized(damage));
+							}
+						});
+						if (prioritized)
+						{
+							continue;
+						}
 						try
 						{
-							Thread.sleep(iterationDelay);
+							synchronized (CommonPresentationReconciler.this)
+							{
+								if (generation == viewportGeneration)
+								{
+									CommonPresentationReconciler.this.wait(iterationDelay);
+								}
+							}
 						}
 						catch (InterruptedException e)
 						{
@@ -302,9 +576,7 @@ public class CommonPresentationReconciler extends PresentationReconciler
 					{
 						return;
 					}
-					int topOffset = viewer.getTopIndexStartOffset();
-					int length = viewer.getBottomIndexEndOffset() - topOffset;
-					viewerVisibleRegion = new Region(topOffset, Math.max(length, minimalVisibleLength));
+					updateVisibleRegion(viewer);
 				}
 			});
 		}
@@ -314,30 +586,85 @@ public class CommonPresentationReconciler extends PresentationReconciler
 			{
 				return null;
 			}
-			if (viewerVisibleRegion != null)
+			IRegion visible = viewerVisibleRegion;
+			if (visible != null)
 			{
-				IRegion visible = delayedRegions.overlap(viewerVisibleRegion);
-				viewerVisibleRegion = null;
-				if (visible != null)
+				IRegion overlap = delayedRegions.overlap(visible);
+				if (overlap != null)
 				{
-					return visible;
+					return overlap;
+				}
+			}
+			IRegion lookAhead = lookAheadRegion;
+			if (lookAhead != null)
+			{
+				IRegion overlap = delayedRegions.overlap(lookAhead);
+				if (overlap != null)
+				{
+					return overlap;
 				}
 			}
 			return delayedRegions.iterator().next();
 		}
 	}
 
-	private static Object getLockObject(Object object)
+	private static synchronized ExecutorService getScannerPool(int threads)
 	{
-		if (object instanceof ISynchronizable)
+		if (scannerPool == null)
 		{
-			Object lock = ((ISynchronizable) object).getLockObject();
-			if (lock != null)
-			{
-				return lock;
-			}
+			// Idle workers die off after a while; when all of them are busy, the caller scans the group itself.
+			scannerPool = new ThreadPoolExecutor(0, Math.max(1, threads), SCANNER_KEEP_ALIVE, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new ThreadFactory()
+					{
+						public Thread newThread(Runnable r)
+						{
+							Thread thread = new Thread(r, "Presentation Scanner"); //$NON-NLS-1$
+							thread.setDaemon(true);
+							thread.setPriority(Thread.MIN_PRIORITY);
+							return thread;
+						}
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return scannerPool;
+	}
+
+	/**
+	 * Creates the presentation of a damaged region while holding the document's lock object, or the document itself
+	 * when it has none. Repairers synchronize their scope position updates on the document, so it isn't held here when
+	 * partitions may get scanned in parallel; the sequential path in
+	 * {@link #createPresentation(IRegion, IDocument, IProgressMonitor)} takes it instead.
+	 */
+	TextPresentation createLockedPresentation(IRegion damage, IDocument document, IProgressMonitor monitor)
+	{
+		Object lock = getLockObject(document);
+		if (lock == null && scannerThreads < 2)
+		{
+			lock = document;
+		}
+		if (lock == null)
+		{
+			return createPresentation(damage, document, monitor);
+		}
+		synchronized (lock)
+		{
+			return createPresentation(damage, document, monitor);
 		}
-		return object;
+	}
+
+	/**
+	 * Returns the lock object of the document, or <code>null</code> if it has none.
+	 */
+	private static Object getLockObject(IDocument document)
+	{
+		return (document instanceof ISynchronizable) ? ((ISynchronizable) document).getLockObject() : null;
+	}
+
+	/**
+	 * Sets the number of threads partitions get scanned on, for tests.
+	 */
+	void setScannerThreads(int threads)
+	{
+		scannerThreads = Math.max(1, threads);
 	}
 
 }
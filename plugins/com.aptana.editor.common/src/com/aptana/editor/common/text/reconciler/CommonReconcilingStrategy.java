@@ -37,6 +37,7 @@ import com.aptana.core.build.IBuildParticipant.BuildType;
 import com.aptana.core.build.IBuildParticipantManager;
 import com.aptana.core.build.ReconcileContext;
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
 import com.aptana.core.util.CollectionsUtil;
 import com.aptana.core.util.ResourceUtil;
 import com.aptana.editor.common.AbstractThemeableEditor;
@@ -328,9 +329,12 @@ public class CommonReconcilingStrategy implements IReconcilingStrategy, IReconci
 			participant.buildStarting(context.getProject(), IncrementalProjectBuilder.INCREMENTAL_BUILD,
 					sub.newChild(1));
 		}
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
 		for (IBuildParticipant participant : participants)
 		{
+			long startTime = System.nanoTime();
 			participant.buildFile(context, sub.newChild(10));
+			metrics.record(MetricsRegistry.RECONCILE_PARTICIPANT, participant.getName(), System.nanoTime() - startTime);
 		}
 		for (IBuildParticipant participant : participants)
 		{
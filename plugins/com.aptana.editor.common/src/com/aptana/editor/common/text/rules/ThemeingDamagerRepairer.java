@@ -17,6 +17,7 @@ import org.eclipse.jface.text.AbstractDocument;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.BadPositionCategoryException;
 import org.eclipse.jface.text.IRegion;
+import org.eclipse.jface.text.ISynchronizable;
 import org.eclipse.jface.text.ITypedRegion;
 import org.eclipse.jface.text.Position;
 import org.eclipse.jface.text.TextAttribute;
@@ -97,7 +98,10 @@ public class ThemeingDamagerRepairer extends DefaultDamagerRepairer
 			{
 				scope = StringUtil.EMPTY;
 			}
-			oldPositions = getExistingScopes(region);
+			synchronized (getScopePositionsLock())
+			{
+				oldPositions = getExistingScopes(region);
+			}
 			newPositions = new ArrayList<Position>();
 		}
 		catch (BadLocationException e)
@@ -108,7 +112,10 @@ public class ThemeingDamagerRepairer extends DefaultDamagerRepairer
 		{
 			// Do coloring and collect all the scopes
 			super.createPresentation(presentation, region);
-			updateScopePositions();
+			synchronized (getScopePositionsLock())
+			{
+				updateScopePositions();
+			}
 
 			oldPositions = null;
 			newPositions = null;
@@ -119,6 +126,24 @@ public class ThemeingDamagerRepairer extends DefaultDamagerRepairer
 		}
 	}
 
+	/**
+	 * Repairers of different partition types may run concurrently on a document without a lock object (see
+	 * CommonPresentationReconciler), so scope position updates take the same per-document lock as
+	 * NonRuleBasedDamagerRepairer: the lock object if there is one, the document itself otherwise.
+	 */
+	private Object getScopePositionsLock()
+	{
+		if (fDocument instanceof ISynchronizable)
+		{
+			Object lock = ((ISynchronizable) fDocument).getLockObject();
+			if (lock != null)
+			{
+				return lock;
+			}
+		}
+		return fDocument;
+	}
+
 	/**
 	 * This attempts to do minimal add/remove calls for positions on IDocument, since each call synchronizes on the
 	 * document, which adds up very quickly.
@@ -14,6 +14,7 @@ import java.util.List;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
@@ -46,6 +47,7 @@ public class CSSParserValidator extends AbstractBuildParticipant
 			return;
 		}
 
+		SubMonitor sub = SubMonitor.convert(monitor, 1);
 		try
 		{
 			context.getAST(); // make sure a parse has happened...
@@ -54,6 +56,11 @@ public class CSSParserValidator extends AbstractBuildParticipant
 		{
 			// ignores the parser exception
 		}
+		// no point in looking at the parse errors once canceled
+		if (sub.isCanceled())
+		{
+			return;
+		}
 
 		final String path = context.getURI().toString();
 		List<IProblem> problems = Collections.emptyList();
@@ -97,6 +104,7 @@ public class CSSParserValidator extends AbstractBuildParticipant
 		}
 
 		context.putProblems(ICSSConstants.CSS_PROBLEM, problems);
+		sub.done();
 	}
 
 	public void deleteFile(BuildContext context, IProgressMonitor monitor)
@@ -9,6 +9,7 @@ package com.aptana.editor.css.validator;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
@@ -26,24 +27,38 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringEscapeUtils;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.w3c.css.css.StyleReport;
 import org.w3c.css.css.StyleReportFactory;
 import org.w3c.css.css.StyleSheet;
+import org.w3c.css.css.StyleSheetGenerator;
 import org.w3c.css.css.StyleSheetParser;
+import org.w3c.css.parser.CssError;
+import org.w3c.css.parser.CssErrorToken;
+import org.w3c.css.parser.CssParseException;
+import org.w3c.css.parser.Errors;
 import org.w3c.css.properties.PropertiesLoader;
 import org.w3c.css.util.ApplContext;
+import org.w3c.css.util.InvalidParamException;
 import org.w3c.css.util.Utf8Properties;
+import org.w3c.css.util.Warning;
+import org.w3c.css.util.Warnings;
 
 import com.aptana.core.build.AbstractBuildParticipant;
 import com.aptana.core.build.IProblem;
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.ContentResultCache;
 import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
 import com.aptana.core.util.URLEncoder;
 import com.aptana.editor.css.CSSPlugin;
 import com.aptana.editor.css.ICSSConstants;
 import com.aptana.index.core.build.BuildContext;
 
 /**
+ * Runs the W3C CSS validator over the source. Problems are read straight from the parser's error and warning objects
+ * rather than from a rendered report, and results are memoized by content, profile and filters.
+ * 
  * @author cwilliams
  */
 public class CSSValidator extends AbstractBuildParticipant
@@ -54,6 +69,23 @@ public class CSSValidator extends AbstractBuildParticipant
 	private static final String APTANA_PROFILE = "AptanaProfile"; //$NON-NLS-1$
 	private static final String CONFIG_FILE = "AptanaCSSConfig.properties"; //$NON-NLS-1$
 	private static final String PROFILES_CONFIG_FILE = "AptanaCSSProfiles.properties"; //$NON-NLS-1$
+	private static final String URLS_FILE = "urls.properties"; //$NON-NLS-1$
+
+	/**
+	 * System property which switches back to extracting problems from the rendered SOAP report.
+	 */
+	private static final boolean USE_REPORT = Boolean.getBoolean("studio.cssValidatorUseReport"); //$NON-NLS-1$
+
+	private static final int WARNING_LEVEL = 2;
+	private static final int MAX_CACHED_RESULTS = 500;
+
+	/**
+	 * Memoized validation results. See {@link #getResultKey(String, List)}.
+	 */
+	private static final ContentResultCache<List<W3CIssue>> RESULTS = new ContentResultCache<List<W3CIssue>>(
+			MAX_CACHED_RESULTS);
+
+	private static Utf8Properties propertiesURLs;
 
 	/**
 	 * error pattern
@@ -158,7 +190,7 @@ public class CSSValidator extends AbstractBuildParticipant
 				// finds the errors
 				String[] errors = getContent(ERROR_PATTERN, listString);
 				// add errors
-				addErrors(errors, sourcePath, items, filters);
+				addErrors(getProperties(errors), true, sourcePath, items, filters);
 			}
 
 			// advances past the current error list
@@ -199,7 +231,7 @@ public class CSSValidator extends AbstractBuildParticipant
 				// finds the warnings
 				String[] warnings = getContent(WARNING_PATTERN, listString);
 				// adds errors
-				addWarnings(warnings, sourcePath, items, filters);
+				addWarnings(getProperties(warnings), sourcePath, items, filters);
 			}
 
 			// advance past the current warning list
@@ -254,25 +286,234 @@ public class CSSValidator extends AbstractBuildParticipant
 		}
 	}
 
+	/**
+	 * Collects the errors the parser recorded for the source directly from its {@link CssError} objects, in the same
+	 * shape {@link #getProperties(String)} extracts them from the rendered report.
+	 * 
+	 * @param stylesheet
+	 *            the parsed stylesheet
+	 * @param ac
+	 *            the context the stylesheet was parsed with
+	 * @param sourcePath
+	 *            the source path
+	 * @return the list of error properties
+	 */
+	private static List<Map<String, String>> getErrors(StyleSheet stylesheet, ApplContext ac, String sourcePath)
+	{
+		List<Map<String, String>> result = new ArrayList<Map<String, String>>();
+		Errors errors = stylesheet.getErrors();
+		if (errors == null || errors.getErrorCount() == 0)
+		{
+			return result;
+		}
+		for (CssError error : errors.getErrors())
+		{
+			if (!isSource(error.getSourceFile(), sourcePath))
+			{
+				continue;
+			}
+			Map<String, String> map = new HashMap<String, String>();
+			map.put("line", Integer.toString(error.getLine())); //$NON-NLS-1$
+			map.put("message", getErrorMessage(error, ac)); //$NON-NLS-1$
+			result.add(map);
+		}
+		return result;
+	}
+
+	/**
+	 * Builds the message the SOAP 1.2 report would show for an error, minus the markup and HTML escaping.
+	 */
+	private static String getErrorMessage(CssError error, ApplContext ac)
+	{
+		Throwable ex = error.getException();
+		if (ex instanceof FileNotFoundException)
+		{
+			return ac.getMsg().getGeneratorString("not-found") + ": " + ex.getMessage(); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		if (ex instanceof CssParseException)
+		{
+			return getParseExceptionMessage((CssParseException) ex, ac);
+		}
+		if (ex instanceof InvalidParamException || ex instanceof IOException)
+		{
+			return (ex.getMessage() == null) ? StringUtil.EMPTY : ex.getMessage();
+		}
+		if (error instanceof CssErrorToken)
+		{
+			CssErrorToken token = (CssErrorToken) error;
+			return token.getErrorDescription() + " : " + token.getSkippedString(); //$NON-NLS-1$
+		}
+		return ac.getMsg().getErrorString("unknown") + ' ' + ex; //$NON-NLS-1$
+	}
+
+	private static String getParseExceptionMessage(CssParseException ex, ApplContext ac)
+	{
+		StringBuilder message = new StringBuilder();
+		String property = ex.getProperty();
+		if (property != null)
+		{
+			String url = getPropertyURL(property, ac);
+			if (url != null)
+			{
+				message.append(ac.getMsg().getGeneratorString("property")).append(" : ").append(property) //$NON-NLS-1$ //$NON-NLS-2$
+						.append(" (").append(url).append(") "); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		if (ex.getException() != null && ex.getMessage() != null)
+		{
+			if (ex.isParseException())
+			{
+				message.append(ex.getMessage());
+			}
+			else if (ex.getException() instanceof NumberFormatException)
+			{
+				message.append(ac.getMsg().getGeneratorString("invalid-number")); //$NON-NLS-1$
+			}
+			else
+			{
+				message.append(ex.getException().getMessage());
+			}
+			// the report follows the message with the rest of the expression when nothing was skipped
+			if (ex.getSkippedString() == null && ex.getExp() != null)
+			{
+				String rest = ex.getExp().toStringFromStart();
+				message.append(" : ").append((rest == null) ? "[empty string]" : rest); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+		}
+		else
+		{
+			message.append(ac.getMsg().getGeneratorString("unrecognize")); //$NON-NLS-1$
+		}
+		return message.toString().trim();
+	}
+
+	/**
+	 * The link to the spec for a property, as the report generator computes it.
+	 * 
+	 * @return null if the property is unknown to the current profile or has no link
+	 */
+	private static String getPropertyURL(String property, ApplContext ac)
+	{
+		Utf8Properties urls = getPropertiesURLs();
+		String path = urls.getProperty(property);
+		if (path == null)
+		{
+			return null;
+		}
+		Utf8Properties profile = PropertiesLoader.getProfile(ac.getCssVersion());
+		if (profile == null || !profile.containsKey(property))
+		{
+			return null;
+		}
+		String version = ac.getCssVersion();
+		String base;
+		if ("css3".equals(version)) //$NON-NLS-1$
+		{
+			base = urls.getProperty("@url-base_css2.1"); //$NON-NLS-1$
+		}
+		else if ("css1".equals(version)) //$NON-NLS-1$
+		{
+			base = urls.getProperty("@url-base_css2"); //$NON-NLS-1$
+		}
+		else
+		{
+			base = urls.getProperty("@url-base_" + version); //$NON-NLS-1$
+		}
+		return base + path;
+	}
+
+	private static synchronized Utf8Properties getPropertiesURLs()
+	{
+		if (propertiesURLs == null)
+		{
+			propertiesURLs = new Utf8Properties();
+			InputStream stream = StyleSheetGenerator.class.getResourceAsStream(URLS_FILE);
+			if (stream != null)
+			{
+				try
+				{
+					propertiesURLs.load(stream);
+				}
+				catch (IOException e)
+				{
+					IdeLog.logError(CSSPlugin.getDefault(), e);
+				}
+				finally
+				{
+					try
+					{
+						stream.close();
+					}
+					catch (IOException e)
+					{
+					}
+				}
+			}
+		}
+		return propertiesURLs;
+	}
+
+	/**
+	 * Collects the warnings the parser recorded for the source directly from its {@link Warning} objects, in the same
+	 * shape {@link #getProperties(String)} extracts them from the rendered report.
+	 * 
+	 * @param stylesheet
+	 *            the parsed stylesheet
+	 * @param sourcePath
+	 *            the source path
+	 * @return the list of warning properties
+	 */
+	private static List<Map<String, String>> getWarnings(StyleSheet stylesheet, String sourcePath)
+	{
+		List<Map<String, String>> result = new ArrayList<Map<String, String>>();
+		Warnings warnings = stylesheet.getWarnings();
+		if (warnings == null || warnings.getWarningCount() == 0)
+		{
+			return result;
+		}
+		warnings.sort();
+		for (Warning warning : warnings.getWarnings())
+		{
+			if (warning.getLevel() > WARNING_LEVEL || !isSource(warning.getSourceFile(), sourcePath))
+			{
+				continue;
+			}
+			Map<String, String> map = new HashMap<String, String>();
+			map.put("line", Integer.toString(warning.getLine())); //$NON-NLS-1$
+			map.put("level", Integer.toString(warning.getLevel())); //$NON-NLS-1$
+			map.put("message", warning.getWarningMessage()); //$NON-NLS-1$
+			if (warning.getContext() != null)
+			{
+				map.put("context", warning.getContext().toString()); //$NON-NLS-1$
+			}
+			result.add(map);
+		}
+		return result;
+	}
+
+	private static boolean isSource(String uri, String sourcePath)
+	{
+		return uri != null && URLEncoder.encode(uri, null, null).equals(sourcePath);
+	}
+
 	/**
 	 * Adds the CSS errors.
 	 * 
 	 * @param errors
-	 *            the array of errors
+	 *            the list of error properties
+	 * @param escaped
+	 *            whether the messages are HTML escaped, as they are in the rendered report
 	 * @param sourcePath
 	 *            the source path
-	 * @param manager
-	 *            the validation manager
 	 * @param items
 	 *            the list that stores the added validation items
+	 * @param filters
 	 */
-	private void addErrors(String[] errors, String sourcePath, List<IProblem> items, List<String> filters)
+	private void addErrors(List<Map<String, String>> errors, boolean escaped, String sourcePath, List<IProblem> items,
+			List<String> filters)
 	{
-		Map<String, String> map;
-		for (String error : errors)
+		for (Map<String, String> map : errors)
 		{
-			map = getProperties(error);
-
 			int lineNumber = Integer.parseInt(map.get("line")); //$NON-NLS-1$
 			String message = map.get("message"); //$NON-NLS-1$
 			String context = map.get("context"); //$NON-NLS-1$
@@ -299,7 +540,10 @@ public class CSSValidator extends AbstractBuildParticipant
 				}
 				message = MessageFormat.format("{0} : {1} for {2}", errorsubtype, skippedstring, property); //$NON-NLS-1$
 			}
-			message = StringEscapeUtils.unescapeHtml(message);
+			if (escaped)
+			{
+				message = StringEscapeUtils.unescapeHtml(message);
+			}
 			message = message.replaceAll("\\s+", " "); //$NON-NLS-1$ //$NON-NLS-2$
 
 			if (!isIgnored(message, filters) && !containsCSS3Property(message) && !containsCSS3AtRule(message)
@@ -315,21 +559,19 @@ public class CSSValidator extends AbstractBuildParticipant
 	 * Adds the CSS warnings.
 	 * 
 	 * @param warnings
-	 *            the array of warnings
+	 *            the list of warning properties
 	 * @param sourcePath
 	 *            the source path
 	 * @param items
 	 *            the list that stores the added validation items
 	 * @param filters
 	 */
-	private void addWarnings(String[] warnings, String sourcePath, List<IProblem> items, List<String> filters)
+	private void addWarnings(List<Map<String, String>> warnings, String sourcePath, List<IProblem> items,
+			List<String> filters)
 	{
-		Map<String, String> map;
 		String last = ""; //$NON-NLS-1$
-		for (String warning : warnings)
+		for (Map<String, String> map : warnings)
 		{
-			map = getProperties(warning);
-
 			int lineNumber = Integer.parseInt(map.get("line")); //$NON-NLS-1$
 			String level = map.get("level"); //$NON-NLS-1$
 			String message = MessageFormat.format("{0} (level {1})", map.get("message"), level); //$NON-NLS-1$ //$NON-NLS-2$
@@ -353,19 +595,19 @@ public class CSSValidator extends AbstractBuildParticipant
 	}
 
 	/**
-	 * Gets the validation report from the validator.
+	 * Parses the source with the W3C validator.
 	 * 
 	 * @param source
 	 *            the source text
 	 * @param path
 	 *            the source path
-	 * @return the report
+	 * @param ac
+	 *            the validator context
+	 * @return the parsed stylesheet, with conflicts already detected
 	 */
-	private static String getReport(String source, URI path)
+	private static StyleSheet parse(String source, URI path, ApplContext ac)
 	{
 		StyleSheetParser parser = new StyleSheetParser();
-		ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
-		ac.setProfile(APTANA_PROFILE);
 		try
 		{
 			parser.parseStyleElement(ac, new ByteArrayInputStream(source.getBytes(IOUtil.UTF_8)), null, null,
@@ -383,7 +625,28 @@ public class CSSValidator extends AbstractBuildParticipant
 
 		StyleSheet stylesheet = parser.getStyleSheet();
 		stylesheet.findConflicts(ac);
-		StyleReport report = StyleReportFactory.getStyleReport(ac, "Title", stylesheet, "soap12", 2); //$NON-NLS-1$ //$NON-NLS-2$
+		return stylesheet;
+	}
+
+	private static ApplContext createContext()
+	{
+		ApplContext ac = new ApplContext("en"); //$NON-NLS-1$
+		ac.setProfile(APTANA_PROFILE);
+		return ac;
+	}
+
+	/**
+	 * Gets the validation report from the validator.
+	 * 
+	 * @param stylesheet
+	 *            the parsed stylesheet
+	 * @param ac
+	 *            the context the stylesheet was parsed with
+	 * @return the report
+	 */
+	private static String getReport(StyleSheet stylesheet, ApplContext ac)
+	{
+		StyleReport report = StyleReportFactory.getStyleReport(ac, "Title", stylesheet, "soap12", WARNING_LEVEL); //$NON-NLS-1$ //$NON-NLS-2$
 		ByteArrayOutputStream out = new ByteArrayOutputStream();
 		report.print(new PrintWriter(out));
 		return out.toString().replaceAll("m:", ""); //$NON-NLS-1$ //$NON-NLS-2$
@@ -409,6 +672,23 @@ public class CSSValidator extends AbstractBuildParticipant
 		return result.toArray(new String[result.size()]);
 	}
 
+	/**
+	 * Gets the properties map from a source text.
+	 * 
+	 * @param source
+	 *            the source text
+	 * @return the properties map
+	 */
+	private static List<Map<String, String>> getProperties(String[] sources)
+	{
+		List<Map<String, String>> result = new ArrayList<Map<String, String>>(sources.length);
+		for (String source : sources)
+		{
+			result.add(getProperties(source));
+		}
+		return result;
+	}
+
 	/**
 	 * Gets the properties map from a source text.
 	 * 
@@ -477,18 +757,108 @@ public class CSSValidator extends AbstractBuildParticipant
 			return;
 		}
 
-		List<IProblem> problems = new ArrayList<IProblem>();
+		SubMonitor sub = SubMonitor.convert(monitor, 1);
+		if (sub.isCanceled())
+		{
+			return;
+		}
 
 		String source = context.getContents();
 		URI uri = context.getURI();
 		String path = uri.toString();
-
-		String report = getReport(source, uri);
 		List<String> filters = getFilters();
-		processErrorsInReport(report, path, problems, filters);
-		processWarningsInReport(report, path, problems, filters);
 
+		String key = getResultKey(source, filters);
+		List<W3CIssue> issues = RESULTS.get(key);
+		if (issues == null)
+		{
+			issues = validate(source, uri, path, filters);
+			RESULTS.put(key, issues);
+		}
+
+		List<IProblem> problems = new ArrayList<IProblem>(issues.size());
+		for (W3CIssue issue : issues)
+		{
+			if (issue.error)
+			{
+				problems.add(createError(issue.message, issue.line, 0, 0, path));
+			}
+			else
+			{
+				problems.add(createWarning(issue.message, issue.line, 0, 0, path));
+			}
+		}
+		if (sub.isCanceled())
+		{
+			return;
+		}
 		context.putProblems(ICSSConstants.W3C_PROBLEM, problems);
+		sub.done();
+	}
+
+	/**
+	 * Runs the W3C validator over the source and collects the filtered errors and warnings.
+	 */
+	private List<W3CIssue> validate(String source, URI uri, String path, List<String> filters)
+	{
+		List<IProblem> problems = validate(source, uri, path, filters, USE_REPORT);
+		List<W3CIssue> issues = new ArrayList<W3CIssue>(problems.size());
+		for (IProblem problem : problems)
+		{
+			issues.add(new W3CIssue(problem.getMessage(), problem.getLineNumber(), problem.isError()));
+		}
+		return issues;
+	}
+
+	/**
+	 * Runs the W3C validator over the source, and collects the errors and warnings from the parser's objects or from
+	 * the rendered report. Both give the same problems.
+	 */
+	List<IProblem> validate(String source, URI uri, String path, List<String> filters, boolean useReport)
+	{
+		List<IProblem> problems = new ArrayList<IProblem>();
+		ApplContext ac = createContext();
+		StyleSheet stylesheet = parse(source, uri, ac);
+		if (useReport)
+		{
+			String report = getReport(stylesheet, ac);
+			processErrorsInReport(report, path, problems, filters);
+			processWarningsInReport(report, path, problems, filters);
+		}
+		else
+		{
+			addErrors(getErrors(stylesheet, ac, path), false, path, problems, filters);
+			addWarnings(getWarnings(stylesheet, path), path, problems, filters);
+		}
+		return problems;
+	}
+
+	/**
+	 * Results are keyed by the content hash, the validator profile and the filters, which are applied while the
+	 * results are collected. The source path is not part of the key; problems are created for the path on each build.
+	 * 
+	 * @return null if the source couldn't be hashed
+	 */
+	private static String getResultKey(String source, List<String> filters)
+	{
+		return ContentResultCache.getKey(source, APTANA_PROFILE, filters);
+	}
+
+	/**
+	 * A single error/warning reported by the W3C validator, independent of the file it was reported for.
+	 */
+	private static class W3CIssue
+	{
+		final String message;
+		final int line;
+		final boolean error;
+
+		W3CIssue(String message, int line, boolean error)
+		{
+			this.message = message;
+			this.line = line;
+			this.error = error;
+		}
 	}
 
 	public void deleteFile(BuildContext context, IProgressMonitor monitor)
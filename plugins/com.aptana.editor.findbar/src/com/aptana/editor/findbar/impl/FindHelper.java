@@ -15,13 +15,7 @@ import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.action.IStatusLineManager;
-import org.eclipse.search.ui.ISearchQuery;
-import org.eclipse.search.ui.NewSearchUI;
-import org.eclipse.search.ui.text.FileTextSearchScope;
-import org.eclipse.search.ui.text.TextSearchQueryProvider;
-import org.eclipse.search.ui.text.TextSearchQueryProvider.TextSearchInput;
 import org.eclipse.ui.IEditorInput;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IEditorReference;
@@ -31,6 +25,7 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.part.MultiPageEditorPart;
 
 import com.aptana.editor.findbar.FindBarPlugin;
+import com.aptana.ui.util.TextSearchUtil;
 
 /**
  * Helper to make a search in the currently opened documents (gotten from Pydev).
@@ -127,8 +122,7 @@ public class FindHelper
 			return;
 		}
 
-		performFind(searchText, caseSensitive, isRegEx, FileTextSearchScope.newSearchScope(
-				files.toArray(new IResource[files.size()]), new String[] { "*" }, true)); //$NON-NLS-1$
+		performFind(searchText, caseSensitive, isRegEx, files.toArray(new IResource[files.size()]));
 	}
 
 	/**
@@ -209,8 +203,7 @@ public class FindHelper
 			return;
 		}
 
-		performFind(searchText, caseSensitive, isRegEx,
-				FileTextSearchScope.newSearchScope(new IResource[] { activeProject }, new String[] { "*" }, true)); //$NON-NLS-1$
+		performFind(searchText, caseSensitive, isRegEx, new IResource[] { activeProject });
 	}
 
 	/**
@@ -224,8 +217,7 @@ public class FindHelper
 			return;
 		}
 
-		performFind(searchText, caseSensitive, isRegEx, FileTextSearchScope.newSearchScope(
-				new IResource[] { ResourcesPlugin.getWorkspace().getRoot() }, new String[] { "*" }, true)); //$NON-NLS-1$
+		performFind(searchText, caseSensitive, isRegEx, new IResource[] { ResourcesPlugin.getWorkspace().getRoot() });
 	}
 
 	private static IWorkbenchPage getActivePage(IStatusLineManager statusLineManager)
@@ -253,39 +245,11 @@ public class FindHelper
 		return activePage;
 	}
 
-	private static void performFind(final String searchText, final boolean caseSensitive, final boolean isRegEx,
-			final FileTextSearchScope searchScope)
+	/**
+	 * Searches the given resources, narrowed down to the files that may contain matches when file contents are indexed
+	 */
+	private static void performFind(String searchText, boolean caseSensitive, boolean isRegEx, IResource[] roots)
 	{
-		try
-		{
-			ISearchQuery query = TextSearchQueryProvider.getPreferred().createQuery(new TextSearchInput()
-			{
-
-				public boolean isRegExSearch()
-				{
-					return isRegEx;
-				}
-
-				public boolean isCaseSensitiveSearch()
-				{
-					return caseSensitive;
-				}
-
-				public String getSearchText()
-				{
-					return searchText;
-				}
-
-				public FileTextSearchScope getScope()
-				{
-					return searchScope; //$NON-NLS-1$
-				}
-			});
-			NewSearchUI.runQueryInBackground(query);
-		}
-		catch (CoreException e1)
-		{
-			FindBarPlugin.log(e1);
-		}
+		TextSearchUtil.runQueryInBackground(searchText, caseSensitive, isRegEx, roots, new String[] { "*" }, true); //$NON-NLS-1$
 	}
 }
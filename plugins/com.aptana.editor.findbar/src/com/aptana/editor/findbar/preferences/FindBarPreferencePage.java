@@ -7,13 +7,19 @@
  */
 package com.aptana.editor.findbar.preferences;
 
+import java.io.IOException;
+
 import org.eclipse.jface.preference.BooleanFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
+import org.eclipse.ui.preferences.ScopedPreferenceStore;
 
+import com.aptana.core.util.EclipseUtil;
 import com.aptana.editor.findbar.FindBarPlugin;
+import com.aptana.index.core.IPreferenceConstants;
+import com.aptana.index.core.IndexPlugin;
 
 /**
  * A preferences page for the find bar.
@@ -23,9 +29,16 @@ import com.aptana.editor.findbar.FindBarPlugin;
 public final class FindBarPreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage
 {
 
+	/**
+	 * Whether file contents are indexed is an index preference
+	 */
+	private ScopedPreferenceStore indexPreferenceStore;
+	private BooleanFieldEditor indexFileContentsEditor;
+
 	public void init(IWorkbench workbench)
 	{
 		setPreferenceStore(FindBarPlugin.getDefault().getPreferenceStore());
+		indexPreferenceStore = new ScopedPreferenceStore(EclipseUtil.instanceScope(), IndexPlugin.PLUGIN_ID);
 	}
 
 	@Override
@@ -43,6 +56,39 @@ public final class FindBarPreferencePage extends FieldEditorPreferencePage imple
 		
 		addField(new BooleanFieldEditor(IPreferencesConstants.CTRL_F_TWICE_OPENS_ECLIPSE_FIND_BAR,
 				Messages.FindBarPreferencesPage_AskCtrlFTwiceOpensEclipseSearchOnFindBar, p));
+
+		// Users can choose whether project and workspace searches look up an index of file contents first.
+		indexFileContentsEditor = new BooleanFieldEditor(IPreferenceConstants.INDEX_FILE_CONTENTS,
+				Messages.FindBarPreferencesPage_AskIndexFileContents, p);
+		addField(indexFileContentsEditor);
+	}
+
+	@Override
+	protected void initialize()
+	{
+		super.initialize();
+
+		indexFileContentsEditor.setPreferenceStore(indexPreferenceStore);
+		indexFileContentsEditor.load();
+	}
+
+	@Override
+	public boolean performOk()
+	{
+		boolean result = super.performOk();
+
+		if (indexPreferenceStore.needsSaving())
+		{
+			try
+			{
+				indexPreferenceStore.save();
+			}
+			catch (IOException e)
+			{
+				FindBarPlugin.log(e);
+			}
+		}
+		return result;
 	}
 
 }
@@ -16,6 +16,7 @@ public class Messages extends NLS
 	public static String FindBarPreferencesPage_AskUseCustomFindBar;
 	public static String FindBarPreferencesPage_AskIncrementalSearchesOnFindBar;
 	public static String FindBarPreferencesPage_AskCtrlFTwiceOpensEclipseSearchOnFindBar;
+	public static String FindBarPreferencesPage_AskIndexFileContents;
 
 	static
 	{
@@ -479,7 +479,8 @@ public class HTMLContentAssistProcessor extends CommonContentAssistProcessor
 	protected List<ICompletionProposal> addClassProposals(int offset)
 	{
 		List<ICompletionProposal> proposals = new ArrayList<ICompletionProposal>();
-		Map<String, String> classes = this._queryHelper.getClasses(this.getIndex());
+		Map<String, String> classes = this._queryHelper.getClasses(this.getIndex(),
+				this.getAttributeValuePrefix(offset));
 
 		if (classes != null)
 		{
@@ -494,6 +495,36 @@ public class HTMLContentAssistProcessor extends CommonContentAssistProcessor
 		return proposals;
 	}
 
+	/**
+	 * Returns the part of the attribute value being replaced that was typed before the offset. Only proposals that
+	 * start with it are computed; the popup narrows them down further as the user types
+	 * 
+	 * @param offset
+	 * @return the prefix, or null if it can't be determined
+	 */
+	private String getAttributeValuePrefix(int offset)
+	{
+		if (this._replaceRange == null || this._document == null)
+		{
+			return null;
+		}
+
+		int start = this._replaceRange.getStartingOffset();
+		if (start > offset)
+		{
+			return null;
+		}
+
+		try
+		{
+			return this._document.get(start, offset - start);
+		}
+		catch (BadLocationException e)
+		{
+			return null;
+		}
+	}
+
 	/**
 	 * addURIPathProposals - Does incremental proposals for filepaths in the 'src'/'href' values.
 	 * 
@@ -1015,7 +1046,7 @@ public class HTMLContentAssistProcessor extends CommonContentAssistProcessor
 	protected List<ICompletionProposal> addIDProposals(int offset)
 	{
 		List<ICompletionProposal> proposals = new ArrayList<ICompletionProposal>();
-		Map<String, String> ids = this._queryHelper.getIDs(this.getIndex());
+		Map<String, String> ids = this._queryHelper.getIDs(this.getIndex(), this.getAttributeValuePrefix(offset));
 
 		if (ids != null)
 		{
@@ -8,11 +8,13 @@
 package com.aptana.editor.html.contentassist;
 
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.aptana.core.util.StringUtil;
 import com.aptana.editor.css.contentassist.index.ICSSIndexConstants;
@@ -25,6 +27,7 @@ import com.aptana.editor.html.contentassist.model.EventElement;
 import com.aptana.index.core.Index;
 import com.aptana.index.core.IndexManager;
 import com.aptana.index.core.IndexPlugin;
+import com.aptana.index.core.SymbolTable;
 
 public class HTMLIndexQueryHelper
 {
@@ -203,7 +206,20 @@ public class HTMLIndexQueryHelper
 	 */
 	public Map<String, String> getClasses(Index index)
 	{
-		return this._reader.getValues(index, ICSSIndexConstants.CLASS);
+		return this.getClasses(index, null);
+	}
+
+	/**
+	 * Retrieve the CSS classes that start with a prefix, ignoring case, from the current index
+	 * 
+	 * @param index
+	 * @param prefix
+	 *            the prefix. An empty or null prefix returns all classes
+	 * @return a map of class names to the relative path of a document that defines them, or null if there are none
+	 */
+	public Map<String, String> getClasses(Index index, String prefix)
+	{
+		return this.getSymbols(index, ICSSIndexConstants.CLASS, prefix);
 	}
 
 	/**
@@ -304,7 +320,20 @@ public class HTMLIndexQueryHelper
 	 */
 	public Map<String, String> getIDs(Index index)
 	{
-		return this._reader.getValues(index, ICSSIndexConstants.IDENTIFIER);
+		return this.getIDs(index, null);
+	}
+
+	/**
+	 * Retrieve the CSS IDs that start with a prefix, ignoring case, from the current index
+	 * 
+	 * @param index
+	 * @param prefix
+	 *            the prefix. An empty or null prefix returns all IDs
+	 * @return a map of IDs to the relative path of a document that defines them, or null if there are none
+	 */
+	public Map<String, String> getIDs(Index index, String prefix)
+	{
+		return this.getSymbols(index, ICSSIndexConstants.IDENTIFIER, prefix);
 	}
 
 	/**
@@ -317,4 +346,44 @@ public class HTMLIndexQueryHelper
 	{
 		return this._reader.getValues(index, IHTMLIndexConstants.RESOURCE_JS);
 	}
+
+	/**
+	 * Looks up words in the symbol table the index keeps for a category, rather than scanning the category each time
+	 * 
+	 * @param index
+	 * @param category
+	 * @param prefix
+	 * @return
+	 */
+	private Map<String, String> getSymbols(Index index, String category, String prefix)
+	{
+		if (index == null)
+		{
+			return null;
+		}
+
+		SymbolTable table = index.getSymbolTable(category);
+		List<String> words = table.getWords(prefix);
+		if (words.isEmpty())
+		{
+			return null;
+		}
+
+		Map<String, String> result = new HashMap<String, String>(words.size());
+		for (String word : words)
+		{
+			Set<String> documents = table.getDocuments(word);
+			String path = documents.isEmpty() ? StringUtil.EMPTY : documents.iterator().next();
+
+			try
+			{
+				result.put(word, index.getRelativeDocumentPath(new URI(path)).toString());
+			}
+			catch (URISyntaxException e)
+			{
+				result.put(word, path);
+			}
+		}
+		return result;
+	}
 }
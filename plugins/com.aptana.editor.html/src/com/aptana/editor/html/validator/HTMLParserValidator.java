@@ -16,6 +16,7 @@ import java.util.Map;
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
@@ -48,6 +49,8 @@ public class HTMLParserValidator extends AbstractBuildParticipant
 			return;
 		}
 
+		SubMonitor sub = SubMonitor.convert(monitor, 1);
+
 		// Set up our problems per language map
 		Map<String, List<IProblem>> problems = new HashMap<String, List<IProblem>>();
 		problems.put(IHTMLConstants.CONTENT_TYPE_HTML, new ArrayList<IProblem>());
@@ -67,7 +70,7 @@ public class HTMLParserValidator extends AbstractBuildParticipant
 			}
 
 			// Add parse errors...
-			if (!CollectionsUtil.isEmpty(context.getParseErrors()))
+			if (!sub.isCanceled() && !CollectionsUtil.isEmpty(context.getParseErrors()))
 			{
 				URI path = context.getURI();
 				String sourcePath = path.toString();
@@ -95,9 +98,14 @@ public class HTMLParserValidator extends AbstractBuildParticipant
 			}
 		}
 
+		if (sub.isCanceled())
+		{
+			return;
+		}
 		context.putProblems(IHTMLConstants.HTML_PROBLEM, problems.get(IHTMLConstants.CONTENT_TYPE_HTML));
 		context.putProblems(IJSConstants.JS_PROBLEM_MARKER_TYPE, problems.get(IJSConstants.CONTENT_TYPE_JS));
 		context.putProblems(ICSSConstants.CSS_PROBLEM, problems.get(ICSSConstants.CONTENT_TYPE_CSS));
+		sub.done();
 	}
 
 	public void deleteFile(BuildContext context, IProgressMonitor monitor)
@@ -21,6 +21,7 @@ import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
@@ -239,6 +240,7 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 			return;
 		}
 
+		SubMonitor sub = SubMonitor.convert(monitor, 1);
 		fQueryHelper = new HTMLIndexQueryHelper();
 		fIds = new HashSet<String>();
 
@@ -259,7 +261,7 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 					problems.addAll(validateDoctype());
 
 					IParseRootNode ast = context.getAST();
-					if (ast != null)
+					if (ast != null && !sub.isCanceled())
 					{
 						foundTitle = false;
 						problems.addAll(validateFrames(ast));
@@ -285,6 +287,12 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 						MessageFormat.format("Failed to validate {0} using HTML Tidy validator", sourcePath), e); //$NON-NLS-1$
 			}
 
+			// don't report a partial validation
+			if (sub.isCanceled())
+			{
+				return;
+			}
+
 			final List<String> filters = getFilters();
 			problems = CollectionsUtil.filter(problems, new IFilter<IProblem>()
 			{
@@ -294,6 +302,7 @@ public class HTMLTidyValidator extends AbstractBuildParticipant
 				}
 			});
 			context.putProblems(IHTMLConstants.TIDY_PROBLEM, problems);
+			sub.done();
 		}
 		finally
 		{
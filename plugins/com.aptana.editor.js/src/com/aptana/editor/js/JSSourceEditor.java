@@ -37,6 +37,7 @@ import com.aptana.core.util.replace.RegexPatternReplacer;
 import com.aptana.core.util.replace.SimpleTextPatternReplacer;
 import com.aptana.editor.common.AbstractThemeableEditor;
 import com.aptana.editor.common.CommonEditorPlugin;
+import com.aptana.editor.common.CommonOccurrencesUpdater;
 import com.aptana.editor.common.text.reconciler.IFoldingComputer;
 import com.aptana.editor.js.actions.IJSActions;
 import com.aptana.editor.js.actions.OpenDeclarationAction;
@@ -45,6 +46,7 @@ import com.aptana.editor.js.contentassist.model.PropertyElement;
 import com.aptana.editor.js.contentassist.model.SinceElement;
 import com.aptana.editor.js.internal.JSModelUtil;
 import com.aptana.editor.js.internal.text.JSFoldingComputer;
+import com.aptana.editor.js.internal.text.JSOccurrencesUpdater;
 import com.aptana.editor.js.outline.JSOutlineContentProvider;
 import com.aptana.editor.js.outline.JSOutlineLabelProvider;
 import com.aptana.editor.js.parsing.JSParseState;
@@ -354,6 +356,12 @@ public class JSSourceEditor extends AbstractThemeableEditor
 		return JSPlugin.getDefault().getPreferenceStore();
 	}
 
+	@Override
+	protected CommonOccurrencesUpdater createOccurrencesUpdater()
+	{
+		return new JSOccurrencesUpdater(this);
+	}
+
 	@Override
 	public IFoldingComputer createFoldingComputer(IDocument document)
 	{
@@ -7,6 +7,7 @@
  */
 package com.aptana.editor.js.contentassist.index;
 
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
@@ -44,18 +45,26 @@ public class JSCAFileIndexingParticipant extends AbstractFileIndexingParticipant
 		SubMonitor sub = SubMonitor.convert(monitor, 100);
 		try
 		{
-			sub.subTask(getIndexingMessage(index, context.getURI()));
+			URI location = context.getURI();
+
+			sub.subTask(getIndexingMessage(index, location));
+
+			// grab the current Window type before this file adds to it
+			JSIndexReader jsir = new JSIndexReader();
+			List<TypeElement> windows = jsir.getType(index, JSTypeConstants.WINDOW_TYPE, true);
 
+			// members are written to the index while the file is being read, so only the type skeletons remain in
+			// memory
 			JSCAReader reader = new JSCAReader();
 			SchemaContext schemaContext = new SchemaContext();
-			JSCAHandler handler = new JSCAHandler();
+			JSCAHandler handler = new JSCAHandler(index, location);
 			schemaContext.setHandler(handler);
 
 			Reader isr = null;
 			try
 			{
 				// parse
-				isr = new InputStreamReader(context.openInputStream(sub.newChild(5)));
+				isr = new BufferedReader(new InputStreamReader(context.openInputStream(sub.newChild(5))));
 				reader.read(isr, schemaContext);
 				sub.worked(45);
 			}
@@ -74,8 +83,6 @@ public class JSCAFileIndexingParticipant extends AbstractFileIndexingParticipant
 			}
 
 			// create new Window type for this file
-			JSIndexReader jsir = new JSIndexReader();
-			List<TypeElement> windows = jsir.getType(index, JSTypeConstants.WINDOW_TYPE, true);
 			TypeElement window;
 
 			if (!CollectionsUtil.isEmpty(windows))
@@ -92,7 +99,6 @@ public class JSCAFileIndexingParticipant extends AbstractFileIndexingParticipant
 			JSIndexWriter indexer = new JSIndexWriter();
 			TypeElement[] types = handler.getTypes();
 			AliasElement[] aliases = handler.getAliases();
-			URI location = context.getURI();
 
 			for (TypeElement type : types)
 			{
@@ -7,12 +7,15 @@
  */
 package com.aptana.editor.js.contentassist.index;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -34,6 +37,7 @@ import com.aptana.editor.js.contentassist.model.ReturnTypeElement;
 import com.aptana.editor.js.contentassist.model.SinceElement;
 import com.aptana.editor.js.contentassist.model.TypeElement;
 import com.aptana.editor.js.contentassist.model.UserAgentElement;
+import com.aptana.index.core.Index;
 import com.aptana.json.IContextHandler;
 import com.aptana.json.IState;
 
@@ -178,6 +182,13 @@ public class JSCAHandler implements IContextHandler
 	private Map<String, TypeElement> typesByName;
 	private List<AliasElement> aliases;
 
+	// streaming mode
+	private Index index;
+	private URI location;
+	private JSIndexWriter writer;
+	private Map<String, Set<String>> writtenMembersByType;
+	private Set<String> typesWithPublicMembers;
+
 	private AliasElement currentAlias;
 	private TypeElement currentType;
 	private UserAgentElement currentUserAgent;
@@ -219,6 +230,28 @@ public class JSCAHandler implements IContextHandler
 		aliases = new ArrayList<AliasElement>();
 	}
 
+	/**
+	 * Create a handler that writes the members of each type to the index as soon as the type has been read. Only a
+	 * skeleton of each type is kept in memory: its name, description, parent types and the properties that link to
+	 * nested types, which may still change as the nested types are read. {@link #getTypes()} returns these skeletons
+	 * and they still need to be written once reading is done.
+	 * 
+	 * @param index
+	 *            The index to write to
+	 * @param location
+	 *            The location of the JSCA file
+	 */
+	public JSCAHandler(Index index, URI location)
+	{
+		this();
+
+		this.index = index;
+		this.location = location;
+		writer = new JSIndexWriter();
+		writtenMembersByType = new HashMap<String, Set<String>>();
+		typesWithPublicMembers = new HashSet<String>();
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.json.IContextHandler#addElement(java.lang.String, com.aptana.json.IState)
@@ -269,6 +302,10 @@ public class JSCAHandler implements IContextHandler
 
 				// NOTE: Setting name on type already puts it into the typesByName hash, so we don't have
 				// to do anything else here
+				if (writer != null && currentType.getName() != null)
+				{
+					writeMembers(currentType);
+				}
 				currentType = null;
 				break;
 
@@ -429,7 +466,7 @@ public class JSCAHandler implements IContextHandler
 				PropertyElement property = type.getProperty(pName);
 
 				// create property, if we didn't have one
-				if (property == null)
+				if (property == null && !isMemberWritten(type.getName(), pName))
 				{
 					property = new PropertyElement();
 
@@ -640,7 +677,7 @@ public class JSCAHandler implements IContextHandler
 
 			if (type != null)
 			{
-				boolean isInternal = true;
+				boolean isInternal = (typesWithPublicMembers == null || !typesWithPublicMembers.contains(namespace));
 
 				for (PropertyElement property : type.getProperties())
 				{
@@ -702,6 +739,101 @@ public class JSCAHandler implements IContextHandler
 		}
 	}
 
+	/**
+	 * Determine if the specified member of a type has already been written to the index
+	 * 
+	 * @param typeName
+	 * @param memberName
+	 * @return
+	 */
+	private boolean isMemberWritten(String typeName, String memberName)
+	{
+		if (writtenMembersByType == null)
+		{
+			return false;
+		}
+
+		Set<String> names = writtenMembersByType.get(typeName);
+
+		return names != null && names.contains(memberName);
+	}
+
+	/**
+	 * Determine if a property refers to a nested type. Such properties are updated when the nested type is read, so
+	 * they are not written until the end in streaming mode
+	 * 
+	 * @param typeName
+	 * @param property
+	 * @return
+	 */
+	private boolean isNamespaceProperty(String typeName, PropertyElement property)
+	{
+		return property.getTypeNames().contains(typeName + '.' + property.getName());
+	}
+
+	/**
+	 * Write the members of a type that has been read completely to the index and replace the type with a skeleton
+	 * holding what may still change
+	 * 
+	 * @param type
+	 */
+	private void writeMembers(TypeElement type)
+	{
+		String typeName = type.getName();
+		Set<String> writtenMembers = writtenMembersByType.get(typeName);
+
+		if (writtenMembers == null)
+		{
+			writtenMembers = new HashSet<String>();
+			writtenMembersByType.put(typeName, writtenMembers);
+		}
+
+		TypeElement skeleton = new TypeElement();
+
+		skeleton.setName(typeName);
+		skeleton.setDescription(type.getDescription());
+		skeleton.setIsDeprecated(type.isDeprecated());
+		skeleton.setIsInternal(type.isInternal());
+
+		for (String parentType : type.getParentTypes())
+		{
+			skeleton.addParentType(parentType);
+		}
+
+		for (PropertyElement property : type.getProperties())
+		{
+			if (isNamespaceProperty(typeName, property))
+			{
+				skeleton.addProperty(property);
+			}
+			else
+			{
+				if (property instanceof FunctionElement)
+				{
+					writer.writeFunction(index, (FunctionElement) property, location);
+				}
+				else
+				{
+					writer.writeProperty(index, property, location);
+				}
+
+				writtenMembers.add(property.getName());
+
+				if (!property.isInternal())
+				{
+					typesWithPublicMembers.add(typeName);
+				}
+			}
+		}
+
+		for (EventElement event : type.getEvents())
+		{
+			writer.writeEvent(index, event, location);
+		}
+
+		typesByName.put(typeName, skeleton);
+	}
+
 	/**
 	 * isValidEventIdentifier
 	 * 
@@ -0,0 +1,105 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.js.internal.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+
+import com.aptana.editor.common.AbstractThemeableEditor;
+import com.aptana.editor.common.CommonOccurrencesUpdater;
+import com.aptana.editor.js.contentassist.ParseUtil;
+import com.aptana.editor.js.inferencing.JSScope;
+import com.aptana.editor.js.parsing.ast.JSFunctionNode;
+import com.aptana.parsing.ast.IParseNode;
+import com.aptana.parsing.ast.IParseRootNode;
+
+/**
+ * Marks occurrences of local variables and functions within the scope that declares them only, so a variable named
+ * like one of another function isn't marked there.
+ */
+public class JSOccurrencesUpdater extends CommonOccurrencesUpdater
+{
+
+	private final AbstractThemeableEditor editor;
+
+	public JSOccurrencesUpdater(AbstractThemeableEditor editor)
+	{
+		super(editor);
+		this.editor = editor;
+	}
+
+	@Override
+	protected List<IRegion> filterOccurrences(IDocument document, int offset, String word, List<IRegion> occurrences)
+	{
+		List<IRegion> result = super.filterOccurrences(document, offset, word, occurrences);
+
+		IParseRootNode ast = editor.getAST();
+		JSScope global = ParseUtil.getGlobalScope(ast);
+
+		if (global == null)
+		{
+			return result;
+		}
+
+		JSScope declaringScope = getDeclaringScope(ast, global, offset, word);
+
+		// globals and properties may be referred to from anywhere
+		if (declaringScope == null || declaringScope == global)
+		{
+			return result;
+		}
+
+		List<IRegion> inScope = new ArrayList<IRegion>(result.size());
+
+		for (IRegion occurrence : result)
+		{
+			if (getDeclaringScope(ast, global, occurrence.getOffset(), word) == declaringScope)
+			{
+				inScope.add(occurrence);
+			}
+		}
+
+		return inScope;
+	}
+
+	/**
+	 * Returns the scope that declares a symbol, as seen from an offset
+	 *
+	 * @param ast
+	 * @param global
+	 * @param offset
+	 * @param name
+	 * @return
+	 */
+	private static JSScope getDeclaringScope(IParseRootNode ast, JSScope global, int offset, String name)
+	{
+		// scopes of functions start with their body, but their parameters belong to them too
+		for (IParseNode node = ast.getNodeAtOffset(offset); node != null; node = node.getParent())
+		{
+			if (node instanceof JSFunctionNode)
+			{
+				IParseNode parameters = ((JSFunctionNode) node).getParameters();
+				IParseNode body = ((JSFunctionNode) node).getBody();
+
+				if (parameters != null && body != null && parameters.getStartingOffset() <= offset
+						&& offset <= parameters.getEndingOffset())
+				{
+					offset = body.getStartingOffset();
+				}
+				break;
+			}
+		}
+
+		JSScope scope = global.getScopeAtOffset(offset);
+
+		return ((scope != null) ? scope : global).getScopeWithSymbol(name);
+	}
+}
@@ -18,6 +18,7 @@ import java.util.Map;
 import org.eclipse.core.runtime.FileLocator;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
@@ -43,6 +44,7 @@ import com.aptana.core.build.IProblem;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.CollectionsUtil;
+import com.aptana.core.util.ContentResultCache;
 import com.aptana.core.util.EclipseUtil;
 import com.aptana.core.util.StreamUtil;
 import com.aptana.editor.js.IJSConstants;
@@ -51,7 +53,9 @@ import com.aptana.index.core.build.BuildContext;
 import com.aptana.jetty.util.epl.ajax.JSON;
 
 /**
- * Runs the code against JSLint inside Rhino, then parses out the reported errors/warnings.
+ * Runs the code against JSLint inside Rhino, then parses out the reported errors/warnings. JSLint is compiled once and
+ * executed into a separate scope per thread, and results are memoized by content and options so unchanged files are
+ * not linted again.
  * 
  * @author cwilliams
  */
@@ -68,7 +72,22 @@ public class JSLintValidator extends AbstractBuildParticipant
 	public static final String ID = "com.aptana.editor.js.validator.JSLintValidator"; //$NON-NLS-1$
 
 	private static final String JSLINT_FILENAME = "fulljslint.js"; //$NON-NLS-1$
-	private static JSLint JS_LINT_SCRIPT;
+	private static final int OPTIMIZATION_LEVEL = 9;
+	private static final int MAX_CACHED_RESULTS = 500;
+
+	private static Script JS_LINT_SCRIPT;
+
+	/**
+	 * The JSLint scope of each thread. {@link JSLint} is a static class, so the threads of the builder pools don't keep
+	 * validator instances alive.
+	 */
+	private static final ThreadLocal<JSLint> JS_LINT = new ThreadLocal<JSLint>();
+
+	/**
+	 * Memoized lint results, keyed by content hash and options. See {@link #getResultKey(String, String)}.
+	 */
+	private static final ContentResultCache<List<LintIssue>> RESULTS = new ContentResultCache<List<LintIssue>>(
+			MAX_CACHED_RESULTS);
 
 	private static ContextFactory contextFactory = new ContextFactory();
 
@@ -84,6 +103,12 @@ public class JSLintValidator extends AbstractBuildParticipant
 			return;
 		}
 
+		SubMonitor sub = SubMonitor.convert(monitor, 1);
+		if (sub.isCanceled())
+		{
+			return;
+		}
+
 		List<IProblem> problems = Collections.emptyList();
 		String sourcePath = context.getURI().toString();
 		try
@@ -96,7 +121,13 @@ public class JSLintValidator extends AbstractBuildParticipant
 					MessageFormat.format("Failed to parse {0} with JSLint", sourcePath), e); //$NON-NLS-1$
 		}
 
+		// the builder stopped waiting for us, and builds the file again later
+		if (sub.isCanceled())
+		{
+			return;
+		}
 		context.putProblems(IJSConstants.JSLINT_PROBLEM_MARKER_TYPE, problems);
+		sub.done();
 	}
 
 	public void deleteFile(BuildContext context, IProgressMonitor monitor)
@@ -111,15 +142,34 @@ public class JSLintValidator extends AbstractBuildParticipant
 
 	private List<IProblem> parseWithLint(String source, String path)
 	{
-		JSLint script = getJSLintScript();
-		if (script == null)
+		String optionsJSON = getPreferenceString(JS_LINT_OPTIONS);
+		String key = getResultKey(source, optionsJSON);
+		List<LintIssue> issues = RESULTS.get(key);
+		if (issues == null)
 		{
-			return Collections.emptyList();
-		}
+			JSLint script = getJSLintScript();
+			if (script == null)
+			{
+				return Collections.emptyList();
+			}
 
-		script.runLint(source, getOptions());
+			script.runLint(source, getOptions(optionsJSON));
+			issues = script.getIssues(source);
+			RESULTS.put(key, issues);
+		}
 
-		List<IProblem> collected = script.getProblems(source, path);
+		List<IProblem> collected = new ArrayList<IProblem>(issues.size());
+		for (LintIssue issue : issues)
+		{
+			if (issue.error)
+			{
+				collected.add(createError(issue.reason, issue.line, issue.offset, 1, path));
+			}
+			else
+			{
+				collected.add(createWarning(issue.reason, issue.line, issue.offset, 1, path));
+			}
+		}
 		final List<String> filters = getFilters();
 		return CollectionsUtil.filter(collected, new IFilter<IProblem>()
 		{
@@ -132,11 +182,62 @@ public class JSLintValidator extends AbstractBuildParticipant
 	}
 
 	/**
-	 * Lazily grab the JSLint script.
+	 * Results are keyed by the content hash and the options JSLint ran with. Filters are applied after the fact, so
+	 * they're not part of the key.
+	 * 
+	 * @param source
+	 * @param optionsJSON
+	 * @return null if the source couldn't be hashed
+	 */
+	private String getResultKey(String source, String optionsJSON)
+	{
+		return ContentResultCache.getKey(source, optionsJSON);
+	}
+
+	/**
+	 * Clears the memoized lint results.
+	 */
+	static void clearResults()
+	{
+		RESULTS.clear();
+	}
+
+	/**
+	 * Returns how many validations reused memoized lint results since they were last cleared.
+	 */
+	static int getResultHits()
+	{
+		return RESULTS.getHits();
+	}
+
+	/**
+	 * Grab the JSLint wrapper for the current thread. Each thread gets its own sealed scope, into which the shared
+	 * compiled script has been executed, so lint runs on different build threads don't contend or clobber each
+	 * other's JSLINT state.
+	 * 
+	 * @return
+	 */
+	private static JSLint getJSLintScript()
+	{
+		JSLint lint = JS_LINT.get();
+		if (lint == null)
+		{
+			Script script = getCompiledJSLint();
+			if (script != null)
+			{
+				lint = createJSLint(script);
+				JS_LINT.set(lint);
+			}
+		}
+		return lint;
+	}
+
+	/**
+	 * Lazily compile the JSLint script. This happens once, the resulting {@link Script} is shared by all threads.
 	 * 
 	 * @return
 	 */
-	private synchronized JSLint getJSLintScript()
+	private static synchronized Script getCompiledJSLint()
 	{
 		if (JS_LINT_SCRIPT == null)
 		{
@@ -149,7 +250,7 @@ public class JSLintValidator extends AbstractBuildParticipant
 					String source = StreamUtil.readContent(url.openStream());
 					if (source != null)
 					{
-						JS_LINT_SCRIPT = getJSLintScript(source);
+						JS_LINT_SCRIPT = compileJSLint(source);
 					}
 				}
 				catch (IOException e)
@@ -162,18 +263,49 @@ public class JSLintValidator extends AbstractBuildParticipant
 	}
 
 	/**
-	 * Compile JSLint file into {@link Script} object.
+	 * Compile JSLint file into {@link Script} object, using the optimizer. Falls back to interpreted mode if the script
+	 * can't be compiled to bytecode.
 	 * 
 	 * @param source
 	 * @return
 	 */
-	private JSLint getJSLintScript(String source)
+	private static Script compileJSLint(String source)
+	{
+		try
+		{
+			Context cx = contextFactory.enterContext();
+			try
+			{
+				cx.setOptimizationLevel(OPTIMIZATION_LEVEL);
+				return cx.compileString(source, JSLINT_FILENAME, 1, null);
+			}
+			catch (RuntimeException e)
+			{
+				IdeLog.logWarning(JSPlugin.getDefault(),
+						"Unable to compile JSLint with the optimizer, falling back to interpreted mode", e, null); //$NON-NLS-1$
+				cx.setOptimizationLevel(-1);
+				return cx.compileString(source, JSLINT_FILENAME, 1, null);
+			}
+		}
+		finally
+		{
+			Context.exit();
+		}
+	}
+
+	/**
+	 * Executes the compiled JSLint script into a fresh scope.
+	 * 
+	 * @param script
+	 * @return
+	 */
+	private static JSLint createJSLint(Script script)
 	{
 		try
 		{
 			Context cx = contextFactory.enterContext();
 			ScriptableObject scope = cx.initStandardObjects();
-			cx.evaluateString(scope, source, JSLINT_FILENAME, 1, null);
+			script.exec(cx, scope);
 			return new JSLint(contextFactory, scope);
 		}
 		finally
@@ -182,7 +314,26 @@ public class JSLintValidator extends AbstractBuildParticipant
 		}
 	}
 
-	class JSLint
+	/**
+	 * A single error/warning reported by JSLint, independent of the file it was reported for.
+	 */
+	private static class LintIssue
+	{
+		final String reason;
+		final int line;
+		final int offset;
+		final boolean error;
+
+		LintIssue(String reason, int line, int offset, boolean error)
+		{
+			this.reason = reason;
+			this.line = line;
+			this.offset = offset;
+			this.error = error;
+		}
+	}
+
+	static class JSLint
 	{
 		private ContextFactory contextFactory;
 		private ScriptableObject scope;
@@ -194,9 +345,9 @@ public class JSLintValidator extends AbstractBuildParticipant
 			this.scope.sealObject();
 		}
 
-		public List<IProblem> getProblems(final String source, final String path)
+		public List<LintIssue> getIssues(final String source)
 		{
-			final List<IProblem> items = new ArrayList<IProblem>();
+			final List<LintIssue> items = new ArrayList<LintIssue>();
 
 			contextFactory.call(new ContextAction()
 			{
@@ -287,18 +438,17 @@ public class JSLintValidator extends AbstractBuildParticipant
 							// If this starts with "Stopping", convert the last warning to an error and skip this.
 							if (reason.startsWith("Stopping")) //$NON-NLS-1$
 							{
-								IProblem lastWarning = items.remove(items.size() - 1);
-								items.add(createError(lastWarning.getMessage(), lastWarning.getLineNumber(),
-										lastWarning.getOffset(), 1, path));
+								LintIssue lastWarning = items.remove(items.size() - 1);
+								items.add(new LintIssue(lastWarning.reason, lastWarning.line, lastWarning.offset, true));
 							}
 							else
 							{
-								items.add(createError(reason, line, character, 1, path));
+								items.add(new LintIssue(reason, line, character, true));
 							}
 						}
 						else
 						{
-							items.add(createWarning(reason, line, character, 1, path));
+							items.add(new LintIssue(reason, line, character, false));
 						}
 					}
 					return null;
@@ -407,9 +557,9 @@ public class JSLintValidator extends AbstractBuildParticipant
 	}
 
 	@SuppressWarnings("unchecked")
-	private Map<String, Object> getOptions()
+	private Map<String, Object> getOptions(String optionsJSON)
 	{
-		return (Map<String, Object>) JSON.parse(getPreferenceString(JS_LINT_OPTIONS));
+		return (Map<String, Object>) JSON.parse(optionsJSON);
 	}
 
 	@Override
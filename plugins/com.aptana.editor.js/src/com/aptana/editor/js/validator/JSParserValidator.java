@@ -17,6 +17,7 @@ import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
@@ -104,6 +105,7 @@ public class JSParserValidator extends AbstractBuildParticipant
 			return;
 		}
 
+		final SubMonitor sub = SubMonitor.convert(monitor, 1);
 		try
 		{
 			context.getAST(); // Ensure a parse happened
@@ -112,6 +114,10 @@ public class JSParserValidator extends AbstractBuildParticipant
 		{
 			// ignores the parser exception
 		}
+		if (sub.isCanceled())
+		{
+			return;
+		}
 
 		// Set our temp fields up
 		this.fContext = context;
@@ -175,7 +181,7 @@ public class JSParserValidator extends AbstractBuildParticipant
 							checkForDeprecations(getPropertyNode, globalScope,
 									(getPropertyNode.getParent() instanceof JSInvokeNode));
 						}
-						return true;
+						return !sub.isCanceled();
 					}
 				});
 			}
@@ -186,7 +192,12 @@ public class JSParserValidator extends AbstractBuildParticipant
 					MessageFormat.format("Failed to parse {0} for JS Parser Validation", fPath), e); //$NON-NLS-1$
 		}
 
-		context.putProblems(IJSConstants.JS_PROBLEM_MARKER_TYPE, fProblems);
+		// canceled, so whatever we found is incomplete
+		if (!sub.isCanceled())
+		{
+			context.putProblems(IJSConstants.JS_PROBLEM_MARKER_TYPE, fProblems);
+		}
+		sub.done();
 
 		// Clean up the temporary fields
 		this.fDocument = null;
@@ -23,6 +23,7 @@ import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
@@ -463,6 +464,7 @@ public class JSStyleValidator extends AbstractBuildParticipant
 			return;
 		}
 
+		final SubMonitor sub = SubMonitor.convert(monitor, 1);
 		IParseRootNode ast = null;
 		try
 		{
@@ -472,6 +474,10 @@ public class JSStyleValidator extends AbstractBuildParticipant
 		{
 			// ignores the parser exception
 		}
+		if (sub.isCanceled())
+		{
+			return;
+		}
 
 		this.sourcePath = context.getURI().toString();
 		this.problems = new ArrayList<IProblem>(10);
@@ -488,13 +494,13 @@ public class JSStyleValidator extends AbstractBuildParticipant
 					public boolean exitNode(IParseNode node)
 					{
 						JSStyleValidator.this.exitNode(node);
-						return true;
+						return !sub.isCanceled();
 					}
 
 					public boolean enterNode(IParseNode node)
 					{
 						JSStyleValidator.this.enterNode(node);
-						return true;
+						return !sub.isCanceled();
 					}
 				});
 			}
@@ -525,7 +531,13 @@ public class JSStyleValidator extends AbstractBuildParticipant
 		});
 		// Wipe the problems collection since we're done with it.
 		this.problems = null;
+		// canceled, or the builder stopped waiting for us. The problems so far may be incomplete
+		if (sub.isCanceled())
+		{
+			return;
+		}
 		context.putProblems(IJSConstants.JSSTYLE_PROBLEM_MARKER_TYPE, filtered);
+		sub.done();
 	}
 
 	public void deleteFile(BuildContext context, IProgressMonitor monitor)
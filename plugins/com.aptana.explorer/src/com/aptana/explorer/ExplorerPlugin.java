@@ -29,6 +29,7 @@ import org.eclipse.ui.progress.UIJob;
 import org.osgi.framework.BundleContext;
 
 import com.aptana.core.util.EclipseUtil;
+import com.aptana.explorer.internal.ui.FilenameIndexManager;
 
 /**
  * The activator class controls the plug-in life cycle
@@ -45,6 +46,8 @@ public class ExplorerPlugin extends AbstractUIPlugin
 	// The shared instance
 	private static ExplorerPlugin plugin;
 
+	private FilenameIndexManager filenameIndexManager;
+
 	private final IPerspectiveListener fPerspectiveListener = new IPerspectiveListener()
 	{
 
@@ -160,6 +163,11 @@ public class ExplorerPlugin extends AbstractUIPlugin
 		try
 		{
 			removePartListener();
+			if (filenameIndexManager != null)
+			{
+				filenameIndexManager.dispose();
+				filenameIndexManager = null;
+			}
 		}
 		finally
 		{
@@ -178,6 +186,20 @@ public class ExplorerPlugin extends AbstractUIPlugin
 		return plugin;
 	}
 
+	/**
+	 * Returns the manager of the per-project filename indexes used by the filename search
+	 * 
+	 * @return
+	 */
+	public synchronized FilenameIndexManager getFilenameIndexManager()
+	{
+		if (filenameIndexManager == null)
+		{
+			filenameIndexManager = new FilenameIndexManager();
+		}
+		return filenameIndexManager;
+	}
+
 	public static Image getImage(String string)
 	{
 		if (getDefault().getImageRegistry().get(string) == null)
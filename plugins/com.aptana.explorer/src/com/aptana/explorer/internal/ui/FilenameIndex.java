@@ -0,0 +1,457 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.internal.ui;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceProxy;
+import org.eclipse.core.resources.IResourceProxyVisitor;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.util.EclipseUtil;
+import com.aptana.explorer.ExplorerPlugin;
+
+/**
+ * Index of the project-relative paths of all files and folders in a project. Every path is registered under the
+ * (lower-cased) trigrams it contains, so a filename search only has to run its pattern against the paths that contain
+ * all trigrams of the literal parts of the search text. The index is built by a background job on first use and then
+ * kept up to date from resource deltas by {@link FilenameIndexManager}.
+ */
+public class FilenameIndex
+{
+	private static final int[] NO_IDS = new int[0];
+
+	/**
+	 * A growable, sorted list of path ids
+	 */
+	private static class Postings
+	{
+		int[] ids = new int[4];
+		int size;
+
+		void add(int id)
+		{
+			if (size == ids.length)
+			{
+				int[] newIds = new int[size * 2];
+				System.arraycopy(ids, 0, newIds, 0, size);
+				ids = newIds;
+			}
+			ids[size++] = id;
+		}
+	}
+
+	/**
+	 * The indexed paths. Path ids are indexes into the list; removed paths leave a null behind until the index is
+	 * rebuilt
+	 */
+	private static class Contents
+	{
+		final List<String> paths = new ArrayList<String>();
+		final Map<String, Integer> pathIds = new HashMap<String, Integer>();
+		final Map<Long, Postings> trigrams = new HashMap<Long, Postings>();
+		int removedCount;
+
+		/**
+		 * Register a project-relative path
+		 *
+		 * @param path
+		 */
+		void add(String path)
+		{
+			if (pathIds.containsKey(path))
+			{
+				return;
+			}
+
+			int id = paths.size();
+
+			paths.add(path);
+			pathIds.put(path, id);
+
+			Set<Long> seen = new HashSet<Long>();
+
+			for (int i = 0; i + 3 <= path.length(); i++)
+			{
+				Long trigram = trigram(path, i);
+
+				if (seen.add(trigram))
+				{
+					Postings postings = trigrams.get(trigram);
+
+					if (postings == null)
+					{
+						postings = new Postings();
+						trigrams.put(trigram, postings);
+					}
+					postings.add(id);
+				}
+			}
+		}
+
+		/**
+		 * Unregister a project-relative path
+		 *
+		 * @param path
+		 * @return false if most of the ids are dead and the contents should be rebuilt
+		 */
+		boolean remove(String path)
+		{
+			Integer id = pathIds.remove(path);
+
+			if (id != null)
+			{
+				paths.set(id, null);
+				removedCount++;
+			}
+
+			return removedCount <= paths.size() / 2;
+		}
+	}
+
+	private final IProject project;
+	private final Job buildJob;
+
+	/*
+	 * null until the build job has indexed the project. Both fields are guarded by this index
+	 */
+	private Contents contents;
+	private int changeCount;
+
+	/**
+	 * FilenameIndex
+	 *
+	 * @param project
+	 */
+	public FilenameIndex(IProject project)
+	{
+		this.project = project;
+		this.buildJob = new Job(MessageFormat.format("Indexing file names of {0}", project.getName())) //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				return build(monitor);
+			}
+		};
+		EclipseUtil.setSystemForJob(buildJob);
+		buildJob.setPriority(Job.SHORT);
+	}
+
+	/**
+	 * Return the paths of the resources that should remain visible when filtering the project for the specified
+	 * pattern: the resources whose project-relative path or name matches, and all of their parent folders.
+	 *
+	 * @param pattern
+	 *            The pattern to run against each path
+	 * @param searchText
+	 *            The text the pattern was created from when it is not a regular expression; used to narrow down the
+	 *            paths to check. May be null in which case all paths are checked
+	 * @return null if the index is still being built, in which case the caller has to walk the resources itself
+	 */
+	public synchronized Set<IPath> getVisiblePaths(Pattern pattern, String searchText)
+	{
+		if (contents == null)
+		{
+			buildJob.schedule();
+			return null;
+		}
+
+		Set<IPath> result = new HashSet<IPath>();
+		List<String> paths = contents.paths;
+		int[] candidates = getCandidates(searchText);
+		int count = (candidates == null) ? paths.size() : candidates.length;
+
+		for (int i = 0; i < count; i++)
+		{
+			String path = paths.get((candidates == null) ? i : candidates[i]);
+
+			if (path == null)
+			{
+				continue;
+			}
+
+			String name = path.substring(path.lastIndexOf(IPath.SEPARATOR) + 1);
+
+			if (pattern.matcher(path).find() || pattern.matcher(name).find())
+			{
+				IPath visible = Path.fromPortableString(path);
+
+				// add the path and its parents, stopping at the first one we already have
+				while (visible.segmentCount() > 0 && result.add(visible))
+				{
+					visible = visible.removeLastSegments(1);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Whether the index has been built and can answer queries
+	 *
+	 * @return
+	 */
+	public synchronized boolean isReady()
+	{
+		return contents != null;
+	}
+
+	/**
+	 * Record a resource that was added to the project
+	 *
+	 * @param resource
+	 */
+	synchronized void added(IResource resource)
+	{
+		if (contents == null)
+		{
+			changeCount++;
+			return;
+		}
+
+		contents.add(resource.getProjectRelativePath().toPortableString());
+	}
+
+	/**
+	 * Record a file that was removed from the project. Removing a folder invalidates the index instead, since all paths
+	 * below it would have to be found
+	 *
+	 * @param resource
+	 */
+	synchronized void removed(IResource resource)
+	{
+		if (contents == null)
+		{
+			changeCount++;
+			return;
+		}
+		if (resource.getType() != IResource.FILE
+				|| !contents.remove(resource.getProjectRelativePath().toPortableString()))
+		{
+			invalidate();
+		}
+	}
+
+	/**
+	 * Drop the index contents and rebuild them in the background. Queries fall back to walking the resources until
+	 * then
+	 */
+	synchronized void invalidate()
+	{
+		contents = null;
+		changeCount++;
+		buildJob.schedule();
+	}
+
+	/**
+	 * Stop building the index
+	 */
+	void dispose()
+	{
+		buildJob.cancel();
+	}
+
+	/**
+	 * Wait for a pending build of the index to finish
+	 *
+	 * @throws InterruptedException
+	 */
+	void join() throws InterruptedException
+	{
+		buildJob.join();
+	}
+
+	/**
+	 * Walk the project and index all of its files and folders. The contents are only installed if no resource changed
+	 * while the project was walked, otherwise the walk is started over.
+	 *
+	 * @param monitor
+	 * @return
+	 */
+	private IStatus build(final IProgressMonitor monitor)
+	{
+		int startCount;
+
+		synchronized (this)
+		{
+			if (contents != null)
+			{
+				return Status.OK_STATUS;
+			}
+			startCount = changeCount;
+		}
+
+		final Contents newContents = new Contents();
+
+		if (project.isAccessible())
+		{
+			try
+			{
+				project.accept(new IResourceProxyVisitor()
+				{
+					public boolean visit(IResourceProxy proxy) throws CoreException
+					{
+						if (monitor.isCanceled())
+						{
+							throw new OperationCanceledException();
+						}
+						if (proxy.getType() != IResource.PROJECT)
+						{
+							newContents.add(proxy.requestFullPath().removeFirstSegments(1).toPortableString());
+						}
+						return true;
+					}
+				}, IResource.NONE);
+			}
+			catch (OperationCanceledException e)
+			{
+				return Status.CANCEL_STATUS;
+			}
+			catch (CoreException e)
+			{
+				IdeLog.logError(ExplorerPlugin.getDefault(), e);
+				return Status.OK_STATUS;
+			}
+		}
+
+		synchronized (this)
+		{
+			if (startCount == changeCount)
+			{
+				contents = newContents;
+			}
+			else
+			{
+				buildJob.schedule();
+			}
+		}
+
+		return Status.OK_STATUS;
+	}
+
+	/**
+	 * Return the ids of the paths containing every trigram of the literal parts of the search text, or null if the text
+	 * has no literal part long enough to narrow the search
+	 *
+	 * @param searchText
+	 * @return
+	 */
+	private int[] getCandidates(String searchText)
+	{
+		// backslashes escape wildcards, so we can't tell which parts are literal
+		if (searchText == null || searchText.indexOf('\\') != -1)
+		{
+			return null;
+		}
+
+		int[] result = null;
+
+		for (String literal : searchText.split("[*?]")) //$NON-NLS-1$
+		{
+			for (int i = 0; i + 3 <= literal.length(); i++)
+			{
+				Postings postings = contents.trigrams.get(trigram(literal, i));
+
+				if (postings == null)
+				{
+					return NO_IDS;
+				}
+
+				result = (result == null) ? copy(postings) : intersect(result, postings);
+
+				if (result.length == 0)
+				{
+					return result;
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Pack the lower-cased characters at offset, offset + 1 and offset + 2 into a single key
+	 *
+	 * @param text
+	 * @param offset
+	 * @return
+	 */
+	private static Long trigram(String text, int offset)
+	{
+		long c1 = Character.toLowerCase(text.charAt(offset));
+		long c2 = Character.toLowerCase(text.charAt(offset + 1));
+		long c3 = Character.toLowerCase(text.charAt(offset + 2));
+
+		return (c1 << 32) | (c2 << 16) | c3;
+	}
+
+	private static int[] copy(Postings postings)
+	{
+		int[] result = new int[postings.size];
+
+		System.arraycopy(postings.ids, 0, result, 0, postings.size);
+
+		return result;
+	}
+
+	private static int[] intersect(int[] ids, Postings postings)
+	{
+		int[] result = new int[Math.min(ids.length, postings.size)];
+		int count = 0;
+		int i = 0;
+		int j = 0;
+
+		while (i < ids.length && j < postings.size)
+		{
+			if (ids[i] < postings.ids[j])
+			{
+				i++;
+			}
+			else if (ids[i] > postings.ids[j])
+			{
+				j++;
+			}
+			else
+			{
+				result[count++] = ids[i];
+				i++;
+				j++;
+			}
+		}
+
+		if (count == result.length)
+		{
+			return result;
+		}
+
+		int[] trimmed = new int[count];
+
+		System.arraycopy(result, 0, trimmed, 0, count);
+
+		return trimmed;
+	}
+}
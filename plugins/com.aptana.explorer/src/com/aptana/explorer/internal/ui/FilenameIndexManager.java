@@ -0,0 +1,182 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.internal.ui;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.explorer.ExplorerPlugin;
+
+/**
+ * Hands out the {@link FilenameIndex} of each project and keeps them in sync with the workspace. Indexes are created
+ * on first use and dropped when their project is closed or deleted.
+ */
+public class FilenameIndexManager implements IResourceChangeListener
+{
+	private final Map<IProject, FilenameIndex> indexes;
+	private boolean listening;
+
+	/**
+	 * FilenameIndexManager
+	 */
+	public FilenameIndexManager()
+	{
+		indexes = new HashMap<IProject, FilenameIndex>();
+	}
+
+	/**
+	 * Return the filename index for the specified project, creating it if needed
+	 *
+	 * @param project
+	 * @return
+	 */
+	public synchronized FilenameIndex getIndex(IProject project)
+	{
+		FilenameIndex index = indexes.get(project);
+
+		if (index == null)
+		{
+			if (!listening)
+			{
+				ResourcesPlugin.getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+				listening = true;
+			}
+
+			index = new FilenameIndex(project);
+			indexes.put(project, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * Drop all indexes and stop listening to resource changes
+	 */
+	public synchronized void dispose()
+	{
+		if (listening)
+		{
+			ResourcesPlugin.getWorkspace().removeResourceChangeListener(this);
+			listening = false;
+		}
+
+		for (FilenameIndex index : indexes.values())
+		{
+			index.dispose();
+		}
+		indexes.clear();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * org.eclipse.core.resources.IResourceChangeListener#resourceChanged(org.eclipse.core.resources.IResourceChangeEvent
+	 * )
+	 */
+	public void resourceChanged(IResourceChangeEvent event)
+	{
+		IResourceDelta delta = event.getDelta();
+
+		if (delta == null)
+		{
+			return;
+		}
+
+		try
+		{
+			delta.accept(new IResourceDeltaVisitor()
+			{
+				public boolean visit(IResourceDelta delta) throws CoreException
+				{
+					IResource resource = delta.getResource();
+
+					switch (resource.getType())
+					{
+						case IResource.ROOT:
+							return true;
+
+						case IResource.PROJECT:
+							return visitProject((IProject) resource, delta);
+
+						default:
+							return visitMember(resource, delta);
+					}
+				}
+			});
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(ExplorerPlugin.getDefault(), e);
+		}
+	}
+
+	private synchronized boolean visitProject(IProject project, IResourceDelta delta)
+	{
+		FilenameIndex index = indexes.get(project);
+
+		if (index == null)
+		{
+			return false;
+		}
+		if (delta.getKind() == IResourceDelta.REMOVED || !project.isOpen())
+		{
+			indexes.remove(project).dispose();
+			return false;
+		}
+		if ((delta.getFlags() & IResourceDelta.OPEN) != 0)
+		{
+			index.invalidate();
+			return false;
+		}
+
+		return true;
+	}
+
+	private boolean visitMember(IResource resource, IResourceDelta delta)
+	{
+		FilenameIndex index;
+
+		synchronized (this)
+		{
+			index = indexes.get(resource.getProject());
+		}
+
+		if (index == null)
+		{
+			return false;
+		}
+
+		switch (delta.getKind())
+		{
+			case IResourceDelta.ADDED:
+				if (resource.isTeamPrivateMember() || resource.isHidden())
+				{
+					return false;
+				}
+				index.added(resource);
+				return true;
+
+			case IResourceDelta.REMOVED:
+				index.removed(resource);
+				return false;
+
+			default:
+				return true;
+		}
+	}
+}
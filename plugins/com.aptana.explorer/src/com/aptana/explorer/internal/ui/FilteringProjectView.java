@@ -34,6 +34,7 @@ import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtension;
 import org.eclipse.core.runtime.IExtensionPoint;
 import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
@@ -1179,6 +1180,19 @@ public class FilteringProjectView extends GitProjectView
 			{
 				final Pattern pattern = search.createSearchPattern();
 				search.getTextControl().setForeground(search.getDisplay().getSystemColor(SWT.COLOR_BLACK));
+				// Ask the project's filename index which paths match, rather than having the filter walk the tree. The
+				// index answers null while it is being built in the background, in which case the filter walks the tree
+				Set<IPath> visiblePaths;
+				if (pattern == null)
+				{
+					visiblePaths = Collections.emptySet();
+				}
+				else
+				{
+					FilenameIndex index = ExplorerPlugin.getDefault().getFilenameIndexManager()
+							.getIndex(selectedProject);
+					visiblePaths = index.getVisiblePaths(pattern, isRegularExpression ? null : text);
+				}
 				filenameFilter = new PathFilter()
 				{
 					@Override
@@ -1197,6 +1211,7 @@ public class FilteringProjectView extends GitProjectView
 						return text;
 					};
 				};
+				filenameFilter.setVisiblePaths(visiblePaths);
 				// We need some way to tell the job that uses the filter that this is the one to apply versus creating
 				// one for the hover
 				filterViaSearch = true;
@@ -36,10 +36,6 @@ import org.eclipse.jface.layout.GridLayoutFactory;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.wizard.WizardDialog;
-import org.eclipse.search.ui.NewSearchUI;
-import org.eclipse.search.ui.text.FileTextSearchScope;
-import org.eclipse.search.ui.text.TextSearchQueryProvider;
-import org.eclipse.search.ui.text.TextSearchQueryProvider.TextSearchInput;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.custom.CLabel;
 import org.eclipse.swt.events.MenuEvent;
@@ -89,6 +85,7 @@ import com.aptana.explorer.IPreferenceConstants;
 import com.aptana.theme.IControlThemerFactory;
 import com.aptana.theme.IThemeManager;
 import com.aptana.theme.ThemePlugin;
+import com.aptana.ui.util.TextSearchUtil;
 import com.aptana.ui.util.UIUtils;
 import com.aptana.ui.widgets.SearchComposite;
 
@@ -1055,17 +1052,8 @@ public abstract class SingleProjectView extends CommonNavigator implements Searc
 			return;
 		}
 
-		IResource searchResource = selectedProject;
-		TextSearchPageInput input = new TextSearchPageInput(text, isCaseSensitive, isRegularExpression,
-				FileTextSearchScope.newSearchScope(new IResource[] { searchResource }, new String[] { "*" }, false)); //$NON-NLS-1$
-		try
-		{
-			NewSearchUI.runQueryInBackground(TextSearchQueryProvider.getPreferred().createQuery(input));
-		}
-		catch (CoreException e)
-		{
-			ExplorerPlugin.logError(e);
-		}
+		TextSearchUtil.runQueryInBackground(text, isCaseSensitive, isRegularExpression,
+				new IResource[] { selectedProject }, new String[] { "*" }, false); //$NON-NLS-1$
 	}
 
 	/**
@@ -1147,44 +1135,6 @@ public abstract class SingleProjectView extends CommonNavigator implements Searc
 		}
 	}
 
-	private static class TextSearchPageInput extends TextSearchInput
-	{
-
-		private final String fSearchText;
-		private final boolean fIsCaseSensitive;
-		private final boolean fIsRegEx;
-		private final FileTextSearchScope fScope;
-
-		public TextSearchPageInput(String searchText, boolean isCaseSensitive, boolean isRegEx,
-				FileTextSearchScope scope)
-		{
-			fSearchText = searchText;
-			fIsCaseSensitive = isCaseSensitive;
-			fIsRegEx = isRegEx;
-			fScope = scope;
-		}
-
-		public String getSearchText()
-		{
-			return fSearchText;
-		}
-
-		public boolean isCaseSensitiveSearch()
-		{
-			return fIsCaseSensitive;
-		}
-
-		public boolean isRegExSearch()
-		{
-			return fIsRegEx;
-		}
-
-		public FileTextSearchScope getScope()
-		{
-			return fScope;
-		}
-	}
-
 	public IProject getActiveProject()
 	{
 		return selectedProject;
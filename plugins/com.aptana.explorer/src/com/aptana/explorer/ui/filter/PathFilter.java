@@ -12,6 +12,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IResource;
@@ -45,6 +46,11 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 
 	private Map<Object, Boolean> leafCache = new HashMap<Object, Boolean>();
 
+	/*
+	 * Project relative paths of the visible resources, when they have been computed up front
+	 */
+	private Set<IPath> visiblePaths;
+
 	private List<QueryResult> queryResults;
 	private IResource filterResource;
 	protected Pattern regexp;
@@ -67,9 +73,31 @@ public class PathFilter extends AbstractResourceBasedViewerFilter
 	 */
 	protected boolean isElementVisible(Viewer viewer, Object element)
 	{
+		if (visiblePaths != null)
+		{
+			IResource resource = getResourceFromObject(element);
+			if (resource != null)
+			{
+				return resource.getType() == IResource.PROJECT
+						|| visiblePaths.contains(resource.getProjectRelativePath());
+			}
+		}
 		return isParentMatch(viewer, element) || isLeafMatch(viewer, element);
 	}
 
+	/**
+	 * Supplies the project relative paths of all resources that should be visible, e.g. as computed from a filename
+	 * index. Resources are then selected by looking them up instead of walking the children of every element. Pass
+	 * <code>null</code> to go back to walking the tree.
+	 * 
+	 * @param paths
+	 */
+	public void setVisiblePaths(Set<IPath> paths)
+	{
+		clearCaches();
+		this.visiblePaths = paths;
+	}
+
 	/**
 	 * Returns true if any of the elements makes it through the filter. This method uses caching if enabled; the
 	 * computation is done in computeAnyVisible.
@@ -15,6 +15,7 @@ import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Platform;
 import org.eclipse.core.runtime.Status;
 
 import com.aptana.core.io.vfs.BaseConnectionFileManager;
@@ -22,6 +23,8 @@ import com.aptana.core.io.vfs.ExtendedFileInfo;
 import com.aptana.core.util.URLEncoder;
 import com.aptana.filesystem.ftp.FTPPlugin;
 import com.aptana.filesystem.ftp.Policy;
+import com.aptana.filesystem.ftp.preferences.FTPPreferenceInitializer;
+import com.aptana.filesystem.ftp.preferences.IFTPPreferenceConstants;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.CoreIOPlugin;
 
@@ -103,6 +106,15 @@ public abstract class BaseFTPConnectionFileManager extends BaseConnectionFileMan
 		return getRootCanonicalURI().resolve(URLEncoder.encode(basePath.append(path).toPortableString(), null, null));
 	}
 
+	/**
+	 * Returns the number of additional connections used to list a remote tree.
+	 */
+	protected static int getTreeFetchConnections() {
+		return Platform.getPreferencesService().getInt(FTPPlugin.PLUGIN_ID,
+				IFTPPreferenceConstants.TREE_FETCH_CONNECTIONS,
+				FTPPreferenceInitializer.DEFAULT_TREE_FETCH_CONNECTIONS, null);
+	}
+
 	protected abstract void checkConnected() throws Exception; // $codepro.audit.disable declaredExceptions
 
 	protected abstract URI getRootCanonicalURI();
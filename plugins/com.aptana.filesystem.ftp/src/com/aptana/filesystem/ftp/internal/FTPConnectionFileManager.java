@@ -28,10 +28,12 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.Assert;
@@ -45,8 +47,11 @@ import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.PerformanceStats;
 import org.eclipse.core.runtime.Status;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.core.io.vfs.FileHash;
 import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.ParallelFileTreeFetcher;
 import com.aptana.core.util.ExpiringMap;
 import com.aptana.filesystem.ftp.FTPPlugin;
 import com.aptana.filesystem.ftp.IFTPConnectionFileManager;
@@ -88,6 +93,16 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 			new SimpleDateFormat("'UTIME {0}' yyyyMMddHHmmss yyyyMMddHHmmss yyyyMMddHHmmss 'UTC'"), //$NON-NLS-1$
 	};
 
+	/**
+	 * Remote hashing commands in order of preference with the algorithm they produce; HASH names the algorithm in
+	 * its reply
+	 */
+	private final static String[][] HASH_COMMANDS = new String[][] { { "HASH", null }, //$NON-NLS-1$
+			{ "XSHA256", FileHash.SHA256 }, { "XSHA1", FileHash.SHA1 }, //$NON-NLS-1$ //$NON-NLS-2$
+			{ "XMD5", FileHash.MD5 }, { "MD5", FileHash.MD5 } }; //$NON-NLS-1$ //$NON-NLS-2$
+
+	private final static Pattern HEX_DIGEST_PATTERN = Pattern.compile("\\b[0-9a-fA-F]{32,128}\\b"); //$NON-NLS-1$
+
 	protected FTPClient ftpClient;
 	private List<String> serverFeatures;
 	protected String transferType;
@@ -96,6 +111,8 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 	private FTPFileFactory fileFactory;
 	private Boolean statSupported = null;
 	private Boolean listASupported = null;
+	private Boolean listRSupported = null;
+	private int hashCommand = -1;
 	private int utimeFormat = -1;
 	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
 	private long serverToLocalTimeZoneShift = Integer.MIN_VALUE;
@@ -966,6 +983,228 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchFileTree(org.eclipse.core.runtime.IPath, int,
+	 * com.aptana.core.IFilter, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected Map<IPath, ExtendedFileInfo[]> fetchFileTree(IPath path, final int options, IFilter<IPath> filter,
+			IProgressMonitor monitor) throws CoreException, PermissionDeniedException
+	{
+		try
+		{
+			setupFileFactory();
+		}
+		catch (Exception e)
+		{
+			throw new CoreException(new Status(Status.ERROR, FTPPlugin.PLUGIN_ID,
+					Messages.FTPConnectionFileManager_fetching_directory_failed, e));
+		}
+		Map<IPath, ExtendedFileInfo[]> known = null;
+		// exact modification times take a MDTM per file, these are better spread over the pooled connections
+		if ((options & IExtendedFileStore.DETAILED) == 0 || !serverSupportsFeature("MDTM")) //$NON-NLS-1$
+		{
+			known = fetchFileTreeRecursive(path, options, monitor);
+		}
+		return new ParallelFileTreeFetcher<FTPClient>(getTreeFetchConnections())
+		{
+			@Override
+			protected FTPClient openConnection(IProgressMonitor monitor) throws Exception
+			{
+				FTPClient treeFtpClient = (FTPClient) pool.checkOut();
+				try
+				{
+					initAndAuthFTPClient(treeFtpClient, monitor);
+				}
+				catch (Exception e)
+				{
+					pool.checkIn(treeFtpClient);
+					throw e;
+				}
+				setMessageLogger(treeFtpClient, messageLogWriter);
+				return treeFtpClient;
+			}
+
+			@Override
+			protected void closeConnection(FTPClient connection)
+			{
+				setMessageLogger(connection, null);
+				pool.checkIn(connection);
+			}
+
+			@Override
+			protected ExtendedFileInfo[] listDirectory(FTPClient connection, IPath dirPath, IProgressMonitor monitor)
+					throws Exception
+			{
+				try
+				{
+					connection.chdir(dirPath.toPortableString());
+				}
+				catch (FTPException e)
+				{
+					throwFileNotFound(e, dirPath);
+				}
+				Policy.checkCanceled(monitor);
+				String[] lines = connection.dir(Boolean.FALSE.equals(listASupported) ? "." : "-a", true); //$NON-NLS-1$ //$NON-NLS-2$
+				return createFileInfos(connection, createFileFactory().parse(lines), options, monitor);
+			}
+
+			@Override
+			protected ExtendedFileInfo[] listDirectory(IPath dirPath, IProgressMonitor monitor) throws CoreException,
+					FileNotFoundException, PermissionDeniedException
+			{
+				return fetchFilesInternal(dirPath, options, monitor);
+			}
+		}.fetch(path, known, filter, monitor);
+	}
+
+	/**
+	 * Lists the tree with a single recursive LIST on the control connection. Directories missing from the output (the
+	 * server truncated it or ignored the option) are left to the per-directory listing.
+	 */
+	private Map<IPath, ExtendedFileInfo[]> fetchFileTreeRecursive(IPath dirPath, int options, IProgressMonitor monitor)
+	{
+		if (Boolean.FALSE.equals(listRSupported) || fileFactory.getSystem().toUpperCase().startsWith(WINDOWS_STR))
+		{
+			return null;
+		}
+		try
+		{
+			changeCurrentDir(dirPath);
+			Policy.checkCanceled(monitor);
+			String[] lines;
+			try
+			{
+				lines = ftpClient.dir(Boolean.FALSE.equals(listASupported) ? "-R" : "-aR", true); //$NON-NLS-1$ //$NON-NLS-2$
+			}
+			catch (FTPException e)
+			{
+				if (listRSupported == null && e.getReplyCode() >= 500)
+				{
+					listRSupported = Boolean.FALSE;
+				}
+				return null;
+			}
+			Map<IPath, ExtendedFileInfo[]> listings = new HashMap<IPath, ExtendedFileInfo[]>();
+			IPath sectionPath = dirPath;
+			List<String> section = new ArrayList<String>();
+			boolean sectionStart = true;
+			for (String line : lines)
+			{
+				if (line.trim().length() == 0)
+				{
+					addRecursiveListingSection(sectionPath, section, options, listings);
+					sectionStart = true;
+				}
+				else if (sectionStart && line.endsWith(":")) //$NON-NLS-1$
+				{
+					addRecursiveListingSection(sectionPath, section, options, listings);
+					IPath headerPath = Path.fromPortableString(line.substring(0, line.length() - 1));
+					sectionPath = headerPath.isAbsolute() ? headerPath : dirPath.append(headerPath);
+					sectionStart = false;
+				}
+				else
+				{
+					section.add(line.trim());
+					sectionStart = false;
+				}
+			}
+			addRecursiveListingSection(sectionPath, section, options, listings);
+
+			ExtendedFileInfo[] fileInfos = listings.get(dirPath);
+			if (fileInfos == null)
+			{
+				listRSupported = Boolean.FALSE;
+				return null;
+			}
+			if (listRSupported == null)
+			{
+				for (ExtendedFileInfo fileInfo : fileInfos)
+				{
+					if (fileInfo.isDirectory() && !fileInfo.getAttribute(EFS.ATTRIBUTE_SYMLINK))
+					{
+						listRSupported = Boolean.valueOf(listings.containsKey(dirPath.append(fileInfo.getName())));
+						break;
+					}
+				}
+			}
+			return listings;
+		}
+		catch (OperationCanceledException e)
+		{
+			throw e;
+		}
+		catch (FileNotFoundException e)
+		{
+			return null;
+		}
+		catch (Exception e)
+		{
+			FTPPlugin.log(new Status(IStatus.WARNING, FTPPlugin.PLUGIN_ID,
+					Messages.FTPConnectionFileManager_fetching_directory_failed, e));
+			return null;
+		}
+	}
+
+	private void addRecursiveListingSection(IPath dirPath, List<String> section, int options,
+			Map<IPath, ExtendedFileInfo[]> listings) throws ParseException, IOException, FTPException
+	{
+		if (section.isEmpty())
+		{
+			return;
+		}
+		FTPFile[] ftpFiles = fileFactory.parse(section.toArray(new String[section.size()]));
+		section.clear();
+		listings.put(dirPath, createFileInfos(null, ftpFiles, options, null));
+	}
+
+	/**
+	 * Converts the listing of the client's current directory into file infos. MDTM is only issued when a client is
+	 * given.
+	 */
+	@SuppressWarnings("deprecation")
+	private ExtendedFileInfo[] createFileInfos(FTPClient client, FTPFile[] ftpFiles, int options,
+			IProgressMonitor monitor) throws IOException, FTPException
+	{
+		boolean windows = fileFactory.getSystem().toUpperCase().startsWith(WINDOWS_STR);
+		List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
+		for (FTPFile ftpFile : ftpFiles)
+		{
+			String fileName = ftpFile.getName();
+			if (fileName == null || ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			}
+			if (windows && ftpFile.getPermissions() == null)
+			{
+				ftpFile.setPermissions("-rw-r-----"); //$NON-NLS-1$
+			}
+			Date lastModifiedServerInLocalTZ = ftpFile.lastModified();
+			if (serverToLocalTimeZoneShift != 0 && lastModifiedServerInLocalTZ != null)
+			{
+				ftpFile.setLastModified(new Date(lastModifiedServerInLocalTZ.getTime() + serverToLocalTimeZoneShift));
+			}
+			if (client != null && (options & IExtendedFileStore.DETAILED) != 0 && !ftpFile.isDir()
+					&& ftpFile.lastModified().getSeconds() == 0 && serverSupportsFeature("MDTM")) //$NON-NLS-1$
+			{
+				Policy.checkCanceled(monitor);
+				try
+				{
+					Date lastModifiedLocalTZ = client.modtime(fileName);
+					if (lastModifiedLocalTZ != null)
+					{
+						ftpFile.setLastModified(lastModifiedLocalTZ);
+					}
+				}
+				catch (FTPException e)
+				{
+				}
+			}
+			list.add(createFileInfo(ftpFile));
+		}
+		return list.toArray(new ExtendedFileInfo[list.size()]);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.ide.core.ftp.BaseFTPConnectionFileManager#listDirectory(org.eclipse.core.runtime.IPath,
@@ -1431,6 +1670,73 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchFileHash(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected FileHash fetchFileHash(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		if (hashCommand == -1)
+		{
+			hashCommand = HASH_COMMANDS.length;
+			for (int i = 0; i < HASH_COMMANDS.length; ++i)
+			{
+				if (serverSupportsFeature(HASH_COMMANDS[i][0]))
+				{
+					hashCommand = i;
+					break;
+				}
+			}
+		}
+		if (hashCommand >= HASH_COMMANDS.length)
+		{
+			return null;
+		}
+		try
+		{
+			Policy.checkCanceled(monitor);
+			String[] command = HASH_COMMANDS[hashCommand];
+			FTPReply reply = ftpClient.sendCommand(command[0] + ' ' + path.toPortableString());
+			if (!reply.getReplyCode().startsWith("2")) { //$NON-NLS-1$
+				if (reply.getReplyCode().startsWith("50")) { //$NON-NLS-1$
+					// not implemented after all, try the next one next time
+					++hashCommand;
+				}
+				return null;
+			}
+			String text = reply.getReplyText().trim();
+			String algorithm = command[1];
+			if (algorithm == null)
+			{
+				// 213 SHA-256 0-49 <hash> <filename>
+				int index = text.indexOf(' ');
+				if (index <= 0)
+				{
+					return null;
+				}
+				algorithm = text.substring(0, index);
+				text = text.substring(index + 1);
+			}
+			Matcher matcher = HEX_DIGEST_PATTERN.matcher(text);
+			if (matcher.find())
+			{
+				return new FileHash(algorithm, matcher.group());
+			}
+		}
+		catch (OperationCanceledException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			FTPPlugin.log(new Status(IStatus.WARNING, FTPPlugin.PLUGIN_ID, MessageFormat.format(
+					Messages.FTPConnectionFileManager_fetching_hash_failed, path.toPortableString()), e));
+		}
+		return null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.ide.core.ftp.BaseFTPConnectionFileManager#changeFilePermissions(org.eclipse.core.runtime.IPath,
@@ -1567,6 +1873,16 @@ public class FTPConnectionFileManager extends BaseFTPConnectionFileManager imple
 		return fileFactory.parse(ftpClient.dir(".", true)); //$NON-NLS-1$
 	}
 
+	/**
+	 * File factories keep parsing state, so every worker connection gets its own one.
+	 */
+	private FTPFileFactory createFileFactory() throws FTPException
+	{
+		FTPFileFactory factory = new FTPFileFactory(fileFactory.getSystem());
+		factory.setLocales(FTPClient.DEFAULT_LISTING_LOCALES);
+		return factory;
+	}
+
 	private void setupFileFactory() throws IOException, FTPException
 	{
 		if (fileFactory == null)
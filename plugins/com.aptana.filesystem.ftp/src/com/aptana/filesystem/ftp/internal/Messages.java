@@ -51,6 +51,7 @@ import org.eclipse.osgi.util.NLS;
 	public static String FTPConnectionFileManager_renaming_failed;
 	public static String FTPConnectionFileManager_server_tz_check;
 	public static String FTPConnectionFileManager_set_modification_time_failed;
+	public static String FTPConnectionFileManager_fetching_hash_failed;
 	public static String FTPConnectionFileManager_specify_password;
 
 	static {
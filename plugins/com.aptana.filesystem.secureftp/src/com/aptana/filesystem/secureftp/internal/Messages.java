@@ -45,6 +45,7 @@ import org.eclipse.osgi.util.NLS;
 	public static String SFTPConnectionFileManager_FailedDeleting;
 	public static String SFTPConnectionFileManager_FailedDeletingFile;
 	public static String SFTPConnectionFileManager_FailedDisconnectConnection;
+	public static String SFTPConnectionFileManager_FetchingHashFailed;
 	public static String SFTPConnectionFileManager_FailedEstablishConnection;
 	public static String SFTPConnectionFileManager_FailedFetchDirectory;
 	public static String SFTPConnectionFileManager_FailedFetchFileInfo;
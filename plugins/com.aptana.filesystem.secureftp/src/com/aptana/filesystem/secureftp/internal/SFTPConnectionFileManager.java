@@ -31,6 +31,8 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.runtime.Assert;
@@ -42,9 +44,14 @@ import org.eclipse.core.runtime.MultiStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.jsch.core.IJSchService;
+import org.eclipse.jsch.internal.core.JSchCorePlugin;
 
+import com.aptana.core.IFilter;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
+import com.aptana.core.io.vfs.FileHash;
 import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.ParallelFileTreeFetcher;
 import com.aptana.core.util.ExpiringMap;
 import com.aptana.filesystem.ftp.Policy;
 import com.aptana.filesystem.ftp.internal.BaseFTPConnectionFileManager;
@@ -67,6 +74,10 @@ import com.enterprisedt.net.j2ssh.configuration.SshConnectionProperties;
 import com.enterprisedt.net.j2ssh.sftp.SshFxpStatus;
 import com.enterprisedt.net.j2ssh.transport.publickey.InvalidSshKeyException;
 import com.enterprisedt.net.j2ssh.transport.publickey.SshPrivateKeyFile;
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
 
 /**
  * @author Max Stepanov
@@ -74,13 +85,25 @@ import com.enterprisedt.net.j2ssh.transport.publickey.SshPrivateKeyFile;
 public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager implements ISFTPConnectionFileManager
 {
 
+	/**
+	 * Remote hashing commands in order of preference with the algorithm they produce
+	 */
+	private static final String[][] HASH_COMMANDS = new String[][] { { "sha1sum", FileHash.SHA1 }, //$NON-NLS-1$
+			{ "md5sum", FileHash.MD5 }, { "shasum", FileHash.SHA1 }, { "md5 -q", FileHash.MD5 } }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	private static final int EXIT_COMMAND_NOT_FOUND = 127;
+	private static final Pattern HEX_DIGEST_PATTERN = Pattern.compile("^[0-9a-fA-F]{32,128}\\b"); //$NON-NLS-1$
+
 	private SSHFTPClient ftpClient;
 	private IPath keyFilePath;
 	private String transferType;
+	private String encoding;
+	private String compression;
 	private IPath cwd;
 	private Map<IPath, FTPFile> ftpFileCache = new ExpiringMap<IPath, FTPFile>(CACHE_TTL);
 
 	private Thread keepaliveThread;
+	private Session execSession;
+	private int hashCommand = -1;
 
 	/*
 	 * (non-Javadoc)
@@ -110,6 +133,8 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 				this.authId = Policy.generateAuthId("SFTP", login, host, port); //$NON-NLS-1$
 			}
 			this.transferType = transferType;
+			this.encoding = encoding;
+			this.compression = compression;
 			initFTPClient(ftpClient, encoding, compression);
 		}
 		catch (Exception e)
@@ -443,6 +468,7 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		finally
 		{
 			cwd = null;
+			closeExecSession();
 			cleanup();
 			monitor.done();
 		}
@@ -737,6 +763,237 @@ public class SFTPConnectionFileManager extends BaseFTPConnectionFileManager impl
 		}
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchFileTree(org.eclipse.core.runtime.IPath, int,
+	 * com.aptana.core.IFilter, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected Map<IPath, ExtendedFileInfo[]> fetchFileTree(IPath path, final int options, IFilter<IPath> filter,
+			IProgressMonitor monitor) throws CoreException, PermissionDeniedException
+	{
+		// SFTP has no recursive listing, so fan the directories out over additional sessions
+		return new ParallelFileTreeFetcher<SSHFTPClient>(getTreeFetchConnections())
+		{
+			@Override
+			protected SSHFTPClient openConnection(IProgressMonitor monitor) throws Exception
+			{
+				SSHFTPClient treeFtpClient = new SSHFTPClient();
+				initFTPClient(treeFtpClient, encoding, compression);
+				treeFtpClient.setRemoteHost(host);
+				treeFtpClient.setRemotePort(port);
+				if (keyFilePath != null)
+				{
+					treeFtpClient.setAuthentication(keyFilePath.toOSString(), login, String.copyValueOf(password));
+				}
+				else
+				{
+					treeFtpClient.setAuthentication(login, String.copyValueOf(password));
+				}
+				Policy.checkCanceled(monitor);
+				treeFtpClient.connect();
+				return treeFtpClient;
+			}
+
+			@Override
+			protected void closeConnection(SSHFTPClient connection)
+			{
+				try
+				{
+					connection.quit();
+				}
+				catch (Exception e)
+				{
+					try
+					{
+						connection.quitImmediately();
+					}
+					catch (Exception ignore)
+					{
+						ignore.getCause();
+					}
+				}
+			}
+
+			@Override
+			protected ExtendedFileInfo[] listDirectory(SSHFTPClient connection, IPath dirPath,
+					IProgressMonitor monitor) throws Exception
+			{
+				Policy.checkCanceled(monitor);
+				try
+				{
+					return createFileInfos(connection.dirDetails(dirPath.toPortableString()));
+				}
+				catch (FTPException e)
+				{
+					throwWrappedException(e, dirPath);
+					return null; // never runs
+				}
+			}
+
+			@Override
+			protected ExtendedFileInfo[] listDirectory(IPath dirPath, IProgressMonitor monitor) throws CoreException,
+					FileNotFoundException, PermissionDeniedException
+			{
+				return fetchFilesInternal(dirPath, options, monitor);
+			}
+		}.fetch(path, null, filter, monitor);
+	}
+
+	private static ExtendedFileInfo[] createFileInfos(FTPFile[] ftpFiles)
+	{
+		List<ExtendedFileInfo> list = new ArrayList<ExtendedFileInfo>();
+		for (FTPFile ftpFile : ftpFiles)
+		{
+			String fileName = ftpFile.getName();
+			if (fileName == null || ".".equals(fileName) || "..".equals(fileName)) { //$NON-NLS-1$ //$NON-NLS-2$
+				continue;
+			}
+			list.add(createFileInfo(ftpFile));
+		}
+		return list.toArray(new ExtendedFileInfo[list.size()]);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.BaseConnectionFileManager#fetchFileHash(org.eclipse.core.runtime.IPath,
+	 * org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected FileHash fetchFileHash(IPath path, IProgressMonitor monitor) throws CoreException
+	{
+		if (hashCommand >= HASH_COMMANDS.length)
+		{
+			return null;
+		}
+		try
+		{
+			if (execSession == null || !execSession.isConnected())
+			{
+				execSession = openExecSession(monitor);
+			}
+			int first = Math.max(hashCommand, 0);
+			int last = (hashCommand == -1) ? HASH_COMMANDS.length - 1 : hashCommand;
+			for (int i = first; i <= last; ++i)
+			{
+				StringBuilder output = new StringBuilder();
+				int status = exec(MessageFormat.format("{0} ''{1}''", HASH_COMMANDS[i][0], //$NON-NLS-1$
+						path.toPortableString().replace("'", "'\\''")), output, monitor); //$NON-NLS-1$ //$NON-NLS-2$
+				if (status == EXIT_COMMAND_NOT_FOUND)
+				{
+					continue;
+				}
+				if (status != 0)
+				{
+					// missing or unreadable file, decide on the command next time
+					return null;
+				}
+				Matcher matcher = HEX_DIGEST_PATTERN.matcher(output.toString().trim());
+				if (matcher.find())
+				{
+					hashCommand = i;
+					return new FileHash(HASH_COMMANDS[i][1], matcher.group());
+				}
+			}
+			if (hashCommand == -1)
+			{
+				hashCommand = HASH_COMMANDS.length;
+			}
+		}
+		catch (OperationCanceledException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			// e.g. the account is restricted to sftp
+			hashCommand = HASH_COMMANDS.length;
+			closeExecSession();
+			SecureFTPPlugin.log(new Status(IStatus.WARNING, SecureFTPPlugin.PLUGIN_ID, MessageFormat.format(
+					Messages.SFTPConnectionFileManager_FetchingHashFailed, path.toPortableString()), e));
+		}
+		return null;
+	}
+
+	/**
+	 * Opens an SSH session for running remote commands, authenticated the same way as the sftp connection.
+	 */
+	@SuppressWarnings("restriction")
+	private Session openExecSession(IProgressMonitor monitor) throws JSchException
+	{
+		IJSchService service = JSchCorePlugin.getPlugin().getJSchService();
+		Session session = service.createSession(host, port, login);
+		if (keyFilePath == null)
+		{
+			session.setPassword(String.copyValueOf(password));
+			service.connect(session, TIMEOUT, monitor);
+			return session;
+		}
+		// the JSch instance is shared by the workbench, so the identity is only there while the session
+		// authenticates, unless it was there already
+		JSch jsch = service.getJSch();
+		String identity = keyFilePath.toOSString();
+		synchronized (jsch)
+		{
+			boolean added = !jsch.getIdentityNames().contains(identity);
+			if (added)
+			{
+				jsch.addIdentity(identity, String.copyValueOf(password));
+			}
+			try
+			{
+				service.connect(session, TIMEOUT, monitor);
+			}
+			finally
+			{
+				if (added)
+				{
+					jsch.removeIdentity(identity);
+				}
+			}
+		}
+		return session;
+	}
+
+	private void closeExecSession()
+	{
+		if (execSession != null)
+		{
+			execSession.disconnect();
+			execSession = null;
+		}
+	}
+
+	private int exec(String command, StringBuilder output, IProgressMonitor monitor) throws JSchException,
+			IOException, InterruptedException
+	{
+		ChannelExec channel = (ChannelExec) execSession.openChannel("exec"); //$NON-NLS-1$
+		try
+		{
+			channel.setCommand(command);
+			channel.setInputStream(null);
+			InputStream in = channel.getInputStream();
+			channel.connect(TIMEOUT);
+			byte[] buffer = new byte[1024];
+			int length;
+			while ((length = in.read(buffer)) != -1)
+			{
+				Policy.checkCanceled(monitor);
+				output.append(new String(buffer, 0, length, "ASCII")); //$NON-NLS-1$
+			}
+			while (!channel.isClosed())
+			{
+				Policy.checkCanceled(monitor);
+				Thread.sleep(10);
+			}
+			return channel.getExitStatus();
+		}
+		finally
+		{
+			channel.disconnect();
+		}
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * @see com.aptana.filesystem.ftp.BaseFTPConnectionFileManager#createDirectory(org.eclipse.core.runtime.IPath,
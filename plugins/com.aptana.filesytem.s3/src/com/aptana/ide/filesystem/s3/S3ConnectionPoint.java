@@ -38,6 +38,7 @@ public class S3ConnectionPoint extends ConnectionPoint implements IBaseRemoteCon
 	public static final String TYPE = "s3"; //$NON-NLS-1$
 
 	private static final String ELEMENT_HOST = "host"; //$NON-NLS-1$
+	private static final String ELEMENT_PORT = "port"; //$NON-NLS-1$
 	private static final String ELEMENT_PATH = "path"; //$NON-NLS-1$
 	private static final String ELEMENT_ACCESS_KEY = "accessKey"; //$NON-NLS-1$
 
@@ -45,6 +46,7 @@ public class S3ConnectionPoint extends ConnectionPoint implements IBaseRemoteCon
 	private String accessKey = StringUtil.EMPTY;
 	private char[] password;
 	private String host = DEFAULT_HOST;
+	private int port = -1;
 
 	/**
 	 * Default constructor
@@ -68,6 +70,20 @@ public class S3ConnectionPoint extends ConnectionPoint implements IBaseRemoteCon
 		else
 			host = DEFAULT_HOST;
 
+		child = memento.getChild(ELEMENT_PORT);
+		if (child != null)
+		{
+			try
+			{
+				port = Integer.parseInt(child.getTextData());
+			}
+			catch (NumberFormatException e)
+			{
+			}
+		}
+		else
+			port = -1;
+
 		child = memento.getChild(ELEMENT_PATH);
 		if (child != null)
 		{
@@ -94,6 +110,10 @@ public class S3ConnectionPoint extends ConnectionPoint implements IBaseRemoteCon
 	{
 		super.saveState(memento);
 		memento.createChild(ELEMENT_HOST).putTextData(getHost());
+		if (port != -1)
+		{
+			memento.createChild(ELEMENT_PORT).putTextData(Integer.toString(port));
+		}
 		if (!Path.ROOT.equals(path))
 		{
 			memento.createChild(ELEMENT_PATH).putTextData(path.toPortableString());
@@ -204,7 +224,7 @@ public class S3ConnectionPoint extends ConnectionPoint implements IBaseRemoteCon
 	 */
 	public int getPort()
 	{
-		return -1;
+		return port;
 	}
 
 	/*
@@ -223,7 +243,9 @@ public class S3ConnectionPoint extends ConnectionPoint implements IBaseRemoteCon
 	 */
 	public void setPort(int port)
 	{
-		// do nothing, no port
+		// -1 means the default port. Any other port is only used for S3-compatible endpoints other than Amazon's
+		this.port = port;
+		notifyChanged();
 	}
 
 	/*
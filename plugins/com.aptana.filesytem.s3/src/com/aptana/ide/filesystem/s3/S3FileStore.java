@@ -21,7 +21,14 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -38,23 +45,34 @@ import org.eclipse.core.runtime.SubMonitor;
 import com.amazon.s3.AWSAuthConnection;
 import com.amazon.s3.Bucket;
 import com.amazon.s3.CallingFormat;
+import com.amazon.s3.CommonPrefixEntry;
 import com.amazon.s3.ListAllMyBucketsResponse;
 import com.amazon.s3.ListBucketResponse;
 import com.amazon.s3.ListEntry;
+import com.amazon.s3.PartResponse;
 import com.amazon.s3.Response;
+import com.amazon.s3.Utils;
+import com.aptana.core.io.vfs.FileHash;
+import com.aptana.core.io.vfs.IFileHashProvider;
 import com.aptana.core.util.FileUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.ide.core.io.CoreIOPlugin;
 
-class S3FileStore extends FileStore
+class S3FileStore extends FileStore implements IFileHashProvider
 {
 
 	private static final String DATE_FORMAT = "EEE, d MMM yyyy HH:mm:ss z"; //$NON-NLS-1$
 	private static final String LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
 	private static final String CONTENT_LENGTH = "Content-Length"; //$NON-NLS-1$
+	private static final String ETAG = "ETag"; //$NON-NLS-1$
 	private static final String SEPARATOR = "/"; //$NON-NLS-1$
 	private static final String FOLDER_SUFFIX = "_$folder$"; //$NON-NLS-1$
 
+	/**
+	 * The largest object S3 copies in a single request
+	 */
+	private static final long MAX_COPY_SIZE = 5L * 1024 * 1024 * 1024;
+
 	private URI uri;
 	private Path path;
 	private String accessKey;
@@ -67,12 +85,6 @@ class S3FileStore extends FileStore
 
 	@Override
 	public String[] childNames(int options, IProgressMonitor monitor) throws CoreException // NO_UCD
-	{
-		return childNames(options, false, monitor);
-	}
-
-	private String[] childNames(int options, boolean includeHackFolderFiles, IProgressMonitor monitor)
-			throws CoreException
 	{
 		try
 		{
@@ -80,51 +92,33 @@ class S3FileStore extends FileStore
 			{
 				return getBuckets();
 			}
-			// Inside a bucket
-			String prefix = getPrefix();
-			List<ListEntry> entries = listEntries();
-			List<String> keys = new ArrayList<String>();
-			if (entries == null)
-				return keys.toArray(new String[0]);
+			// Inside a bucket. List one level below our prefix, S3 rolls up everything deeper into common prefixes
+			String prefix = getChildPrefix();
+			List<CommonPrefixEntry> dirs = new ArrayList<CommonPrefixEntry>();
+			List<ListEntry> entries = list(prefix, SEPARATOR, dirs);
+			Set<String> keys = new LinkedHashSet<String>();
+			for (CommonPrefixEntry dir : dirs)
+			{
+				String relative = dir.prefix.substring(prefix.length());
+				if (relative.endsWith(SEPARATOR))
+				{
+					relative = relative.substring(0, relative.length() - 1);
+				}
+				if (relative.length() > 0)
+				{
+					keys.add(relative);
+				}
+			}
 			for (ListEntry entry : entries)
 			{
-				if (prefix.length() >= entry.key.length())
-					continue;
-				try
+				String relative = entry.key.substring(prefix.length());
+				if (relative.endsWith(FOLDER_SUFFIX))
 				{
-					String relative = entry.key.substring(prefix.length());
-					if (prefix.length() == 0 || relative.startsWith(SEPARATOR))
-					{ // actual children
-						if (prefix.length() > 0)
-							relative = relative.substring(1);
-						// only add direct children (so take up to next path separator)
-						int index = relative.indexOf(SEPARATOR);
-						if (index != -1)
-						{
-							relative = relative.substring(0, index);
-						}
-						else if (relative.endsWith(FOLDER_SUFFIX))
-							relative = relative.substring(0, relative.length() - FOLDER_SUFFIX.length());
-					}
-					else
-					{
-						// file at same level (peer, not child), check just for the _$folder$ hack
-						if (relative.equals(FOLDER_SUFFIX))
-						{
-							if (!includeHackFolderFiles)
-								continue;
-						}
-						else
-							continue;
-					}
-					if (relative.length() == 0)
-						continue;
-					if (!keys.contains(relative))
-						keys.add(relative);
+					relative = relative.substring(0, relative.length() - FOLDER_SUFFIX.length());
 				}
-				catch (Exception e)
+				if (relative.length() > 0)
 				{
-					S3FileSystemPlugin.log(e);
+					keys.add(relative);
 				}
 			}
 			return keys.toArray(new String[keys.size()]);
@@ -170,6 +164,24 @@ class S3FileStore extends FileStore
 		return prefix;
 	}
 
+	/**
+	 * The prefix shared by the keys below this store: the empty string for a bucket, the key and a separator otherwise
+	 */
+	private String getChildPrefix()
+	{
+		String prefix = getPrefix();
+		if (prefix.length() == 0 || prefix.endsWith(SEPARATOR))
+		{
+			return prefix;
+		}
+		return prefix + SEPARATOR;
+	}
+
+	private boolean exists(String key) throws IOException
+	{
+		return getAWSConnection().head(getBucket(), key, null).getResponseCode() < 400;
+	}
+
 	@Override
 	public IFileInfo fetchInfo(int options, IProgressMonitor monitor) throws CoreException
 	{
@@ -225,10 +237,10 @@ class S3FileStore extends FileStore
 				else
 				{
 					// Only "exists" if there's any children! There are no "directories" in S3. Make sure not to filter
-					// out
-					// the _$folder$ hacks for this
-					String[] children = childNames(options, true, monitor);
-					if (children != null && children.length > 0)
+					// out the _$folder$ hacks for this. One key is enough to tell
+					ListBucketResponse resp = getAWSConnection().listBucket(getBucket(), getChildPrefix(), null,
+							Integer.valueOf(1), null);
+					if ((resp.entries != null && !resp.entries.isEmpty()) || exists(getKey() + FOLDER_SUFFIX))
 					{
 						info.setDirectory(true);
 						info.setExists(true);
@@ -250,6 +262,42 @@ class S3FileStore extends FileStore
 		return info;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.core.io.vfs.IFileHashProvider#fetchHash(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public FileHash fetchHash(IProgressMonitor monitor) throws CoreException
+	{
+		if (path.isRoot() || isBucket())
+		{
+			return null;
+		}
+		try
+		{
+			HttpURLConnection connection = getAWSConnection().head(getBucket(), getKey(), null);
+			if (connection.getResponseCode() >= 400)
+			{
+				return null;
+			}
+			String etag = connection.getHeaderField(ETAG);
+			if (etag == null)
+			{
+				return null;
+			}
+			etag = etag.replace("\"", ""); //$NON-NLS-1$ //$NON-NLS-2$
+			// ETag is the MD5 of the content except for multipart uploads ("<md5>-<parts>")
+			if (etag.length() != 32 || !etag.matches("[0-9a-fA-F]+")) //$NON-NLS-1$
+			{
+				return null;
+			}
+			return new FileHash(FileHash.MD5, etag);
+		}
+		catch (IOException e)
+		{
+			throw S3FileSystemPlugin.coreException(e);
+		}
+	}
+
 	private boolean isBucket()
 	{
 		return getKey() == null || getKey().length() == 0;
@@ -340,6 +388,14 @@ class S3FileStore extends FileStore
 		{
 			secure = false; // Work around weird bug? Do we need subdomain calling format?
 		}
+		int port = uri.getPort();
+		if (port != -1)
+		{
+			// An explicit port points at an S3-compatible server rather than Amazon, typically a local one. Only the
+			// standard SSL port gets SSL
+			return new AWSAuthConnection(getAccessKey(), getSecretAccessKey(), port == Utils.SECURE_PORT,
+					uri.getHost(), port, CallingFormat.getPathCallingFormat());
+		}
 		return new AWSAuthConnection(getAccessKey(), getSecretAccessKey(), secure, uri.getHost(),
 				CallingFormat.getPathCallingFormat());
 	}
@@ -427,32 +483,43 @@ class S3FileStore extends FileStore
 	{
 		try
 		{
-			// TODO There's got to be a faster way to delete the subdirectory structure using listEntries and
-			// filtering
-			// down to just children (not peers starting with same prefix)
-			// Delete depth first
-			IFileStore[] children = childStores(options, monitor);
-			for (IFileStore child : children)
+			// Delete everything below us first. One listing of all the keys under our prefix does, there's no need to
+			// walk the "directories"
+			AWSAuthConnection connection = getAWSConnection();
+			if (!isRoot())
 			{
-				child.delete(options, monitor);
+				for (ListEntry entry : listEntries())
+				{
+					if (monitor != null && monitor.isCanceled())
+					{
+						throw new OperationCanceledException();
+					}
+					Response resp = connection.delete(getBucket(), entry.key, null);
+					int responseCode = resp.connection.getResponseCode(); // force connection to finish
+					if (responseCode >= 400)
+					{
+						throw S3FileSystemPlugin.coreException(EFS.ERROR_DELETE,
+								new Exception(errorMessage(responseCode, resp.connection)));
+					}
+				}
 			}
 
 			int responseCode = 0;
 			if (isBucket())
 			{
 				// Deleting a bucket!
-				Response resp = getAWSConnection().deleteBucket(getBucket(), null);
+				Response resp = connection.deleteBucket(getBucket(), null);
 				responseCode = resp.connection.getResponseCode(); // force connection to finish
 			}
 			else
 			{
 
 				String key = getKey();
-				Response resp = getAWSConnection().delete(getBucket(), key, null);
+				Response resp = connection.delete(getBucket(), key, null);
 				responseCode = resp.connection.getResponseCode(); // force connection to finish
 
 				// Handle if we're faking a folder. try to delete the fake folder suffix file.
-				resp = getAWSConnection().delete(getBucket(), key + FOLDER_SUFFIX, null);
+				resp = connection.delete(getBucket(), key + FOLDER_SUFFIX, null);
 				resp.connection.getResponseCode(); // force connection to finish
 			}
 			if (responseCode < 400)
@@ -474,32 +541,20 @@ class S3FileStore extends FileStore
 	@Override
 	public OutputStream openOutputStream(int options, IProgressMonitor monitor) throws CoreException
 	{
-		try
+		// If we know this is a bucket, just fail right away because you can't write to the bucket itself!
+		if (isBucket())
 		{
-			// If we know this is a bucket, just fail right away because you can't write to the bucket itself!
-			if (isBucket())
-			{
-				throw S3FileSystemPlugin.coreException(EFS.ERROR_READ_ONLY, new Exception("Can't write to a bucket!")); //$NON-NLS-1$
-			}
-			// if "parent" doesn't exist, need to fail
-			IFileStore parent = getParent();
-			IFileInfo info = parent.fetchInfo();
-			if (!info.exists())
-			{
-				throw S3FileSystemPlugin.coreException(EFS.ERROR_WRITE,
-						new FileNotFoundException(path.toPortableString()));
-			}
-			HttpURLConnection connection = getAWSConnection().putRaw(getBucket(), getKey(), null);
-			return new HttpForcingOutputStream(connection.getOutputStream(), connection);
+			throw S3FileSystemPlugin.coreException(EFS.ERROR_READ_ONLY, new Exception("Can't write to a bucket!")); //$NON-NLS-1$
 		}
-		catch (MalformedURLException e)
+		// if "parent" doesn't exist, need to fail
+		IFileStore parent = getParent();
+		IFileInfo info = parent.fetchInfo();
+		if (!info.exists())
 		{
-			throw S3FileSystemPlugin.coreException(e);
-		}
-		catch (IOException e)
-		{
-			throw S3FileSystemPlugin.coreException(e);
+			throw S3FileSystemPlugin.coreException(EFS.ERROR_WRITE, new FileNotFoundException(path.toPortableString()));
 		}
+		// Nothing is sent until the first part is full or the stream is closed
+		return new S3UploadOutputStream(getAWSConnection(), getBucket(), getKey());
 	}
 
 	@Override
@@ -556,7 +611,7 @@ class S3FileStore extends FileStore
 		return this;
 	}
 
-	private String errorMessage(int responseCode, HttpURLConnection connection) throws CoreException
+	static String errorMessage(int responseCode, HttpURLConnection connection)
 	{
 		String msg = ""; //$NON-NLS-1$
 		try
@@ -681,7 +736,7 @@ class S3FileStore extends FileStore
 
 			try
 			{
-				getAWSConnection().copy(getBucket(), getKey(), s3Dest.getBucket(), s3Dest.getKey(), null);
+				copyObject(getAWSConnection(), getKey(), sourceInfo.getLength(), s3Dest.getBucket(), s3Dest.getKey());
 			}
 			catch (MalformedURLException e)
 			{
@@ -698,16 +753,144 @@ class S3FileStore extends FileStore
 		}
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Copies an object within S3, without the data ever leaving it. Objects too large for a single copy are copied as
+	 * the parts of a multipart upload.
+	 */
+	private void copyObject(AWSAuthConnection connection, String key, long length, final String destBucket,
+			final String destKey) throws IOException
+	{
+		final String sourceBucket = getBucket();
+		final String sourceKey = key;
+		if (length <= MAX_COPY_SIZE)
+		{
+			// a failed copy must not go unnoticed, moves delete the source afterwards. copy() reads the body of a 200
+			// and throws unless it holds a CopyObjectResult, as S3 may report an error only there. So do copyPart() and
+			// completeMultipartUpload() for multipart copies
+			Response resp = connection.copy(sourceBucket, sourceKey, destBucket, destKey, null);
+			int responseCode = resp.connection.getResponseCode();
+			if (responseCode >= 400)
+			{
+				throw new IOException(errorMessage(responseCode, resp.connection));
+			}
+			return;
+		}
+		// Use as few parts as S3 allows, but not less than the part size used for uploads
+		final long partSize = Math.max(S3UploadOutputStream.PART_SIZE, (length + S3MultipartUpload.MAX_PARTS - 1)
+				/ S3MultipartUpload.MAX_PARTS);
+		S3MultipartUpload upload = new S3MultipartUpload(connection, destBucket, destKey);
+		upload.start();
+		try
+		{
+			for (long first = 0; first < length; first += partSize)
+			{
+				final long start = first;
+				final long last = Math.min(length, first + partSize) - 1;
+				upload.submit(new S3MultipartUpload.Part()
+				{
+					public PartResponse transfer(AWSAuthConnection connection, String uploadId, int partNumber)
+							throws IOException
+					{
+						return connection.copyPart(sourceBucket, sourceKey, start, last, destBucket, destKey,
+								uploadId, partNumber, null);
+					}
+				});
+			}
+			upload.complete();
+		}
+		finally
+		{
+			upload.abort();
+		}
+	}
+
+	/**
+	 * Lists all keys below this store, whatever their depth
+	 */
 	List<ListEntry> listEntries() throws MalformedURLException, IOException
 	{
-		String prefix = getPrefix();
-		if (prefix != null && prefix.trim().length() == 0)
+		return list(getChildPrefix(), null, null);
+	}
+
+	/**
+	 * Lists the keys starting with a prefix. S3 returns at most 1000 keys per request, so this follows the markers of
+	 * truncated responses until it has them all.
+	 *
+	 * @param prefix
+	 *            the prefix of the keys, may be empty
+	 * @param delimiter
+	 *            if not null, keys that contain the delimiter after the prefix are rolled up into common prefixes
+	 * @param commonPrefixes
+	 *            receives the common prefixes, may be null if there's no delimiter
+	 */
+	@SuppressWarnings("unchecked")
+	private List<ListEntry> list(String prefix, String delimiter, List<CommonPrefixEntry> commonPrefixes)
+			throws MalformedURLException, IOException
+	{
+		AWSAuthConnection connection = getAWSConnection();
+		if (prefix != null && prefix.length() == 0)
+		{
 			prefix = null;
-		// FIXME If the list is truncated we need to grab the last entry as a marker and continually iterate and combine
-		// responses!
-		ListBucketResponse resp = getAWSConnection().listBucket(getBucket(), prefix, null, null, null);
-		return resp.entries;
+		}
+		List<ListEntry> entries = new ArrayList<ListEntry>();
+		String marker = null;
+		while (true)
+		{
+			ListBucketResponse resp = connection.listBucket(getBucket(), prefix, marker, null, delimiter, null);
+			if (resp.entries == null)
+			{
+				int responseCode = resp.connection.getResponseCode();
+				if (responseCode == 404)
+				{
+					// no such bucket, so no keys either
+					return entries;
+				}
+				throw new IOException(errorMessage(responseCode, resp.connection));
+			}
+			entries.addAll(resp.entries);
+			if (commonPrefixes != null && resp.commonPrefixEntries != null)
+			{
+				commonPrefixes.addAll(resp.commonPrefixEntries);
+			}
+			if (!resp.isTruncated)
+			{
+				return entries;
+			}
+			String nextMarker = getNextMarker(resp);
+			if (nextMarker == null || nextMarker.equals(marker))
+			{
+				// shouldn't happen, but don't loop forever if it does
+				return entries;
+			}
+			marker = nextMarker;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static String getNextMarker(ListBucketResponse resp)
+	{
+		if (resp.nextMarker != null && resp.nextMarker.length() > 0)
+		{
+			return resp.nextMarker;
+		}
+		// NextMarker is only sent along with a delimiter. Otherwise the last key is the marker, and when there are
+		// common prefixes it's whichever of the two sorts last
+		String marker = null;
+		List<ListEntry> entries = resp.entries;
+		if (!entries.isEmpty())
+		{
+			marker = entries.get(entries.size() - 1).key;
+		}
+		List<CommonPrefixEntry> prefixes = resp.commonPrefixEntries;
+		if (prefixes != null && !prefixes.isEmpty())
+		{
+			String last = prefixes.get(prefixes.size() - 1).prefix;
+			if (marker == null || last.compareTo(marker) > 0)
+			{
+				marker = last;
+			}
+		}
+		return marker;
 	}
 
 	@Override
@@ -745,50 +928,73 @@ class S3FileStore extends FileStore
 			throw S3FileSystemPlugin.coreException(EFS.ERROR_WRITE, new FileNotFoundException(destination.toURI()
 					.getPath()));
 		}
+		if (destination instanceof S3FileStore && !isRoot())
+		{
+			copyKeys((S3FileStore) destination, monitor);
+			return;
+		}
 		super.copyDirectory(sourceInfo, destination, options, monitor);
 	}
 
-	private static class HttpForcingOutputStream extends OutputStream
+	/**
+	 * Copies everything below this store to another S3 store with one listing and a server-side copy per key, rather
+	 * than walking the tree and streaming each file through us
+	 */
+	private void copyKeys(S3FileStore destination, IProgressMonitor monitor) throws CoreException
 	{
-
-		private OutputStream out;
-		private HttpURLConnection connection;
-
-		HttpForcingOutputStream(OutputStream out, HttpURLConnection connection)
-		{
-			this.out = out;
-			this.connection = connection;
-		}
-
-		@Override
-		public void write(int b) throws IOException
-		{
-			out.write(b);
-		}
-
-		@Override
-		public void flush() throws IOException
+		destination.mkdir(EFS.NONE, null);
+		ExecutorService executor = Executors.newFixedThreadPool(S3MultipartUpload.THREADS);
+		try
 		{
-			out.flush();
+			final AWSAuthConnection connection = getAWSConnection();
+			final String prefix = getChildPrefix();
+			final String destBucket = destination.getBucket();
+			final String destPrefix = destination.getChildPrefix();
+			List<ListEntry> entries = listEntries();
+			SubMonitor sub = SubMonitor.convert(monitor, entries.size());
+			List<Future<?>> copies = new ArrayList<Future<?>>(entries.size());
+			for (final ListEntry entry : entries)
+			{
+				copies.add(executor.submit(new Callable<Object>()
+				{
+					public Object call() throws Exception
+					{
+						copyObject(connection, entry.key, entry.size, destBucket,
+								destPrefix + entry.key.substring(prefix.length()));
+						return null;
+					}
+				}));
+			}
+			for (Future<?> copy : copies)
+			{
+				if (sub.isCanceled())
+				{
+					throw new OperationCanceledException();
+				}
+				try
+				{
+					copy.get();
+				}
+				catch (ExecutionException e)
+				{
+					Throwable cause = e.getCause();
+					throw S3FileSystemPlugin.coreException(EFS.ERROR_INTERNAL, (cause instanceof Exception)
+							? (Exception) cause : e);
+				}
+				sub.worked(1);
+			}
 		}
-
-		@Override
-		public void close() throws IOException
+		catch (InterruptedException e)
 		{
-			out.close();
-			connection.getResponseCode(); // force the connection to finish!
+			throw new OperationCanceledException();
 		}
-
-		@Override
-		public void write(byte[] b, int off, int len) throws IOException
+		catch (IOException e)
 		{
-			out.write(b, off, len);
+			throw S3FileSystemPlugin.coreException(EFS.ERROR_INTERNAL, e);
 		}
-
-		@Override
-		public void write(byte[] b) throws IOException
+		finally
 		{
-			out.write(b);
+			executor.shutdownNow();
 		}
 	}
 }
@@ -8,9 +8,12 @@
 package com.aptana.ide.filesystem.s3;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.eclipse.core.filesystem.IFileInfo;
@@ -23,7 +26,8 @@ import com.amazon.s3.ListEntry;
 /**
  * A more efficient way of accessing/querying the S3 file tree. Since when we query root for it's children we end up
  * with entire hierarchy below it (not just direct descendants), just store all the sub-tree entries and generate
- * IFileInfo and IFileStore's from it.
+ * IFileInfo and IFileStore's from it. The entries are indexed by parent once, so looking up the children of a
+ * directory doesn't go through the whole listing.
  * 
  * @author cwilliams
  */
@@ -31,132 +35,136 @@ class S3FileTree extends FileTree
 {
 
 	private static final String SEPARATOR = "/"; //$NON-NLS-1$
+	private static final String FOLDER_SUFFIX = "_$folder$"; //$NON-NLS-1$
 
-	private List<ListEntry> entries;
+	/**
+	 * Entries by key, without leading or trailing separators
+	 */
+	private Map<String, ListEntry> entries;
+
+	/**
+	 * Child entries by name, by the key of their parent
+	 */
+	private Map<String, Map<String, ListEntry>> children;
 
 	protected S3FileTree(IFileStore treeRoot, List<ListEntry> entries)
 	{
 		super(treeRoot);
-		this.entries = entries;
+		this.entries = new HashMap<String, ListEntry>();
+		this.children = new HashMap<String, Map<String, ListEntry>>();
+		for (ListEntry entry : entries)
+		{
+			add(entry);
+		}
 	}
 
-	@Override
-	public IFileInfo[] getChildInfos(IFileStore store) // NO_UCD
+	private void add(ListEntry entry)
 	{
-		if (!(store instanceof S3FileStore))
+		String key = normalize(entry.key);
+		boolean isDirectory = entry.key.endsWith(SEPARATOR);
+		if (key.endsWith(FOLDER_SUFFIX))
 		{
-			return null;
+			// the _$folder$ hack marks an empty "directory"
+			key = key.substring(0, key.length() - FOLDER_SUFFIX.length());
+			isDirectory = true;
 		}
-		List<ListEntry> matches = getChildEntries(store);
-		List<IFileInfo> infos = new ArrayList<IFileInfo>();
-		for (ListEntry match : matches)
+		if (key.length() == 0)
 		{
-			FileInfo fileInfo = generateFileInfo(match);
-			// TODO these will always be files. What about "parent directories" that these keys imply?
-			infos.add(fileInfo);
+			return;
 		}
-		return infos.toArray(new IFileInfo[infos.size()]);
+		add(key, isDirectory ? new PsuedoDirEntry(key, entry.lastModified) : entry);
 	}
 
-	private FileInfo generateFileInfo(ListEntry match)
+	private void add(String key, ListEntry entry)
 	{
-		String name = match.key;
-		int lastSlash = name.lastIndexOf(SEPARATOR);
-		boolean isDirectory = (match instanceof PsuedoDirEntry);
-		if (lastSlash != -1)
+		ListEntry existing = entries.get(key);
+		if (existing instanceof PsuedoDirEntry)
 		{
-			if (lastSlash == (name.length() - 1))
+			// Directories win over files, so what's below them stays reachable. Keep the date of an explicit marker
+			if (entry instanceof PsuedoDirEntry && entry.lastModified != null)
 			{
-				name = name.substring(0, lastSlash);
-				isDirectory = true;
-				lastSlash = name.lastIndexOf(SEPARATOR);
-				if (lastSlash != -1)
-				{
-					name = name.substring(lastSlash + 1);
-				}
-			}
-			else
-			{
-				name = name.substring(lastSlash);
-				if (name.startsWith(SEPARATOR))
-				{
-					name = name.substring(1);
-				}
+				existing.lastModified = entry.lastModified;
 			}
+			return;
 		}
+		entries.put(key, entry);
 
-		FileInfo fileInfo = new FileInfo(name);
-		fileInfo.setExists(true);
-		fileInfo.setLastModified(match.lastModified.getTime());
-		fileInfo.setLength(match.size);
-		fileInfo.setDirectory(isDirectory);
-		return fileInfo;
+		int lastSlash = key.lastIndexOf(SEPARATOR);
+		String parentKey = (lastSlash == -1) ? "" : key.substring(0, lastSlash); //$NON-NLS-1$
+		Map<String, ListEntry> siblings = children.get(parentKey);
+		if (siblings == null)
+		{
+			siblings = new LinkedHashMap<String, ListEntry>();
+			children.put(parentKey, siblings);
+		}
+		siblings.put(key.substring(lastSlash + 1), entry);
+
+		// keys imply the "directories" above them
+		if (lastSlash != -1 && !(entries.get(parentKey) instanceof PsuedoDirEntry))
+		{
+			add(parentKey, new PsuedoDirEntry(parentKey, null));
+		}
 	}
 
-	private List<ListEntry> getChildEntries(IFileStore store)
+	private static String normalize(String key)
 	{
-		S3FileStore s3Store = (S3FileStore) store;
-		String key = s3Store.getKey();
 		if (key.startsWith(SEPARATOR))
 		{
 			key = key.substring(1);
 		}
-		// FIXME This isn't including the subdirs!
-		Set<String> pseudoDirs = new HashSet<String>();
-		// Find all the entries that have the key as prefix
-		List<ListEntry> matches = new ArrayList<ListEntry>();
-		for (ListEntry entry : entries)
+		if (key.endsWith(SEPARATOR))
 		{
-			String relative = entry.key;
-			if (relative.startsWith(SEPARATOR))
-			{
-				relative = relative.substring(1);
-			}
-			if (!(key.length() == 0 || relative.startsWith(key + SEPARATOR)))
-			{
-				continue;
-			}
-			// Only limit to direct children!
-			relative = relative.substring(key.length());
-			if (relative.startsWith(SEPARATOR))
-			{
-				relative = relative.substring(1);
-			}
-			if (relative.endsWith(SEPARATOR))
-			{
-				relative = relative.substring(0, relative.length() - 1);
-			}
-			if (relative.length() == 0)
-			{
-				continue;
-			}
-			int index = relative.indexOf(SEPARATOR);
-			if (index != -1)
-			{
-				String dirName = relative.substring(0, index);
-				if (!pseudoDirs.contains(dirName))
-				{
-					ListEntry dirEntry = new PsuedoDirEntry(dirName);
-					pseudoDirs.add(dirEntry.key);
-					matches.add(dirEntry);
-				}
-			}
-			else
-			{
-				matches.add(entry);
-			}
+			key = key.substring(0, key.length() - 1);
+		}
+		return key;
+	}
+
+	@Override
+	public IFileInfo[] getChildInfos(IFileStore store) // NO_UCD
+	{
+		if (!(store instanceof S3FileStore))
+		{
+			return null;
+		}
+		Map<String, ListEntry> matches = getChildEntries(store);
+		List<IFileInfo> infos = new ArrayList<IFileInfo>(matches.size());
+		for (Map.Entry<String, ListEntry> match : matches.entrySet())
+		{
+			infos.add(generateFileInfo(match.getKey(), match.getValue()));
+		}
+		return infos.toArray(new IFileInfo[infos.size()]);
+	}
+
+	private FileInfo generateFileInfo(String name, ListEntry match)
+	{
+		FileInfo fileInfo = new FileInfo(name);
+		fileInfo.setExists(true);
+		fileInfo.setLastModified((match.lastModified != null) ? match.lastModified.getTime() : System
+				.currentTimeMillis());
+		fileInfo.setLength(match.size);
+		fileInfo.setDirectory(match instanceof PsuedoDirEntry);
+		return fileInfo;
+	}
+
+	private Map<String, ListEntry> getChildEntries(IFileStore store)
+	{
+		String key = normalize(((S3FileStore) store).getKey());
+		Map<String, ListEntry> matches = children.get(key);
+		if (matches == null)
+		{
+			return Collections.emptyMap();
 		}
 		return matches;
 	}
 
-	private class PsuedoDirEntry extends ListEntry
+	private static class PsuedoDirEntry extends ListEntry
 	{
-		public PsuedoDirEntry(String dirName)
+		public PsuedoDirEntry(String key, Date lastModified)
 		{
 			super();
-			size = 0;
-			lastModified = new Date();
-			key = dirName;
+			this.size = 0;
+			this.lastModified = lastModified;
+			this.key = key;
 		}
 	}
 
@@ -168,16 +176,11 @@ class S3FileTree extends FileTree
 			return null;
 		}
 		S3FileStore s3Store = (S3FileStore) store;
-		List<ListEntry> matches = getChildEntries(s3Store);
-		List<IFileStore> childrenStores = new ArrayList<IFileStore>();
-		for (ListEntry match : matches)
+		Set<String> names = getChildEntries(s3Store).keySet();
+		List<IFileStore> childrenStores = new ArrayList<IFileStore>(names.size());
+		for (String name : names)
 		{
-			String childName = match.key;
-			if (childName.endsWith(SEPARATOR))
-			{
-				childName = childName.substring(0, childName.length() - 1);
-			}
-			childrenStores.add(s3Store.getChild(childName));
+			childrenStores.add(s3Store.getChild(name));
 		}
 		return childrenStores.toArray(new IFileStore[childrenStores.size()]);
 	}
@@ -190,23 +193,12 @@ class S3FileTree extends FileTree
 			return null;
 		}
 		S3FileStore s3Store = (S3FileStore) store;
-		String key = s3Store.getKey();
+		String key = normalize(s3Store.getKey());
 		// generate an info from a ListEntry if we have a match!
-		for (ListEntry entry : entries)
+		ListEntry entry = entries.get(key);
+		if (entry != null)
 		{
-			String entryKey = entry.key;
-			if (entryKey.startsWith(SEPARATOR))
-			{
-				entryKey = entryKey.substring(1);
-			}
-			if (entryKey.endsWith(SEPARATOR))
-			{
-				entryKey = entryKey.substring(0, entryKey.length() - 1);
-			}
-			if (entryKey.equals(key))
-			{
-				return generateFileInfo(entry);
-			}
+			return generateFileInfo(s3Store.getName(), entry);
 		}
 		return s3Store.fetchInfo();
 	}
@@ -0,0 +1,263 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import com.amazon.s3.AWSAuthConnection;
+import com.amazon.s3.InitiateMultipartUploadResponse;
+import com.amazon.s3.PartResponse;
+import com.amazon.s3.Response;
+
+/**
+ * A multipart upload whose parts are transferred concurrently. A part that fails is retried on its own, so a dropped
+ * connection costs one part rather than the whole object. If the upload can't be completed it is aborted, so S3
+ * doesn't keep the parts around.
+ */
+class S3MultipartUpload
+{
+
+	/**
+	 * Transfers one part of the upload
+	 */
+	interface Part
+	{
+		PartResponse transfer(AWSAuthConnection connection, String uploadId, int partNumber) throws IOException;
+	}
+
+	/**
+	 * The number of parts transferred at once
+	 */
+	static final int THREADS = 4;
+
+	/**
+	 * S3 doesn't accept more parts than this
+	 */
+	static final int MAX_PARTS = 10000;
+
+	private static final int MAX_ATTEMPTS = 4;
+	private static final long RETRY_DELAY = 500;
+
+	private final AWSAuthConnection connection;
+	private final String bucket;
+	private final String key;
+	private final ExecutorService executor;
+	private final Semaphore slots;
+	private final List<Future<String>> parts;
+	private String uploadId;
+	private volatile IOException failure;
+
+	S3MultipartUpload(AWSAuthConnection connection, String bucket, String key)
+	{
+		this.connection = connection;
+		this.bucket = bucket;
+		this.key = key;
+		this.executor = Executors.newFixedThreadPool(THREADS);
+		this.slots = new Semaphore(THREADS);
+		this.parts = new ArrayList<Future<String>>();
+	}
+
+	/**
+	 * Initiates the upload
+	 *
+	 * @throws IOException
+	 */
+	void start() throws IOException
+	{
+		InitiateMultipartUploadResponse resp = connection.initiateMultipartUpload(bucket, key, null);
+		int responseCode = resp.connection.getResponseCode();
+		if (responseCode >= 400 || resp.uploadId == null)
+		{
+			dispose();
+			throw new IOException(S3FileStore.errorMessage(responseCode, resp.connection));
+		}
+		uploadId = resp.uploadId;
+	}
+
+	/**
+	 * Queues the next part. Blocks while {@link #THREADS} parts are being transferred, which also bounds the memory
+	 * held by parts that carry their data.
+	 *
+	 * @param part
+	 * @throws IOException
+	 *             if an earlier part failed for good
+	 */
+	void submit(final Part part) throws IOException
+	{
+		checkFailure();
+		if (parts.size() >= MAX_PARTS)
+		{
+			throw new IOException("Too many parts for a multipart upload"); //$NON-NLS-1$
+		}
+		try
+		{
+			slots.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			throw new InterruptedIOException();
+		}
+		final int partNumber = parts.size() + 1;
+		parts.add(executor.submit(new Callable<String>()
+		{
+			public String call() throws Exception
+			{
+				try
+				{
+					return transfer(part, partNumber);
+				}
+				catch (IOException e)
+				{
+					failure = e;
+					throw e;
+				}
+				finally
+				{
+					slots.release();
+				}
+			}
+		}));
+	}
+
+	/**
+	 * Waits for all parts and completes the upload. Aborts it if that fails
+	 *
+	 * @throws IOException
+	 */
+	void complete() throws IOException
+	{
+		try
+		{
+			List<String> eTags = new ArrayList<String>(parts.size());
+			for (Future<String> part : parts)
+			{
+				eTags.add(get(part));
+			}
+			Response resp = connection.completeMultipartUpload(bucket, key, uploadId, eTags, null);
+			int responseCode = resp.connection.getResponseCode();
+			if (responseCode >= 400)
+			{
+				throw new IOException(S3FileStore.errorMessage(responseCode, resp.connection));
+			}
+			uploadId = null;
+		}
+		finally
+		{
+			abort();
+		}
+	}
+
+	/**
+	 * Stops transferring parts and discards the ones transferred so far, unless the upload was completed
+	 */
+	void abort()
+	{
+		dispose();
+		if (uploadId == null)
+		{
+			return;
+		}
+		try
+		{
+			connection.abortMultipartUpload(bucket, key, uploadId, null).connection.getResponseCode();
+		}
+		catch (IOException e)
+		{
+			S3FileSystemPlugin.log(e);
+		}
+		uploadId = null;
+	}
+
+	private void dispose()
+	{
+		executor.shutdownNow();
+	}
+
+	private String transfer(Part part, int partNumber) throws IOException
+	{
+		IOException lastFailure = null;
+		for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+		{
+			if (attempt > 0)
+			{
+				try
+				{
+					Thread.sleep(RETRY_DELAY << (attempt - 1));
+				}
+				catch (InterruptedException e)
+				{
+					throw new InterruptedIOException();
+				}
+			}
+			try
+			{
+				PartResponse resp = part.transfer(connection, uploadId, partNumber);
+				int responseCode = resp.connection.getResponseCode();
+				if (responseCode < 400 && resp.eTag != null)
+				{
+					return resp.eTag;
+				}
+				lastFailure = new IOException(S3FileStore.errorMessage(responseCode, resp.connection));
+				// only server errors and timeouts are worth another try
+				if (responseCode < 500 && responseCode != 408)
+				{
+					break;
+				}
+			}
+			catch (InterruptedIOException e)
+			{
+				throw e;
+			}
+			catch (IOException e)
+			{
+				lastFailure = e;
+			}
+		}
+		throw lastFailure;
+	}
+
+	private void checkFailure() throws IOException
+	{
+		if (failure != null)
+		{
+			throw failure;
+		}
+	}
+
+	private String get(Future<String> part) throws IOException
+	{
+		try
+		{
+			return part.get();
+		}
+		catch (InterruptedException e)
+		{
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException) cause;
+			}
+			IOException ioe = new IOException(String.valueOf(cause));
+			ioe.initCause(cause);
+			throw ioe;
+		}
+	}
+}
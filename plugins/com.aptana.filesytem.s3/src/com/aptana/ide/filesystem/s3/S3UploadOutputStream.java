@@ -0,0 +1,172 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.amazon.s3.AWSAuthConnection;
+import com.amazon.s3.PartResponse;
+import com.amazon.s3.Response;
+import com.amazon.s3.S3Object;
+
+/**
+ * Writes an object to S3. Objects that fit in one part go up with a single PUT when the stream is closed, larger ones
+ * as a {@link S3MultipartUpload} that sends each part while the next one is being written.
+ */
+class S3UploadOutputStream extends OutputStream
+{
+
+	/**
+	 * The size of the parts of a multipart upload. S3 requires at least 5 MB for all but the last part
+	 */
+	static final int PART_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * The buffer starts at this size and grows up to {@link #PART_SIZE}, so small objects don't cost a whole part
+	 */
+	private static final int INITIAL_SIZE = 8 * 1024;
+
+	private final AWSAuthConnection connection;
+	private final String bucket;
+	private final String key;
+	private byte[] buffer;
+	private int count;
+	private S3MultipartUpload upload;
+	private boolean closed;
+
+	S3UploadOutputStream(AWSAuthConnection connection, String bucket, String key)
+	{
+		this.connection = connection;
+		this.bucket = bucket;
+		this.key = key;
+		this.buffer = new byte[INITIAL_SIZE];
+	}
+
+	@Override
+	public void write(int b) throws IOException
+	{
+		ensureOpen();
+		if (count == PART_SIZE)
+		{
+			sendPart();
+		}
+		ensureCapacity(count + 1);
+		buffer[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException
+	{
+		ensureOpen();
+		while (len > 0)
+		{
+			if (count == PART_SIZE)
+			{
+				sendPart();
+			}
+			int n = Math.min(len, PART_SIZE - count);
+			ensureCapacity(count + n);
+			System.arraycopy(b, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		try
+		{
+			if (upload == null)
+			{
+				putObject();
+			}
+			else
+			{
+				if (count > 0)
+				{
+					sendPart();
+				}
+				upload.complete();
+			}
+		}
+		finally
+		{
+			if (upload != null)
+			{
+				upload.abort();
+			}
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Sends the buffer as the next part, starting the multipart upload with the first one. The buffer is handed over
+	 * to the part, and a new one of the full part size is used for what follows
+	 *
+	 * @throws IOException
+	 */
+	private void sendPart() throws IOException
+	{
+		if (upload == null)
+		{
+			upload = new S3MultipartUpload(connection, bucket, key);
+			upload.start();
+		}
+		final byte[] data = buffer;
+		final int length = count;
+		upload.submit(new S3MultipartUpload.Part()
+		{
+			public PartResponse transfer(AWSAuthConnection connection, String uploadId, int partNumber)
+					throws IOException
+			{
+				return connection.uploadPart(bucket, key, uploadId, partNumber, data, length, null);
+			}
+		});
+		buffer = new byte[PART_SIZE];
+		count = 0;
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity <= buffer.length)
+		{
+			return;
+		}
+		byte[] larger = new byte[Math.min(PART_SIZE, Math.max(capacity, buffer.length << 1))];
+		System.arraycopy(buffer, 0, larger, 0, count);
+		buffer = larger;
+	}
+
+	private void putObject() throws IOException
+	{
+		byte[] data = new byte[count];
+		System.arraycopy(buffer, 0, data, 0, count);
+		Response resp = connection.put(bucket, key, new S3Object(data, null), null);
+		int responseCode = resp.connection.getResponseCode();
+		if (responseCode >= 400)
+		{
+			throw new IOException(S3FileStore.errorMessage(responseCode, resp.connection));
+		}
+	}
+
+	private void ensureOpen() throws IOException
+	{
+		if (closed)
+		{
+			throw new IOException("Stream closed"); //$NON-NLS-1$
+		}
+	}
+}
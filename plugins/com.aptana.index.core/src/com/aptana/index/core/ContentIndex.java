@@ -0,0 +1,488 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.jobs.IJobManager;
+import org.eclipse.core.runtime.jobs.Job;
+
+import com.aptana.core.util.ArrayUtil;
+
+/**
+ * The trigrams of the contents of the files in an index, kept when {@link IPreferenceConstants#INDEX_FILE_CONTENTS} is
+ * on. A text search only has to look at the files that contain all trigrams of the text it is looking for, so this
+ * helps find those files without reading every file in a project.
+ */
+public class ContentIndex
+{
+	/**
+	 * The case-folded trigrams of a file's contents
+	 */
+	public static final String TRIGRAM = "content.trigram"; //$NON-NLS-1$
+
+	/**
+	 * Files whose contents weren't indexed because they're too large or look binary
+	 */
+	public static final String UNINDEXED = "content.unindexed"; //$NON-NLS-1$
+
+	/**
+	 * Records that all files of the container have been indexed
+	 */
+	public static final String STATE = "content.state"; //$NON-NLS-1$
+
+	public static final String[] CATEGORIES = new String[] { TRIGRAM, UNINDEXED, STATE };
+
+	static final String UNINDEXED_KEY = "file"; //$NON-NLS-1$
+	private static final String COMPLETE_KEY = "complete"; //$NON-NLS-1$
+	private static final int EXACT_MATCH = SearchPattern.EXACT_MATCH | SearchPattern.CASE_SENSITIVE;
+
+	/**
+	 * Flags a regular expression can turn on inline that make whitespace insignificant
+	 */
+	private static final Pattern COMMENTS_FLAG = Pattern.compile("\\(\\?[a-zA-Z-]*x"); //$NON-NLS-1$
+
+	private ContentIndex()
+	{
+	}
+
+	/**
+	 * Returns whether the contents of files get indexed
+	 *
+	 * @return
+	 */
+	public static boolean isEnabled()
+	{
+		return Platform.getPreferencesService().getBoolean(IndexPlugin.PLUGIN_ID,
+				IPreferenceConstants.INDEX_FILE_CONTENTS, false, null);
+	}
+
+	/**
+	 * Records that the contents of all files of an index's container have been indexed
+	 *
+	 * @param index
+	 */
+	public static void setComplete(Index index)
+	{
+		index.addEntry(STATE, COMPLETE_KEY, index.getRoot());
+	}
+
+	/**
+	 * Returns whether the contents of all files of an index's container have been indexed
+	 *
+	 * @param index
+	 * @return
+	 */
+	public static boolean isComplete(Index index)
+	{
+		List<QueryResult> results = index.query(new String[] { STATE }, COMPLETE_KEY, EXACT_MATCH);
+		return results != null && !results.isEmpty();
+	}
+
+	/**
+	 * Returns the documents that may contain matches of a text search: the ones that contain all trigrams the matches
+	 * must contain, and the ones whose contents weren't indexed
+	 *
+	 * @param index
+	 * @param searchText
+	 *            the text, as entered for an Eclipse file search
+	 * @param isRegEx
+	 *            whether the text is a regular expression. Otherwise, '*' and '?' are wildcards
+	 * @return the URIs of the documents, or null if the index can't narrow down this search, or may be out of date
+	 */
+	public static Set<String> getCandidates(Index index, String searchText, boolean isRegEx)
+	{
+		if (index == null || isIndexing() || !isComplete(index))
+		{
+			return null;
+		}
+
+		List<String> literals = getLiterals(searchText, isRegEx);
+		if (literals == null)
+		{
+			return null;
+		}
+		Set<String> trigrams = new HashSet<String>();
+		for (String literal : literals)
+		{
+			trigrams.addAll(getTrigrams(literal));
+		}
+		if (trigrams.isEmpty())
+		{
+			return null;
+		}
+
+		Set<String> result = null;
+		for (String trigram : trigrams)
+		{
+			Set<String> documents = getDocuments(index, TRIGRAM, trigram);
+			if (result == null)
+			{
+				result = new HashSet<String>(documents);
+			}
+			else
+			{
+				result.retainAll(documents);
+			}
+			if (result.isEmpty())
+			{
+				break;
+			}
+		}
+		result.addAll(getDocuments(index, UNINDEXED, UNINDEXED_KEY));
+		return result;
+	}
+
+	/**
+	 * Returns whether files may have changed without their contents having been indexed yet
+	 */
+	private static boolean isIndexing()
+	{
+		IJobManager manager = Job.getJobManager();
+		return !ResourcesPlugin.getWorkspace().isAutoBuilding()
+				|| !ArrayUtil.isEmpty(manager.find(ResourcesPlugin.FAMILY_AUTO_BUILD))
+				|| !ArrayUtil.isEmpty(manager.find(ResourcesPlugin.FAMILY_MANUAL_BUILD))
+				|| !ArrayUtil.isEmpty(manager.find(IndexRequestJob.INDEX_REQUEST_JOB_FAMILY));
+	}
+
+	private static Set<String> getDocuments(Index index, String category, String key)
+	{
+		List<QueryResult> results = index.query(new String[] { category }, key, EXACT_MATCH);
+		if (results == null || results.isEmpty())
+		{
+			return Collections.emptySet();
+		}
+		return results.get(0).getDocuments();
+	}
+
+	/**
+	 * Returns the distinct trigrams of a text, with their case folded so that they match regardless of case
+	 *
+	 * @param text
+	 * @return
+	 */
+	public static Set<String> getTrigrams(CharSequence text)
+	{
+		int length = text.length();
+		if (length < 3)
+		{
+			return Collections.emptySet();
+		}
+
+		// pack each trigram into a long, so only the distinct ones turn into strings
+		Set<Long> packed = new HashSet<Long>();
+		long trigram = ((long) fold(text.charAt(0)) << 16) | fold(text.charAt(1));
+		for (int i = 2; i < length; i++)
+		{
+			trigram = ((trigram << 16) | fold(text.charAt(i))) & 0xFFFFFFFFFFFFL;
+			packed.add(trigram);
+		}
+
+		Set<String> result = new HashSet<String>(packed.size());
+		char[] chars = new char[3];
+		for (long value : packed)
+		{
+			chars[0] = (char) (value >>> 32);
+			chars[1] = (char) (value >>> 16);
+			chars[2] = (char) value;
+			result.add(new String(chars));
+		}
+		return result;
+	}
+
+	/**
+	 * Folds the case of a character the way case-insensitive matching compares characters
+	 *
+	 * @param c
+	 * @return
+	 */
+	private static char fold(char c)
+	{
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	/**
+	 * Returns the pieces of literal text every match of a search must contain
+	 *
+	 * @param searchText
+	 * @param isRegEx
+	 * @return the pieces, or null if matches don't have to contain any particular text
+	 */
+	static List<String> getLiterals(String searchText, boolean isRegEx)
+	{
+		if (searchText == null || searchText.length() == 0)
+		{
+			return null;
+		}
+		return isRegEx ? getRegExLiterals(searchText) : getWildcardLiterals(searchText);
+	}
+
+	/**
+	 * Splits a search text on its '*' and '?' wildcards, which a backslash escapes
+	 */
+	private static List<String> getWildcardLiterals(String searchText)
+	{
+		List<String> literals = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		int length = searchText.length();
+		for (int i = 0; i < length; i++)
+		{
+			char c = searchText.charAt(i);
+			if (c == '\\' && i + 1 < length && "*?\\".indexOf(searchText.charAt(i + 1)) != -1) //$NON-NLS-1$
+			{
+				literal.append(searchText.charAt(++i));
+			}
+			else if (c == '*' || c == '?' || c == '\r' || c == '\n')
+			{
+				addLiteral(literals, literal);
+			}
+			else
+			{
+				literal.append(c);
+			}
+		}
+		addLiteral(literals, literal);
+		return literals;
+	}
+
+	/**
+	 * Collects the runs of literal characters at the top level of a regular expression. Groups and character classes
+	 * end a run and are skipped, and a character that a quantifier makes optional is dropped from its run. Since any
+	 * alternative of an alternation could match, there are no literals at all if the expression has one at the top
+	 * level.
+	 */
+	private static List<String> getRegExLiterals(String regex)
+	{
+		if (COMMENTS_FLAG.matcher(regex).find())
+		{
+			return null;
+		}
+
+		List<String> literals = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		int length = regex.length();
+		int i = 0;
+		while (i < length)
+		{
+			char c = regex.charAt(i);
+			switch (c)
+			{
+				case '\\':
+					if (i + 1 >= length)
+					{
+						i++;
+					}
+					else if (!Character.isLetterOrDigit(regex.charAt(i + 1)))
+					{
+						literal.append(regex.charAt(i + 1));
+						i += 2;
+					}
+					else if (regex.charAt(i + 1) == 'Q')
+					{
+						int end = regex.indexOf("\\E", i + 2); //$NON-NLS-1$
+						if (end == -1)
+						{
+							end = length;
+						}
+						literal.append(regex, i + 2, end);
+						i = end + 2;
+					}
+					else
+					{
+						// a character class, an anchor, a back reference or a character given by its code
+						addLiteral(literals, literal);
+						i = skipEscape(regex, i);
+					}
+					break;
+
+				case '(':
+					addLiteral(literals, literal);
+					i = skipGroup(regex, i);
+					break;
+
+				case '[':
+					addLiteral(literals, literal);
+					i = skipClass(regex, i);
+					break;
+
+				case '|':
+					return null;
+
+				case '?':
+				case '*':
+				case '{':
+					// the preceding character may not occur at all
+					if (literal.length() > 0)
+					{
+						literal.setLength(literal.length() - 1);
+					}
+					addLiteral(literals, literal);
+					i = (c == '{') ? skipTo(regex, i, '}') : i + 1;
+					break;
+
+				case '+':
+				case '.':
+				case '^':
+				case '$':
+				case '\r':
+				case '\n':
+					addLiteral(literals, literal);
+					i++;
+					break;
+
+				default:
+					literal.append(c);
+					i++;
+					break;
+			}
+		}
+		addLiteral(literals, literal);
+		return literals;
+	}
+
+	/**
+	 * Returns the index after the escape sequence that starts at an index, along with its argument
+	 */
+	private static int skipEscape(String regex, int start)
+	{
+		char c = regex.charAt(start + 1);
+		int i = start + 2;
+		int length = regex.length();
+		switch (c)
+		{
+			case 'x':
+				return (i < length && regex.charAt(i) == '{') ? skipTo(regex, i, '}') : i + 2;
+
+			case 'u':
+				return i + 4;
+
+			case 'c':
+				return i + 1;
+
+			case 'p':
+			case 'P':
+				return (i < length && regex.charAt(i) == '{') ? skipTo(regex, i, '}') : i + 1;
+
+			case 'k':
+				return skipTo(regex, i, '>');
+
+			case '0':
+				// up to three octal digits
+				while (i < length && i < start + 5 && regex.charAt(i) >= '0' && regex.charAt(i) <= '7')
+				{
+					i++;
+				}
+				return i;
+
+			default:
+				// a back reference takes as many digits as there are groups, so skip all of them
+				if (Character.isDigit(c))
+				{
+					while (i < length && Character.isDigit(regex.charAt(i)))
+					{
+						i++;
+					}
+				}
+				return i;
+		}
+	}
+
+	/**
+	 * Returns the index after the group that starts at an index
+	 */
+	private static int skipGroup(String regex, int start)
+	{
+		int depth = 0;
+		int i = start;
+		int length = regex.length();
+		while (i < length)
+		{
+			char c = regex.charAt(i);
+			if (c == '\\')
+			{
+				i += 2;
+				continue;
+			}
+			if (c == '[')
+			{
+				i = skipClass(regex, i);
+				continue;
+			}
+			if (c == '(')
+			{
+				depth++;
+			}
+			else if (c == ')' && --depth == 0)
+			{
+				return i + 1;
+			}
+			i++;
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the index after the character class that starts at an index
+	 */
+	private static int skipClass(String regex, int start)
+	{
+		int depth = 0;
+		int i = start;
+		int length = regex.length();
+		while (i < length)
+		{
+			char c = regex.charAt(i);
+			if (c == '\\')
+			{
+				i += 2;
+				continue;
+			}
+			if (c == '[')
+			{
+				depth++;
+				// a ']' right after the opening bracket, or after its negation, is a literal
+				if (i + 1 < length && regex.charAt(i + 1) == '^')
+				{
+					i++;
+				}
+				if (i + 1 < length && regex.charAt(i + 1) == ']')
+				{
+					i++;
+				}
+			}
+			else if (c == ']' && --depth == 0)
+			{
+				return i + 1;
+			}
+			i++;
+		}
+		return length;
+	}
+
+	private static int skipTo(String regex, int start, char end)
+	{
+		int index = regex.indexOf(end, start);
+		return (index == -1) ? regex.length() : index + 1;
+	}
+
+	private static void addLiteral(List<String> literals, StringBuilder literal)
+	{
+		if (literal.length() > 0)
+		{
+			literals.add(literal.toString());
+			literal.setLength(0);
+		}
+	}
+}
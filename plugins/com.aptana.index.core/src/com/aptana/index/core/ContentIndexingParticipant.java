@@ -0,0 +1,75 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.net.URI;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+
+import com.aptana.index.core.build.BuildContext;
+
+/**
+ * Indexes the trigrams of the contents of any file. Files that are too large, or that look binary, are only recorded as
+ * not indexed, so searches still look at them. See {@link ContentIndex}.
+ */
+class ContentIndexingParticipant implements IFileStoreIndexingParticipant
+{
+	/**
+	 * The size of the largest file whose contents get indexed
+	 */
+	private static final long MAX_FILE_SIZE = 1024 * 1024;
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IFileStoreIndexingParticipant#index(com.aptana.index.core.build.BuildContext,
+	 * com.aptana.index.core.Index, org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	public void index(BuildContext context, Index index, IProgressMonitor monitor) throws CoreException
+	{
+		URI uri = context.getURI();
+		if (uri == null)
+		{
+			return;
+		}
+
+		SubMonitor sub = SubMonitor.convert(monitor, 10);
+		try
+		{
+			IFileInfo info = EFS.getStore(uri).fetchInfo(EFS.NONE, sub.newChild(1));
+			String contents = (info.getLength() > MAX_FILE_SIZE) ? null : context.getContents();
+			sub.worked(4);
+
+			if (contents == null || contents.indexOf('\0') != -1)
+			{
+				index.addEntry(ContentIndex.UNINDEXED, ContentIndex.UNINDEXED_KEY, uri);
+				return;
+			}
+			for (String trigram : ContentIndex.getTrigrams(contents))
+			{
+				index.addEntry(ContentIndex.TRIGRAM, trigram, uri);
+			}
+		}
+		finally
+		{
+			sub.done();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.index.core.IFileStoreIndexingParticipant#getPriority()
+	 */
+	public int getPriority()
+	{
+		return DEFAULT_PRIORITY;
+	}
+}
@@ -13,4 +13,10 @@ public interface IPreferenceConstants
 {
 	public static final String FILTERED_INDEX_URIS = "FILTERED_INDEX_URIS"; //$NON-NLS-1$
 	public static final String NO_ITEMS = StringUtil.EMPTY;
+
+	/**
+	 * Whether the contents of files get indexed, so text searches can skip the files that don't contain the text. See
+	 * {@link ContentIndex}
+	 */
+	public static final String INDEX_FILE_CONTENTS = "INDEX_FILE_CONTENTS"; //$NON-NLS-1$
 }
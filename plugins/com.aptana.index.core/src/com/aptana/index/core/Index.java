@@ -26,6 +26,8 @@ import java.util.zip.CRC32;
 import org.eclipse.core.runtime.IPath;
 
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
+import com.aptana.core.util.StringUtil;
 import com.aptana.internal.index.core.DiskIndex;
 import com.aptana.internal.index.core.MemoryIndex;
 
@@ -304,6 +306,7 @@ public class Index
 	private DiskIndex diskIndex;
 	private ReadWriteLock monitor;
 	private URI containerURI;
+	private final Map<String, SymbolTable> symbolTables = new HashMap<String, SymbolTable>();
 
 	/**
 	 * Index
@@ -352,6 +355,12 @@ public class Index
 		try
 		{
 			this.memoryIndex.addEntry(category, key, containerRelativeURI.toString());
+
+			SymbolTable table = this.symbolTables.get(category);
+			if (table != null)
+			{
+				table.add(key, containerRelativeURI.toString());
+			}
 		}
 		finally
 		{
@@ -519,6 +528,7 @@ public class Index
 	public List<QueryResult> query(String[] categories, String key, int matchRule)
 	{
 		Map<String, QueryResult> results = null;
+		long startTime = System.nanoTime();
 
 		try
 		{
@@ -540,17 +550,7 @@ public class Index
 				}
 			}
 			// We're in read mode for monitor here now matter what...
-			int rule = matchRule & MATCH_RULE_INDEX_MASK;
-
-			if (this.memoryIndex.hasChanged())
-			{
-				results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
-				results = this.memoryIndex.addQueryResults(categories, key, rule, results);
-			}
-			else
-			{
-				results = this.diskIndex.addQueryResults(categories, key, rule, null);
-			}
+			results = this.addQueryResults(categories, key, matchRule & MATCH_RULE_INDEX_MASK);
 		}
 		catch (IOException e)
 		{
@@ -566,11 +566,100 @@ public class Index
 
 			// clear any cached regexes or patterns we might have used during the query
 			PATTERNS.clear();
+
+			MetricsRegistry metrics = MetricsRegistry.getDefault();
+			if (metrics.isEnabled())
+			{
+				metrics.record(MetricsRegistry.INDEX_QUERY, StringUtil.join(",", categories), //$NON-NLS-1$
+						System.nanoTime() - startTime);
+			}
 		}
 
 		return (results == null) ? null : new ArrayList<QueryResult>(results.values());
 	}
 
+	/**
+	 * Queries the disk and memory indices. The caller must hold the lock
+	 * 
+	 * @param categories
+	 * @param key
+	 * @param rule
+	 * @return
+	 * @throws IOException
+	 */
+	private Map<String, QueryResult> addQueryResults(String[] categories, String key, int rule) throws IOException
+	{
+		if (this.memoryIndex.hasChanged())
+		{
+			Map<String, QueryResult> results = this.diskIndex.addQueryResults(categories, key, rule, this.memoryIndex);
+			return this.memoryIndex.addQueryResults(categories, key, rule, results);
+		}
+		return this.diskIndex.addQueryResults(categories, key, rule, null);
+	}
+
+	/**
+	 * Returns the words of a category, along with the documents that define them. The table is built from the index
+	 * the first time a category is asked for, and kept up to date as entries are added and documents are removed after
+	 * that, so lookups don't need to query the index.
+	 * 
+	 * @param category
+	 * @return
+	 */
+	public SymbolTable getSymbolTable(String category)
+	{
+		this.enterRead();
+		try
+		{
+			SymbolTable table = this.symbolTables.get(category);
+			if (table != null)
+			{
+				return table;
+			}
+		}
+		finally
+		{
+			this.exitRead();
+		}
+
+		// block writes while the table is filled, so it doesn't miss any
+		this.enterWrite();
+		try
+		{
+			SymbolTable table = this.symbolTables.get(category);
+			if (table == null)
+			{
+				table = new SymbolTable();
+				try
+				{
+					Map<String, QueryResult> results = this.addQueryResults(new String[] { category }, "*", //$NON-NLS-1$
+							SearchPattern.PATTERN_MATCH);
+					if (results != null)
+					{
+						for (QueryResult result : results.values())
+						{
+							for (String document : result.getDocuments())
+							{
+								table.add(result.getWord(), document);
+							}
+						}
+					}
+				}
+				catch (IOException e)
+				{
+					IdeLog.logError(IndexPlugin.getDefault(), e);
+					// don't keep a table that misses words
+					return table;
+				}
+				this.symbolTables.put(category, table);
+			}
+			return table;
+		}
+		finally
+		{
+			this.exitWrite();
+		}
+	}
+
 	/**
 	 * Returns the document names that contain the given substring, if null then returns all of them.
 	 */
@@ -626,6 +715,11 @@ public class Index
 		try
 		{
 			this.memoryIndex.remove(documentName);
+
+			for (SymbolTable table : this.symbolTables.values())
+			{
+				table.removeDocument(documentName);
+			}
 		}
 		finally
 		{
@@ -645,6 +739,11 @@ public class Index
 		{
 			this.memoryIndex.removeCategories(categoryNames);
 			this.diskIndex = this.diskIndex.removeCategories(categoryNames, this.memoryIndex);
+
+			for (String categoryName : categoryNames)
+			{
+				this.symbolTables.remove(categoryName);
+			}
 		}
 		catch (IOException e)
 		{
@@ -50,6 +50,7 @@ public class IndexManager
 
 	private ArrayList<IIndexFileContributor> fileContributors;
 	private ArrayList<IIndexFilterParticipant> filterParticipants;
+	private final IFileStoreIndexingParticipant contentIndexingParticipant = new ContentIndexingParticipant();
 
 	static final ISchedulingRule MUTEX_RULE = new ISchedulingRule()
 	{
@@ -176,7 +177,7 @@ public class IndexManager
 
 	/**
 	 * Returns an ordered list of the file indexing participants registered for the given filename's associated content
-	 * types.
+	 * types, followed by the one that indexes the contents of all files when that is enabled.
 	 * 
 	 * @param filename
 	 * @return
@@ -208,6 +209,12 @@ public class IndexManager
 			}
 		});
 
+		// the contents of all files are indexed, whatever their type
+		if (ContentIndex.isEnabled())
+		{
+			result.add(contentIndexingParticipant);
+		}
+
 		return result;
 	}
 
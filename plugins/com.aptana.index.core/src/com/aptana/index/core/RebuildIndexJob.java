@@ -7,10 +7,15 @@
  */
 package com.aptana.index.core;
 
+import java.io.IOException;
 import java.net.URI;
 import java.util.Set;
 
 import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+
+import com.aptana.core.logging.IdeLog;
 
 /**
  * Special subclass of IndexContainerJob that ignores the index timestamp and forces all files to be re-indexed.
@@ -25,6 +30,29 @@ public class RebuildIndexJob extends IndexContainerJob
 		super(containerURI);
 	}
 
+	@Override
+	public IStatus run(IProgressMonitor monitor)
+	{
+		boolean indexContents = ContentIndex.isEnabled();
+		IStatus status = super.run(monitor);
+
+		// every file has been through the indexers, so the contents of all of them are in the index now
+		Index index = getIndex();
+		if (status.isOK() && index != null && indexContents && ContentIndex.isEnabled())
+		{
+			ContentIndex.setComplete(index);
+			try
+			{
+				index.save();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(IndexPlugin.getDefault(), "An error occurred while saving an index", e); //$NON-NLS-1$
+			}
+		}
+		return status;
+	}
+
 	@Override
 	protected Set<IFileStore> filterFilesByTimestamp(long indexLastModified, Set<IFileStore> files)
 	{
@@ -0,0 +1,170 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The words of one category of an index, along with the documents that define them, kept in memory. An index keeps
+ * the tables it hands out up to date as entries are added and documents are removed, so looking words up doesn't scan
+ * the category. See {@link Index#getSymbolTable(String)}.
+ */
+public class SymbolTable
+{
+	/**
+	 * The words and the documents that define them, by lower-cased word
+	 */
+	private final TreeMap<String, Map<String, Set<String>>> documentsByWord =
+			new TreeMap<String, Map<String, Set<String>>>();
+	private final Map<String, Set<String>> wordsByDocument = new HashMap<String, Set<String>>();
+	private int size;
+
+	/**
+	 * Returns the words that start with a prefix, ignoring case like {@link SearchPattern#PREFIX_MATCH} does, in order
+	 *
+	 * @param prefix
+	 *            the prefix. An empty or null prefix returns all words
+	 * @return
+	 */
+	public synchronized List<String> getWords(String prefix)
+	{
+		SortedMap<String, Map<String, Set<String>>> words;
+
+		if (prefix == null || prefix.length() == 0)
+		{
+			words = documentsByWord;
+		}
+		else
+		{
+			// the words that start with prefix sort before prefix followed by the largest char
+			String key = prefix.toLowerCase();
+			words = documentsByWord.subMap(key, key + Character.MAX_VALUE);
+		}
+
+		List<String> result = new ArrayList<String>();
+		for (Map<String, Set<String>> variants : words.values())
+		{
+			result.addAll(variants.keySet());
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the documents that define a word
+	 *
+	 * @param word
+	 *            the word, case-sensitive
+	 * @return the URIs of the documents, as they were indexed, or an empty set
+	 */
+	public synchronized Set<String> getDocuments(String word)
+	{
+		Map<String, Set<String>> variants = documentsByWord.get(word.toLowerCase());
+		Set<String> documents = (variants == null) ? null : variants.get(word);
+
+		if (documents == null)
+		{
+			return Collections.emptySet();
+		}
+
+		return new LinkedHashSet<String>(documents);
+	}
+
+	/**
+	 * Returns the number of words
+	 *
+	 * @return
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * add
+	 *
+	 * @param word
+	 * @param document
+	 */
+	synchronized void add(String word, String document)
+	{
+		String key = word.toLowerCase();
+		Map<String, Set<String>> variants = documentsByWord.get(key);
+
+		if (variants == null)
+		{
+			variants = new TreeMap<String, Set<String>>();
+			documentsByWord.put(key, variants);
+		}
+
+		Set<String> documents = variants.get(word);
+
+		if (documents == null)
+		{
+			documents = new LinkedHashSet<String>(1);
+			variants.put(word, documents);
+			size++;
+		}
+
+		documents.add(document);
+
+		Set<String> words = wordsByDocument.get(document);
+
+		if (words == null)
+		{
+			words = new HashSet<String>();
+			wordsByDocument.put(document, words);
+		}
+
+		words.add(word);
+	}
+
+	/**
+	 * Removes all words a document defined
+	 *
+	 * @param document
+	 */
+	synchronized void removeDocument(String document)
+	{
+		Set<String> words = wordsByDocument.remove(document);
+
+		if (words != null)
+		{
+			for (String word : words)
+			{
+				String key = word.toLowerCase();
+				Map<String, Set<String>> variants = documentsByWord.get(key);
+				Set<String> documents = (variants == null) ? null : variants.get(word);
+
+				if (documents != null)
+				{
+					documents.remove(document);
+
+					if (documents.isEmpty())
+					{
+						variants.remove(word);
+						size--;
+
+						if (variants.isEmpty())
+						{
+							documentsByWord.remove(key);
+						}
+					}
+				}
+			}
+		}
+	}
+}
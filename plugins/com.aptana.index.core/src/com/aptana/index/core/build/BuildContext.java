@@ -30,6 +30,7 @@ import org.eclipse.core.runtime.content.IContentTypeMatcher;
 
 import com.aptana.core.build.IProblem;
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
 import com.aptana.core.util.ArrayUtil;
 import com.aptana.core.util.IOUtil;
 import com.aptana.core.util.StringUtil;
@@ -58,7 +59,8 @@ public class BuildContext
 
 	protected BuildContext()
 	{
-		this.problems = new HashMap<String, Collection<IProblem>>();
+		// build participants that only read the context may run concurrently and report their problems at once
+		this.problems = Collections.synchronizedMap(new HashMap<String, Collection<IProblem>>());
 	}
 
 	public BuildContext(IFile file)
@@ -118,7 +120,10 @@ public class BuildContext
 				// FIXME The parsers need to throw a specific SyntaxException or something for us to differentiate
 				// between those and IO errors!
 				WorkingParseResult working = new WorkingParseResult();
+				long startTime = System.nanoTime();
 				fParseResult = parse(contentType, parseState, working);
+				MetricsRegistry.getDefault().record(MetricsRegistry.PHASE, MetricsRegistry.PHASE_PARSE,
+						System.nanoTime() - startTime);
 			}
 			catch (CoreException e)
 			{
@@ -249,11 +254,14 @@ public class BuildContext
 
 	public Map<String, Collection<IProblem>> getProblems()
 	{
-		// TODO Handle possible concurrent modification exceptions
-		return Collections.unmodifiableMap(problems);
+		// a copy, since participants that ran out of time may still report problems while it's iterated
+		synchronized (problems)
+		{
+			return Collections.unmodifiableMap(new HashMap<String, Collection<IProblem>>(problems));
+		}
 	}
 
-	public Collection<IParseError> getParseErrors()
+	public synchronized Collection<IParseError> getParseErrors()
 	{
 		if (fParseResult == null)
 		{
@@ -14,6 +14,7 @@ import org.eclipse.core.runtime.Assert;
 import com.aptana.core.epl.util.ILRUCacheable;
 import com.aptana.core.epl.util.LRUCacheWithSoftPrunedValues;
 import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.MetricsRegistry;
 import com.aptana.core.util.StringUtil;
 
 /**
@@ -246,8 +247,10 @@ public class ParsingEngine
 				synchronized (fParseCacheLock)
 				{
 					cacheValue = parseCache.get(newParseStateKey);
+					boolean cacheHit = cacheValue != null && !cacheValue.requiresReparse(newParseStateKey);
+					MetricsRegistry.getDefault().recordHit(MetricsRegistry.PARSE_CACHE, contentTypeId, cacheHit);
 
-					if (cacheValue != null && !cacheValue.requiresReparse(newParseStateKey))
+					if (cacheHit)
 					{
 
 						if (traceEnabled)
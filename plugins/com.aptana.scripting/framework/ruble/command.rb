@@ -31,6 +31,16 @@ module Ruble
       @jobj.async = flag
     end
 
+    # Isolated commands run in a scripting container of their own, so they don't wait
+    # on other commands or on bundle loading
+    def isolated
+      @jobj.isolated
+    end
+
+    def isolated=(flag)
+      @jobj.isolated = flag
+    end
+
     def input
      @jobj.input
     end
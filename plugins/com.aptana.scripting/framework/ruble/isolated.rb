@@ -0,0 +1,19 @@
+require "ruble"
+
+# Loaded into the pooled containers that run isolated commands only. Bundle scripts are evaluated there just to
+# get invoke blocks bound to the pooled runtime, so they must not change the bundle model owned by the loader.
+module Ruble
+  class Bundle
+    def add_child(child)
+      # the loader has already added this element to the bundle
+    end
+  end
+
+  class BundleManager
+    class << self
+      def add_bundle(bundle)
+        # bundles are only ever added by the loader
+      end
+    end
+  end
+end
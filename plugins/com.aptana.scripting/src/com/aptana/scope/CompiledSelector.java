@@ -0,0 +1,279 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A selector tree compiled down to the names it needs to find in a scope. {@link #mayMatch(String[])} is a necessary
+ * condition for the tree to match: every name selector the tree can't do without has to match some segment of the
+ * scope. It doesn't allocate and doesn't touch the state of the tree, so most selectors can be rejected without
+ * walking the tree at all.
+ */
+abstract class CompiledSelector
+{
+	/**
+	 * Accepts everything. Used for nodes we know nothing about
+	 */
+	private static final CompiledSelector ANY = new CompiledSelector()
+	{
+		@Override
+		boolean mayMatch(String[] segments)
+		{
+			return true;
+		}
+
+		@Override
+		Set<String> getAnchors()
+		{
+			return null;
+		}
+	};
+
+	/**
+	 * Rejects everything. Used for empty nodes, which never match
+	 */
+	private static final CompiledSelector NONE = new CompiledSelector()
+	{
+		@Override
+		boolean mayMatch(String[] segments)
+		{
+			return false;
+		}
+
+		@Override
+		Set<String> getAnchors()
+		{
+			return Collections.emptySet();
+		}
+	};
+
+	private static class Name extends CompiledSelector
+	{
+		private final String name;
+
+		Name(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		boolean mayMatch(String[] segments)
+		{
+			int nameLength = name.length();
+
+			for (String segment : segments)
+			{
+				if (segment.startsWith(name) && (segment.length() == nameLength || segment.charAt(nameLength) == '.'))
+				{
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		@Override
+		Set<String> getAnchors()
+		{
+			return Collections.singleton(name);
+		}
+	}
+
+	private static class Both extends CompiledSelector
+	{
+		private final CompiledSelector left;
+		private final CompiledSelector right;
+
+		Both(CompiledSelector left, CompiledSelector right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean mayMatch(String[] segments)
+		{
+			return left.mayMatch(segments) && right.mayMatch(segments);
+		}
+
+		@Override
+		Set<String> getAnchors()
+		{
+			// either side will do, so use the one that narrows things down the most
+			Set<String> leftAnchors = left.getAnchors();
+			Set<String> rightAnchors = right.getAnchors();
+
+			if (leftAnchors == null)
+			{
+				return rightAnchors;
+			}
+			if (rightAnchors == null)
+			{
+				return leftAnchors;
+			}
+
+			return (rightAnchors.size() < leftAnchors.size()) ? rightAnchors : leftAnchors;
+		}
+	}
+
+	private static class Either extends CompiledSelector
+	{
+		private final CompiledSelector left;
+		private final CompiledSelector right;
+
+		Either(CompiledSelector left, CompiledSelector right)
+		{
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		boolean mayMatch(String[] segments)
+		{
+			return left.mayMatch(segments) || right.mayMatch(segments);
+		}
+
+		@Override
+		Set<String> getAnchors()
+		{
+			Set<String> leftAnchors = left.getAnchors();
+			Set<String> rightAnchors = right.getAnchors();
+
+			if (leftAnchors == null || rightAnchors == null)
+			{
+				return null;
+			}
+
+			Set<String> result = new HashSet<String>(leftAnchors);
+
+			result.addAll(rightAnchors);
+
+			return result;
+		}
+	}
+
+	/**
+	 * Compile the specified selector tree
+	 *
+	 * @param node
+	 * @return
+	 */
+	static CompiledSelector compile(ISelectorNode node)
+	{
+		if (node == null)
+		{
+			return NONE;
+		}
+
+		// subclasses may match differently, so only the classes we know are compiled
+		Class<?> type = node.getClass();
+
+		if (type == NameSelector.class)
+		{
+			String name = node.toString();
+
+			return (name == null || name.length() == 0) ? NONE : new Name(name);
+		}
+		if (type == GroupSelector.class)
+		{
+			return compile(((GroupSelector) node).getChild());
+		}
+		if (type == DescendantSelector.class || type == IntersectionSelector.class)
+		{
+			BinarySelector binary = (BinarySelector) node;
+
+			return both(compile(binary.getLeftChild()), compile(binary.getRightChild()));
+		}
+		if (type == NegativeLookaheadSelector.class)
+		{
+			BinarySelector binary = (BinarySelector) node;
+
+			// an incomplete lookahead matches anything, a complete one only ever rejects what its left-hand side
+			// matched
+			if (binary.getLeftChild() == null || binary.getRightChild() == null)
+			{
+				return ANY;
+			}
+
+			return compile(binary.getLeftChild());
+		}
+		if (type == OrSelector.class)
+		{
+			OrSelector or = (OrSelector) node;
+
+			// the right-hand side is only tried when there is a left-hand side
+			if (or.getLeftChild() == null)
+			{
+				return NONE;
+			}
+
+			return either(compile(or.getLeftChild()), compile(or.getRightChild()));
+		}
+		if (type == SelectorNode.class)
+		{
+			return NONE;
+		}
+
+		return ANY;
+	}
+
+	private static CompiledSelector both(CompiledSelector left, CompiledSelector right)
+	{
+		if (left == NONE || right == NONE)
+		{
+			return NONE;
+		}
+		if (left == ANY)
+		{
+			return right;
+		}
+		if (right == ANY)
+		{
+			return left;
+		}
+
+		return new Both(left, right);
+	}
+
+	private static CompiledSelector either(CompiledSelector left, CompiledSelector right)
+	{
+		if (left == ANY || right == ANY)
+		{
+			return ANY;
+		}
+		if (left == NONE)
+		{
+			return right;
+		}
+		if (right == NONE)
+		{
+			return left;
+		}
+
+		return new Either(left, right);
+	}
+
+	/**
+	 * Determine if the selector this was compiled from can possibly match a scope with the specified segments
+	 *
+	 * @param segments
+	 * @return
+	 */
+	abstract boolean mayMatch(String[] segments);
+
+	/**
+	 * Return a set of names such that every scope the selector this was compiled from can match has a segment matched
+	 * by one of those names, see {@link ScopeSelector#getAnchorNames()}
+	 *
+	 * @return null if there is no such set
+	 */
+	abstract Set<String> getAnchors();
+}
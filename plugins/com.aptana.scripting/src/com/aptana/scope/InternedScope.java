@@ -0,0 +1,97 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scope;
+
+import java.util.regex.Pattern;
+
+import com.aptana.core.epl.util.LRUCache;
+
+/**
+ * A scope string split into its space-delimited segments. Instances are shared through {@link #intern(String)}, so the
+ * same scope is only split once and two interned scopes can be compared by identity.
+ */
+public final class InternedScope
+{
+	private static final Pattern SPACES = Pattern.compile("\\s+"); //$NON-NLS-1$
+
+	/**
+	 * Interned scopes, keyed by scope string
+	 */
+	private static final LRUCache<String, InternedScope> INTERNED = new LRUCache<String, InternedScope>(1000);
+
+	/**
+	 * Return the shared instance for the specified scope
+	 *
+	 * @param scope
+	 * @return null if scope is null
+	 */
+	public static InternedScope intern(String scope)
+	{
+		if (scope == null)
+		{
+			return null;
+		}
+
+		synchronized (INTERNED)
+		{
+			InternedScope result = INTERNED.get(scope);
+
+			if (result == null)
+			{
+				result = new InternedScope(scope);
+				INTERNED.put(scope, result);
+			}
+
+			return result;
+		}
+	}
+
+	private final String _scope;
+	private final String[] _segments;
+
+	/**
+	 * InternedScope
+	 *
+	 * @param scope
+	 */
+	private InternedScope(String scope)
+	{
+		this._scope = scope;
+		this._segments = SPACES.split(scope);
+	}
+
+	/**
+	 * Return the segments of this scope. The array is shared and must not be modified
+	 *
+	 * @return
+	 */
+	String[] getSegments()
+	{
+		return this._segments;
+	}
+
+	/**
+	 * Return the number of segments in this scope
+	 *
+	 * @return
+	 */
+	public int getLength()
+	{
+		return this._segments.length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString()
+	{
+		return this._scope;
+	}
+}
@@ -7,16 +7,14 @@
  */
 package com.aptana.scope;
 
-import java.util.Stack;
-import java.util.regex.Pattern;
-
 public class MatchContext
 {
-	private static final Pattern spaces = Pattern.compile("\\s+"); //$NON-NLS-1$
+	private static final String[] NO_STEPS = new String[0];
 
 	private String[] _steps;
 	private int _currentIndex;
-	private Stack<Integer> _savedPositions;
+	private int[] _savedPositions;
+	private int _savedCount;
 
 	/**
 	 * MatchContext
@@ -25,9 +23,19 @@ public class MatchContext
 	 */
 	MatchContext(String scope)
 	{
-		this._steps = (scope != null) ? spaces.split(scope) : new String[0];
+		this(InternedScope.intern(scope));
+	}
+
+	/**
+	 * MatchContext
+	 * 
+	 * @param scope
+	 */
+	MatchContext(InternedScope scope)
+	{
+		this._steps = (scope != null) ? scope.getSegments() : NO_STEPS;
 		this._currentIndex = this._steps.length - 1;
-		this._savedPositions = new Stack<Integer>();
+		this._savedPositions = new int[8];
 	}
 
 	/**
@@ -99,9 +107,9 @@ public class MatchContext
 	 */
 	public void popCurrentStep(boolean restore)
 	{
-		if (this._savedPositions.size() > 0)
+		if (this._savedCount > 0)
 		{
-			int value = this._savedPositions.pop();
+			int value = this._savedPositions[--this._savedCount];
 
 			if (restore)
 			{
@@ -116,7 +124,15 @@ public class MatchContext
 	 */
 	public void pushCurrentStep()
 	{
-		this._savedPositions.push(this._currentIndex);
+		if (this._savedCount == this._savedPositions.length)
+		{
+			int[] positions = new int[this._savedCount * 2];
+
+			System.arraycopy(this._savedPositions, 0, positions, 0, this._savedCount);
+			this._savedPositions = positions;
+		}
+
+		this._savedPositions[this._savedCount++] = this._currentIndex;
 	}
 
 	public String toString()
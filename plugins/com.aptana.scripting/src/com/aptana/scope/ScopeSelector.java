@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 import beaver.Symbol;
 
@@ -47,12 +48,21 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		if (!CollectionsUtil.isEmpty(selectors))
 		{
 			List<IScopeSelector> reversed = new ArrayList<IScopeSelector>(selectors);
+			InternedScope interned = InternedScope.intern(scope);
 
 			Collections.reverse(reversed);
 
 			for (IScopeSelector selector : reversed)
 			{
-				if (selector != null && selector.matches(scope))
+				if (selector == null)
+				{
+					continue;
+				}
+
+				boolean matches = (selector instanceof ScopeSelector) ? ((ScopeSelector) selector).matches(interned)
+						: selector.matches(scope);
+
+				if (matches)
 				{
 					if (bestMatch == null)
 					{
@@ -76,32 +86,14 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		// winner is the one with longest deepest match
 		// so first look for highest offset with a non-zero value
 
-		// if lists are not of same length, expand smaller one to match by filling with zeros
-		while (results.size() > matchResults.size())
-		{
-			if (matchResults.isEmpty())
-			{
-				matchResults = new ArrayList<Integer>();
-			}
-
-			matchResults.add(0);
-		}
-
-		while (matchResults.size() > results.size())
-		{
-			if (results.isEmpty())
-			{
-				results = new ArrayList<Integer>();
-			}
-
-			results.add(0);
-		}
+		// if lists are not of same length, the missing values of the smaller one count as zeros. Match results are
+		// shared, so they are never padded in place
 
 		// So starting at the end of the lists, look for the highest match length, ties go back an offset to be broken
-		for (int i = results.size() - 1; i >= 0; i--)
+		for (int i = Math.max(results.size(), matchResults.size()) - 1; i >= 0; i--)
 		{
-			int firstVal = results.get(i);
-			int secondVal = matchResults.get(i);
+			int firstVal = (i < results.size()) ? results.get(i) : 0;
+			int secondVal = (i < matchResults.size()) ? matchResults.get(i) : 0;
 
 			// If one of the two has a longer match at the offset, it wins
 			if (firstVal != secondVal)
@@ -132,9 +124,42 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		}
 	}
 
+	/**
+	 * The number of scopes whose match results are remembered by each selector
+	 */
+	private static final int MATCH_CACHE_SIZE = 4;
+
+	/**
+	 * The outcome of matching a selector against an interned scope
+	 */
+	private static class CachedMatch
+	{
+		final InternedScope scope;
+		final boolean matches;
+		final List<Integer> results;
+
+		CachedMatch(InternedScope scope, boolean matches, List<Integer> results)
+		{
+			this.scope = scope;
+			this.matches = matches;
+			this.results = results;
+		}
+	}
+
 	private final ISelectorNode _root;
 	private List<Integer> matchResults;
 
+	/**
+	 * The compiled form of the selector tree, used to reject scopes without walking the tree
+	 */
+	private CompiledSelector _compiled;
+
+	/**
+	 * The results of the last few scopes this selector was matched against
+	 */
+	private final CachedMatch[] _matchCache = new CachedMatch[MATCH_CACHE_SIZE];
+	private int _nextCacheSlot;
+
 	/**
 	 * Lazily cache the toString() value solely for performance reasons. We call toString() in equals(), hashCode(),
 	 * some other locations - so this value is computed by concatenating children nodes repeatedly.
@@ -197,7 +222,7 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 
 	public int compareTo(IScopeSelector o)
 	{
-		return compare(matchResults, o.getMatchResults());
+		return compare(getMatchResults(), o.getMatchResults());
 	}
 
 	@Override
@@ -225,6 +250,25 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		return matchResults;
 	}
 
+	/**
+	 * Return a set of names such that any scope this selector matches has at least one segment that is equal to one of
+	 * those names or starts with one of them followed by a period. This lets callers index selectors by name instead of
+	 * matching every selector against every scope
+	 * 
+	 * @return The names, or null if this selector can match scopes that have none of a fixed set of names
+	 */
+	public synchronized Set<String> getAnchorNames()
+	{
+		if (this._compiled == null)
+		{
+			this._compiled = CompiledSelector.compile(this._root);
+		}
+
+		Set<String> anchors = this._compiled.getAnchors();
+
+		return (anchors == null) ? null : Collections.unmodifiableSet(anchors);
+	}
+
 	/**
 	 * getRoot
 	 * 
@@ -247,46 +291,102 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 	 */
 	public boolean matches(String scope)
 	{
-		matchResults = new ArrayList<Integer>();
-		boolean result = false;
+		return this.matches(InternedScope.intern(scope));
+	}
 
-		if (this._root != null && scope != null)
+	/**
+	 * Determines if this selector matches the specified interned scope. The results of the last few scopes are cached,
+	 * so matching the same scope again doesn't walk the selector tree
+	 * 
+	 * @param scope
+	 * @return
+	 */
+	public synchronized boolean matches(InternedScope scope)
+	{
+		if (this._root == null || scope == null)
 		{
-			MatchContext context = new MatchContext(scope);
+			matchResults = Collections.emptyList();
+			return false;
+		}
 
-			for (int i = 0; i < context.getLength(); i++)
+		for (CachedMatch cached : this._matchCache)
+		{
+			if (cached != null && cached.scope == scope)
 			{
-				// save current position so we can advance later
-				context.pushCurrentStep();
+				matchResults = cached.results;
+				return cached.matches;
+			}
+		}
 
-				// see if we match at this point within the context
-				if (this._root.matches(context))
-				{
-					// Add match results. If more than one value, we need to replace existing zeros in our list...
-					Collection<Integer> tmpResults = this._root.getMatchResults();
-					int toRemove = tmpResults.size() - 1;
-					for (int x = 0; x < toRemove; x++)
-					{
-						matchResults.remove(0);
-					}
-					matchResults.addAll(0, tmpResults);
+		if (this._compiled == null)
+		{
+			this._compiled = CompiledSelector.compile(this._root);
+		}
 
-					// Fill with preceding zeros.
-					while (matchResults.size() < context.getLength())
-					{
-						matchResults.add(0, 0);
-					}
+		List<Integer> results;
+		boolean result;
 
-					// we matched, so report success and stop looking for a match
-					result = true;
-					break;
+		if (this._compiled.mayMatch(scope.getSegments()))
+		{
+			results = new ArrayList<Integer>();
+
+			// selector trees are shared between selectors with the same source and keep state while matching
+			synchronized (this._root)
+			{
+				result = this.matchTree(new MatchContext(scope), results);
+			}
+		}
+		else
+		{
+			// same results as a failed walk of the tree, one non-match per segment
+			results = new ArrayList<Integer>(Collections.nCopies(scope.getLength(), 0));
+			result = false;
+		}
+
+		matchResults = Collections.unmodifiableList(results);
+
+		this._matchCache[this._nextCacheSlot] = new CachedMatch(scope, result, matchResults);
+		this._nextCacheSlot = (this._nextCacheSlot + 1) % MATCH_CACHE_SIZE;
+
+		return result;
+	}
+
+	private boolean matchTree(MatchContext context, List<Integer> matchResults)
+	{
+		boolean result = false;
+
+		for (int i = 0; i < context.getLength(); i++)
+		{
+			// save current position so we can advance later
+			context.pushCurrentStep();
+
+			// see if we match at this point within the context
+			if (this._root.matches(context))
+			{
+				// Add match results. If more than one value, we need to replace existing zeros in our list...
+				Collection<Integer> tmpResults = this._root.getMatchResults();
+				int toRemove = tmpResults.size() - 1;
+				for (int x = 0; x < toRemove; x++)
+				{
+					matchResults.remove(0);
 				}
-				matchResults.add(0, 0); // Add a non-match
+				matchResults.addAll(0, tmpResults);
 
-				// restore position where we started and move forward one
-				context.popCurrentStep();
-				context.backup();
+				// Fill with preceding zeros.
+				while (matchResults.size() < context.getLength())
+				{
+					matchResults.add(0, 0);
+				}
+
+				// we matched, so report success and stop looking for a match
+				result = true;
+				break;
 			}
+			matchResults.add(0, 0); // Add a non-match
+
+			// restore position where we started and move forward one
+			context.popCurrentStep();
+			context.backup();
 		}
 
 		return result;
@@ -304,7 +404,7 @@ public class ScopeSelector extends Symbol implements IScopeSelector
 		{
 			for (String scope : scopes)
 			{
-				if (this.matches(scope))
+				if (this.matches(InternedScope.intern(scope)))
 				{
 					result = true;
 					break;
@@ -134,6 +134,7 @@ public class ScriptingActivator extends Plugin
 			BundleMonitor.getInstance().endMonitoring();
 
 			FileWatcherRegistrant.shutdown();
+			ScriptingEngine.getInstance().disposeContainerPool();
 			// FIXME Clean up the bundle manager singleton!
 		}
 		catch (Exception e)
@@ -0,0 +1,348 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.jruby.Ruby;
+import org.jruby.RubyArray;
+import org.jruby.embed.EvalFailedException;
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.ParseFailedException;
+import org.jruby.embed.PathType;
+import org.jruby.embed.ScriptingContainer;
+import org.jruby.runtime.builtin.IRubyObject;
+
+import com.aptana.scripting.model.AbstractElement;
+
+/**
+ * A small pool of scripting containers used to run commands that declare themselves isolated. Each container has its
+ * own runtime with the Ruble framework preloaded, so isolated commands neither wait on the container used to load
+ * bundles nor share its global state. A container is only ever used by the thread that acquired it.
+ * <p>
+ * A command's invoke block is bound to the runtime that evaluated its script, so each container evaluates the scripts
+ * of the commands it runs once, and again whenever a script changes. Those evaluations leave the bundle model alone,
+ * see ruble/isolated.rb.
+ */
+public class ScriptingContainerPool
+{
+	/**
+	 * A container handed out by the pool
+	 */
+	public class PooledContainer
+	{
+		private final ScriptingContainer container;
+		private final Map<String, LoadedScript> scripts;
+
+		PooledContainer(ScriptingContainer container)
+		{
+			this.container = container;
+			this.scripts = new HashMap<String, LoadedScript>();
+		}
+
+		/**
+		 * Return the runtime of this container
+		 *
+		 * @return
+		 */
+		public Ruby getRuntime()
+		{
+			return container.getProvider().getRuntime();
+		}
+
+		/**
+		 * Return the elements defined by a script in this container, evaluating the script first if it hasn't been
+		 * yet or if it has changed since
+		 *
+		 * @param path
+		 *            The absolute path of the script
+		 * @param loadPaths
+		 *            Extra load paths used while evaluating the script
+		 * @return
+		 */
+		public List<AbstractElement> getElements(String path, List<String> loadPaths)
+		{
+			long lastModified = new File(path).lastModified();
+			LoadedScript script = scripts.get(path);
+
+			if (script == null || script.lastModified != lastModified)
+			{
+				script = new LoadedScript(lastModified, load(path, loadPaths));
+				scripts.put(path, script);
+			}
+
+			return script.elements;
+		}
+
+		private List<AbstractElement> load(String path, List<String> loadPaths)
+		{
+			Ruby runtime = getRuntime();
+			IRubyObject loadPathObject = runtime.getLoadService().getLoadPath();
+			RubyArray originalLoadPaths = null;
+			List<AbstractElement> collected;
+
+			if (loadPathObject instanceof RubyArray && loadPaths != null)
+			{
+				RubyArray loadPathArray = (RubyArray) loadPathObject;
+
+				originalLoadPaths = (RubyArray) loadPathArray.dup();
+
+				for (String loadPath : loadPaths)
+				{
+					loadPathArray.append(runtime.newString(loadPath.replace('\\', '/')));
+				}
+			}
+
+			// The elements only live in this container, keep them out of the element registry. Collecting them on
+			// this thread, rather than looking for new entries in the registry, keeps us from picking up the elements
+			// of a concurrent reload of the same script in the shared container
+			AbstractElement.beginCollectingElements();
+
+			try
+			{
+				container.parse(PathType.ABSOLUTE, path).run();
+			}
+			catch (ParseFailedException e)
+			{
+				ScriptLogger.logError(MessageFormat.format(Messages.ScriptingEngine_Parse_Error, path, e.getMessage()));
+			}
+			catch (EvalFailedException e)
+			{
+				StringWriter sw = new StringWriter();
+				e.getCause().printStackTrace(new PrintWriter(sw));
+				ScriptLogger.logError(MessageFormat.format(Messages.ScriptingEngine_Execution_Error, path,
+						e.getMessage(), sw.toString()));
+			}
+			finally
+			{
+				collected = AbstractElement.endCollectingElements();
+
+				if (originalLoadPaths != null)
+				{
+					((RubyArray) loadPathObject).replace(originalLoadPaths);
+				}
+			}
+
+			return collected;
+		}
+	}
+
+	/**
+	 * The elements a script defined in a container, and the timestamp of the script when it was evaluated
+	 */
+	private static class LoadedScript
+	{
+		final long lastModified;
+		final List<AbstractElement> elements;
+
+		LoadedScript(long lastModified, List<AbstractElement> elements)
+		{
+			this.lastModified = lastModified;
+			this.elements = Collections.unmodifiableList(elements);
+		}
+	}
+
+	private final int size;
+	private final LinkedList<PooledContainer> idle;
+	private final List<PooledContainer> all;
+	private int created;
+	private boolean warming;
+
+	/**
+	 * ScriptingContainerPool
+	 *
+	 * @param size
+	 *            The maximum number of containers. A size of zero disables the pool
+	 */
+	ScriptingContainerPool(int size)
+	{
+		this.size = Math.max(0, size);
+		this.idle = new LinkedList<PooledContainer>();
+		this.all = new ArrayList<PooledContainer>();
+	}
+
+	/**
+	 * Determine if the pool hands out containers at all
+	 *
+	 * @return
+	 */
+	public boolean isEnabled()
+	{
+		return size > 0;
+	}
+
+	/**
+	 * Take a container from the pool, creating one if none is idle and the pool isn't full yet, or waiting for one to
+	 * be released otherwise. Every container acquired must be given back with {@link #release(PooledContainer)}
+	 *
+	 * @return
+	 * @throws InterruptedException
+	 */
+	public PooledContainer acquire() throws InterruptedException
+	{
+		synchronized (this)
+		{
+			while (idle.isEmpty())
+			{
+				if (created < size)
+				{
+					created++;
+					break;
+				}
+
+				wait();
+			}
+
+			if (!idle.isEmpty())
+			{
+				return idle.removeFirst();
+			}
+		}
+
+		// the first container is created on the caller's thread, the rest are warmed up in the background
+		PooledContainer result = createContainerOrGiveBack();
+
+		warm();
+
+		return result;
+	}
+
+	/**
+	 * Give a container back to the pool
+	 *
+	 * @param container
+	 */
+	public synchronized void release(PooledContainer container)
+	{
+		if (container != null)
+		{
+			idle.addFirst(container);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Terminate all containers
+	 */
+	public synchronized void dispose()
+	{
+		for (PooledContainer container : all)
+		{
+			container.container.terminate();
+		}
+
+		all.clear();
+		idle.clear();
+	}
+
+	/**
+	 * Fill the pool up to its size in the background
+	 */
+	private void warm()
+	{
+		synchronized (this)
+		{
+			if (warming || created >= size)
+			{
+				return;
+			}
+
+			warming = true;
+		}
+
+		Job job = new Job("Warm up scripting containers") //$NON-NLS-1$
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				try
+				{
+					while (!monitor.isCanceled())
+					{
+						synchronized (ScriptingContainerPool.this)
+						{
+							if (created >= size)
+							{
+								break;
+							}
+
+							created++;
+						}
+
+						release(createContainerOrGiveBack());
+					}
+				}
+				finally
+				{
+					synchronized (ScriptingContainerPool.this)
+					{
+						warming = false;
+					}
+				}
+
+				return Status.OK_STATUS;
+			}
+		};
+
+		job.setSystem(true);
+		job.setPriority(Job.LONG);
+		job.schedule();
+	}
+
+	/**
+	 * Create a container for a slot that was already counted in {@link #created}, giving the slot back if that fails
+	 *
+	 * @return
+	 */
+	private PooledContainer createContainerOrGiveBack()
+	{
+		try
+		{
+			return createContainer();
+		}
+		catch (RuntimeException e)
+		{
+			synchronized (this)
+			{
+				created--;
+				notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	private PooledContainer createContainer()
+	{
+		ScriptingContainer container = ScriptingEngine.getInstance().createScriptingContainer(
+				LocalContextScope.SINGLETHREAD);
+
+		container.runScriptlet("require 'ruble/isolated'"); //$NON-NLS-1$
+
+		PooledContainer result = new PooledContainer(container);
+
+		synchronized (this)
+		{
+			all.add(result);
+		}
+
+		return result;
+	}
+}
@@ -46,9 +46,16 @@ public class ScriptingEngine
 	private static final String TAG_LOADPATH = "loadPath"; //$NON-NLS-1$
 	private static final String ATTR_PATH = "path"; //$NON-NLS-1$
 
+	/**
+	 * System property holding the number of containers used to run isolated commands. Zero turns isolation off
+	 */
+	private static final String ISOLATED_CONTAINER_COUNT = "studio.isolatedScriptingContainers"; //$NON-NLS-1$
+	private static final int DEFAULT_ISOLATED_CONTAINER_COUNT = 2;
+
 	private static ScriptingEngine instance;
 
 	private ScriptingContainer _scriptingContainer;
+	private ScriptingContainerPool _containerPool;
 	private List<String> _loadPaths;
 	private List<String> _frameworkFiles;
 	private RunType _runType;
@@ -68,7 +75,7 @@ public class ScriptingEngine
 	 * @param scope
 	 * @return
 	 */
-	private ScriptingContainer createScriptingContainer(LocalContextScope scope)
+	ScriptingContainer createScriptingContainer(LocalContextScope scope)
 	{
 		// ScriptingContainer result = new ScriptingContainer(scope, LocalVariableBehavior.PERSISTENT);
 		ScriptingContainer result = new ScriptingContainer(scope, LocalVariableBehavior.TRANSIENT);
@@ -94,8 +101,6 @@ public class ScriptingEngine
 
 			result.setHomeDirectory(jrubyHome.getAbsolutePath());
 
-			// TODO Generate two containers? A global one for loading bundles, a threadsafe one for executing
-			// commands/snippets/etc?
 			// Pre-load 'ruble' framework files!
 			List<String> loadPaths = result.getLoadPaths();
 			loadPaths.addAll(0, getContributedLoadPaths());
@@ -218,6 +223,49 @@ public class ScriptingEngine
 		return instance;
 	}
 
+	/**
+	 * Return the pool of containers used to run isolated commands. The pool holds no containers until an isolated
+	 * command runs
+	 * 
+	 * @return
+	 */
+	public synchronized ScriptingContainerPool getContainerPool()
+	{
+		if (this._containerPool == null)
+		{
+			int size = DEFAULT_ISOLATED_CONTAINER_COUNT;
+			String value = System.getProperty(ISOLATED_CONTAINER_COUNT);
+
+			if (value != null)
+			{
+				try
+				{
+					size = Integer.parseInt(value);
+				}
+				catch (NumberFormatException e)
+				{
+					// ignore
+				}
+			}
+
+			this._containerPool = new ScriptingContainerPool(size);
+		}
+
+		return this._containerPool;
+	}
+
+	/**
+	 * Terminate the containers used to run isolated commands
+	 */
+	public synchronized void disposeContainerPool()
+	{
+		if (this._containerPool != null)
+		{
+			this._containerPool.dispose();
+			this._containerPool = null;
+		}
+	}
+
 	/**
 	 * getScriptingContainer
 	 * 
@@ -13,6 +13,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +31,12 @@ public abstract class AbstractElement implements Comparable<AbstractElement>
 {
 	private static final Map<String, List<AbstractElement>> ELEMENTS_BY_PATH;
 
+	/**
+	 * The elements registered by the current thread while it collects its registrations instead of publishing them,
+	 * see {@link #beginCollectingElements()}
+	 */
+	private static final ThreadLocal<List<AbstractElement>> COLLECTED_ELEMENTS;
+
 	private String _path;
 	private String _displayName;
 
@@ -42,6 +49,7 @@ public abstract class AbstractElement implements Comparable<AbstractElement>
 	static
 	{
 		ELEMENTS_BY_PATH = new HashMap<String, List<AbstractElement>>();
+		COLLECTED_ELEMENTS = new ThreadLocal<List<AbstractElement>>();
 	}
 
 	/**
@@ -113,6 +121,58 @@ public abstract class AbstractElement implements Comparable<AbstractElement>
 		return result;
 	}
 
+	/**
+	 * Keep the elements the current thread registers out of the registry until {@link #endCollectingElements()} is
+	 * called, and collect them instead. This is used to evaluate scripts in containers other than the one that loads
+	 * bundles, without their elements showing up in the model and without mistaking elements other threads register
+	 * at the same time for our own.
+	 */
+	public static void beginCollectingElements()
+	{
+		COLLECTED_ELEMENTS.set(new ArrayList<AbstractElement>());
+	}
+
+	/**
+	 * Stop collecting the elements registered by the current thread
+	 * 
+	 * @return The elements the current thread registered since {@link #beginCollectingElements()}, in the order they
+	 *         were registered
+	 */
+	public static List<AbstractElement> endCollectingElements()
+	{
+		List<AbstractElement> result = COLLECTED_ELEMENTS.get();
+
+		COLLECTED_ELEMENTS.remove();
+
+		if (result == null)
+		{
+			result = Collections.emptyList();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Remove an element from a list of collected elements. Elements are compared by identity
+	 * 
+	 * @param collected
+	 * @param element
+	 * @return true if the element was in the list
+	 */
+	private static boolean removeCollectedElement(List<AbstractElement> collected, AbstractElement element)
+	{
+		for (Iterator<AbstractElement> i = collected.iterator(); i.hasNext();)
+		{
+			if (i.next() == element)
+			{
+				i.remove();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * registerElement
 	 * 
@@ -122,6 +182,16 @@ public abstract class AbstractElement implements Comparable<AbstractElement>
 	{
 		if (element != null)
 		{
+			List<AbstractElement> collected = COLLECTED_ELEMENTS.get();
+
+			if (collected != null)
+			{
+				// an element is registered again when its path changes
+				removeCollectedElement(collected, element);
+				collected.add(element);
+				return;
+			}
+
 			String path = element.getPath();
 
 			if (path != null && path.length() > 0)
@@ -153,6 +223,14 @@ public abstract class AbstractElement implements Comparable<AbstractElement>
 	{
 		if (element != null)
 		{
+			List<AbstractElement> collected = COLLECTED_ELEMENTS.get();
+
+			// elements collected by this thread were never published
+			if (collected != null && removeCollectedElement(collected, element))
+			{
+				return;
+			}
+
 			String path = element.getPath();
 
 			if (path != null && path.length() > 0)
@@ -0,0 +1,737 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.jruby.Ruby;
+import org.jruby.RubyProc;
+import org.jruby.RubyRegexp;
+import org.jruby.util.KCode;
+import org.jruby.util.RegexpOptions;
+
+import com.aptana.core.util.IOUtil;
+import com.aptana.scope.ScopeSelector;
+import com.aptana.scripting.ScriptingEngine;
+
+/**
+ * Reads and writes the binary form of a bundle cache. The file starts with a manifest holding the size and
+ * modification time of every file the bundle was loaded from, so a stale cache is detected without decoding any
+ * elements. The element tree follows. Elements are written as their bean properties, the same ones the YAML cache
+ * stores, with all strings going through a string table so that repeated scopes, property names and paths are only
+ * stored and decoded once.
+ */
+class BinaryBundleCache
+{
+	/**
+	 * Creates the element instances for a cache being read, so the cacher can hand out its lazy variants
+	 */
+	interface ElementFactory
+	{
+		AbstractElement createElement(Class<?> type, String path) throws IOException;
+	}
+
+	/**
+	 * A size and modification time recorded for a bundle file
+	 */
+	static class Fingerprint
+	{
+		final long lastModified;
+		final long length;
+
+		Fingerprint(File file)
+		{
+			this(file.lastModified(), file.length());
+		}
+
+		Fingerprint(long lastModified, long length)
+		{
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		boolean matches(File file)
+		{
+			return file.lastModified() == lastModified && file.length() == length;
+		}
+	}
+
+	private static final int MAGIC = 0x52424331; // "RBC1"
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int NULL_STRING = -1;
+	private static final int NEW_STRING = -2;
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_STRING = 1;
+	private static final byte TAG_TRUE = 2;
+	private static final byte TAG_FALSE = 3;
+	private static final byte TAG_INTEGER = 4;
+	private static final byte TAG_LONG = 5;
+	private static final byte TAG_DOUBLE = 6;
+	private static final byte TAG_CHARACTER = 7;
+	private static final byte TAG_ENUM = 8;
+	private static final byte TAG_ARRAY = 9;
+	private static final byte TAG_LIST = 10;
+	private static final byte TAG_MAP = 11;
+	private static final byte TAG_SCOPE_SELECTOR = 12;
+	private static final byte TAG_REGEXP = 13;
+	private static final byte TAG_ELEMENT = 14;
+
+	private static final String PATH_PROPERTY = "path"; //$NON-NLS-1$
+	private static final String BUILD_PATH_PROPERTY = "buildPath"; //$NON-NLS-1$
+
+	/*
+	 * Properties that are only available after the defining script has run, see the YAML representer
+	 */
+	private static final List<String> SKIPPED_PROPERTIES = new ArrayList<String>();
+	static
+	{
+		SKIPPED_PROPERTIES.add("invoke"); //$NON-NLS-1$
+		SKIPPED_PROPERTIES.add("invokeBlock"); //$NON-NLS-1$
+		SKIPPED_PROPERTIES.add("runtime"); //$NON-NLS-1$
+	}
+
+	private static final Map<Class<?>, PropertyDescriptor[]> PROPERTIES = new HashMap<Class<?>, PropertyDescriptor[]>();
+
+	private final File bundleDirectory;
+	private final IPath bundlePath;
+
+	BinaryBundleCache(File bundleDirectory)
+	{
+		this.bundleDirectory = bundleDirectory;
+		this.bundlePath = Path.fromOSString(bundleDirectory.getAbsolutePath());
+	}
+
+	/**
+	 * Write the bundle and the fingerprints of the files it was loaded from
+	 *
+	 * @param file
+	 * @param be
+	 * @param bundleFiles
+	 * @throws IOException
+	 */
+	void write(File file, BundleElement be, Collection<File> bundleFiles) throws IOException
+	{
+		Writer writer = new Writer(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+
+		try
+		{
+			writer.out.writeInt(MAGIC);
+			writer.out.writeInt(FORMAT_VERSION);
+
+			writer.out.writeInt(bundleFiles.size());
+			for (File bundleFile : bundleFiles)
+			{
+				writer.writeString(relativize(bundleFile.getAbsolutePath()));
+				writer.out.writeLong(bundleFile.lastModified());
+				writer.out.writeLong(bundleFile.length());
+			}
+
+			writer.writeValue(be);
+		}
+		finally
+		{
+			writer.out.close();
+		}
+	}
+
+	/**
+	 * Read just the manifest of a cache file
+	 *
+	 * @param file
+	 * @return the fingerprints, keyed by absolute file
+	 * @throws IOException
+	 */
+	Map<File, Fingerprint> readManifest(File file) throws IOException
+	{
+		Reader reader = open(file);
+
+		try
+		{
+			return reader.readManifest();
+		}
+		finally
+		{
+			reader.in.close();
+		}
+	}
+
+	/**
+	 * Read the bundle from a cache file
+	 *
+	 * @param file
+	 * @param factory
+	 * @return
+	 * @throws IOException
+	 */
+	BundleElement read(File file, ElementFactory factory) throws IOException
+	{
+		Reader reader = open(file);
+
+		try
+		{
+			reader.readManifest();
+
+			Object value = reader.readValue(factory);
+
+			if (!(value instanceof BundleElement))
+			{
+				throw new IOException(MessageFormat.format("No bundle in cache file {0}", file)); //$NON-NLS-1$
+			}
+
+			return (BundleElement) value;
+		}
+		finally
+		{
+			reader.in.close();
+		}
+	}
+
+	/**
+	 * Determine if any of the specified files differ from the manifest, or if any file in the manifest has changed or
+	 * is gone
+	 *
+	 * @param manifest
+	 * @param bundleFiles
+	 * @return
+	 */
+	static boolean isStale(Map<File, Fingerprint> manifest, Collection<File> bundleFiles)
+	{
+		Map<File, Fingerprint> remaining = new HashMap<File, Fingerprint>(manifest);
+
+		for (File bundleFile : bundleFiles)
+		{
+			Fingerprint fingerprint = remaining.remove(bundleFile.getAbsoluteFile());
+
+			if (fingerprint == null || !fingerprint.matches(bundleFile))
+			{
+				return true;
+			}
+		}
+
+		// files the caller didn't know about, e.g. element paths outside the usual script folders
+		for (Map.Entry<File, Fingerprint> entry : remaining.entrySet())
+		{
+			if (!entry.getValue().matches(entry.getKey()))
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private Reader open(File file) throws IOException
+	{
+		Reader reader = new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+
+		if (reader.in.readInt() != MAGIC || reader.in.readInt() != FORMAT_VERSION)
+		{
+			reader.in.close();
+			throw new IOException(MessageFormat.format("Unsupported bundle cache file {0}", file)); //$NON-NLS-1$
+		}
+
+		return reader;
+	}
+
+	private String relativize(String path)
+	{
+		IPath pathObj = Path.fromOSString(path);
+
+		if (bundlePath.isPrefixOf(pathObj))
+		{
+			return pathObj.makeRelativeTo(bundlePath).toOSString();
+		}
+
+		return path;
+	}
+
+	private String absolutize(String path)
+	{
+		if (path == null || Path.fromOSString(path).isAbsolute())
+		{
+			return path;
+		}
+
+		return new File(bundleDirectory, path).getAbsolutePath();
+	}
+
+	/**
+	 * Return the bean properties that are written for an element class: those with a getter and a setter, minus the
+	 * ones that only exist once the defining script has run
+	 *
+	 * @param type
+	 * @return
+	 * @throws IOException
+	 */
+	private static synchronized PropertyDescriptor[] getProperties(Class<?> type) throws IOException
+	{
+		PropertyDescriptor[] result = PROPERTIES.get(type);
+
+		if (result == null)
+		{
+			List<PropertyDescriptor> properties = new ArrayList<PropertyDescriptor>();
+
+			try
+			{
+				for (PropertyDescriptor property : Introspector.getBeanInfo(type).getPropertyDescriptors())
+				{
+					Class<?> propertyType = property.getPropertyType();
+
+					if (property.getReadMethod() == null || property.getWriteMethod() == null
+							|| PATH_PROPERTY.equals(property.getName())
+							|| SKIPPED_PROPERTIES.contains(property.getName()) || propertyType == Ruby.class
+							|| propertyType == RubyProc.class || propertyType == KCode.class)
+					{
+						continue;
+					}
+
+					properties.add(property);
+				}
+			}
+			catch (IntrospectionException e)
+			{
+				IOException ioe = new IOException(e.getMessage());
+				ioe.initCause(e);
+				throw ioe;
+			}
+
+			result = properties.toArray(new PropertyDescriptor[properties.size()]);
+			PROPERTIES.put(type, result);
+		}
+
+		return result;
+	}
+
+	private static Class<?> loadClass(String name) throws IOException
+	{
+		try
+		{
+			return Class.forName(name, true, BinaryBundleCache.class.getClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			IOException ioe = new IOException(e.getMessage());
+			ioe.initCause(e);
+			throw ioe;
+		}
+	}
+
+	/**
+	 * Encodes values onto a stream
+	 */
+	private class Writer
+	{
+		private final DataOutputStream out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+		Writer(DataOutputStream out)
+		{
+			this.out = out;
+		}
+
+		void writeString(String value) throws IOException
+		{
+			if (value == null)
+			{
+				out.writeInt(NULL_STRING);
+				return;
+			}
+
+			Integer index = strings.get(value);
+
+			if (index != null)
+			{
+				out.writeInt(index);
+				return;
+			}
+
+			strings.put(value, strings.size());
+
+			byte[] bytes = value.getBytes(IOUtil.UTF_8);
+
+			out.writeInt(NEW_STRING);
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		void writeValue(Object value) throws IOException
+		{
+			if (value == null)
+			{
+				out.writeByte(TAG_NULL);
+			}
+			else if (value instanceof String)
+			{
+				out.writeByte(TAG_STRING);
+				writeString((String) value);
+			}
+			else if (value instanceof Boolean)
+			{
+				out.writeByte(((Boolean) value).booleanValue() ? TAG_TRUE : TAG_FALSE);
+			}
+			else if (value instanceof Integer)
+			{
+				out.writeByte(TAG_INTEGER);
+				out.writeInt((Integer) value);
+			}
+			else if (value instanceof Long)
+			{
+				out.writeByte(TAG_LONG);
+				out.writeLong((Long) value);
+			}
+			else if (value instanceof Double)
+			{
+				out.writeByte(TAG_DOUBLE);
+				out.writeDouble((Double) value);
+			}
+			else if (value instanceof Character)
+			{
+				out.writeByte(TAG_CHARACTER);
+				out.writeChar((Character) value);
+			}
+			else if (value instanceof Enum<?>)
+			{
+				Enum<?> e = (Enum<?>) value;
+
+				out.writeByte(TAG_ENUM);
+				writeString(e.getDeclaringClass().getName());
+				writeString(e.name());
+			}
+			else if (value instanceof Object[])
+			{
+				Object[] array = (Object[]) value;
+
+				out.writeByte(TAG_ARRAY);
+				writeString(array.getClass().getComponentType().getName());
+				out.writeInt(array.length);
+				for (Object item : array)
+				{
+					writeValue(item);
+				}
+			}
+			else if (value instanceof List<?>)
+			{
+				List<?> list = (List<?>) value;
+
+				out.writeByte(TAG_LIST);
+				out.writeInt(list.size());
+				for (Object item : list)
+				{
+					writeValue(item);
+				}
+			}
+			else if (value instanceof Map<?, ?>)
+			{
+				Map<?, ?> map = (Map<?, ?>) value;
+
+				out.writeByte(TAG_MAP);
+				out.writeInt(map.size());
+				for (Map.Entry<?, ?> entry : map.entrySet())
+				{
+					writeValue(entry.getKey());
+					writeValue(entry.getValue());
+				}
+			}
+			else if (value instanceof ScopeSelector)
+			{
+				out.writeByte(TAG_SCOPE_SELECTOR);
+				writeString(value.toString());
+			}
+			else if (value instanceof RubyRegexp)
+			{
+				out.writeByte(TAG_REGEXP);
+				writeString(value.toString());
+			}
+			else if (value instanceof AbstractElement)
+			{
+				writeElement((AbstractElement) value);
+			}
+			else
+			{
+				// let the cacher fall back to YAML rather than silently dropping data
+				throw new IOException(MessageFormat.format(
+						"Unable to write a value of type {0} to the bundle cache", value.getClass().getName())); //$NON-NLS-1$
+			}
+		}
+
+		private void writeElement(AbstractElement element) throws IOException
+		{
+			Class<?> type = element.getClass();
+
+			// lazy elements are written as the element they stand in for
+			while (type.getEnclosingClass() == BundleCacher.class)
+			{
+				type = type.getSuperclass();
+			}
+
+			PropertyDescriptor[] properties = getProperties(type);
+
+			out.writeByte(TAG_ELEMENT);
+			writeString(type.getName());
+			writeString(relativize(element.getPath()));
+			out.writeInt(properties.length);
+
+			for (PropertyDescriptor property : properties)
+			{
+				Object value;
+
+				try
+				{
+					value = property.getReadMethod().invoke(element);
+				}
+				catch (Exception e)
+				{
+					IOException ioe = new IOException(e.getMessage());
+					ioe.initCause(e);
+					throw ioe;
+				}
+
+				if (BUILD_PATH_PROPERTY.equals(property.getName()) && value instanceof String)
+				{
+					value = relativize((String) value);
+				}
+
+				writeString(property.getName());
+				writeValue(value);
+			}
+		}
+	}
+
+	/**
+	 * Decodes values from a stream
+	 */
+	private class Reader
+	{
+		private final DataInputStream in;
+		private final List<String> strings = new ArrayList<String>();
+
+		Reader(DataInputStream in)
+		{
+			this.in = in;
+		}
+
+		Map<File, Fingerprint> readManifest() throws IOException
+		{
+			int count = in.readInt();
+			Map<File, Fingerprint> result = new LinkedHashMap<File, Fingerprint>(count);
+
+			for (int i = 0; i < count; i++)
+			{
+				File file = new File(absolutize(readString()));
+
+				result.put(file, new Fingerprint(in.readLong(), in.readLong()));
+			}
+
+			return result;
+		}
+
+		String readString() throws IOException
+		{
+			int index = in.readInt();
+
+			if (index == NULL_STRING)
+			{
+				return null;
+			}
+			if (index != NEW_STRING)
+			{
+				return strings.get(index);
+			}
+
+			byte[] bytes = new byte[in.readInt()];
+
+			in.readFully(bytes);
+
+			String result = new String(bytes, IOUtil.UTF_8);
+
+			strings.add(result);
+
+			return result;
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Object readValue(ElementFactory factory) throws IOException
+		{
+			byte tag = in.readByte();
+
+			switch (tag)
+			{
+				case TAG_NULL:
+					return null;
+
+				case TAG_STRING:
+					return readString();
+
+				case TAG_TRUE:
+					return Boolean.TRUE;
+
+				case TAG_FALSE:
+					return Boolean.FALSE;
+
+				case TAG_INTEGER:
+					return in.readInt();
+
+				case TAG_LONG:
+					return in.readLong();
+
+				case TAG_DOUBLE:
+					return in.readDouble();
+
+				case TAG_CHARACTER:
+					return in.readChar();
+
+				case TAG_ENUM:
+				{
+					Class enumType = loadClass(readString());
+
+					return Enum.valueOf(enumType, readString());
+				}
+
+				case TAG_ARRAY:
+				{
+					Class<?> componentType = loadClass(readString());
+					int length = in.readInt();
+					Object array = Array.newInstance(componentType, length);
+
+					for (int i = 0; i < length; i++)
+					{
+						Array.set(array, i, readValue(factory));
+					}
+
+					return array;
+				}
+
+				case TAG_LIST:
+				{
+					int size = in.readInt();
+					List<Object> list = new ArrayList<Object>(size);
+
+					for (int i = 0; i < size; i++)
+					{
+						list.add(readValue(factory));
+					}
+
+					return list;
+				}
+
+				case TAG_MAP:
+				{
+					int size = in.readInt();
+					Map<Object, Object> map = new LinkedHashMap<Object, Object>(size);
+
+					for (int i = 0; i < size; i++)
+					{
+						Object key = readValue(factory);
+
+						map.put(key, readValue(factory));
+					}
+
+					return map;
+				}
+
+				case TAG_SCOPE_SELECTOR:
+					return new ScopeSelector(readString());
+
+				case TAG_REGEXP:
+				{
+					String source = readString();
+
+					// regexps are written in their /.../ form, see the YAML cache
+					if (source != null && source.length() > 2 && source.charAt(0) == '/')
+					{
+						source = source.substring(1, source.length() - 1);
+					}
+
+					return RubyRegexp.newRegexp(ScriptingEngine.getInstance().getScriptingContainer().getProvider()
+							.getRuntime(), source, RegexpOptions.NULL_OPTIONS);
+				}
+
+				case TAG_ELEMENT:
+					return readElement(factory);
+
+				default:
+					throw new IOException(MessageFormat.format("Unknown bundle cache tag {0}", tag)); //$NON-NLS-1$
+			}
+		}
+
+		private AbstractElement readElement(ElementFactory factory) throws IOException
+		{
+			Class<?> type = loadClass(readString());
+			String path = absolutize(readString());
+			AbstractElement element = factory.createElement(type, path);
+			Map<String, PropertyDescriptor> properties = new HashMap<String, PropertyDescriptor>();
+
+			for (PropertyDescriptor property : getProperties(type))
+			{
+				properties.put(property.getName(), property);
+			}
+
+			int count = in.readInt();
+
+			for (int i = 0; i < count; i++)
+			{
+				String name = readString();
+				Object value = readValue(factory);
+				PropertyDescriptor property = properties.get(name);
+
+				if (property == null)
+				{
+					throw new IOException(MessageFormat.format("Unknown property {0} of {1}", name, type.getName())); //$NON-NLS-1$
+				}
+				if (value == null && property.getPropertyType().isPrimitive())
+				{
+					continue;
+				}
+				if (BUILD_PATH_PROPERTY.equals(name) && value instanceof String)
+				{
+					value = absolutize((String) value);
+				}
+
+				Method setter = property.getWriteMethod();
+
+				try
+				{
+					setter.invoke(element, value);
+				}
+				catch (Exception e)
+				{
+					IOException ioe = new IOException(e.getMessage());
+					ioe.initCause(e);
+					throw ioe;
+				}
+			}
+
+			element.setPath(path);
+
+			return element;
+		}
+	}
+}
@@ -18,6 +18,7 @@ import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -68,6 +69,11 @@ public class BundleCacher
 	 */
 	private static final String CACHE_FILE = "cache.yml"; //$NON-NLS-1$
 
+	/**
+	 * The compact binary form of the model, preferred over the YAML file when present. See {@link BinaryBundleCache}
+	 */
+	private static final String BINARY_CACHE_FILE = "cache.{0}_{1}.bin"; //$NON-NLS-1$
+
 	private static final String REGEXP_TAG = "!regexp"; //$NON-NLS-1$
 	private static final String SCOPE_SELECTOR_TAG = "!scope"; //$NON-NLS-1$
 	private static final String ENVIRONMENT_TAG = "!environment"; //$NON-NLS-1$
@@ -104,7 +110,11 @@ public class BundleCacher
 		private void updateCacheIfNecessary(File script)
 		{
 			File bundleDir = getBundleDir(script);
-			File cacheFile = getCacheFile(bundleDir);
+			File cacheFile = getBinaryCacheFile(bundleDir);
+			if (!cacheFile.isFile())
+			{
+				cacheFile = getCacheFile(bundleDir);
+			}
 
 			List<File> bundleFiles = new ArrayList<File>();
 			bundleFiles.add(script);
@@ -154,6 +164,11 @@ public class BundleCacher
 			return false;
 		}
 
+		if (cacheBinary(be))
+		{
+			return true;
+		}
+
 		// Now write the config file out...
 		OutputStreamWriter writer = null;
 		File cacheFile = null;
@@ -244,6 +259,81 @@ public class BundleCacher
 		return false;
 	}
 
+	/**
+	 * Write the binary cache for a bundle and make sure it reads back to the same model. On success the YAML cache for
+	 * the current locale is no longer needed and is removed.
+	 * 
+	 * @param be
+	 * @return true if the binary cache was written
+	 */
+	private boolean cacheBinary(BundleElement be)
+	{
+		File bundleDirectory = be.getBundleDirectory();
+		if (!bundleDirectory.canWrite())
+		{
+			return false;
+		}
+
+		File cacheFile = getBinaryCacheFile(bundleDirectory);
+		BinaryBundleCache binaryCache = new BinaryBundleCache(bundleDirectory);
+		try
+		{
+			binaryCache.write(cacheFile, be, getCachedFiles(be));
+
+			BundleElement be2 = binaryCache.read(cacheFile, new LazyElementFactory());
+
+			// invoke blocks aren't written, so compare the same way the YAML cache does
+			if (be.toSource(false).equals(be2.toSource(false)))
+			{
+				Locale locale = Locale.getDefault();
+				new File(bundleDirectory, MessageFormat.format(
+						"cache.{0}_{1}.yml", locale.getLanguage(), locale.getCountry())).delete(); //$NON-NLS-1$
+				return true;
+			}
+		}
+		catch (IOException e)
+		{
+			IdeLog.logWarning(ScriptingActivator.getDefault(), e);
+		}
+
+		IdeLog.logInfo(ScriptingActivator.getDefault(),
+				MessageFormat.format(Messages.BundleCacher_BinaryCacheUnavailableMsg, bundleDirectory.getAbsolutePath()));
+		cacheFile.delete();
+		return false;
+	}
+
+	/**
+	 * Return every file the model of a bundle was built from: its scripts, its localization files and the files
+	 * referenced by its elements
+	 * 
+	 * @param be
+	 * @return
+	 */
+	private Set<File> getCachedFiles(BundleElement be)
+	{
+		File bundleDirectory = be.getBundleDirectory();
+		Set<File> files = new LinkedHashSet<File>();
+
+		files.addAll(getBundleManager().getBundleScripts(bundleDirectory));
+		files.addAll(getBundleManager().localizationFiles(bundleDirectory));
+		files.addAll(getFiles(be, new NullProgressMonitor()));
+
+		return files;
+	}
+
+	/**
+	 * Returns the binary cache file for the current locale
+	 * 
+	 * @param bundleDirectory
+	 * @return
+	 */
+	private File getBinaryCacheFile(File bundleDirectory)
+	{
+		Locale current = Locale.getDefault();
+		return new File(bundleDirectory, MessageFormat.format(BINARY_CACHE_FILE, current.getLanguage(),
+				current.getCountry()));
+	}
+
 	/**
 	 * Tries to return the cache file that matches the current locale.
 	 * 
@@ -300,6 +390,22 @@ public class BundleCacher
 		BundleElement be = null;
 		try
 		{
+			File binaryCacheFile = getBinaryCacheFile(bundleDirectory);
+			if (binaryCacheFile.isFile())
+			{
+				try
+				{
+					return loadBinary(bundleDirectory, binaryCacheFile, bundleFiles, sub, ignoreFileStatus);
+				}
+				catch (Exception e)
+				{
+					// Fall back to the YAML cache, if there is one
+					IdeLog.logWarning(ScriptingActivator.getDefault(),
+							MessageFormat.format("Failed to load bundle {0}", bundleDirectory.getAbsolutePath()), e); //$NON-NLS-1$
+					binaryCacheFile.delete();
+				}
+			}
+
 			File cacheFile = getCacheFile(bundleDirectory);
 			if (!cacheFile.exists())
 			{
@@ -364,6 +470,42 @@ public class BundleCacher
 		return be;
 	}
 
+	/**
+	 * Load the bundle from its binary cache. The manifest is checked before any element is read, so a stale cache
+	 * costs a single small read
+	 * 
+	 * @param bundleDirectory
+	 * @param cacheFile
+	 * @param bundleFiles
+	 * @param sub
+	 * @param ignoreFileStatus
+	 * @return the bundle, or null if the cache is out of date
+	 * @throws IOException
+	 */
+	private BundleElement loadBinary(File bundleDirectory, File cacheFile, List<File> bundleFiles, SubMonitor sub,
+			boolean ignoreFileStatus) throws IOException
+	{
+		BinaryBundleCache binaryCache = new BinaryBundleCache(bundleDirectory);
+
+		sub.subTask(MessageFormat.format(Messages.BundleCacher_ComparingTimestampSubTaskName,
+				cacheFile.getAbsolutePath()));
+		if (!ignoreFileStatus && BinaryBundleCache.isStale(binaryCache.readManifest(cacheFile), bundleFiles))
+		{
+			IdeLog.logInfo(ScriptingActivator.getDefault(),
+					MessageFormat.format(Messages.BundleCacher_OutOfDateCacheMsg, bundleDirectory.getPath()));
+			return null;
+		}
+		sub.worked(20);
+
+		sub.subTask(MessageFormat.format(Messages.BundleCacher_LoadCacheTaskName, bundleDirectory.getAbsolutePath()));
+		// Unlike the YAML load this isn't serialized, so bundle caches can be read in parallel
+		BundleElement be = binaryCache.read(cacheFile, new LazyElementFactory());
+		sub.worked(80);
+
+		fireScriptLoadedEvents(be, sub.newChild(20));
+		return be;
+	}
+
 	private void fireScriptLoadedEvents(BundleElement be, IProgressMonitor monitor)
 	{
 		SubMonitor sub = SubMonitor.convert(monitor, 100);
@@ -1009,6 +1151,47 @@ public class BundleCacher
 		}
 	}
 
+	/**
+	 * Creates the elements read from a binary cache, using the same lazy variants as the YAML constructors
+	 */
+	private class LazyElementFactory implements BinaryBundleCache.ElementFactory
+	{
+		public AbstractElement createElement(Class<?> type, String path) throws IOException
+		{
+			if (type == CommandElement.class)
+			{
+				return new LazyCommandElement(path);
+			}
+			if (type == ContentAssistElement.class)
+			{
+				return new LazyContentAssistElement(path);
+			}
+			if (type == TemplateElement.class)
+			{
+				return new LazyTemplateElement(path);
+			}
+			if (type == EnvironmentElement.class)
+			{
+				return new LazyEnvironmentElement(path);
+			}
+			if (!AbstractElement.class.isAssignableFrom(type))
+			{
+				throw new IOException(MessageFormat.format("{0} is not a bundle element", type.getName())); //$NON-NLS-1$
+			}
+
+			try
+			{
+				return (AbstractElement) type.getConstructor(String.class).newInstance(path);
+			}
+			catch (Exception e)
+			{
+				IOException ioe = new IOException(e.getMessage());
+				ioe.initCause(e);
+				throw ioe;
+			}
+		}
+	}
+
 	/**
 	 * Lazily loads the real command element from disk when we try to access the invoke string/block or try to execute
 	 * it, since that stuff doesn't get serialized.
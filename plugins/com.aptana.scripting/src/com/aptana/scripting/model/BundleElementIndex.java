@@ -0,0 +1,448 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.aptana.scope.IScopeSelector;
+import com.aptana.scope.ScopeSelector;
+
+/**
+ * An index of the visible commands, snippets, content assists, environments and smart typing pairs by the scope names
+ * their selectors need. It answers "which elements could match this scope" without matching the selector of every
+ * element in every bundle.
+ * <p>
+ * The index is kept up to date per bundle entry: element visibility events only mark the entry they came from as
+ * stale, and stale entries are re-read from the bundle manager on the next lookup.
+ */
+class BundleElementIndex implements ElementVisibilityListener
+{
+	private static final Pattern SPACES = Pattern.compile("\\s+"); //$NON-NLS-1$
+
+	/**
+	 * Elements of one type, keyed by the names their selectors need
+	 */
+	private static class ScopeIndex<T extends AbstractBundleElement>
+	{
+		private final Map<String, Set<T>> byName = new HashMap<String, Set<T>>();
+		private final Set<T> unanchored = new LinkedHashSet<T>();
+
+		void add(T element)
+		{
+			IScopeSelector selector = element.getScopeSelector();
+			Set<String> names = (selector instanceof ScopeSelector) ? ((ScopeSelector) selector).getAnchorNames()
+					: null;
+
+			if (names == null)
+			{
+				unanchored.add(element);
+				return;
+			}
+
+			for (String name : names)
+			{
+				Set<T> elements = byName.get(name);
+
+				if (elements == null)
+				{
+					elements = new LinkedHashSet<T>();
+					byName.put(name, elements);
+				}
+
+				elements.add(element);
+			}
+		}
+
+		void remove(T element)
+		{
+			if (unanchored.remove(element))
+			{
+				return;
+			}
+
+			for (Set<T> elements : byName.values())
+			{
+				elements.remove(element);
+			}
+		}
+
+		void clear()
+		{
+			byName.clear();
+			unanchored.clear();
+		}
+
+		void collect(String scope, Set<T> result)
+		{
+			result.addAll(unanchored);
+
+			if (scope == null || byName.isEmpty())
+			{
+				return;
+			}
+
+			for (String segment : SPACES.split(scope))
+			{
+				// a name matches a segment when it is the segment itself or the segment up to one of its periods
+				for (int i = segment.indexOf('.'); i != -1; i = segment.indexOf('.', i + 1))
+				{
+					addAll(segment.substring(0, i), result);
+				}
+
+				addAll(segment, result);
+			}
+		}
+
+		private void addAll(String name, Set<T> result)
+		{
+			Set<T> elements = byName.get(name);
+
+			if (elements != null)
+			{
+				result.addAll(elements);
+			}
+		}
+	}
+
+	/**
+	 * Where an indexed element came from
+	 */
+	private static class Origin
+	{
+		final String bundleName;
+		final int order;
+
+		Origin(String bundleName, int order)
+		{
+			this.bundleName = bundleName;
+			this.order = order;
+		}
+	}
+
+	/**
+	 * The elements an entry contributed to the index when it was last read
+	 */
+	private static class EntryElements
+	{
+		List<CommandElement> commands = Collections.emptyList();
+		List<SnippetElement> snippets = Collections.emptyList();
+		List<ContentAssistElement> contentAssists = Collections.emptyList();
+		List<EnvironmentElement> envs = Collections.emptyList();
+		List<SmartTypingPairsElement> pairs = Collections.emptyList();
+	}
+
+	private final BundleManager manager;
+
+	private final ScopeIndex<CommandElement> commands = new ScopeIndex<CommandElement>();
+	private final ScopeIndex<SnippetElement> snippets = new ScopeIndex<SnippetElement>();
+	private final ScopeIndex<ContentAssistElement> contentAssists = new ScopeIndex<ContentAssistElement>();
+	private final ScopeIndex<EnvironmentElement> envs = new ScopeIndex<EnvironmentElement>();
+	private final ScopeIndex<SmartTypingPairsElement> pairs = new ScopeIndex<SmartTypingPairsElement>();
+
+	/**
+	 * What each bundle entry contributed, by bundle name. Guarded by this
+	 */
+	private final Map<String, EntryElements> entries = new HashMap<String, EntryElements>();
+
+	/**
+	 * The bundle name each indexed element was read from, and the order it was read in. Lookups return elements in
+	 * that order, so elements of one bundle come back in the same order the bundle entry lists them. Guarded by this
+	 */
+	private final Map<AbstractBundleElement, Origin> origins = new IdentityHashMap<AbstractBundleElement, Origin>();
+	private int nextOrder;
+
+	private final Comparator<AbstractBundleElement> originComparator = new Comparator<AbstractBundleElement>()
+	{
+		public int compare(AbstractBundleElement o1, AbstractBundleElement o2)
+		{
+			int order1 = origins.get(o1).order;
+			int order2 = origins.get(o2).order;
+
+			return (order1 < order2) ? -1 : ((order1 == order2) ? 0 : 1);
+		}
+	};
+
+	/**
+	 * Whether the index has been filled yet. Events are ignored until it is
+	 */
+	private volatile boolean initialized;
+
+	/**
+	 * Elements whose visibility changed since the last lookup. Guarded by itself, never while holding another lock so
+	 * events fired from within bundle manager locks can't deadlock with a lookup
+	 */
+	private final List<AbstractElement> changedElements = new ArrayList<AbstractElement>();
+
+	/**
+	 * BundleElementIndex
+	 *
+	 * @param manager
+	 */
+	BundleElementIndex(BundleManager manager)
+	{
+		this.manager = manager;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * com.aptana.scripting.model.ElementVisibilityListener#elementBecameHidden(com.aptana.scripting.model.AbstractElement
+	 * )
+	 */
+	public void elementBecameHidden(AbstractElement element)
+	{
+		elementChanged(element);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see
+	 * com.aptana.scripting.model.ElementVisibilityListener#elementBecameVisible(com.aptana.scripting.model.AbstractElement
+	 * )
+	 */
+	public void elementBecameVisible(AbstractElement element)
+	{
+		elementChanged(element);
+	}
+
+	private void elementChanged(AbstractElement element)
+	{
+		if (!initialized)
+		{
+			return;
+		}
+
+		if (element instanceof CommandElement || element instanceof EnvironmentElement
+				|| element instanceof SmartTypingPairsElement)
+		{
+			synchronized (changedElements)
+			{
+				changedElements.add(element);
+			}
+		}
+	}
+
+	/**
+	 * Drop everything. The index is filled again on the next lookup
+	 */
+	synchronized void clear()
+	{
+		synchronized (changedElements)
+		{
+			changedElements.clear();
+		}
+
+		commands.clear();
+		snippets.clear();
+		contentAssists.clear();
+		envs.clear();
+		pairs.clear();
+		entries.clear();
+		origins.clear();
+		nextOrder = 0;
+		initialized = false;
+	}
+
+	/**
+	 * Return the visible commands whose selectors may match one of the specified scopes. Like the commands of a bundle
+	 * entry, this includes snippets, content assists and templates
+	 *
+	 * @param scopes
+	 * @return
+	 */
+	synchronized List<CommandElement> getCommands(String[] scopes)
+	{
+		update();
+
+		return collect(commands, scopes);
+	}
+
+	/**
+	 * Return the visible snippets whose selectors may match one of the specified scopes
+	 *
+	 * @param scopes
+	 * @return
+	 */
+	synchronized List<SnippetElement> getSnippets(String[] scopes)
+	{
+		update();
+
+		return collect(snippets, scopes);
+	}
+
+	/**
+	 * Return the visible content assists whose selectors may match one of the specified scopes
+	 *
+	 * @param scopes
+	 * @return
+	 */
+	synchronized List<ContentAssistElement> getContentAssists(String[] scopes)
+	{
+		update();
+
+		return collect(contentAssists, scopes);
+	}
+
+	/**
+	 * Return the visible environment elements whose selectors may match one of the specified scopes
+	 *
+	 * @param scopes
+	 * @return
+	 */
+	synchronized List<EnvironmentElement> getEnvs(String[] scopes)
+	{
+		update();
+
+		return collect(envs, scopes);
+	}
+
+	/**
+	 * Return the visible smart typing pairs whose selectors may match one of the specified scopes
+	 *
+	 * @param scopes
+	 * @return
+	 */
+	synchronized List<SmartTypingPairsElement> getPairs(String[] scopes)
+	{
+		update();
+
+		return collect(pairs, scopes);
+	}
+
+	private <T extends AbstractBundleElement> List<T> collect(ScopeIndex<T> index, String[] scopes)
+	{
+		Set<T> elements = new HashSet<T>();
+
+		if (scopes != null)
+		{
+			for (String scope : scopes)
+			{
+				index.collect(scope, elements);
+			}
+		}
+
+		List<T> result = new ArrayList<T>(elements);
+
+		Collections.sort(result, originComparator);
+
+		return result;
+	}
+
+	/**
+	 * Re-read the entries that changed since the last lookup, or all entries the first time around
+	 */
+	private void update()
+	{
+		// events are recorded from here on, so nothing is lost between draining them and reading the entries
+		boolean readAll = !initialized;
+		initialized = true;
+
+		List<AbstractElement> changed;
+
+		synchronized (changedElements)
+		{
+			changed = new ArrayList<AbstractElement>(changedElements);
+			changedElements.clear();
+		}
+
+		Set<String> names;
+
+		if (readAll)
+		{
+			names = new HashSet<String>(manager.getBundleNames());
+			names.addAll(entries.keySet());
+		}
+		else
+		{
+			names = new HashSet<String>();
+
+			for (AbstractElement element : changed)
+			{
+				// hidden elements have usually left their bundle already, so use the one we read them from as well
+				Origin origin = origins.get(element);
+
+				if (origin != null)
+				{
+					names.add(origin.bundleName);
+				}
+
+				BundleElement bundle = ((AbstractBundleElement) element).getOwningBundle();
+
+				if (bundle != null)
+				{
+					names.add(bundle.getDisplayName());
+				}
+			}
+		}
+
+		for (String name : names)
+		{
+			updateEntry(name);
+		}
+	}
+
+	private void updateEntry(String name)
+	{
+		EntryElements previous = entries.remove(name);
+
+		if (previous != null)
+		{
+			removeAll(commands, previous.commands);
+			removeAll(snippets, previous.snippets);
+			removeAll(contentAssists, previous.contentAssists);
+			removeAll(envs, previous.envs);
+			removeAll(pairs, previous.pairs);
+		}
+
+		BundleEntry entry = manager.getBundleEntry(name);
+
+		if (entry != null)
+		{
+			EntryElements current = new EntryElements();
+
+			current.commands = addAll(commands, entry.getCommands(), name);
+			current.snippets = addAll(snippets, entry.getSnippets(), name);
+			current.contentAssists = addAll(contentAssists, entry.getContentAssists(), name);
+			current.envs = addAll(envs, entry.getEnvs(), name);
+			current.pairs = addAll(pairs, entry.getPairs(), name);
+
+			entries.put(name, current);
+		}
+	}
+
+	private <T extends AbstractBundleElement> List<T> addAll(ScopeIndex<T> index, List<T> elements, String name)
+	{
+		for (T element : elements)
+		{
+			index.add(element);
+			origins.put(element, new Origin(name, nextOrder++));
+		}
+
+		return elements;
+	}
+
+	private <T extends AbstractBundleElement> void removeAll(ScopeIndex<T> index, Collection<T> elements)
+	{
+		for (T element : elements)
+		{
+			index.remove(element);
+			origins.remove(element);
+		}
+	}
+}
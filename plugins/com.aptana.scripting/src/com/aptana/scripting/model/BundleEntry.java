@@ -145,6 +145,7 @@ public class BundleEntry
 		private Set<BundleElement> becameHidden;
 
 		private ChildVisibilityContext<CommandElement> commands;
+		private ChildVisibilityContext<ContentAssistElement> contentAssists;
 		private ChildVisibilityContext<EnvironmentElement> envs;
 		private ChildVisibilityContext<MenuElement> menus;
 		private ChildVisibilityContext<SmartTypingPairsElement> pairs;
@@ -181,7 +182,7 @@ public class BundleEntry
 				preVisibleBundles = getContributingBundles();
 			}
 
-			if (elementClass == null || elementClass == CommandElement.class)
+			if (elementClass == null || CommandElement.class.isAssignableFrom(elementClass))
 			{
 				commands = new ChildVisibilityContext<CommandElement>()
 				{
@@ -192,7 +193,18 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == EnvironmentElement.class)
+			if (elementClass == null || ContentAssistElement.class.isAssignableFrom(elementClass))
+			{
+				contentAssists = new ChildVisibilityContext<ContentAssistElement>()
+				{
+					public List<ContentAssistElement> getElements()
+					{
+						return getContentAssists();
+					}
+				};
+			}
+
+			if (elementClass == null || EnvironmentElement.class.isAssignableFrom(elementClass))
 			{
 				envs = new ChildVisibilityContext<EnvironmentElement>()
 				{
@@ -203,7 +215,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == MenuElement.class)
+			if (elementClass == null || MenuElement.class.isAssignableFrom(elementClass))
 			{
 				menus = new ChildVisibilityContext<MenuElement>()
 				{
@@ -214,7 +226,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == SmartTypingPairsElement.class)
+			if (elementClass == null || SmartTypingPairsElement.class.isAssignableFrom(elementClass))
 			{
 				pairs = new ChildVisibilityContext<SmartTypingPairsElement>()
 				{
@@ -225,7 +237,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == ProjectTemplateElement.class)
+			if (elementClass == null || ProjectTemplateElement.class.isAssignableFrom(elementClass))
 			{
 				projectTemplates = new ChildVisibilityContext<ProjectTemplateElement>()
 				{
@@ -236,7 +248,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == ProjectSampleElement.class)
+			if (elementClass == null || ProjectSampleElement.class.isAssignableFrom(elementClass))
 			{
 				projectSamples = new ChildVisibilityContext<ProjectSampleElement>()
 				{
@@ -247,7 +259,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == SnippetElement.class)
+			if (elementClass == null || SnippetElement.class.isAssignableFrom(elementClass))
 			{
 				snippets = new ChildVisibilityContext<SnippetElement>()
 				{
@@ -258,7 +270,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == SnippetCategoryElement.class)
+			if (elementClass == null || SnippetCategoryElement.class.isAssignableFrom(elementClass))
 			{
 				snippetCategories = new ChildVisibilityContext<SnippetCategoryElement>()
 				{
@@ -269,7 +281,7 @@ public class BundleEntry
 				};
 			}
 
-			if (elementClass == null || elementClass == BuildPathElement.class)
+			if (elementClass == null || BuildPathElement.class.isAssignableFrom(elementClass))
 			{
 				buildPaths = new ChildVisibilityContext<BuildPathElement>()
 				{
@@ -338,6 +350,7 @@ public class BundleEntry
 			}
 
 			this.fireElementVisibilityEvents(commands);
+			this.fireElementVisibilityEvents(contentAssists);
 			this.fireElementVisibilityEvents(envs);
 			this.fireElementVisibilityEvents(menus);
 			this.fireElementVisibilityEvents(pairs);
@@ -384,6 +397,7 @@ public class BundleEntry
 			}
 
 			this.updateElementContext(commands);
+			this.updateElementContext(contentAssists);
 			this.updateElementContext(envs);
 			this.updateElementContext(menus);
 			this.updateElementContext(pairs);
@@ -472,31 +486,50 @@ public class BundleEntry
 		// make sure we have a bundle
 		if (bundle != null)
 		{
-			VisibilityContext context = null;
+			this.addBundles(Collections.singletonList(bundle));
+		}
+	}
 
-			synchronized (this._bundles)
+	/**
+	 * Add several bundles at once. The bundles are sorted and visibility events are fired once for the whole batch
+	 * 
+	 * @param bundles
+	 */
+	public void addBundles(List<BundleElement> bundles)
+	{
+		VisibilityContext context = null;
+
+		synchronized (this._bundles)
+		{
+			for (BundleElement bundle : bundles)
 			{
 				// only go through the add process and its side-effects if we don't have this bundle already
-				if (this._bundles.contains(bundle) == false)
+				if (bundle != null && this._bundles.contains(bundle) == false)
 				{
-					context = this.getVisibilityContext();
+					if (context == null)
+					{
+						context = this.getVisibilityContext();
+					}
 
 					// add the bundle
 					this._bundles.add(bundle);
-
-					// keep bundles in canonical order
-					Collections.sort(this._bundles, this._comparator);
-
-					context.updateElementContext();
 				}
 			}
 
-			// fire visibility change events
 			if (context != null)
 			{
-				context.fireElementVisibilityEvents();
+				// keep bundles in canonical order
+				Collections.sort(this._bundles, this._comparator);
+
+				context.updateElementContext();
 			}
 		}
+
+		// fire visibility change events
+		if (context != null)
+		{
+			context.fireElementVisibilityEvents();
+		}
 	}
 
 	/**
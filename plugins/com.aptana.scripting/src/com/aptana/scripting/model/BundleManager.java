@@ -18,9 +18,17 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.resources.IProject;
@@ -56,6 +64,7 @@ import com.aptana.scripting.ScriptingEngine;
 import com.aptana.scripting.model.filters.AndFilter;
 import com.aptana.scripting.model.filters.IModelFilter;
 import com.aptana.scripting.model.filters.IsExecutableCommandFilter;
+import com.aptana.scripting.model.filters.ScopeFilter;
 
 public class BundleManager
 {
@@ -89,16 +98,33 @@ public class BundleManager
 	 */
 	private static final String USE_BUNDLE_CACHE = "use.bundle.cache"; //$NON-NLS-1$
 
+	/**
+	 * System property to turn off reading the caches of all bundles in parallel in {@link #loadBundles()}.
+	 */
+	private static final String STUDIO_PARALLEL_BUNDLE_LOAD = "studio.parallelBundleLoad"; //$NON-NLS-1$
+
 	private class BundleLoadJob extends Job
 	{
 
 		private File bundleDirectory;
+		private boolean readCache;
 
 		BundleLoadJob(File bundleDirectory)
+		{
+			this(bundleDirectory, true);
+		}
+
+		/**
+		 * @param bundleDirectory
+		 * @param readCache
+		 *            false when the caller already knows the cache can't be used
+		 */
+		BundleLoadJob(File bundleDirectory, boolean readCache)
 		{
 			super("Loading bundle: " + bundleDirectory.getAbsolutePath()); //$NON-NLS-1$
 
 			this.bundleDirectory = bundleDirectory;
+			this.readCache = readCache;
 
 			setPriority(Job.SHORT);
 		}
@@ -114,15 +140,9 @@ public class BundleManager
 					boolean useCache = Boolean.valueOf(System.getProperty(USE_BUNDLE_CACHE, Boolean.TRUE.toString()));
 
 					BundleElement be = null;
-					if (useCache)
+					if (useCache && readCache)
 					{
-						showBundleLoadInfo("attempting to read cache: " + bundleDirectory); //$NON-NLS-1$
-						// include the localization files in the arg we pass here, so that we blow out the cache if
-						// translations change!
-						List<File> filesTocheckTimestamp = new ArrayList<File>(bundleScripts);
-						filesTocheckTimestamp.addAll(localizationFiles(bundleDirectory));
-						be = getCacher().load(bundleDirectory, filesTocheckTimestamp,
-								sub.newChild(bundleScripts.size()));
+						be = readCachedBundle(bundleDirectory, bundleScripts, sub.newChild(bundleScripts.size()));
 					}
 					if (be != null)
 					{
@@ -182,6 +202,24 @@ public class BundleManager
 		}
 	}
 
+	/**
+	 * Read a bundle from its cache
+	 * 
+	 * @param bundleDirectory
+	 * @param bundleScripts
+	 * @param monitor
+	 * @return the cached bundle, or null if there is no usable cache
+	 */
+	private BundleElement readCachedBundle(File bundleDirectory, List<File> bundleScripts, IProgressMonitor monitor)
+	{
+		showBundleLoadInfo("attempting to read cache: " + bundleDirectory); //$NON-NLS-1$
+		// include the localization files in the arg we pass here, so that we blow out the cache if
+		// translations change!
+		List<File> filesTocheckTimestamp = new ArrayList<File>(bundleScripts);
+		filesTocheckTimestamp.addAll(localizationFiles(bundleDirectory));
+		return getCacher().load(bundleDirectory, filesTocheckTimestamp, monitor);
+	}
+
 	/**
 	 * This is a rule which reports a conflict when two rules wrap the same object. It is used to enforce a max job
 	 * count for parallel bundle loads.
@@ -488,10 +526,22 @@ public class BundleManager
 	private Map<File, List<BundleElement>> _bundlesByPath;
 	private Map<String, BundleEntry> _entriesByName;
 
+	/**
+	 * Bundles added while {@link #loadBundles(List)} is running. They are added to their entries in one go at the end,
+	 * so bundle precedence is only worked out once per entry, unless {@link #getBundleEntry(String)} asks for them
+	 * earlier. Guarded by _entriesByName; null when not loading
+	 */
+	private List<BundleElement> _pendingBundles;
+
 	private List<BundleVisibilityListener> _bundleVisibilityListeners;
 	private List<ElementVisibilityListener> _elementVisibilityListeners;
 	private List<LoadCycleListener> _loadCycleListeners;
 
+	/**
+	 * Visible elements by the scope names they need, used when a filter restricts elements to a scope
+	 */
+	private BundleElementIndex _elementIndex;
+
 	/**
 	 * This is a pool to reduce duplicated string values eating up RAM. This happens most often with paths (like say in
 	 * MenuElements)
@@ -521,6 +571,9 @@ public class BundleManager
 		this._bundleVisibilityListeners = new ArrayList<BundleVisibilityListener>();
 		this._elementVisibilityListeners = new ArrayList<ElementVisibilityListener>();
 		this._loadCycleListeners = new ArrayList<LoadCycleListener>();
+
+		this._elementIndex = new BundleElementIndex(this);
+		this._elementVisibilityListeners.add(this._elementIndex);
 	}
 
 	/**
@@ -558,7 +611,11 @@ public class BundleManager
 
 			synchronized (this._entriesByName)
 			{
-				if (this._entriesByName.containsKey(name) == false)
+				if (this._pendingBundles != null)
+				{
+					this._pendingBundles.add(bundle);
+				}
+				else if (this._entriesByName.containsKey(name) == false)
 				{
 					BundleEntry entry = new BundleEntry(name);
 
@@ -1003,10 +1060,55 @@ public class BundleManager
 	public BundleEntry getBundleEntry(String name)
 	{
 		BundleEntry result;
+		List<BundleElement> pending;
 
 		synchronized (this._entriesByName)
 		{
+			// while loadBundles() is running, hand over what has been loaded for this name so far rather than making
+			// the caller wait for the whole pass
+			pending = this.removePendingBundles(name);
 			result = this._entriesByName.get(name);
+
+			if (result == null && !pending.isEmpty())
+			{
+				result = new BundleEntry(name);
+				this._entriesByName.put(name, result);
+			}
+		}
+
+		if (!pending.isEmpty())
+		{
+			result.addBundles(pending);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Take the bundles of the specified name out of the ones waiting for the end of {@link #loadBundles(List)}. The
+	 * caller must hold the lock on _entriesByName
+	 * 
+	 * @param name
+	 * @return The pending bundles, in the order they were loaded
+	 */
+	private List<BundleElement> removePendingBundles(String name)
+	{
+		if (this._pendingBundles == null)
+		{
+			return Collections.emptyList();
+		}
+
+		List<BundleElement> result = new ArrayList<BundleElement>();
+
+		for (Iterator<BundleElement> i = this._pendingBundles.iterator(); i.hasNext();)
+		{
+			BundleElement bundle = i.next();
+
+			if (name.equals(bundle.getDisplayName()))
+			{
+				result.add(bundle);
+				i.remove();
+			}
 		}
 
 		return result;
@@ -1429,10 +1531,18 @@ public class BundleManager
 	public List<CommandElement> getCommands(IModelFilter filter)
 	{
 		List<CommandElement> result = new ArrayList<CommandElement>();
+		String[] scopes = getFilterScopes(filter);
 
-		for (String name : this.getBundleNames())
+		if (scopes != null)
+		{
+			CollectionsUtil.filter(this._elementIndex.getCommands(scopes), result, filter);
+		}
+		else
 		{
-			CollectionsUtil.filter(getBundleCommands(name), result, filter);
+			for (String name : this.getBundleNames())
+			{
+				CollectionsUtil.filter(getBundleCommands(name), result, filter);
+			}
 		}
 
 		return result;
@@ -1450,10 +1560,18 @@ public class BundleManager
 	public List<ContentAssistElement> getContentAssists(IModelFilter filter)
 	{
 		List<ContentAssistElement> result = new ArrayList<ContentAssistElement>();
+		String[] scopes = getFilterScopes(filter);
 
-		for (String name : this.getBundleNames())
+		if (scopes != null)
+		{
+			CollectionsUtil.filter(this._elementIndex.getContentAssists(scopes), result, filter);
+		}
+		else
 		{
-			CollectionsUtil.filter(getBundleContentAssists(name), result, filter);
+			for (String name : this.getBundleNames())
+			{
+				CollectionsUtil.filter(getBundleContentAssists(name), result, filter);
+			}
 		}
 
 		return result;
@@ -1514,10 +1632,18 @@ public class BundleManager
 	public List<EnvironmentElement> getEnvs(IModelFilter filter)
 	{
 		List<EnvironmentElement> result = new ArrayList<EnvironmentElement>();
+		String[] scopes = getFilterScopes(filter);
 
-		for (String name : this.getBundleNames())
+		if (scopes != null)
+		{
+			CollectionsUtil.filter(this._elementIndex.getEnvs(scopes), result, filter);
+		}
+		else
 		{
-			CollectionsUtil.filter(getBundleEnvs(name), result, filter);
+			for (String name : this.getBundleNames())
+			{
+				CollectionsUtil.filter(getBundleEnvs(name), result, filter);
+			}
 		}
 
 		return result;
@@ -1542,6 +1668,39 @@ public class BundleManager
 		return this.getCommands(filter);
 	}
 
+	/**
+	 * Return the scopes a filter restricts elements to, looking into and-filters. Elements outside of those scopes
+	 * never pass the filter, so they can be looked up in the element index
+	 * 
+	 * @param filter
+	 * @return The scopes of the first scope filter found, or null if the filter isn't restricted to scopes
+	 */
+	private static String[] getFilterScopes(IModelFilter filter)
+	{
+		// subclasses may include elements differently, so only look into the filters we know
+		Class<?> type = (filter != null) ? filter.getClass() : null;
+
+		if (type == ScopeFilter.class)
+		{
+			return ((ScopeFilter) filter).getScopes();
+		}
+
+		if (type == AndFilter.class)
+		{
+			for (IModelFilter child : ((AndFilter) filter).getFilters())
+			{
+				String[] scopes = getFilterScopes(child);
+
+				if (scopes != null)
+				{
+					return scopes;
+				}
+			}
+		}
+
+		return null;
+	}
+
 	/**
 	 * getFoldingStartRegexp
 	 * 
@@ -1670,10 +1829,18 @@ public class BundleManager
 	public List<SmartTypingPairsElement> getPairs(IModelFilter filter)
 	{
 		List<SmartTypingPairsElement> result = new ArrayList<SmartTypingPairsElement>();
+		String[] scopes = getFilterScopes(filter);
 
-		for (String name : this.getBundleNames())
+		if (scopes != null)
+		{
+			CollectionsUtil.filter(this._elementIndex.getPairs(scopes), result, filter);
+		}
+		else
 		{
-			CollectionsUtil.filter(getBundlePairs(name), result, filter);
+			for (String name : this.getBundleNames())
+			{
+				CollectionsUtil.filter(getBundlePairs(name), result, filter);
+			}
 		}
 
 		return result;
@@ -1737,10 +1904,18 @@ public class BundleManager
 	public List<SnippetElement> getSnippets(IModelFilter filter)
 	{
 		List<SnippetElement> result = new ArrayList<SnippetElement>();
+		String[] scopes = getFilterScopes(filter);
 
-		for (String name : this.getBundleNames())
+		if (scopes != null)
 		{
-			CollectionsUtil.filter(getBundleSnippets(name), result, filter);
+			CollectionsUtil.filter(this._elementIndex.getSnippets(scopes), result, filter);
+		}
+		else
+		{
+			for (String name : this.getBundleNames())
+			{
+				CollectionsUtil.filter(getBundleSnippets(name), result, filter);
+			}
 		}
 
 		return result;
@@ -1947,18 +2122,32 @@ public class BundleManager
 	 */
 	protected void loadApplicationBundles()
 	{
+		for (File bundle : this.getApplicationBundleDirectories())
+		{
+			this.loadBundle(bundle);
+		}
+	}
+
+	/**
+	 * Return the directories of all application bundles
+	 * 
+	 * @return
+	 */
+	protected List<File> getApplicationBundleDirectories()
+	{
+		List<File> result = new ArrayList<File>();
+
 		if (applicationBundlesPaths != null)
 		{
 			for (String applicationBundle : applicationBundlesPaths)
 			{
 				File applicationBundlesDirectory = new File(applicationBundle);
 
-				for (File bundle : this.getBundleDirectories(applicationBundlesDirectory))
-				{
-					this.loadBundle(bundle);
-				}
+				result.addAll(this.getBundleDirectories(applicationBundlesDirectory));
 			}
 		}
+
+		return result;
 	}
 
 	/**
@@ -2053,9 +2242,205 @@ public class BundleManager
 		// clear out any existing bundles since we're rebuilding from scratch
 		this.reset();
 
-		this.loadApplicationBundles();
-		this.loadUserBundles();
-		this.loadProjectBundles();
+		if (Boolean.valueOf(System.getProperty(STUDIO_PARALLEL_BUNDLE_LOAD, Boolean.TRUE.toString())))
+		{
+			List<File> bundleDirectories = new ArrayList<File>();
+
+			bundleDirectories.addAll(this.getApplicationBundleDirectories());
+			bundleDirectories.addAll(this.getUserBundleDirectories());
+			bundleDirectories.addAll(this.getProjectBundleDirectories());
+
+			this.loadBundles(bundleDirectories);
+		}
+		else
+		{
+			this.loadApplicationBundles();
+			this.loadUserBundles();
+			this.loadProjectBundles();
+		}
+	}
+
+	/**
+	 * Load the bundles in the specified directories and wait for them to finish loading. The caches of all bundles are
+	 * read and checked in parallel. Only the bundles without a usable cache have their scripts run, one after another,
+	 * since all scripts go through the single scripting container anyway. The loaded bundles are added to their
+	 * entries once everything has been loaded.
+	 * 
+	 * @param bundleDirectories
+	 *            The bundle directories, in load order
+	 */
+	protected void loadBundles(List<File> bundleDirectories)
+	{
+		synchronized (this._entriesByName)
+		{
+			this._pendingBundles = new ArrayList<BundleElement>();
+		}
+
+		try
+		{
+			List<File> uncachedBundles = bundleDirectories;
+
+			if (Boolean.valueOf(System.getProperty(USE_BUNDLE_CACHE, Boolean.TRUE.toString())))
+			{
+				uncachedBundles = this.readCachedBundles(bundleDirectories);
+			}
+
+			for (File bundleDirectory : uncachedBundles)
+			{
+				if (Thread.currentThread().isInterrupted())
+				{
+					break;
+				}
+
+				new BundleLoadJob(bundleDirectory, false).run(new NullProgressMonitor());
+			}
+		}
+		finally
+		{
+			this.addPendingBundles();
+		}
+	}
+
+	/**
+	 * Read the caches of the specified bundles in parallel and add the bundles that could be read
+	 * 
+	 * @param bundleDirectories
+	 * @return The directories of the bundles that have no usable cache, in their original order. If the thread is
+	 *         interrupted this also includes the bundles that were still being read, and the interrupt is kept
+	 */
+	private List<File> readCachedBundles(List<File> bundleDirectories)
+	{
+		List<File> result = new ArrayList<File>();
+
+		if (bundleDirectories.isEmpty())
+		{
+			return result;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.min(maxBundlesToLoadInParallel(), bundleDirectories.size()), new ThreadFactory()
+				{
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "Bundle Cache Reader"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		try
+		{
+			List<Future<BundleElement>> futures = new ArrayList<Future<BundleElement>>(bundleDirectories.size());
+
+			for (final File bundleDirectory : bundleDirectories)
+			{
+				futures.add(executor.submit(new Callable<BundleElement>()
+				{
+					public BundleElement call() throws Exception
+					{
+						List<File> bundleScripts = getBundleScripts(bundleDirectory);
+
+						if (bundleScripts.isEmpty())
+						{
+							return null;
+						}
+
+						return readCachedBundle(bundleDirectory, bundleScripts, new NullProgressMonitor());
+					}
+				}));
+			}
+
+			for (int i = 0; i < bundleDirectories.size(); i++)
+			{
+				BundleElement bundle = null;
+
+				try
+				{
+					bundle = futures.get(i).get();
+				}
+				catch (InterruptedException e)
+				{
+					// stop waiting and leave it to our caller to deal with the interruption
+					Thread.currentThread().interrupt();
+					result.addAll(bundleDirectories.subList(i, bundleDirectories.size()));
+					break;
+				}
+				catch (ExecutionException e)
+				{
+					IdeLog.logError(ScriptingActivator.getDefault(), e.getCause());
+				}
+
+				if (bundle != null)
+				{
+					showBundleLoadInfo("cache succeeded"); //$NON-NLS-1$
+					this.addBundle(bundle);
+				}
+				else
+				{
+					result.add(bundleDirectories.get(i));
+				}
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Add the bundles collected while loading to their entries, one batch per entry
+	 */
+	private void addPendingBundles()
+	{
+		List<BundleElement> pending;
+
+		synchronized (this._entriesByName)
+		{
+			pending = this._pendingBundles;
+			this._pendingBundles = null;
+		}
+
+		if (pending == null)
+		{
+			return;
+		}
+
+		Map<String, List<BundleElement>> bundlesByName = new LinkedHashMap<String, List<BundleElement>>();
+
+		for (BundleElement bundle : pending)
+		{
+			String name = bundle.getDisplayName();
+			List<BundleElement> bundles = bundlesByName.get(name);
+
+			if (bundles == null)
+			{
+				bundles = new ArrayList<BundleElement>();
+				bundlesByName.put(name, bundles);
+			}
+
+			bundles.add(bundle);
+		}
+
+		for (Map.Entry<String, List<BundleElement>> entry : bundlesByName.entrySet())
+		{
+			String name = entry.getKey();
+			BundleEntry bundleEntry;
+
+			synchronized (this._entriesByName)
+			{
+				bundleEntry = this._entriesByName.get(name);
+
+				if (bundleEntry == null)
+				{
+					bundleEntry = new BundleEntry(name);
+					this._entriesByName.put(name, bundleEntry);
+				}
+			}
+
+			bundleEntry.addBundles(entry.getValue());
+		}
 	}
 
 	/**
@@ -2063,6 +2448,21 @@ public class BundleManager
 	 */
 	protected void loadProjectBundles()
 	{
+		for (File bundle : this.getProjectBundleDirectories())
+		{
+			this.loadBundle(bundle);
+		}
+	}
+
+	/**
+	 * Return the directories of all project bundles
+	 * 
+	 * @return
+	 */
+	protected List<File> getProjectBundleDirectories()
+	{
+		List<File> result = new ArrayList<File>();
+
 		for (IProject project : ResourcesPlugin.getWorkspace().getRoot().getProjects())
 		{
 			IPath location = project.getLocation();
@@ -2080,17 +2480,19 @@ public class BundleManager
 					ScriptLogger.logWarning(message);
 					IdeLog.logWarning(ScriptingActivator.getDefault(), message);
 
-					this.loadBundle(bundle);
+					result.add(bundle);
 				}
 
 				// Now load from project directly
 				if (!isUserBundleDirectory(projectDirectory) && isValidBundleDirectory(projectDirectory))
 				{
-					loadBundle(projectDirectory);
+					result.add(projectDirectory);
 				}
 			}
 			// Log that it was null somehow to track down when this occurs?
 		}
+
+		return result;
 	}
 
 	/**
@@ -2178,18 +2580,28 @@ public class BundleManager
 	 * Load all user bundles
 	 */
 	protected void loadUserBundles()
+	{
+		for (File bundle : this.getUserBundleDirectories())
+		{
+			this.loadBundle(bundle);
+		}
+	}
+
+	/**
+	 * Return the directories of all user bundles
+	 * 
+	 * @return
+	 */
+	protected List<File> getUserBundleDirectories()
 	{
 		String userBundles = this.getUserBundlesPath();
 
-		if (userBundles != null)
+		if (userBundles == null)
 		{
-			File userBundlesDirectory = new File(userBundles);
-
-			for (File bundle : this.getBundleDirectories(userBundlesDirectory))
-			{
-				this.loadBundle(bundle);
-			}
+			return Collections.emptyList();
 		}
+
+		return this.getBundleDirectories(new File(userBundles));
 	}
 
 	/**
@@ -2272,6 +2684,11 @@ public class BundleManager
 
 			synchronized (this._entriesByName)
 			{
+				if (this._pendingBundles != null)
+				{
+					this._pendingBundles.remove(bundle);
+				}
+
 				if (this._entriesByName.containsKey(name))
 				{
 					BundleEntry entry = this._entriesByName.get(name);
@@ -2348,6 +2765,8 @@ public class BundleManager
 		{
 			this._entriesByName.clear();
 		}
+
+		this._elementIndex.clear();
 	}
 
 	/**
@@ -110,17 +110,28 @@ public class CommandBlockRunner extends AbstractCommandRunner
 
 			hash.putAll(this.getContributedEnvironment());
 
-			// Grab all the matching env objects contributed via bundles that have scope matching!
-			IModelFilter filter = new ScopeFilter((String) hash.get("TM_CURRENT_SCOPE")); //$NON-NLS-1$
-			List<EnvironmentElement> envs = BundleManager.getInstance().getEnvs(filter);
-			ScopeSelector.sort(envs);
-			for (EnvironmentElement e : envs)
+			this.applyEnvironmentElements(runtime, hash);
+		}
+	}
+
+	/**
+	 * Run the env blocks contributed by bundles whose scope matches against the specified ENV hash
+	 * 
+	 * @param runtime
+	 * @param hash
+	 */
+	protected void applyEnvironmentElements(Ruby runtime, RubyHash hash)
+	{
+		// Grab all the matching env objects contributed via bundles that have scope matching!
+		IModelFilter filter = new ScopeFilter((String) hash.get("TM_CURRENT_SCOPE")); //$NON-NLS-1$
+		List<EnvironmentElement> envs = BundleManager.getInstance().getEnvs(filter);
+		ScopeSelector.sort(envs);
+		for (EnvironmentElement e : envs)
+		{
+			RubyProc invoke = e.getInvokeBlock();
+			if (invoke != null)
 			{
-				RubyProc invoke = e.getInvokeBlock();
-				if (invoke != null)
-				{
-					invoke.call(runtime.getCurrentContext(), new IRubyObject[] { hash });
-				}
+				invoke.call(runtime.getCurrentContext(), new IRubyObject[] { hash });
 			}
 		}
 	}
@@ -229,8 +240,7 @@ public class CommandBlockRunner extends AbstractCommandRunner
 		try
 		{
 			// invoke the block
-			IRubyObject result = this.getCommand().getInvokeBlock()
-					.call(threadContext, new IRubyObject[] { rubyContext });
+			IRubyObject result = this.getInvokeBlock().call(threadContext, new IRubyObject[] { rubyContext });
 
 			// TODO: not sure if we need to perform the closing here or not. This will be
 			// resolved once we rework CommandExecutionUtils to support async calls. That's
@@ -296,6 +306,16 @@ public class CommandBlockRunner extends AbstractCommandRunner
 		this.setExecutedSuccessfully(false);
 	}
 
+	/**
+	 * getInvokeBlock
+	 * 
+	 * @return
+	 */
+	protected RubyProc getInvokeBlock()
+	{
+		return this.getCommand().getInvokeBlock();
+	}
+
 	/**
 	 * getRuntime
 	 * 
@@ -120,6 +120,7 @@ public class CommandElement extends AbstractBundleElement
 	private OutputType _outputType;
 	private String _outputPath;
 	private boolean _async;
+	private boolean _isolated;
 	private RunType _runType;
 	private Ruby _runtime;
 
@@ -193,7 +194,16 @@ public class CommandElement extends AbstractBundleElement
 
 				BundleElement bundle = this.getOwningBundle();
 				String bundleName = bundle.getDisplayName();
-				job = new CommandBlockRunner(this, context, BundleManager.getInstance().getBundleLoadPaths(bundleName));
+				List<String> loadPaths = BundleManager.getInstance().getBundleLoadPaths(bundleName);
+
+				if (this._isolated && ScriptingEngine.getInstance().getContainerPool().isEnabled())
+				{
+					job = new IsolatedCommandBlockRunner(this, context, loadPaths);
+				}
+				else
+				{
+					job = new CommandBlockRunner(this, context, loadPaths);
+				}
 			}
 
 			// run the job, if we have one
@@ -548,6 +558,17 @@ public class CommandElement extends AbstractBundleElement
 		return this._async;
 	}
 
+	/**
+	 * Determine if this command runs in a scripting container of its own instead of the one shared with the bundle
+	 * loader. See {@link com.aptana.scripting.ScriptingContainerPool}
+	 * 
+	 * @return
+	 */
+	public boolean isIsolated()
+	{
+		return this._isolated;
+	}
+
 	/**
 	 * isBlockCommand
 	 * 
@@ -730,6 +751,11 @@ public class CommandElement extends AbstractBundleElement
 		// output output type
 		printer.printWithIndent("output: ").println(this.getOutputType()); //$NON-NLS-1$
 
+		if (this._isolated)
+		{
+			printer.printlnWithIndent("isolated: true"); //$NON-NLS-1$
+		}
+
 		// output a comma-delimited list of triggers, if any are defined
 		String[] triggers = this.getTriggerTypeValues(TriggerType.PREFIX);
 
@@ -755,6 +781,16 @@ public class CommandElement extends AbstractBundleElement
 		}
 	}
 
+	/**
+	 * setIsolated
+	 * 
+	 * @param value
+	 */
+	public void setIsolated(boolean value)
+	{
+		this._isolated = value;
+	}
+
 	/**
 	 * setAsync
 	 * 
@@ -0,0 +1,171 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.text.MessageFormat;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.jruby.Ruby;
+import org.jruby.RubyHash;
+import org.jruby.RubyProc;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.scripting.ScriptingActivator;
+import com.aptana.scripting.ScriptingContainerPool;
+import com.aptana.scripting.ScriptingContainerPool.PooledContainer;
+import com.aptana.scripting.ScriptingEngine;
+
+/**
+ * Runs the block of an isolated command in a container taken from the {@link ScriptingContainerPool}, using the copy
+ * of the command defined in that container. Falls back to the shared container when the command can't be found there.
+ */
+class IsolatedCommandBlockRunner extends CommandBlockRunner
+{
+	private List<String> _loadPaths;
+	private CommandElement _isolatedCommand;
+
+	/**
+	 * IsolatedCommandBlockRunner
+	 *
+	 * @param command
+	 * @param context
+	 * @param loadPaths
+	 */
+	IsolatedCommandBlockRunner(CommandElement command, CommandContext context, List<String> loadPaths)
+	{
+		super(command, context, loadPaths);
+
+		this._loadPaths = loadPaths;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scripting.model.CommandBlockRunner#run(org.eclipse.core.runtime.IProgressMonitor)
+	 */
+	@Override
+	protected IStatus run(IProgressMonitor monitor)
+	{
+		ScriptingContainerPool pool = ScriptingEngine.getInstance().getContainerPool();
+		PooledContainer container;
+
+		try
+		{
+			container = pool.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			return super.run(monitor);
+		}
+
+		try
+		{
+			this._isolatedCommand = this.findCommand(container);
+
+			if (this._isolatedCommand == null)
+			{
+				pool.release(container);
+				container = null;
+
+				IdeLog.logWarning(ScriptingActivator.getDefault(), MessageFormat.format(
+						"Unable to isolate command {0}, running it in the shared container", //$NON-NLS-1$
+						this.getCommand().getDisplayName()));
+			}
+
+			return super.run(monitor);
+		}
+		finally
+		{
+			this._isolatedCommand = null;
+
+			if (container != null)
+			{
+				pool.release(container);
+			}
+		}
+	}
+
+	/**
+	 * Find the copy of our command among the elements its script defined in the specified container
+	 *
+	 * @param container
+	 * @return
+	 */
+	private CommandElement findCommand(PooledContainer container)
+	{
+		CommandElement command = this.getCommand();
+
+		for (AbstractElement element : container.getElements(command.getPath(), this._loadPaths))
+		{
+			if (element instanceof CommandElement
+					&& element.getElementName().equals(command.getElementName())
+					&& element.getDisplayName() != null && element.getDisplayName().equals(command.getDisplayName()))
+			{
+				CommandElement candidate = (CommandElement) element;
+
+				if (candidate.getInvokeBlock() != null && candidate.getRuntime() == container.getRuntime())
+				{
+					return candidate;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scripting.model.CommandBlockRunner#getInvokeBlock()
+	 */
+	@Override
+	protected RubyProc getInvokeBlock()
+	{
+		return (this._isolatedCommand != null) ? this._isolatedCommand.getInvokeBlock() : super.getInvokeBlock();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scripting.model.CommandBlockRunner#getRuntime()
+	 */
+	@Override
+	protected Ruby getRuntime()
+	{
+		return (this._isolatedCommand != null) ? this._isolatedCommand.getRuntime() : super.getRuntime();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scripting.model.CommandBlockRunner#applyEnvironmentElements(org.jruby.Ruby, org.jruby.RubyHash)
+	 */
+	@Override
+	protected void applyEnvironmentElements(Ruby runtime, RubyHash hash)
+	{
+		if (this._isolatedCommand == null)
+		{
+			super.applyEnvironmentElements(runtime, hash);
+			return;
+		}
+
+		// env blocks belong to the shared runtime, so run them there on a copy and bring the values back
+		Ruby sharedRuntime = ScriptingEngine.getInstance().getInitializedScriptingContainer().getProvider()
+				.getRuntime();
+
+		synchronized (sharedRuntime)
+		{
+			RubyHash sharedHash = RubyHash.newHash(sharedRuntime);
+
+			sharedHash.putAll(hash);
+			super.applyEnvironmentElements(sharedRuntime, sharedHash);
+
+			// env blocks may delete entries as well
+			hash.clear();
+			hash.putAll(sharedHash);
+		}
+	}
+}
@@ -13,6 +13,7 @@ public class Messages extends NLS
 {
 	private static final String BUNDLE_NAME = "com.aptana.scripting.model.messages"; //$NON-NLS-1$
 
+	public static String BundleCacher_BinaryCacheUnavailableMsg;
 	public static String BundleCacher_ComparingTimestampSubTaskName;
 	public static String BundleCacher_FileReferencedInCacheMissingMsg;
 	public static String BundleCacher_LoadCacheTaskName;
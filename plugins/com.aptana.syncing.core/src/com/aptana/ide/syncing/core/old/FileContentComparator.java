@@ -0,0 +1,334 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.syncing.core.old;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.NoSuchAlgorithmException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.filesystem.IFileInfo;
+import org.eclipse.core.filesystem.IFileStore;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+
+import com.aptana.core.io.vfs.FileHash;
+import com.aptana.core.io.vfs.IFileHashProvider;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.ide.syncing.core.SyncingPlugin;
+
+/**
+ * Decides whether the contents of paired files match, trying the cheapest check first: sizes, hashes computed by the
+ * server (so that only the other side has to be read, or nothing at all), identical modification times and finally
+ * the CRC of both streams.
+ */
+class FileContentComparator
+{
+
+	private static final int MAX_THREADS = 4;
+	private static final long POLL_INTERVAL = 100;
+
+	/**
+	 * Compares the items concurrently and updates their sync states.
+	 *
+	 * @param items
+	 * @param monitor
+	 * @throws CoreException
+	 */
+	public void compare(List<VirtualFileSyncPair> items, final IProgressMonitor monitor) throws CoreException
+	{
+		if (items.isEmpty())
+		{
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(MAX_THREADS, items.size()),
+				new ThreadFactory()
+				{
+					public Thread newThread(Runnable runnable)
+					{
+						Thread thread = new Thread(runnable, "Sync Content Comparator"); //$NON-NLS-1$
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		final IProgressMonitor workerMonitor = new NullProgressMonitor()
+		{
+			@Override
+			public boolean isCanceled()
+			{
+				return monitor.isCanceled();
+			}
+		};
+		try
+		{
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>(items.size());
+			for (final VirtualFileSyncPair item : items)
+			{
+				futures.add(executor.submit(new Callable<Integer>()
+				{
+					public Integer call() throws Exception
+					{
+						return compare(item, workerMonitor);
+					}
+				}));
+			}
+			for (int i = 0; i < items.size(); ++i)
+			{
+				items.get(i).setSyncState(waitFor(futures.get(i), monitor));
+				monitor.worked(1);
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	private static int waitFor(Future<Integer> future, IProgressMonitor monitor) throws CoreException
+	{
+		while (true)
+		{
+			if (monitor.isCanceled())
+			{
+				throw new OperationCanceledException();
+			}
+			try
+			{
+				return future.get(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e)
+			{
+				continue;
+			}
+			catch (InterruptedException e)
+			{
+				throw new OperationCanceledException();
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof CoreException)
+				{
+					throw (CoreException) cause;
+				}
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				throw new CoreException(new Status(IStatus.ERROR, SyncingPlugin.PLUGIN_ID, cause.getLocalizedMessage(),
+						cause));
+			}
+		}
+	}
+
+	/**
+	 * Compares the contents of a single item.
+	 *
+	 * @param item
+	 * @param monitor
+	 * @return SyncState
+	 * @throws CoreException
+	 */
+	public int compare(VirtualFileSyncPair item, IProgressMonitor monitor) throws CoreException
+	{
+		IFileInfo sourceInfo = item.getSourceFileInfo(monitor);
+		IFileInfo destinationInfo = item.getDestinationFileInfo(monitor);
+		if (sourceInfo == null || destinationInfo == null)
+		{
+			return (sourceInfo == destinationInfo) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+		}
+		long length = sourceInfo.getLength();
+		if (length >= 0 && destinationInfo.getLength() >= 0 && length != destinationInfo.getLength())
+		{
+			return SyncState.CRCMismatch;
+		}
+
+		Boolean match = compareHashes(item, monitor);
+		if (match != null)
+		{
+			return match ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+		}
+
+		long lastModified = sourceInfo.getLastModified();
+		if (length >= 0 && lastModified != EFS.NONE && lastModified == destinationInfo.getLastModified())
+		{
+			return SyncState.ItemsMatch;
+		}
+		return compareCRC(item);
+	}
+
+	/**
+	 * Compares the hash reported by the server for one side with the hash reported for, or computed from, the other
+	 * side.
+	 *
+	 * @return whether the contents match, or <code>null</code> if no server provides a hash
+	 */
+	private static Boolean compareHashes(VirtualFileSyncPair item, IProgressMonitor monitor)
+	{
+		FileHash destinationHash = fetchHash(item.getDestinationFile(), monitor);
+		FileHash sourceHash = fetchHash(item.getSourceFile(), monitor);
+		try
+		{
+			if (destinationHash != null)
+			{
+				if (sourceHash == null || !sourceHash.getAlgorithm().equals(destinationHash.getAlgorithm()))
+				{
+					sourceHash = computeHash(item.getSourceFile(), destinationHash.getAlgorithm());
+				}
+				return (sourceHash != null) ? destinationHash.equals(sourceHash) : null;
+			}
+			if (sourceHash != null)
+			{
+				destinationHash = computeHash(item.getDestinationFile(), sourceHash.getAlgorithm());
+				return (destinationHash != null) ? sourceHash.equals(destinationHash) : null;
+			}
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(),
+					MessageFormat.format(Messages.Synchronizer_ErrorRetrievingHash, item.getRelativePath()), e);
+		}
+		return null;
+	}
+
+	private static FileHash fetchHash(IFileStore fileStore, IProgressMonitor monitor)
+	{
+		if (!(fileStore instanceof IFileHashProvider))
+		{
+			return null;
+		}
+		try
+		{
+			return ((IFileHashProvider) fileStore).fetchHash(monitor);
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(),
+					MessageFormat.format(Messages.Synchronizer_ErrorRetrievingHash, fileStore.toString()), e);
+			return null;
+		}
+	}
+
+	private static FileHash computeHash(IFileStore fileStore, String algorithm) throws CoreException
+	{
+		InputStream stream = fileStore.openInputStream(EFS.NONE, null);
+		try
+		{
+			return FileHash.compute(algorithm, stream);
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			return null;
+		}
+		catch (IOException e)
+		{
+			throw new CoreException(new Status(IStatus.ERROR, SyncingPlugin.PLUGIN_ID, MessageFormat.format(
+					Messages.Synchronizer_ErrorRetrievingHash, fileStore.toString()), e));
+		}
+		finally
+		{
+			try
+			{
+				stream.close();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(SyncingPlugin.getDefault(),
+						MessageFormat.format(Messages.Synchronizer_ErrorClosingStreams, fileStore.toString()), e);
+			}
+		}
+	}
+
+	/**
+	 * compareCRC
+	 *
+	 * @param item
+	 * @return SyncState
+	 * @throws CoreException
+	 */
+	private static int compareCRC(VirtualFileSyncPair item) throws CoreException
+	{
+		InputStream clientStream = item.getSourceInputStream();
+		InputStream serverStream = item.getDestinationInputStream();
+		int result;
+
+		if (clientStream != null && serverStream != null)
+		{
+			// get individual CRC's
+			long clientCRC = getCRC(clientStream);
+			long serverCRC = getCRC(serverStream);
+
+			// close streams
+			try
+			{
+				clientStream.close();
+				serverStream.close();
+			}
+			catch (IOException e)
+			{
+				IdeLog.logError(SyncingPlugin.getDefault(),
+						MessageFormat.format(Messages.Synchronizer_ErrorClosingStreams, item.getRelativePath()), e);
+			}
+
+			result = (clientCRC == serverCRC) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+		}
+		else
+		{
+			// NOTE: clientStream can only equal serverStream if both are null,
+			// so we assume the files match in that case
+			result = (clientStream == serverStream) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
+		}
+
+		return result;
+	}
+
+	/**
+	 * getCRC
+	 *
+	 * @param stream
+	 * @return CRC
+	 */
+	private static long getCRC(InputStream stream)
+	{
+		CRC32 crc = new CRC32();
+
+		try
+		{
+			byte[] buffer = new byte[8192];
+			int length;
+
+			while ((length = stream.read(buffer)) != -1)
+			{
+				crc.update(buffer, 0, length);
+			}
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
+
+		}
+
+		return crc.getValue();
+	}
+}
@@ -83,6 +83,11 @@ public final class Messages extends NLS
 	 */
 	public static String Synchronizer_ErrorRetrievingCRC;
 
+	/**
+	 * Synchronizer_ErrorRetrievingHash
+	 */
+	public static String Synchronizer_ErrorRetrievingHash;
+
 	/**
 	 * Synchronizer_FileNotContained
 	 */
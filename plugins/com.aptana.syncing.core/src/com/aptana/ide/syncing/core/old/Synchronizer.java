@@ -8,7 +8,6 @@
 package com.aptana.ide.syncing.core.old;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -18,7 +17,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.zip.CRC32;
 
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
@@ -413,6 +411,7 @@ public class Synchronizer implements ILoggable
 		log(FileUtil.NEW_LINE + Messages.Synchronizer_Generating_Comparison);
 
 		Map<String, VirtualFileSyncPair> fileList = new HashMap<String, VirtualFileSyncPair>();
+		List<VirtualFileSyncPair> contentCandidates = new ArrayList<VirtualFileSyncPair>();
 
 		// reset statistics and clear lists
 		this.reset();
@@ -512,7 +511,7 @@ public class Synchronizer implements ILoggable
 			{
 				if (this._useCRC && !serverFileInfo.isDirectory())
 				{
-					item.setSyncState(this.compareCRC(item));
+					contentCandidates.add(item);
 				}
 				else
 				{
@@ -537,6 +536,9 @@ public class Synchronizer implements ILoggable
 			}
 		}
 
+		// compare contents of the files whose times match
+		new FileContentComparator().compare(contentCandidates, monitor);
+
 		// sort items
 		Set<String> keySet = fileList.keySet();
 		String[] keys = keySet.toArray(new String[keySet.size()]);
@@ -617,78 +619,6 @@ public class Synchronizer implements ILoggable
 		return this._useCRC;
 	}
 
-	/**
-	 * compareCRC
-	 * 
-	 * @param item
-	 * @return SyncState
-	 * @throws CoreException
-	 */
-	private int compareCRC(VirtualFileSyncPair item) throws CoreException
-	{
-		InputStream clientStream = item.getSourceInputStream();
-		InputStream serverStream = item.getDestinationInputStream();
-		int result;
-
-		if (clientStream != null && serverStream != null)
-		{
-			// get individual CRC's
-			long clientCRC = getCRC(clientStream);
-			long serverCRC = getCRC(serverStream);
-
-			// close streams
-			try
-			{
-				clientStream.close();
-				serverStream.close();
-			}
-			catch (IOException e)
-			{
-				IdeLog.logError(SyncingPlugin.getDefault(),
-						MessageFormat.format(Messages.Synchronizer_ErrorClosingStreams, item.getRelativePath()), e);
-			}
-
-			result = (clientCRC == serverCRC) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
-		}
-		else
-		{
-			// NOTE: clientStream can only equal serverStream if both are null,
-			// so we assume the files match in that case
-			result = (clientStream == serverStream) ? SyncState.ItemsMatch : SyncState.CRCMismatch;
-		}
-
-		return result;
-	}
-
-	/**
-	 * getCRC
-	 * 
-	 * @param stream
-	 * @return CRC
-	 */
-	private long getCRC(InputStream stream)
-	{
-		CRC32 crc = new CRC32();
-
-		try
-		{
-			byte[] buffer = new byte[1024];
-			int length;
-
-			while ((length = stream.read(buffer)) != -1)
-			{
-				crc.update(buffer, 0, length);
-			}
-		}
-		catch (IOException e)
-		{
-			IdeLog.logError(SyncingPlugin.getDefault(), Messages.Synchronizer_ErrorRetrievingCRC, e);
-
-		}
-
-		return crc.getValue();
-	}
-
 	// public void cancelAllOperations()
 	// {
 	// if (this._clientFileManager != null)
@@ -203,6 +203,8 @@ public class CompletionProposalPopup implements IContentAssistListener
 	private ICompletionProposal[] fFilteredProposals;
 	/** The computed list of proposals. */
 	private ICompletionProposal[] fComputedProposals;
+	/** Narrows down the computed proposals as the prefix grows. */
+	private IncrementalProposalFilter fProposalFilter;
 	/** The offset for which the proposals have been computed. */
 	private int fInvocationOffset;
 	/** The offset for which the computed proposals have been filtered. */
@@ -1147,6 +1149,7 @@ public class CompletionProposalPopup implements IContentAssistListener
 
 		fFilteredProposals = null;
 		fComputedProposals = null;
+		fProposalFilter = null;
 
 		fContentAssistant.possibleCompletionsClosed();
 	}
@@ -1786,43 +1789,35 @@ public class CompletionProposalPopup implements IContentAssistListener
 			return fComputedProposals;
 		}
 
-		ICompletionProposal[] proposals;
-		if (offset < fFilterOffset)
+		if (fComputedProposals == null)
 		{
-			proposals = fComputedProposals;
 			fIsFilteredSubset = false;
+			return null;
 		}
-		else
+
+		// the filter keeps the computed proposals sorted by prefix, so only the ones the typed text may still match
+		// are validated, rather than all of them on every keystroke
+		if (fProposalFilter == null || fProposalFilter.getProposals() != fComputedProposals)
 		{
-			proposals = fFilteredProposals;
-			fIsFilteredSubset = true;
+			fProposalFilter = new IncrementalProposalFilter(fComputedProposals);
 		}
-
-		if (proposals == null)
+		if (!fProposalFilter.isValidatable())
 		{
+			// restore original behavior
 			fIsFilteredSubset = false;
-			return null;
+			fInvocationOffset = offset;
+			fComputedProposals = computeProposals(fInvocationOffset, false);
+
+			return fComputedProposals;
 		}
 
+		fIsFilteredSubset = offset >= fFilterOffset;
 		IDocument document = fContentAssistSubjectControlAdapter.getDocument();
-		// this does go through the array twice (once to figure out if it's okay to use the else case, and the second
-		// time to actual filter the proposals, but it is what the original logic suggests
-		for (int i = 0; i < proposals.length; i++)
-		{
-			ICompletionProposal proposal = proposals[i];
-			if (!(proposal instanceof ICompletionProposalExtension2)
-					&& !(proposal instanceof ICompletionProposalExtension))
-			{
-				// restore original behavior
-				fIsFilteredSubset = false;
-				fInvocationOffset = offset;
-				fComputedProposals = computeProposals(fInvocationOffset, false);
+		ICompletionProposal[] filtered = fProposalFilter.filter(document, offset, event);
 
-				return fComputedProposals;
-			}
-		}
+		IdeLog.logInfo(UIEplPlugin.getDefault(),
+				MessageFormat.format("Filtered list to {0} proposals", filtered.length), IUiEplScopes.CONTENT_ASSIST); //$NON-NLS-1$
 
-		ICompletionProposal[] filtered = filterProposals(proposals, document, offset, event);
 		return filtered;
 	}
 
@@ -0,0 +1,32 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+
+/**
+ * A proposal that is only valid while the text typed since its filter offset is a prefix, ignoring case, of its filter
+ * string. The completion popup uses this to narrow down large lists of proposals as the user types, and only validates
+ * the proposals that are left.
+ */
+public interface IFilterableCompletionProposal extends ICompletionProposal
+{
+	/**
+	 * Returns the offset of the text the filter string is matched against
+	 *
+	 * @return
+	 */
+	int getFilterOffset();
+
+	/**
+	 * Returns the string the typed text must be a prefix of. Validating the proposal must fail when it's not
+	 *
+	 * @return
+	 */
+	String getFilterString();
+}
@@ -0,0 +1,302 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.DocumentEvent;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.jface.text.contentassist.ICompletionProposalExtension;
+import org.eclipse.jface.text.contentassist.ICompletionProposalExtension2;
+
+/**
+ * Filters a list of proposals as the user types. {@link IFilterableCompletionProposal}s are kept sorted by their
+ * case-folded filter string, so the ones the typed prefix matches are found with a binary search, and as the prefix
+ * grows the search only looks at the ones that matched the shorter prefix. Only those are validated. Other proposals
+ * are validated on each call.
+ */
+public class IncrementalProposalFilter
+{
+
+	/**
+	 * A proposal, along with its case-folded filter string and its index in the original list
+	 */
+	private static class Entry
+	{
+		final ICompletionProposal proposal;
+		final String key;
+		final int index;
+
+		Entry(ICompletionProposal proposal, String key, int index)
+		{
+			this.proposal = proposal;
+			this.key = key;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * The proposals that share a filter offset, by key, and the ones that were still valid last time
+	 */
+	private static class Group
+	{
+		final int offset;
+		final List<Entry> entries = new ArrayList<Entry>();
+		String lastPrefix;
+		List<Entry> lastValid;
+
+		Group(int offset)
+		{
+			this.offset = offset;
+		}
+	}
+
+	private static final Comparator<Entry> BY_KEY = new Comparator<Entry>()
+	{
+		public int compare(Entry e1, Entry e2)
+		{
+			return e1.key.compareTo(e2.key);
+		}
+	};
+
+	private static final Comparator<Entry> BY_INDEX = new Comparator<Entry>()
+	{
+		public int compare(Entry e1, Entry e2)
+		{
+			return e1.index - e2.index;
+		}
+	};
+
+	private final ICompletionProposal[] proposals;
+	private final List<Group> groups = new ArrayList<Group>();
+	private final List<Entry> others = new ArrayList<Entry>();
+	private final boolean validatable;
+
+	/**
+	 * IncrementalProposalFilter
+	 *
+	 * @param proposals
+	 *            the proposals to filter
+	 */
+	public IncrementalProposalFilter(ICompletionProposal[] proposals)
+	{
+		this.proposals = proposals;
+
+		Map<Integer, Group> groupsByOffset = new HashMap<Integer, Group>();
+		boolean allValidatable = true;
+		for (int i = 0; i < proposals.length; i++)
+		{
+			ICompletionProposal proposal = proposals[i];
+			if (!(proposal instanceof ICompletionProposalExtension2)
+					&& !(proposal instanceof ICompletionProposalExtension))
+			{
+				allValidatable = false;
+			}
+			if (proposal instanceof IFilterableCompletionProposal
+					&& proposal instanceof ICompletionProposalExtension2)
+			{
+				IFilterableCompletionProposal filterable = (IFilterableCompletionProposal) proposal;
+				Integer offset = filterable.getFilterOffset();
+				Group group = groupsByOffset.get(offset);
+				if (group == null)
+				{
+					group = new Group(offset);
+					groupsByOffset.put(offset, group);
+					groups.add(group);
+				}
+				group.entries.add(new Entry(proposal, fold(filterable.getFilterString()), i));
+			}
+			else
+			{
+				others.add(new Entry(proposal, null, i));
+			}
+		}
+		for (Group group : groups)
+		{
+			Collections.sort(group.entries, BY_KEY);
+		}
+		validatable = allValidatable;
+	}
+
+	/**
+	 * Returns the proposals this filter was created for
+	 *
+	 * @return
+	 */
+	public ICompletionProposal[] getProposals()
+	{
+		return proposals;
+	}
+
+	/**
+	 * Returns whether all proposals can be validated. If not, they shouldn't be filtered but computed again
+	 *
+	 * @return
+	 */
+	public boolean isValidatable()
+	{
+		return validatable;
+	}
+
+	/**
+	 * Returns the proposals that are valid at an offset, in their original order
+	 *
+	 * @param document
+	 * @param offset
+	 * @param event
+	 *            the document event that led to this offset, may be null
+	 * @return
+	 */
+	public ICompletionProposal[] filter(IDocument document, int offset, DocumentEvent event)
+	{
+		List<Entry> valid = new ArrayList<Entry>();
+		for (Group group : groups)
+		{
+			valid.addAll(filter(group, document, offset, event));
+		}
+		for (Entry entry : others)
+		{
+			if (validate(entry.proposal, document, offset, event))
+			{
+				valid.add(entry);
+			}
+		}
+		Collections.sort(valid, BY_INDEX);
+
+		ICompletionProposal[] result = new ICompletionProposal[valid.size()];
+		for (int i = 0; i < result.length; i++)
+		{
+			result[i] = valid.get(i).proposal;
+		}
+		return result;
+	}
+
+	private List<Entry> filter(Group group, IDocument document, int offset, DocumentEvent event)
+	{
+		String prefix = null;
+		if (offset >= group.offset)
+		{
+			try
+			{
+				prefix = fold(document.get(group.offset, offset - group.offset));
+			}
+			catch (BadLocationException e)
+			{
+				// treated as if no proposal matched
+			}
+		}
+		if (prefix == null)
+		{
+			group.lastPrefix = null;
+			group.lastValid = null;
+			return Collections.emptyList();
+		}
+
+		// entries are sorted by key, and so are the ones that were valid for a shorter prefix
+		List<Entry> candidates = (group.lastPrefix != null && prefix.startsWith(group.lastPrefix)) ? group.lastValid
+				: group.entries;
+		int start = lowerBound(candidates, prefix);
+		int end = upperBound(candidates, prefix, start);
+
+		List<Entry> valid = new ArrayList<Entry>(end - start);
+		for (Entry entry : candidates.subList(start, end))
+		{
+			if (validate(entry.proposal, document, offset, event))
+			{
+				valid.add(entry);
+			}
+		}
+		group.lastPrefix = prefix;
+		group.lastValid = valid;
+		return valid;
+	}
+
+	/**
+	 * Returns the index of the first entry whose key isn't less than the prefix
+	 */
+	private static int lowerBound(List<Entry> entries, String prefix)
+	{
+		int low = 0;
+		int high = entries.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (entries.get(mid).key.compareTo(prefix) < 0)
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the index of the first entry from start on whose key doesn't start with the prefix
+	 */
+	private static int upperBound(List<Entry> entries, String prefix, int start)
+	{
+		int low = start;
+		int high = entries.size();
+		while (low < high)
+		{
+			int mid = (low + high) >>> 1;
+			if (entries.get(mid).key.startsWith(prefix))
+			{
+				low = mid + 1;
+			}
+			else
+			{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static boolean validate(ICompletionProposal proposal, IDocument document, int offset, DocumentEvent event)
+	{
+		if (proposal instanceof ICompletionProposalExtension2)
+		{
+			return ((ICompletionProposalExtension2) proposal).validate(document, offset, event);
+		}
+		if (proposal instanceof ICompletionProposalExtension)
+		{
+			return ((ICompletionProposalExtension) proposal).isValidFor(document, offset);
+		}
+		return false;
+	}
+
+	/**
+	 * Folds the case of a string the way {@link String#equalsIgnoreCase(String)} compares characters
+	 *
+	 * @param string
+	 * @return
+	 */
+	private static String fold(String string)
+	{
+		if (string == null)
+		{
+			return ""; //$NON-NLS-1$
+		}
+		char[] chars = string.toCharArray();
+		for (int i = 0; i < chars.length; i++)
+		{
+			chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+		}
+		return new String(chars);
+	}
+}
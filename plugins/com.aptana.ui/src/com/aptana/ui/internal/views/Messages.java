@@ -0,0 +1,40 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ui.internal.views;
+
+import org.eclipse.osgi.util.NLS;
+
+public class Messages extends NLS
+{
+	private static final String BUNDLE_NAME = "com.aptana.ui.internal.views.messages"; //$NON-NLS-1$
+
+	public static String MetricsView_AverageTime;
+	public static String MetricsView_Category;
+	public static String MetricsView_Count;
+	public static String MetricsView_Export;
+	public static String MetricsView_ExportFailedMessage;
+	public static String MetricsView_ExportFailedTitle;
+	public static String MetricsView_HitRate;
+	public static String MetricsView_MaxTime;
+	public static String MetricsView_Name;
+	public static String MetricsView_Record;
+	public static String MetricsView_RecordTooltip;
+	public static String MetricsView_Refresh;
+	public static String MetricsView_Reset;
+	public static String MetricsView_TotalTime;
+
+	static
+	{
+		// initialize resource bundle
+		NLS.initializeMessages(BUNDLE_NAME, Messages.class);
+	}
+
+	private Messages()
+	{
+	}
+}
@@ -0,0 +1,231 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ui.internal.views;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.MessageFormat;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.FileDialog;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+
+import com.aptana.core.logging.IdeLog;
+import com.aptana.core.metrics.Metric;
+import com.aptana.core.metrics.MetricsRegistry;
+import com.aptana.core.util.IOUtil;
+import com.aptana.core.util.StringUtil;
+import com.aptana.ui.UIPlugin;
+
+/**
+ * Shows what the {@link MetricsRegistry} recorded, and lets the user turn recording on and off and export the metrics
+ */
+public class MetricsView extends ViewPart
+{
+
+	private static final String TIME_FORMAT = "{0,number,0.###}"; //$NON-NLS-1$
+	private static final String RATE_FORMAT = "{0,number,percent}"; //$NON-NLS-1$
+	private static final String JSON_EXTENSION = ".json"; //$NON-NLS-1$
+
+	private static class MetricLabelProvider extends LabelProvider implements ITableLabelProvider
+	{
+		public Image getColumnImage(Object element, int columnIndex)
+		{
+			return null;
+		}
+
+		public String getColumnText(Object element, int columnIndex)
+		{
+			Metric metric = (Metric) element;
+			switch (columnIndex)
+			{
+				case 0:
+					return metric.getCategory();
+				case 1:
+					return metric.getName();
+				case 2:
+					return Long.toString(metric.getCount());
+				case 3:
+					return metric.isHitRatio() ? StringUtil.EMPTY : format(TIME_FORMAT, metric.getTotalTime());
+				case 4:
+					return metric.isHitRatio() ? StringUtil.EMPTY : format(TIME_FORMAT, metric.getAverageTime());
+				case 5:
+					return metric.isHitRatio() ? StringUtil.EMPTY : format(TIME_FORMAT, metric.getMaxTime());
+				case 6:
+					return metric.isHitRatio() ? format(RATE_FORMAT, metric.getHitRate()) : StringUtil.EMPTY;
+				default:
+					return StringUtil.EMPTY;
+			}
+		}
+
+		private static String format(String pattern, double value)
+		{
+			return MessageFormat.format(pattern, value);
+		}
+	}
+
+	private TableViewer tableViewer;
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#createPartControl(org.eclipse.swt.widgets.Composite)
+	 */
+	@Override
+	public void createPartControl(Composite parent)
+	{
+		tableViewer = new TableViewer(parent, SWT.MULTI | SWT.FULL_SELECTION | SWT.H_SCROLL | SWT.V_SCROLL);
+		Table table = tableViewer.getTable();
+		table.setHeaderVisible(true);
+		table.setLinesVisible(true);
+		addColumn(table, Messages.MetricsView_Category, SWT.LEFT, 100);
+		addColumn(table, Messages.MetricsView_Name, SWT.LEFT, 250);
+		addColumn(table, Messages.MetricsView_Count, SWT.RIGHT, 70);
+		addColumn(table, Messages.MetricsView_TotalTime, SWT.RIGHT, 90);
+		addColumn(table, Messages.MetricsView_AverageTime, SWT.RIGHT, 90);
+		addColumn(table, Messages.MetricsView_MaxTime, SWT.RIGHT, 90);
+		addColumn(table, Messages.MetricsView_HitRate, SWT.RIGHT, 70);
+
+		tableViewer.setContentProvider(new ArrayContentProvider());
+		tableViewer.setLabelProvider(new MetricLabelProvider());
+
+		getSite().setSelectionProvider(tableViewer);
+		contributeToActionBars();
+		refresh();
+	}
+
+	private static void addColumn(Table table, String text, int style, int width)
+	{
+		TableColumn column = new TableColumn(table, style);
+		column.setText(text);
+		column.setWidth(width);
+	}
+
+	private void contributeToActionBars()
+	{
+		final MetricsRegistry metrics = MetricsRegistry.getDefault();
+		IToolBarManager manager = getViewSite().getActionBars().getToolBarManager();
+
+		IAction record = new Action(Messages.MetricsView_Record, IAction.AS_CHECK_BOX)
+		{
+			@Override
+			public void run()
+			{
+				metrics.setEnabled(isChecked());
+				refresh();
+			}
+		};
+		record.setChecked(metrics.isEnabled());
+		record.setToolTipText(Messages.MetricsView_RecordTooltip);
+		manager.add(record);
+
+		IAction refresh = new Action(Messages.MetricsView_Refresh)
+		{
+			@Override
+			public void run()
+			{
+				refresh();
+			}
+		};
+		manager.add(refresh);
+
+		IAction reset = new Action(Messages.MetricsView_Reset)
+		{
+			@Override
+			public void run()
+			{
+				metrics.reset();
+				refresh();
+			}
+		};
+		reset.setImageDescriptor(UIPlugin.getImageDescriptor("icons/delete.gif")); //$NON-NLS-1$
+		manager.add(reset);
+
+		IAction export = new Action(Messages.MetricsView_Export)
+		{
+			@Override
+			public void run()
+			{
+				export();
+			}
+		};
+		export.setImageDescriptor(UIPlugin.getImageDescriptor("icons/export.gif")); //$NON-NLS-1$
+		manager.add(export);
+	}
+
+	private void refresh()
+	{
+		if (tableViewer != null && !tableViewer.getControl().isDisposed())
+		{
+			tableViewer.setInput(MetricsRegistry.getDefault().getMetrics());
+		}
+	}
+
+	private void export()
+	{
+		FileDialog dialog = new FileDialog(getSite().getShell(), SWT.SAVE);
+		dialog.setFilterExtensions(new String[] { "*.csv", "*" + JSON_EXTENSION }); //$NON-NLS-1$ //$NON-NLS-2$
+		dialog.setOverwrite(true);
+		String path = dialog.open();
+		if (path == null)
+		{
+			return;
+		}
+
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		String contents = path.toLowerCase().endsWith(JSON_EXTENSION) ? metrics.toJSON() : metrics.toCSV();
+		try
+		{
+			write(path, contents);
+		}
+		catch (IOException e)
+		{
+			IdeLog.logError(UIPlugin.getDefault(), e);
+			MessageDialog.openError(getSite().getShell(), Messages.MetricsView_ExportFailedTitle,
+					MessageFormat.format(Messages.MetricsView_ExportFailedMessage, path));
+		}
+	}
+
+	private static void write(String path, String contents) throws IOException
+	{
+		// unlike IOUtil.write, lets us know when the file couldn't be written
+		Writer writer = new OutputStreamWriter(new FileOutputStream(path), IOUtil.UTF_8);
+		try
+		{
+			writer.write(contents);
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.ui.part.WorkbenchPart#setFocus()
+	 */
+	@Override
+	public void setFocus()
+	{
+		tableViewer.getControl().setFocus();
+		refresh();
+	}
+}
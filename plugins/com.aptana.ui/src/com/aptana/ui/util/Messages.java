@@ -14,6 +14,7 @@ public class Messages extends NLS
 
 	private static final String BUNDLE_NAME = "com.aptana.ui.util.messages"; //$NON-NLS-1$
 
+	public static String TextSearchUtil_NarrowingScope;
 	public static String UIUtils_Error;
 
 
@@ -0,0 +1,149 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ui.util;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.search.ui.NewSearchUI;
+import org.eclipse.search.ui.text.FileTextSearchScope;
+import org.eclipse.search.ui.text.TextSearchQueryProvider;
+import org.eclipse.search.ui.text.TextSearchQueryProvider.TextSearchInput;
+import org.eclipse.ui.IEditorInput;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchWindow;
+import org.eclipse.ui.PlatformUI;
+
+import com.aptana.core.build.ContentIndexSearch;
+import com.aptana.core.logging.IdeLog;
+import com.aptana.index.core.ContentIndex;
+import com.aptana.ui.UIPlugin;
+
+/**
+ * Runs file searches in the search view. When the contents of files are indexed, the files of the projects to search
+ * are first narrowed down to the ones that may contain matches (see {@link ContentIndexSearch}), in the background.
+ */
+public class TextSearchUtil
+{
+
+	private TextSearchUtil()
+	{
+	}
+
+	/**
+	 * Runs a file search in the background and shows its results. Must be called from the UI thread.
+	 * 
+	 * @param searchText
+	 * @param isCaseSensitive
+	 * @param isRegEx
+	 * @param roots
+	 *            the resources to search
+	 * @param fileNamePatterns
+	 *            the patterns of the names of the files to search
+	 * @param includeDerived
+	 *            whether to search derived resources
+	 */
+	public static void runQueryInBackground(final String searchText, final boolean isCaseSensitive,
+			final boolean isRegEx, final IResource[] roots, final String[] fileNamePatterns,
+			final boolean includeDerived)
+	{
+		if (!ContentIndex.isEnabled())
+		{
+			runQuery(searchText, isCaseSensitive, isRegEx,
+					FileTextSearchScope.newSearchScope(roots, fileNamePatterns, includeDerived));
+			return;
+		}
+
+		// the search looks at the unsaved contents of these, which the index knows nothing about
+		final Set<IFile> dirtyFiles = getDirtyFiles();
+		Job job = new Job(Messages.TextSearchUtil_NarrowingScope)
+		{
+			@Override
+			protected IStatus run(IProgressMonitor monitor)
+			{
+				IResource[] searchRoots = ContentIndexSearch.getSearchRoots(roots, searchText, isRegEx, dirtyFiles);
+				final FileTextSearchScope scope = FileTextSearchScope.newSearchScope(searchRoots, fileNamePatterns,
+						includeDerived);
+				UIUtils.getDisplay().asyncExec(new Runnable()
+				{
+					public void run()
+					{
+						runQuery(searchText, isCaseSensitive, isRegEx, scope);
+					}
+				});
+				return Status.OK_STATUS;
+			}
+		};
+		job.setPriority(Job.INTERACTIVE);
+		job.schedule();
+	}
+
+	private static void runQuery(final String searchText, final boolean isCaseSensitive, final boolean isRegEx,
+			final FileTextSearchScope scope)
+	{
+		try
+		{
+			NewSearchUI.runQueryInBackground(TextSearchQueryProvider.getPreferred().createQuery(new TextSearchInput()
+			{
+
+				public boolean isRegExSearch()
+				{
+					return isRegEx;
+				}
+
+				public boolean isCaseSensitiveSearch()
+				{
+					return isCaseSensitive;
+				}
+
+				public String getSearchText()
+				{
+					return searchText;
+				}
+
+				public FileTextSearchScope getScope()
+				{
+					return scope;
+				}
+			}));
+		}
+		catch (CoreException e)
+		{
+			IdeLog.logError(UIPlugin.getDefault(), e);
+		}
+	}
+
+	private static Set<IFile> getDirtyFiles()
+	{
+		Set<IFile> files = new HashSet<IFile>();
+		for (IWorkbenchWindow window : PlatformUI.getWorkbench().getWorkbenchWindows())
+		{
+			for (IWorkbenchPage page : window.getPages())
+			{
+				for (IEditorPart editor : page.getDirtyEditors())
+				{
+					IEditorInput input = editor.getEditorInput();
+					IFile file = (input == null) ? null : (IFile) input.getAdapter(IFile.class);
+					if (file != null)
+					{
+						files.add(file);
+					}
+				}
+			}
+		}
+		return files;
+	}
+}
@@ -11,6 +11,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class AnalyticsLogger
@@ -25,6 +26,14 @@ public class AnalyticsLogger
 	private static final String GET_EVENTS = MessageFormat.format("SELECT {0},{1},{2},{3} FROM {4} ORDER BY {0}", //$NON-NLS-1$
 			new Object[] { EVENT_TYPE, EVENT_NAME, DATA, DATE_TIME, TABLE_NAME });
 
+	private static final String INSERT_EVENT = MessageFormat.format(
+			"INSERT INTO {0}({1},{2},{3},{4}) VALUES(?,?,?,?)", //$NON-NLS-1$
+			new Object[] { TABLE_NAME, EVENT_TYPE, EVENT_NAME, DATA, DATE_TIME });
+
+	private static final String DELETE_EVENT = MessageFormat.format(
+			"DELETE FROM {0} WHERE {1}=? AND {2}=? AND {3}=? AND {4}=?", //$NON-NLS-1$
+			new Object[] { TABLE_NAME, EVENT_TYPE, EVENT_NAME, DATA, DATE_TIME });
+
 	private static AnalyticsLogger INSTANCE;
 
 	public synchronized static AnalyticsLogger getInstance()
@@ -45,12 +54,17 @@ public class AnalyticsLogger
 
 	public void logEvent(AnalyticsEvent event)
 	{
-		String query = MessageFormat.format(
-				"INSERT INTO {0}({1},{2},{3}, {4}) VALUES(''{5}'',''{6}'',''{7}'',''{8}'')", //$NON-NLS-1$
-				new Object[] { TABLE_NAME, EVENT_TYPE, EVENT_NAME, DATA, DATE_TIME, event.getEventType(),
-						event.getEventName(), event.getJSONPayloadString(), event.getDateTime() });
+		logEvents(Collections.singletonList(event));
+	}
 
-		AptanaDB.getInstance().execute(query);
+	/**
+	 * Stores the events in one batch
+	 * 
+	 * @param events
+	 */
+	public void logEvents(List<AnalyticsEvent> events)
+	{
+		AptanaDB.getInstance().executeBatch(INSERT_EVENT, toParameters(events));
 	}
 
 	public void clearEvents()
@@ -61,11 +75,17 @@ public class AnalyticsLogger
 
 	public void clearEvent(AnalyticsEvent event)
 	{
-		String query = MessageFormat.format(
-				"DELETE FROM {0} WHERE {1}=''{2}'' AND {3}=''{4}'' AND {5}=''{6}'' AND {7}=''{8}''", //$NON-NLS-1$
-				new Object[] { TABLE_NAME, EVENT_TYPE, event.getEventType(), EVENT_NAME, event.getEventName(), DATA,
-						event.getJSONPayloadString(), DATE_TIME, event.getDateTime() });
-		AptanaDB.getInstance().execute(query);
+		clearEvents(Collections.singletonList(event));
+	}
+
+	/**
+	 * Removes the stored events in one batch
+	 * 
+	 * @param events
+	 */
+	public void clearEvents(List<AnalyticsEvent> events)
+	{
+		AptanaDB.getInstance().executeBatch(DELETE_EVENT, toParameters(events));
 	}
 
 	public List<AnalyticsEvent> getEvents()
@@ -88,4 +108,15 @@ public class AnalyticsLogger
 
 		return events;
 	}
+
+	private static List<String[]> toParameters(List<AnalyticsEvent> events)
+	{
+		List<String[]> parameters = new ArrayList<String[]>(events.size());
+		for (AnalyticsEvent event : events)
+		{
+			parameters.add(new String[] { event.getEventType(), event.getEventName(), event.getJSONPayloadString(),
+					event.getDateTime() });
+		}
+		return parameters;
+	}
 }
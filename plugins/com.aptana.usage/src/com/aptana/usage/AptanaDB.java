@@ -10,9 +10,11 @@ package com.aptana.usage;
 import java.io.File;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.osgi.service.datalocation.Location;
@@ -125,6 +127,85 @@ public class AptanaDB
 		}
 	}
 
+	/**
+	 * Executes a statement once for each set of parameters, in one batch and one transaction
+	 * 
+	 * @param statement
+	 *            the statement, with a ? for each parameter
+	 * @param parameters
+	 *            the parameters of each execution
+	 */
+	public void executeBatch(String statement, List<String[]> parameters)
+	{
+		if (parameters.isEmpty())
+		{
+			return;
+		}
+
+		Connection connection = getInstance().getConnection();
+
+		if (connection != null)
+		{
+			PreparedStatement preparedStatement = null;
+			try
+			{
+				connection.setAutoCommit(false);
+				preparedStatement = connection.prepareStatement(statement);
+
+				if (IdeLog.isTraceEnabled(UsagePlugin.getDefault(), IDebugScopes.DB))
+				{
+					IdeLog.logTrace(UsagePlugin.getDefault(), statement + " x " + parameters.size()); //$NON-NLS-1$
+				}
+
+				for (String[] values : parameters)
+				{
+					for (int i = 0; i < values.length; i++)
+					{
+						preparedStatement.setString(i + 1, values[i]);
+					}
+					preparedStatement.addBatch();
+				}
+				preparedStatement.executeBatch();
+				connection.commit();
+			}
+			catch (SQLException e)
+			{
+				IdeLog.logWarning(UsagePlugin.getDefault(), Messages.AptanaDB_Error_Execute_Query, e);
+				try
+				{
+					connection.rollback();
+				}
+				catch (SQLException ignore)
+				{
+					// ignores
+				}
+			}
+			finally
+			{
+				if (preparedStatement != null)
+				{
+					try
+					{
+						preparedStatement.close();
+					}
+					catch (SQLException e)
+					{
+						// ignores
+					}
+				}
+
+				try
+				{
+					connection.close();
+				}
+				catch (SQLException e)
+				{
+					// ignores
+				}
+			}
+		}
+	}
+
 	public Connection getConnection()
 	{
 		if (_driverLoaded)
@@ -9,12 +9,17 @@ package com.aptana.usage;
 
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -36,12 +41,38 @@ public class StudioAnalytics
 	}
 	private static final int TIMEOUT = 5 * 1000; // 5 seconds
 
+	/**
+	 * The most events kept in memory before they are sent or stored
+	 */
+	static final int QUEUE_CAPACITY = 500;
+
+	/**
+	 * The most events held for the flush job when it can't keep up. Past that, the oldest ones are dropped
+	 */
+	static final int OVERFLOW_CAPACITY = 2 * QUEUE_CAPACITY;
+
+	/**
+	 * How long events are collected before they are sent, so a burst of them goes out together
+	 */
+	private static final long FLUSH_DELAY = 2 * 1000; // 2 seconds
+
 	private static StudioAnalytics instance;
 
 	private int responseCode = 0;
 
 	private Object lock = new Object();
 
+	private final BlockingQueue<AnalyticsEvent> queue = new ArrayBlockingQueue<AnalyticsEvent>(QUEUE_CAPACITY);
+
+	/**
+	 * Events moved out of the full queue, for the flush job to send or store
+	 */
+	private final LinkedList<AnalyticsEvent> overflow = new LinkedList<AnalyticsEvent>();
+
+	private final String analyticsURL;
+
+	private final Job flushJob;
+
 	public synchronized static StudioAnalytics getInstance()
 	{
 		if (instance == null)
@@ -51,76 +82,79 @@ public class StudioAnalytics
 		return instance;
 	}
 
-	public void sendEvent(final AnalyticsEvent event)
+	private StudioAnalytics()
 	{
-		if (Platform.inDevelopmentMode() && !EclipseUtil.isTesting())
-		{
-			return;
-		}
+		this(ANALYTICS_URL);
+	}
 
-		Job job = new Job("Sending Analytics Ping ...") //$NON-NLS-1$
+	/**
+	 * StudioAnalytics
+	 * 
+	 * @param analyticsURL
+	 *            where the events are sent
+	 */
+	StudioAnalytics(String analyticsURL)
+	{
+		this.analyticsURL = analyticsURL;
+		flushJob = new Job("Sending Analytics Ping ...") //$NON-NLS-1$
 		{
 
 			@Override
 			protected IStatus run(IProgressMonitor monitor)
 			{
-				IAnalyticsUserManager userManager = AnalyticsEvent.getUserManager();
-				if (userManager == null)
-				{
-					// send as anonymous user
-					if (!isValidResponse(responseCode = sendPing(event, null)))
-					{
-						// log the event to the database
-						AnalyticsLogger.getInstance().logEvent(event);
-					}
-					return Status.OK_STATUS;
-				}
-
-				IAnalyticsUser user = userManager.getUser();
-				// Only send ping if user is logged in. Otherwise, we log it to the database
-				if (user == null || !user.isOnline() || !isValidResponse(responseCode = sendPing(event, user)))
-				{
-					// log the event to the database
-					AnalyticsLogger.getInstance().logEvent(event);
-				}
-				else
-				{
-					// Send out all previous events from the db
-					synchronized (lock)
-					{
-						List<AnalyticsEvent> events = AnalyticsLogger.getInstance().getEvents();
-						// Sort the events. We want all project.create events to be first, and all project.delete events
-						// to be last
-						Collections.sort(events, new AnalyticsEventComparator());
-						for (AnalyticsEvent aEvent : events)
-						{
-							if (!isValidResponse(responseCode = sendPing(aEvent, user)))
-							{
-								return Status.OK_STATUS;
-							}
-							// Remove the event after it has been sent
-							AnalyticsLogger.getInstance().clearEvent(aEvent);
-						}
-					}
-				}
+				flush(true);
 				return Status.OK_STATUS;
 			}
 		};
-		EclipseUtil.setSystemForJob(job);
-		job.setPriority(Job.BUILD);
-		job.schedule();
+		EclipseUtil.setSystemForJob(flushJob);
+		flushJob.setPriority(Job.BUILD);
+	}
+
+	/**
+	 * Queues an event. Queued events are sent together shortly after, or stored to be sent later if that fails. A
+	 * feature event that is already queued isn't queued again.
+	 * 
+	 * @param event
+	 */
+	public void sendEvent(final AnalyticsEvent event)
+	{
+		if (Platform.inDevelopmentMode() && !EclipseUtil.isTesting())
+		{
+			return;
+		}
+
+		if (!queue(event))
+		{
+			return;
+		}
 
 		// Make this a blocking job for unit tests
 		if (EclipseUtil.isTesting())
 		{
+			flushJob.schedule();
 			try
 			{
-				job.join();
+				flushJob.join();
 			}
 			catch (InterruptedException e)
 			{
 			}
 		}
+		else
+		{
+			// does nothing while the job is waiting, and runs it again if it is running
+			flushJob.schedule(FLUSH_DELAY);
+		}
+	}
+
+	/**
+	 * Sends the events that are still queued, such as the end of the session, and stores those that can't be sent.
+	 * The stored events are left for next time, so they don't hold up the shutdown.
+	 */
+	public void stop()
+	{
+		flushJob.cancel();
+		flush(false);
 	}
 
 	public int getLastResponseCode()
@@ -128,6 +162,163 @@ public class StudioAnalytics
 		return responseCode;
 	}
 
+	private boolean isQueued(AnalyticsEvent event)
+	{
+		synchronized (overflow)
+		{
+			if (contains(overflow, event))
+			{
+				return true;
+			}
+		}
+		return contains(queue, event);
+	}
+
+	private static boolean contains(Iterable<AnalyticsEvent> events, AnalyticsEvent event)
+	{
+		for (AnalyticsEvent queued : events)
+		{
+			if (queued instanceof FeatureEvent && queued.getEventName().equals(event.getEventName())
+					&& String.valueOf(queued.getJSONPayloadString()).equals(event.getJSONPayloadString()))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Queues an event without waiting for it to be sent. When the queue is full, what is queued is handed to the flush
+	 * job right away, rather than stored on the caller's thread, which is often the UI thread. Should the job fall
+	 * behind by more than {@link #OVERFLOW_CAPACITY} events, the oldest ones are dropped.
+	 * 
+	 * @param event
+	 * @return false if the event is a feature event that is already queued
+	 */
+	boolean queue(AnalyticsEvent event)
+	{
+		if (event instanceof FeatureEvent && isQueued(event))
+		{
+			return false;
+		}
+
+		if (!queue.offer(event))
+		{
+			int dropped = 0;
+			synchronized (overflow)
+			{
+				queue.drainTo(overflow);
+				overflow.add(event);
+				while (overflow.size() > OVERFLOW_CAPACITY)
+				{
+					overflow.removeFirst();
+					dropped++;
+				}
+			}
+			if (dropped > 0)
+			{
+				IdeLog.logWarning(UsagePlugin.getDefault(),
+						MessageFormat.format("Dropped the {0} oldest analytics events.", dropped)); //$NON-NLS-1$
+			}
+			// runs the job now, even if it is waiting for its delay
+			flushJob.schedule();
+			flushJob.wakeUp();
+		}
+		return true;
+	}
+
+	/**
+	 * Waits for the flush job to be done with the queued events
+	 * 
+	 * @throws InterruptedException
+	 */
+	void join() throws InterruptedException
+	{
+		flushJob.join();
+	}
+
+	private List<AnalyticsEvent> drainQueue()
+	{
+		List<AnalyticsEvent> events;
+		synchronized (overflow)
+		{
+			events = new ArrayList<AnalyticsEvent>(overflow.size() + queue.size());
+			events.addAll(overflow);
+			overflow.clear();
+		}
+		queue.drainTo(events);
+		return events;
+	}
+
+	/**
+	 * Sends the queued events, or stores them in the database if they can't be sent.
+	 * 
+	 * @param sendStored
+	 *            whether the stored events are sent as well once the queued ones got through
+	 */
+	private void flush(boolean sendStored)
+	{
+		List<AnalyticsEvent> events = drainQueue();
+		if (events.isEmpty())
+		{
+			return;
+		}
+
+		IAnalyticsUserManager userManager = AnalyticsEvent.getUserManager();
+		if (userManager == null)
+		{
+			// send as anonymous user
+			int sent = sendPings(events, null);
+			if (sent < events.size())
+			{
+				// log the events to the database
+				AnalyticsLogger.getInstance().logEvents(events.subList(sent, events.size()));
+			}
+			return;
+		}
+
+		IAnalyticsUser user = userManager.getUser();
+		// Only send pings if user is logged in. Otherwise, we log them to the database
+		int sent = (user == null || !user.isOnline()) ? 0 : sendPings(events, user);
+		if (sent < events.size())
+		{
+			// log the events to the database
+			AnalyticsLogger.getInstance().logEvents(events.subList(sent, events.size()));
+		}
+		else if (sendStored)
+		{
+			// Send out all previous events from the db
+			synchronized (lock)
+			{
+				List<AnalyticsEvent> storedEvents = AnalyticsLogger.getInstance().getEvents();
+				// Sort the events. We want all project.create events to be first, and all project.delete events
+				// to be last
+				Collections.sort(storedEvents, new AnalyticsEventComparator());
+				// Remove the events after they have been sent
+				AnalyticsLogger.getInstance().clearEvents(storedEvents.subList(0, sendPings(storedEvents, user)));
+			}
+		}
+	}
+
+	/**
+	 * Sends events one after the other, until one doesn't get through. The connection is kept alive between them.
+	 * 
+	 * @return the number of events that got through
+	 */
+	private int sendPings(List<AnalyticsEvent> events, IAnalyticsUser user)
+	{
+		int sent = 0;
+		for (AnalyticsEvent event : events)
+		{
+			if (!isValidResponse(responseCode = sendPing(event, user)))
+			{
+				break;
+			}
+			sent++;
+		}
+		return sent;
+	}
+
 	private int sendPing(AnalyticsEvent event, IAnalyticsUser user)
 	{
 		HttpURLConnection connection = null;
@@ -135,7 +326,7 @@ public class StudioAnalytics
 
 		try
 		{
-			URL url = new URL(ANALYTICS_URL);
+			URL url = new URL(analyticsURL);
 			connection = (HttpURLConnection) url.openConnection();
 			if (user != null)
 			{
@@ -170,11 +361,17 @@ public class StudioAnalytics
 						Integer.toString(code)));
 			}
 
+			// reading the whole response lets the next ping reuse the connection
+			consumeResponse(connection, code);
 			return code;
 		}
 		catch (Exception e)
 		{
 			UsagePlugin.logError(e);
+			if (connection != null)
+			{
+				connection.disconnect();
+			}
 			return HttpURLConnection.HTTP_UNAVAILABLE;
 		}
 		finally
@@ -189,11 +386,28 @@ public class StudioAnalytics
 				{
 				}
 			}
-			if (connection != null)
+		}
+	}
+
+	private static void consumeResponse(HttpURLConnection connection, int code) throws IOException
+	{
+		InputStream input = (code >= 400) ? connection.getErrorStream() : connection.getInputStream();
+		if (input == null)
+		{
+			return;
+		}
+		try
+		{
+			byte[] buffer = new byte[1024];
+			while (input.read(buffer) != -1)
 			{
-				connection.disconnect();
+				// discards
 			}
 		}
+		finally
+		{
+			input.close();
+		}
 	}
 
 	private static boolean isValidResponse(int code)
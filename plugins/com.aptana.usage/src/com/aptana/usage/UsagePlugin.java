@@ -65,6 +65,7 @@ public class UsagePlugin extends Plugin
 		if (!EclipseUtil.isTesting())
 		{
 			StudioAnalytics.getInstance().sendEvent(new AnalyticsEvent(STUDIO_END, STUDIO_END, null));
+			StudioAnalytics.getInstance().stop();
 		}
 		if (!Platform.inDevelopmentMode())
 		{
@@ -28,6 +28,11 @@ public interface IWebServerPreferenceConstants {
 	 */
 	String PREF_HTTP_SERVER_PORTS = PREFIX + ".http_server_ports"; //$NON-NLS-1$
 
+	/**
+	 * Whether built-in HTTP server sends text files gzipped to clients that accept it
+	 */
+	String PREF_HTTP_SERVER_COMPRESS_TEXT = PREFIX + ".http_server_compress_text"; //$NON-NLS-1$
+
 	/**
 	 * Default IP address
 	 */
@@ -37,4 +42,9 @@ public interface IWebServerPreferenceConstants {
 	 * Default ports range
 	 */
 	int[] DEFAULT_HTTP_SERVER_PORTS_RANGE = new int[] { 8020, 8079 };
+
+	/**
+	 * Default for compressing text files
+	 */
+	boolean DEFAULT_HTTP_SERVER_COMPRESS_TEXT = true;
 }
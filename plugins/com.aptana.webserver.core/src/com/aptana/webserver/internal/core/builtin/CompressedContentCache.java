@@ -0,0 +1,179 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+// $codepro.audit.disable closeWhereCreated
+
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content digests and gzipped content of the files served by the built-in server. Digests are kept by file, last
+ * modification time and length, so a file is only read again once it changed. Compressed content is kept by digest, so
+ * it survives a file being touched without being changed, and files with the same content share it.
+ */
+/* package */class CompressedContentCache
+{
+
+	/**
+	 * Files larger than this are neither digested nor compressed
+	 */
+	static final long MAX_LENGTH = 2 * 1024 * 1024;
+
+	private static final int MAX_DIGESTS = 1000;
+	private static final long MAX_COMPRESSED_SIZE = 16 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+
+	private final Map<String, String> digests = new LinkedHashMap<String, String>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, String> eldest)
+		{
+			return size() > MAX_DIGESTS;
+		}
+	};
+
+	private final LinkedHashMap<String, byte[]> compressed = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+	private long compressedSize;
+
+	/**
+	 * Returns the hex MD5 digest of the content of a file
+	 *
+	 * @param file
+	 * @param lastModified
+	 *            the last modification time of the file, as reported by its store
+	 * @param length
+	 *            the length of the file, as reported by its store
+	 * @return the digest, or null if the file is too large to digest
+	 * @throws IOException
+	 */
+	public String getDigest(File file, long lastModified, long length) throws IOException
+	{
+		if (length > MAX_LENGTH)
+		{
+			return null;
+		}
+		String key = file.getAbsolutePath() + '@' + lastModified + ':' + length;
+		synchronized (digests)
+		{
+			String digest = digests.get(key);
+			if (digest != null)
+			{
+				return digest;
+			}
+		}
+		String digest = toHex(digest(read(file)));
+		synchronized (digests)
+		{
+			digests.put(key, digest);
+		}
+		return digest;
+	}
+
+	/**
+	 * Returns the gzipped content of a file
+	 *
+	 * @param file
+	 * @param digest
+	 *            the digest of the content of the file, see {@link #getDigest(File, long, long)}
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] getCompressed(File file, String digest) throws IOException
+	{
+		synchronized (compressed)
+		{
+			byte[] content = compressed.get(digest);
+			if (content != null)
+			{
+				return content;
+			}
+		}
+		byte[] content = gzip(read(file));
+		synchronized (compressed)
+		{
+			if (compressed.put(digest, content) == null)
+			{
+				compressedSize += content.length;
+			}
+			// evict the least recently used, but never what we just added
+			for (Iterator<byte[]> i = compressed.values().iterator(); compressedSize > MAX_COMPRESSED_SIZE
+					&& compressed.size() > 1;)
+			{
+				compressedSize -= i.next().length;
+				i.remove();
+			}
+		}
+		return content;
+	}
+
+	private static byte[] read(File file) throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(file.length(), MAX_LENGTH));
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = in.read(buffer)) != -1) // $codepro.audit.disable assignmentInCondition
+			{
+				out.write(buffer, 0, n);
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3 + 64);
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(content);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	private static byte[] digest(byte[] content)
+	{
+		try
+		{
+			return MessageDigest.getInstance("MD5").digest(content); //$NON-NLS-1$
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			// every JRE has MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(byte[] bytes)
+	{
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			chars[2 * i] = HEX[(bytes[i] >> 4) & 0x0F];
+			chars[2 * i + 1] = HEX[bytes[i] & 0x0F];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,235 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+// $codepro.audit.disable closeWhereCreated
+
+package com.aptana.webserver.internal.core.builtin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.ProducingNHttpEntity;
+
+/**
+ * An entity for a region of a file. Like NFileEntity, the region is handed to the socket with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)} whenever the encoder supports it,
+ * so the content never goes through a buffer of ours.
+ */
+/* package */class FileRegionEntity extends AbstractHttpEntity implements ProducingNHttpEntity
+{
+
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	private final File file;
+	private final long offset;
+	private final long length;
+
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	private long position;
+
+	/**
+	 * @param file
+	 * @param offset
+	 *            the offset of the first byte of the region
+	 * @param length
+	 *            the length of the region
+	 * @param contentType
+	 */
+	public FileRegionEntity(File file, long offset, long length, String contentType)
+	{
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+		setContentType(contentType);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.nio.entity.ProducingNHttpEntity#produceContent(org.apache.http.nio.ContentEncoder,
+	 * org.apache.http.nio.IOControl)
+	 */
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException
+	{
+		if (channel == null)
+		{
+			channel = new RandomAccessFile(file, "r").getChannel(); //$NON-NLS-1$
+			position = offset;
+		}
+		long end = offset + length;
+		if (position < end)
+		{
+			if (encoder instanceof FileContentEncoder)
+			{
+				position += ((FileContentEncoder) encoder).transfer(channel, position, end - position);
+			}
+			else
+			{
+				if (buffer == null)
+				{
+					buffer = ByteBuffer.allocate(BUFFER_SIZE);
+				}
+				// what the encoder didn't take last time is still in the buffer
+				if (!buffer.hasRemaining() || buffer.position() == 0)
+				{
+					buffer.clear();
+					buffer.limit((int) Math.min(BUFFER_SIZE, end - position));
+					if (channel.read(buffer, position) == -1)
+					{
+						throw new IOException("Unexpected end of file: " + file); //$NON-NLS-1$
+					}
+					buffer.flip();
+				}
+				position += encoder.write(buffer);
+			}
+		}
+		if (position >= end)
+		{
+			encoder.complete();
+			finish();
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.nio.entity.ProducingNHttpEntity#finish()
+	 */
+	public void finish()
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException ignore)
+			{
+			}
+			channel = null;
+		}
+		buffer = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#getContentLength()
+	 */
+	public long getContentLength()
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#isRepeatable()
+	 */
+	public boolean isRepeatable()
+	{
+		return true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#isStreaming()
+	 */
+	public boolean isStreaming()
+	{
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#getContent()
+	 */
+	public InputStream getContent() throws IOException
+	{
+		final InputStream in = new FileInputStream(file);
+		long skipped = 0;
+		while (skipped < offset)
+		{
+			long n = in.skip(offset - skipped);
+			if (n <= 0)
+			{
+				break;
+			}
+			skipped += n;
+		}
+		return new InputStream()
+		{
+			private long remaining = length;
+
+			@Override
+			public int read() throws IOException
+			{
+				if (remaining <= 0)
+				{
+					return -1;
+				}
+				int b = in.read();
+				if (b != -1)
+				{
+					--remaining;
+				}
+				return b;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException
+			{
+				if (remaining <= 0)
+				{
+					return -1;
+				}
+				int n = in.read(b, off, (int) Math.min(len, remaining));
+				if (n > 0)
+				{
+					remaining -= n;
+				}
+				return n;
+			}
+
+			@Override
+			public void close() throws IOException
+			{
+				in.close();
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.HttpEntity#writeTo(java.io.OutputStream)
+	 */
+	public void writeTo(OutputStream out) throws IOException
+	{
+		InputStream in = getContent();
+		try
+		{
+			byte[] tmp = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = in.read(tmp)) != -1) // $codepro.audit.disable assignmentInCondition
+			{
+				out.write(tmp, 0, n);
+			}
+			out.flush();
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+}
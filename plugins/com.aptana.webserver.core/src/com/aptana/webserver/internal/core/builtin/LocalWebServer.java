@@ -23,7 +23,9 @@ import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.DefaultHttpResponseFactory;
 import org.apache.http.impl.nio.DefaultServerIOEventDispatch;
 import org.apache.http.impl.nio.reactor.DefaultListeningIOReactor;
-import org.apache.http.nio.protocol.BufferingHttpServiceHandler;
+import org.apache.http.nio.protocol.AsyncNHttpServiceHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandler;
+import org.apache.http.nio.protocol.NHttpRequestHandlerRegistry;
 import org.apache.http.nio.reactor.IOEventDispatch;
 import org.apache.http.nio.reactor.IOReactorException;
 import org.apache.http.nio.reactor.IOReactorStatus;
@@ -33,8 +35,6 @@ import org.apache.http.params.CoreConnectionPNames;
 import org.apache.http.params.CoreProtocolPNames;
 import org.apache.http.params.HttpParams;
 import org.apache.http.protocol.BasicHttpProcessor;
-import org.apache.http.protocol.HttpRequestHandler;
-import org.apache.http.protocol.HttpRequestHandlerRegistry;
 import org.apache.http.protocol.ResponseConnControl;
 import org.apache.http.protocol.ResponseContent;
 import org.apache.http.protocol.ResponseDate;
@@ -172,7 +172,7 @@ public class LocalWebServer extends SimpleWebServer
 		}
 	}
 
-	private void runServer(InetSocketAddress socketAddress, HttpRequestHandler httpRequestHandler)
+	private void runServer(InetSocketAddress socketAddress, NHttpRequestHandler httpRequestHandler)
 	{
 		HttpParams params = new BasicHttpParams();
 		params.setIntParameter(CoreConnectionPNames.SO_TIMEOUT, SOCKET_TIMEOUT)
@@ -188,10 +188,10 @@ public class LocalWebServer extends SimpleWebServer
 		httpProcessor.addInterceptor(new ResponseContent());
 		httpProcessor.addInterceptor(new ResponseConnControl());
 
-		HttpRequestHandlerRegistry handlerRegistry = new HttpRequestHandlerRegistry();
+		NHttpRequestHandlerRegistry handlerRegistry = new NHttpRequestHandlerRegistry();
 		handlerRegistry.register("*", httpRequestHandler); //$NON-NLS-1$
 
-		BufferingHttpServiceHandler serviceHandler = new BufferingHttpServiceHandler(httpProcessor,
+		AsyncNHttpServiceHandler serviceHandler = new AsyncNHttpServiceHandler(httpProcessor,
 				new DefaultHttpResponseFactory(), new DefaultConnectionReuseStrategy(), params);
 		serviceHandler.setHandlerResolver(handlerRegistry);
 		serviceHandler.setEventListener(new LocalWebServerLogger());
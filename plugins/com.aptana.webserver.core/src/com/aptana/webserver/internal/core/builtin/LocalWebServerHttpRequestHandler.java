@@ -15,21 +15,35 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URLDecoder;
+import java.text.DateFormat;
 import java.text.MessageFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
 import org.apache.http.MethodNotSupportedException;
-import org.apache.http.nio.entity.NFileEntity;
+import org.apache.http.NameValuePair;
+import org.apache.http.nio.entity.ConsumingNHttpEntity;
+import org.apache.http.nio.entity.ConsumingNHttpEntityTemplate;
+import org.apache.http.nio.entity.NByteArrayEntity;
 import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.nio.entity.SkipContentListener;
+import org.apache.http.nio.protocol.SimpleNHttpRequestHandler;
+import org.apache.http.nio.util.HeapByteBufferAllocator;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
-import org.apache.http.protocol.HttpRequestHandler;
 import org.eclipse.core.filesystem.EFS;
 import org.eclipse.core.filesystem.IFileInfo;
 import org.eclipse.core.filesystem.IFileStore;
@@ -41,22 +55,55 @@ import org.eclipse.core.runtime.URIUtil;
 import com.aptana.core.IURIMapper;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.webserver.core.WebServerCorePlugin;
+import com.aptana.webserver.internal.core.preferences.WebServerPreferences;
 
 /**
  * @author Max Stepanov
  */
-/* package */class LocalWebServerHttpRequestHandler implements HttpRequestHandler
+/* package */class LocalWebServerHttpRequestHandler extends SimpleNHttpRequestHandler
 {
 
 	private static final String METHOD_GET = "GET"; //$NON-NLS-1$
 	private static final String METHOD_POST = "POST"; //$NON-NLS-1$
 	private static final String METHOD_HEAD = "HEAD"; //$NON-NLS-1$
 
+	private static final String HEADER_ETAG = "ETag"; //$NON-NLS-1$
+	private static final String HEADER_LAST_MODIFIED = "Last-Modified"; //$NON-NLS-1$
+	private static final String HEADER_CACHE_CONTROL = "Cache-Control"; //$NON-NLS-1$
+	private static final String HEADER_ACCEPT_RANGES = "Accept-Ranges"; //$NON-NLS-1$
+	private static final String HEADER_ACCEPT_ENCODING = "Accept-Encoding"; //$NON-NLS-1$
+	private static final String HEADER_VARY = "Vary"; //$NON-NLS-1$
+	private static final String HEADER_RANGE = "Range"; //$NON-NLS-1$
+	private static final String HEADER_IF_RANGE = "If-Range"; //$NON-NLS-1$
+	private static final String HEADER_CONTENT_RANGE = "Content-Range"; //$NON-NLS-1$
+	private static final String HEADER_IF_NONE_MATCH = "If-None-Match"; //$NON-NLS-1$
+	private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since"; //$NON-NLS-1$
+
+	private static final String BYTES_UNIT = "bytes"; //$NON-NLS-1$
+	private static final String GZIP_ENCODING = "gzip"; //$NON-NLS-1$
+	/**
+	 * Have browsers revalidate every time, so changes to the files show up on the next refresh. Unchanged files cost
+	 * a 304 only
+	 */
+	private static final String NO_CACHE = "no-cache"; //$NON-NLS-1$
+
+	private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz"; //$NON-NLS-1$
+	private static final TimeZone GMT = TimeZone.getTimeZone("GMT"); //$NON-NLS-1$
+
 	private final static String HTML_TEXT_TYPE = "text/html"; //$NON-NLS-1$
 
 	private final static Pattern PATTERN_INDEX = Pattern.compile("(index|default)\\.x?html?"); //$NON-NLS-1$
+	private final static Pattern PATTERN_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)"); //$NON-NLS-1$
+	private final static Pattern PATTERN_COMPRESSIBLE = Pattern
+			.compile("text/.*|.*(javascript|json|xml)"); //$NON-NLS-1$
+
+	/**
+	 * Smaller files aren't worth compressing
+	 */
+	private static final long MIN_COMPRESSED_LENGTH = 1024;
 
 	private IURIMapper uriMapper;
+	private final CompressedContentCache contentCache = new CompressedContentCache();
 
 	/**
 	 * @param documentRoot
@@ -93,39 +140,120 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 			response.setEntity(createTextEntity(Messages.LocalWebServerHttpRequestHandler_FORBIDDEN));
 		}
 		else
+		{
+			handleFile(request, response, head, fileStore, fileInfo);
+		}
+	}
+
+	/**
+	 * Serves an existing file. Files are validated by ETag and modification time, so a browser holding the current
+	 * version gets a 304 without the file being read. Local files are handed to the socket without being copied, and
+	 * text files may be sent gzipped from {@link CompressedContentCache}; files of other stores are copied to a
+	 * temporary file first, and always sent as is.
+	 */
+	private void handleFile(HttpRequest request, HttpResponse response, boolean head, IFileStore fileStore,
+			IFileInfo fileInfo) throws IOException, CoreException
+	{
+		long length = fileInfo.getLength();
+		// HTTP dates have a resolution of seconds
+		long lastModified = (fileInfo.getLastModified() / 1000) * 1000;
+		String mimeType = getMimeType(fileStore.getName());
+		File file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
+
+		String digest = (file != null) ? contentCache.getDigest(file, fileInfo.getLastModified(), length) : null;
+		long[] range = getRange(request, length, lastModified, getETag(digest, lastModified, length));
+		boolean compressible = digest != null && length >= MIN_COMPRESSED_LENGTH && mimeType != null
+				&& PATTERN_COMPRESSIBLE.matcher(mimeType).matches() && WebServerPreferences.isCompressionEnabled();
+		boolean compress = compressible && range == null && acceptsGzip(request);
+		String eTag = compress ? getETag(digest + '-' + GZIP_ENCODING, lastModified, length) : getETag(digest,
+				lastModified, length);
+
+		response.setHeader(HEADER_ETAG, eTag);
+		response.setHeader(HEADER_LAST_MODIFIED, formatDate(lastModified));
+		response.setHeader(HEADER_CACHE_CONTROL, NO_CACHE);
+		response.setHeader(HEADER_ACCEPT_RANGES, BYTES_UNIT);
+		if (compressible)
+		{
+			response.setHeader(HEADER_VARY, HEADER_ACCEPT_ENCODING);
+		}
+
+		if (isNotModified(request, eTag, lastModified))
+		{
+			response.setStatusCode(HttpStatus.SC_NOT_MODIFIED);
+			response.setEntity(null);
+			return;
+		}
+		if (range != null && range.length == 0)
+		{
+			response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+			response.setHeader(HEADER_CONTENT_RANGE, BYTES_UNIT + " */" + length); //$NON-NLS-1$
+			response.setEntity(null);
+			return;
+		}
+
+		long offset = 0;
+		long count = length;
+		if (range != null)
+		{
+			offset = range[0];
+			count = range[1] - range[0] + 1;
+			response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT);
+			response.setHeader(HEADER_CONTENT_RANGE, MessageFormat.format("{0} {1}-{2}/{3}", BYTES_UNIT, //$NON-NLS-1$
+					Long.toString(range[0]), Long.toString(range[1]), Long.toString(length)));
+		}
+		else
 		{
 			response.setStatusCode(HttpStatus.SC_OK);
-			if (head)
-			{
-				response.setEntity(null);
-			}
-			else
+		}
+		if (head)
+		{
+			response.setEntity(null);
+		}
+		else if (compress)
+		{
+			NByteArrayEntity entity = new NByteArrayEntity(contentCache.getCompressed(file, digest));
+			entity.setContentType(mimeType);
+			entity.setContentEncoding(GZIP_ENCODING);
+			response.setEntity(entity);
+		}
+		else
+		{
+			final File temporaryFile = (file == null) ? fileStore.toLocalFile(EFS.CACHE, new NullProgressMonitor())
+					: null;
+			response.setEntity(new FileRegionEntity((file != null) ? file : temporaryFile, offset, count, mimeType)
 			{
-				File file = fileStore.toLocalFile(EFS.NONE, new NullProgressMonitor());
-				final File temporaryFile = (file == null) ? fileStore.toLocalFile(EFS.CACHE,
-					new NullProgressMonitor()) : null;
-				response.setEntity(new NFileEntity((file != null) ? file : temporaryFile, getMimeType(fileStore
-					.getName()))
+				@Override
+				public void finish()
 				{
-					@Override
-					public void finish()
+					super.finish();
+					if (temporaryFile != null && !temporaryFile.delete())
 					{
-						super.finish();
-						if (temporaryFile != null && !temporaryFile.delete())
-						{
-							temporaryFile.deleteOnExit();
-						}
+						temporaryFile.deleteOnExit();
 					}
-				});
-			}
+				}
+			});
 		}
 	}
 
 	/*
 	 * (non-Javadoc)
-	 * @see org.apache.http.protocol.HttpRequestHandler#handle(org.apache.http.HttpRequest,
+	 * @see org.apache.http.nio.protocol.NHttpRequestHandler#entityRequest(org.apache.http.HttpEntityEnclosingRequest,
+	 * org.apache.http.protocol.HttpContext)
+	 */
+	public ConsumingNHttpEntity entityRequest(HttpEntityEnclosingRequest request, HttpContext context)
+			throws HttpException, IOException
+	{
+		// request bodies are of no use to us
+		return new ConsumingNHttpEntityTemplate(request.getEntity(), new SkipContentListener(
+				new HeapByteBufferAllocator()));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.apache.http.nio.protocol.SimpleNHttpRequestHandler#handle(org.apache.http.HttpRequest,
 	 * org.apache.http.HttpResponse, org.apache.http.protocol.HttpContext)
 	 */
+	@Override
 	public void handle(HttpRequest request, HttpResponse response, HttpContext context) throws HttpException,
 			IOException
 	{
@@ -154,6 +282,160 @@ import com.aptana.webserver.core.WebServerCorePlugin;
 		}
 	}
 
+	/**
+	 * Returns the ETag of a file. That is the digest of its content when it is known, or its modification time and
+	 * length otherwise
+	 */
+	private static String getETag(String digest, long lastModified, long length)
+	{
+		if (digest != null)
+		{
+			return '"' + digest + '"';
+		}
+		return '"' + Long.toHexString(lastModified) + '-' + Long.toHexString(length) + '"';
+	}
+
+	private static boolean isNotModified(HttpRequest request, String eTag, long lastModified)
+	{
+		Header ifNoneMatch = request.getFirstHeader(HEADER_IF_NONE_MATCH);
+		if (ifNoneMatch != null)
+		{
+			// If-Modified-Since doesn't count when there's an If-None-Match
+			for (String tag : ifNoneMatch.getValue().split(",")) //$NON-NLS-1$
+			{
+				tag = tag.trim();
+				if (tag.startsWith("W/")) //$NON-NLS-1$
+				{
+					tag = tag.substring(2);
+				}
+				if ("*".equals(tag) || eTag.equals(tag)) //$NON-NLS-1$
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+		long ifModifiedSince = parseDate(request.getFirstHeader(HEADER_IF_MODIFIED_SINCE));
+		return ifModifiedSince != -1 && lastModified <= ifModifiedSince;
+	}
+
+	/**
+	 * Returns the range of bytes requested, as the first and the last position
+	 *
+	 * @return the range, an empty array if it can't be satisfied, or null to send the whole file
+	 */
+	private static long[] getRange(HttpRequest request, long length, long lastModified, String eTag)
+	{
+		Header range = request.getFirstHeader(HEADER_RANGE);
+		if (range == null)
+		{
+			return null;
+		}
+		Header ifRange = request.getFirstHeader(HEADER_IF_RANGE);
+		if (ifRange != null)
+		{
+			// the client wants the range only if its copy is still current
+			String value = ifRange.getValue().trim();
+			boolean current = value.startsWith("\"") ? eTag.equals(value) : parseDate(ifRange) == lastModified; //$NON-NLS-1$
+			if (!current)
+			{
+				return null;
+			}
+		}
+		// we don't do multiple ranges, the whole file will do for those
+		Matcher matcher = PATTERN_RANGE.matcher(range.getValue().trim());
+		if (!matcher.matches())
+		{
+			return null;
+		}
+		String first = matcher.group(1);
+		String last = matcher.group(2);
+		try
+		{
+			long start;
+			long end;
+			if (first.length() == 0)
+			{
+				if (last.length() == 0)
+				{
+					return null;
+				}
+				// the last n bytes
+				start = Math.max(0, length - Long.parseLong(last));
+				end = length - 1;
+			}
+			else
+			{
+				start = Long.parseLong(first);
+				end = (last.length() == 0) ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+				if (end < start && start < length)
+				{
+					return null;
+				}
+			}
+			if (start >= length || end < start)
+			{
+				return new long[0];
+			}
+			return new long[] { start, end };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	private static boolean acceptsGzip(HttpRequest request)
+	{
+		for (Header header : request.getHeaders(HEADER_ACCEPT_ENCODING))
+		{
+			for (HeaderElement element : header.getElements())
+			{
+				if (GZIP_ENCODING.equalsIgnoreCase(element.getName()))
+				{
+					NameValuePair q = element.getParameterByName("q"); //$NON-NLS-1$
+					try
+					{
+						return q == null || Double.parseDouble(q.getValue()) > 0;
+					}
+					catch (NumberFormatException e)
+					{
+						return false;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static String formatDate(long date)
+	{
+		DateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+		format.setTimeZone(GMT);
+		return format.format(new Date(date));
+	}
+
+	/**
+	 * @return the date of the header, or -1 if there's no header or it isn't a date
+	 */
+	private static long parseDate(Header header)
+	{
+		if (header == null)
+		{
+			return -1;
+		}
+		DateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+		format.setTimeZone(GMT);
+		try
+		{
+			return format.parse(header.getValue().trim()).getTime();
+		}
+		catch (ParseException e)
+		{
+			return -1;
+		}
+	}
+
 	private static HttpEntity createTextEntity(String text) throws UnsupportedEncodingException
 	{
 		NStringEntity entity = new NStringEntity(MessageFormat.format("<html><body><h1>{0}</h1></body></html>", text), //$NON-NLS-1$
@@ -34,6 +34,8 @@ public class WebServerPreferenceInitializer extends AbstractPreferenceInitialize
 		node.put(IWebServerPreferenceConstants.PREF_HTTP_SERVER_PORTS,
 				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE[0]
 						+ "-" + IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_PORTS_RANGE[1]); //$NON-NLS-1$
+		node.putBoolean(IWebServerPreferenceConstants.PREF_HTTP_SERVER_COMPRESS_TEXT,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_COMPRESS_TEXT);
 	}
 
 }
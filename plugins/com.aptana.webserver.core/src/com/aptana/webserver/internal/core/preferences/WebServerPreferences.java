@@ -101,4 +101,17 @@ public class WebServerPreferences
 		return new int[] { portsStart, portsEnd };
 	}
 
+	/**
+	 * Returns whether local webserver should gzip text files
+	 * 
+	 * @return
+	 */
+	public static boolean isCompressionEnabled()
+	{
+		return Platform.getPreferencesService().getBoolean(WebServerCorePlugin.PLUGIN_ID,
+				IWebServerPreferenceConstants.PREF_HTTP_SERVER_COMPRESS_TEXT,
+				IWebServerPreferenceConstants.DEFAULT_HTTP_SERVER_COMPRESS_TEXT,
+				new IScopeContext[] { EclipseUtil.instanceScope(), EclipseUtil.defaultScope() });
+	}
+
 }
@@ -0,0 +1,503 @@
+package com.aptana.core.internal.build;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IContributor;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+
+import com.aptana.core.build.AbstractBuildParticipant;
+import com.aptana.core.build.IBuildParticipant;
+import com.aptana.core.build.IProblem;
+import com.aptana.core.metrics.Metric;
+import com.aptana.core.metrics.MetricsRegistry;
+import com.aptana.core.util.CollectionsUtil;
+import com.aptana.index.core.build.BuildContext;
+
+public class BuildParticipantRunnerTest extends TestCase
+{
+
+	private static class TestParticipant extends AbstractBuildParticipant
+	{
+		private final boolean concurrent;
+		volatile Thread thread;
+
+		TestParticipant(boolean concurrent)
+		{
+			this.concurrent = concurrent;
+		}
+
+		@Override
+		public boolean isConcurrent()
+		{
+			return concurrent;
+		}
+
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			thread = Thread.currentThread();
+		}
+
+		public void deleteFile(BuildContext context, IProgressMonitor monitor)
+		{
+		}
+	}
+
+	/**
+	 * Waits for all participants of a latch to start building
+	 */
+	private static class WaitingParticipant extends TestParticipant
+	{
+		private final CountDownLatch latch;
+		volatile boolean allStarted;
+
+		WaitingParticipant(CountDownLatch latch)
+		{
+			super(true);
+			this.latch = latch;
+		}
+
+		@Override
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			super.buildFile(context, monitor);
+			latch.countDown();
+			try
+			{
+				allStarted = latch.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				allStarted = false;
+			}
+		}
+	}
+
+	/**
+	 * Builds until its monitor gets canceled
+	 */
+	private static class SlowParticipant extends TestParticipant
+	{
+		final CountDownLatch done = new CountDownLatch(1);
+		volatile int builds;
+
+		SlowParticipant()
+		{
+			super(true);
+		}
+
+		@Override
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			builds++;
+			try
+			{
+				while (!monitor.isCanceled())
+				{
+					Thread.sleep(10);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// stop
+			}
+			finally
+			{
+				done.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Ignores its monitor and takes a while on the first file, then reports no problems on each file
+	 */
+	private static class LateParticipant extends TestParticipant
+	{
+		static final String MARKER_TYPE = "com.aptana.test.problem";
+
+		private int builds;
+
+		LateParticipant()
+		{
+			super(true);
+		}
+
+		synchronized int getBuilds()
+		{
+			return builds;
+		}
+
+		@Override
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			super.buildFile(context, monitor);
+			boolean first;
+			synchronized (this)
+			{
+				first = (builds++ == 0);
+			}
+			if (first)
+			{
+				try
+				{
+					Thread.sleep(500);
+				}
+				catch (InterruptedException e)
+				{
+					// report anyway
+				}
+			}
+			context.putProblems(MARKER_TYPE, Collections.<IProblem> emptyList());
+		}
+	}
+
+	/**
+	 * Ignores its monitor and never finishes, from some build on, until it's released. Reports no problems on the
+	 * files it gets done with
+	 */
+	private static class StuckParticipant extends TestParticipant
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+		private final int firstStuckBuild;
+		private int builds;
+
+		StuckParticipant(int firstStuckBuild)
+		{
+			super(true);
+			this.firstStuckBuild = firstStuckBuild;
+		}
+
+		synchronized int getBuilds()
+		{
+			return builds;
+		}
+
+		@Override
+		public void buildFile(BuildContext context, IProgressMonitor monitor)
+		{
+			boolean stuck;
+			synchronized (this)
+			{
+				stuck = (++builds >= firstStuckBuild);
+			}
+			try
+			{
+				if (stuck)
+				{
+					release.await();
+				}
+				else
+				{
+					// long enough to run out of time, yet be done before the deferred build gives up waiting
+					Thread.sleep(300);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// report anyway
+			}
+			context.putProblems(LateParticipant.MARKER_TYPE, Collections.<IProblem> emptyList());
+		}
+	}
+
+	private Mockery context = new Mockery();
+	private BuildParticipantRunner runner;
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			if (runner != null)
+			{
+				runner.dispose();
+				runner = null;
+			}
+		}
+		finally
+		{
+			super.tearDown();
+		}
+	}
+
+	public void testParticipantsRunInOrderOnBuilderThread() throws Exception
+	{
+		TestParticipant first = new TestParticipant(false);
+		TestParticipant second = new TestParticipant(true);
+		runner = new BuildParticipantRunner(false, 1000, false);
+
+		runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(first, second),
+				new NullProgressMonitor());
+
+		assertSame(Thread.currentThread(), first.thread);
+		assertSame(Thread.currentThread(), second.thread);
+	}
+
+	public void testConcurrentParticipantsRunAtTheSameTime() throws Exception
+	{
+		CountDownLatch latch = new CountDownLatch(2);
+		TestParticipant sequential = new TestParticipant(false);
+		WaitingParticipant first = new WaitingParticipant(latch);
+		WaitingParticipant second = new WaitingParticipant(latch);
+		runner = new BuildParticipantRunner(true, 10000, false);
+
+		runner.buildFile(new BuildContext(null),
+				CollectionsUtil.<IBuildParticipant> newList(first, sequential, second), new NullProgressMonitor());
+
+		assertSame(Thread.currentThread(), sequential.thread);
+		assertTrue(first.allStarted);
+		assertTrue(second.allStarted);
+		assertNotSame(Thread.currentThread(), first.thread);
+		assertNotSame(first.thread, second.thread);
+	}
+
+	public void testParticipantRunsOutOfTime() throws Exception
+	{
+		SlowParticipant slow = new SlowParticipant();
+		runner = new BuildParticipantRunner(true, 100, false);
+
+		long start = System.nanoTime();
+		runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(slow),
+				new NullProgressMonitor());
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+		assertTrue("The participant's monitor should get canceled", slow.done.await(5, TimeUnit.SECONDS));
+	}
+
+	public void testBusyParticipantIsSkipped() throws Exception
+	{
+		SlowParticipant slow = new SlowParticipant()
+		{
+			@Override
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+				// ignores its monitor for a while
+				super.buildFile(context, new NullProgressMonitor()
+				{
+					private final long end = System.currentTimeMillis() + 1000;
+
+					@Override
+					public boolean isCanceled()
+					{
+						return System.currentTimeMillis() > end;
+					}
+				});
+			}
+		};
+		runner = new BuildParticipantRunner(true, 50, false);
+
+		runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(slow),
+				new NullProgressMonitor());
+		runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(slow),
+				new NullProgressMonitor());
+
+		assertEquals(1, slow.builds);
+		assertTrue(slow.done.await(5, TimeUnit.SECONDS));
+		// there are no markers to update on files outside the workspace
+		assertTrue(runner.buildDeferredFiles(new NullProgressMonitor()).isEmpty());
+	}
+
+	public void testSkippedParticipantsBuildFilesAgain() throws Exception
+	{
+		final IFile first = context.mock(IFile.class, "first");
+		final IFile second = context.mock(IFile.class, "second");
+		context.checking(new Expectations()
+		{
+			{
+				allowing(first).getLocationURI();
+				will(returnValue(URI.create("file:/first.js")));
+				allowing(second).getLocationURI();
+				will(returnValue(URI.create("file:/second.js")));
+			}
+		});
+		LateParticipant late = new LateParticipant();
+		runner = new BuildParticipantRunner(true, 400, false);
+
+		// runs out of time on the first file, so it's still busy with it on the second one
+		BuildContext firstContext = new BuildContext(first);
+		runner.buildFile(firstContext, CollectionsUtil.<IBuildParticipant> newList(late), new NullProgressMonitor());
+		runner.buildFile(new BuildContext(second), CollectionsUtil.<IBuildParticipant> newList(late),
+				new NullProgressMonitor());
+		assertEquals(1, late.getBuilds());
+
+		List<BuildContext> contexts = runner.buildDeferredFiles(new NullProgressMonitor());
+
+		assertEquals(2, contexts.size());
+		assertSame(first, contexts.get(0).getFile());
+		assertNotSame(firstContext, contexts.get(0));
+		assertSame(second, contexts.get(1).getFile());
+		for (BuildContext deferred : contexts)
+		{
+			assertTrue(deferred.getProblems().containsKey(LateParticipant.MARKER_TYPE));
+		}
+		assertEquals(3, late.getBuilds());
+		assertNotSame(Thread.currentThread(), late.thread);
+		assertTrue(runner.buildDeferredFiles(new NullProgressMonitor()).isEmpty());
+	}
+
+	public void testStuckParticipantDoesNotStallDeferredFiles() throws Exception
+	{
+		final IFile first = context.mock(IFile.class, "first");
+		final IFile second = context.mock(IFile.class, "second");
+		context.checking(new Expectations()
+		{
+			{
+				allowing(first).getLocationURI();
+				will(returnValue(URI.create("file:/first.js")));
+				allowing(second).getLocationURI();
+				will(returnValue(URI.create("file:/second.js")));
+			}
+		});
+		StuckParticipant stuck = new StuckParticipant(1);
+		runner = new BuildParticipantRunner(true, 100, false);
+		try
+		{
+			runner.buildFile(new BuildContext(first), CollectionsUtil.<IBuildParticipant> newList(stuck),
+					new NullProgressMonitor());
+			runner.buildFile(new BuildContext(second), CollectionsUtil.<IBuildParticipant> newList(stuck),
+					new NullProgressMonitor());
+
+			long start = System.nanoTime();
+			List<BuildContext> contexts = runner.buildDeferredFiles(new NullProgressMonitor());
+
+			// waits for the stuck build once, not once per file
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+			assertEquals(2, contexts.size());
+			for (BuildContext deferred : contexts)
+			{
+				assertFalse(deferred.getProblems().containsKey(LateParticipant.MARKER_TYPE));
+			}
+			assertEquals(1, stuck.getBuilds());
+		}
+		finally
+		{
+			stuck.release.countDown();
+		}
+	}
+
+	public void testStuckRebuildKeepsMarkers() throws Exception
+	{
+		final IFile file = context.mock(IFile.class);
+		context.checking(new Expectations()
+		{
+			{
+				allowing(file).getLocationURI();
+				will(returnValue(URI.create("file:/file.js")));
+			}
+		});
+		StuckParticipant stuck = new StuckParticipant(2);
+		runner = new BuildParticipantRunner(true, 200, false);
+		try
+		{
+			// runs out of time on the file, then gets done with it, but never with the rebuild
+			runner.buildFile(new BuildContext(file), CollectionsUtil.<IBuildParticipant> newList(stuck),
+					new NullProgressMonitor());
+
+			long start = System.nanoTime();
+			List<BuildContext> contexts = runner.buildDeferredFiles(new NullProgressMonitor());
+
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+			assertEquals(1, contexts.size());
+			assertFalse(contexts.get(0).getProblems().containsKey(LateParticipant.MARKER_TYPE));
+			assertEquals(2, stuck.getBuilds());
+		}
+		finally
+		{
+			stuck.release.countDown();
+		}
+	}
+
+	public void testElapsedTimes() throws Exception
+	{
+		TestParticipant sequential = new TestParticipant(false);
+		TestParticipant concurrent = new TestParticipant(true);
+		runner = new BuildParticipantRunner(true, 1000, false);
+
+		runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(sequential, concurrent),
+				new NullProgressMonitor());
+
+		Map<IBuildParticipant, Long> times = runner.getElapsedTimes();
+		assertEquals(2, times.size());
+		assertTrue(times.containsKey(sequential));
+		assertTrue(times.containsKey(concurrent));
+	}
+
+	public void testElapsedTimesCountTowardsPhases() throws Exception
+	{
+		final IConfigurationElement element = context.mock(IConfigurationElement.class);
+		final IContributor contributor = context.mock(IContributor.class);
+		final IndexBuildParticipant indexer = new IndexBuildParticipant()
+		{
+			@Override
+			public void buildFile(BuildContext context, IProgressMonitor monitor)
+			{
+			}
+		};
+		context.checking(new Expectations()
+		{
+			{
+				allowing(element).getAttribute("name");
+				will(returnValue("Indexer"));
+				allowing(element).getAttribute(with(any(String.class)));
+				will(returnValue(null));
+				allowing(element).getChildren(with(any(String.class)));
+				will(returnValue(new IConfigurationElement[0]));
+				allowing(element).getContributor();
+				will(returnValue(contributor));
+				allowing(contributor).getName();
+				will(returnValue("com.aptana.buildpath.core.tests"));
+				allowing(element).createExecutableExtension("class");
+				will(returnValue(indexer));
+			}
+		});
+		// the manager hands out index participants wrapped like this
+		LazyBuildParticipant lazyIndexer = new LazyBuildParticipant(element);
+		TestParticipant validator = new TestParticipant(false);
+		runner = new BuildParticipantRunner(false, 1000, false);
+
+		MetricsRegistry metrics = MetricsRegistry.getDefault();
+		boolean enabled = metrics.isEnabled();
+		metrics.setEnabled(true);
+		metrics.reset();
+		try
+		{
+			runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(lazyIndexer),
+					new NullProgressMonitor());
+			runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(validator),
+					new NullProgressMonitor());
+			runner.buildFile(new BuildContext(null), CollectionsUtil.<IBuildParticipant> newList(validator),
+					new NullProgressMonitor());
+
+			assertEquals(1, getCount(metrics, MetricsRegistry.PHASE_INDEX));
+			assertEquals(2, getCount(metrics, MetricsRegistry.PHASE_VALIDATE));
+		}
+		finally
+		{
+			metrics.reset();
+			metrics.setEnabled(enabled);
+		}
+	}
+
+	private static long getCount(MetricsRegistry metrics, String phase)
+	{
+		for (Metric metric : metrics.getMetrics())
+		{
+			if (MetricsRegistry.PHASE.equals(metric.getCategory()) && phase.equals(metric.getName()))
+			{
+				return metric.getCount();
+			}
+		}
+		return 0;
+	}
+}
@@ -11,6 +11,7 @@ public class InternalBuildTests extends TestCase
 	{
 		TestSuite suite = new TestSuite(InternalBuildTests.class.getName());
 		// $JUnit-BEGIN$
+		suite.addTestSuite(BuildParticipantRunnerTest.class);
 		suite.addTestSuite(BuildParticipantWorkingCopyTest.class);
 		suite.addTestSuite(BuildParticipantManagerTest.class);
 		suite.addTestSuite(IndexBuildParticipantTest.class);
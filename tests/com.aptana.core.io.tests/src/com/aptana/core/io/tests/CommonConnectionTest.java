@@ -40,6 +40,7 @@ import org.eclipse.core.runtime.Path;
 import com.aptana.core.io.vfs.ExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileInfo;
 import com.aptana.core.io.vfs.IExtendedFileStore;
+import com.aptana.core.io.vfs.IFileTreeVisitor;
 import com.aptana.core.logging.IdeLog;
 import com.aptana.ide.core.io.ConnectionContext;
 import com.aptana.ide.core.io.CoreIOPlugin;
@@ -1122,4 +1123,41 @@ public abstract class CommonConnectionTest extends TestCase
 			assertNotNull(fs);
 		}
 	}
+
+	public final void testFetchTreeWithVisitor() throws CoreException, IOException
+	{
+		IFileStore fs = cp.getRoot().getFileStore(testPath);
+		assertNotNull(fs);
+		if (!(fs instanceof IExtendedFileStore))
+		{
+			return;
+		}
+		IFileStore parent = fs.getChild("folder1/folder2/folder3"); //$NON-NLS-1$
+		parent.mkdir(EFS.NONE, null);
+		for (int j = 1; j < 4; ++j)
+		{
+			OutputStream out = parent.getChild("file" + j).openOutputStream(EFS.NONE, null); //$NON-NLS-1$
+			out.close();
+			parent = parent.getParent();
+		}
+
+		IFileTree ft = ((IExtendedFileStore) fs).fetchFileTree(new IFileTreeVisitor()
+		{
+			public boolean include(IFileStore store) throws CoreException
+			{
+				return !"folder2".equals(store.getName()); //$NON-NLS-1$
+			}
+		}, null);
+		assertNotNull(ft);
+		IFileStore[] fslist = ft.getChildStores(fs);
+		assertEquals(2, fslist.length);
+		IFileStore folder1 = fs.getChild("folder1"); //$NON-NLS-1$
+		assertTrue(Arrays.asList(fslist).contains(folder1));
+		fslist = ft.getChildStores(folder1);
+		assertEquals(1, fslist.length);
+		assertEquals("file2", fslist[0].getName()); //$NON-NLS-1$
+		assertEquals(1, ft.getChildInfos(folder1).length);
+		assertEquals("file2", ft.getChildInfos(folder1)[0].getName()); //$NON-NLS-1$
+		assertEquals(0, ft.getChildStores(folder1.getChild("folder2")).length); //$NON-NLS-1$
+	}
 }
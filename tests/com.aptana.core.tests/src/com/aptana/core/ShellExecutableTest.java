@@ -0,0 +1,143 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+public class ShellExecutableTest extends TestCase
+{
+
+	private static final String FINGERPRINT = "/bin/bash|3.0.0|/home/user|/usr/bin|";
+
+	private File cacheFile;
+	private Map<String, String> inherited;
+	private Map<String, String> shell;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		cacheFile = File.createTempFile("shell_environment", ".properties");
+
+		inherited = new HashMap<String, String>();
+		inherited.put("PATH", "/usr/bin");
+		inherited.put("AWS_SECRET_ACCESS_KEY", "secret");
+		inherited.put("SSH_AUTH_SOCK", "/tmp/launch-1/Listeners");
+		inherited.put("TMPDIR", "/tmp/1");
+
+		// what the login shell reports, after the rc files ran
+		shell = new HashMap<String, String>(inherited);
+		shell.put("PATH", "/home/user/.rbenv/shims:/usr/bin");
+		shell.put("RBENV_SHELL", "bash");
+		shell.put("SSH_AUTH_SOCK", "/tmp/launch-2/Listeners");
+		shell.put("SHLVL", "2");
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			cacheFile.delete();
+		}
+		finally
+		{
+			cacheFile = null;
+			inherited = null;
+			shell = null;
+			super.tearDown();
+		}
+	}
+
+	public void testShellVariables() throws Exception
+	{
+		Map<String, String> variables = ShellExecutable.getShellVariables(shell, inherited);
+
+		assertEquals(2, variables.size());
+		assertEquals("/home/user/.rbenv/shims:/usr/bin", variables.get("PATH"));
+		assertEquals("bash", variables.get("RBENV_SHELL"));
+	}
+
+	public void testOnlyShellVariablesArePersisted() throws Exception
+	{
+		ShellExecutable.writeCachedEnvironment(cacheFile, FINGERPRINT, shell, inherited);
+
+		Properties properties = new Properties();
+		FileInputStream in = new FileInputStream(cacheFile);
+		try
+		{
+			properties.load(in);
+		}
+		finally
+		{
+			in.close();
+		}
+
+		assertEquals(3, properties.size());
+		assertEquals(FINGERPRINT, properties.getProperty("fingerprint"));
+		assertEquals("/home/user/.rbenv/shims:/usr/bin", properties.getProperty("env.PATH"));
+		assertEquals("bash", properties.getProperty("env.RBENV_SHELL"));
+	}
+
+	public void testReadOverlaysLiveEnvironment() throws Exception
+	{
+		ShellExecutable.writeCachedEnvironment(cacheFile, FINGERPRINT, shell, inherited);
+
+		// a later session, with a new agent socket, temp dir and display
+		Map<String, String> live = new HashMap<String, String>(inherited);
+		live.put("SSH_AUTH_SOCK", "/tmp/launch-3/Listeners");
+		live.put("TMPDIR", "/tmp/3");
+		live.put("DISPLAY", ":1");
+
+		Map<String, String> env = ShellExecutable.readCachedEnvironment(cacheFile, FINGERPRINT, live);
+
+		assertNotNull(env);
+		assertEquals("/home/user/.rbenv/shims:/usr/bin", env.get("PATH"));
+		assertEquals("bash", env.get("RBENV_SHELL"));
+		assertEquals("/tmp/launch-3/Listeners", env.get("SSH_AUTH_SOCK"));
+		assertEquals("/tmp/3", env.get("TMPDIR"));
+		assertEquals(":1", env.get("DISPLAY"));
+		assertEquals("secret", env.get("AWS_SECRET_ACCESS_KEY"));
+		assertFalse(env.containsKey("SHLVL"));
+	}
+
+	public void testReadFiltersLiveEnvironment() throws Exception
+	{
+		ShellExecutable.writeCachedEnvironment(cacheFile, FINGERPRINT, shell, inherited);
+
+		Map<String, String> live = new HashMap<String, String>(inherited);
+		live.put("_", "/usr/bin/java");
+		live.put("JAVA_MAIN_CLASS_1234", "org.eclipse.equinox.launcher.Main");
+
+		Map<String, String> env = ShellExecutable.readCachedEnvironment(cacheFile, FINGERPRINT, live);
+
+		assertNotNull(env);
+		assertFalse(env.containsKey("_"));
+		assertFalse(env.containsKey("JAVA_MAIN_CLASS_1234"));
+	}
+
+	public void testReadWithOtherFingerprint() throws Exception
+	{
+		ShellExecutable.writeCachedEnvironment(cacheFile, FINGERPRINT, shell, inherited);
+
+		assertNull(ShellExecutable.readCachedEnvironment(cacheFile, FINGERPRINT + "changed", inherited));
+	}
+
+	public void testReadWithoutCache() throws Exception
+	{
+		cacheFile.delete();
+
+		assertNull(ShellExecutable.readCachedEnvironment(cacheFile, FINGERPRINT, inherited));
+	}
+}
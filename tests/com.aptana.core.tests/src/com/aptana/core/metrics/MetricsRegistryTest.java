@@ -0,0 +1,118 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class MetricsRegistryTest extends TestCase
+{
+
+	private MetricsRegistry registry;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		registry = new MetricsRegistry();
+		registry.setEnabled(true);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		registry = null;
+		super.tearDown();
+	}
+
+	public void testNothingRecordedWhenDisabled() throws Exception
+	{
+		registry.setEnabled(false);
+		registry.record(MetricsRegistry.PHASE, MetricsRegistry.PHASE_PARSE, 1);
+		registry.recordHit(MetricsRegistry.PARSE_CACHE, "text/js", true);
+
+		assertTrue(registry.getMetrics().isEmpty());
+	}
+
+	public void testRecordTimes() throws Exception
+	{
+		registry.record(MetricsRegistry.PARTICIPANT, "JSLint", TimeUnit.MILLISECONDS.toNanos(2));
+		registry.record(MetricsRegistry.PARTICIPANT, "JSLint", TimeUnit.MILLISECONDS.toNanos(6));
+
+		List<Metric> metrics = registry.getMetrics();
+		assertEquals(1, metrics.size());
+		Metric metric = metrics.get(0);
+		assertEquals(MetricsRegistry.PARTICIPANT, metric.getCategory());
+		assertEquals("JSLint", metric.getName());
+		assertEquals(2, metric.getCount());
+		assertEquals(8.0, metric.getTotalTime(), 0.001);
+		assertEquals(4.0, metric.getAverageTime(), 0.001);
+		assertEquals(6.0, metric.getMaxTime(), 0.001);
+		assertFalse(metric.isHitRatio());
+	}
+
+	public void testRecordHits() throws Exception
+	{
+		registry.recordHit(MetricsRegistry.PARSE_CACHE, "text/js", true);
+		registry.recordHit(MetricsRegistry.PARSE_CACHE, "text/js", true);
+		registry.recordHit(MetricsRegistry.PARSE_CACHE, "text/js", true);
+		registry.recordHit(MetricsRegistry.PARSE_CACHE, "text/js", false);
+
+		Metric metric = registry.getMetrics().get(0);
+		assertTrue(metric.isHitRatio());
+		assertEquals(4, metric.getCount());
+		assertEquals(0.75, metric.getHitRate(), 0.001);
+	}
+
+	public void testMetricsSortedByCategoryAndName() throws Exception
+	{
+		registry.record(MetricsRegistry.PHASE, MetricsRegistry.PHASE_VALIDATE, 1);
+		registry.record(MetricsRegistry.PARTICIPANT, "b", 1);
+		registry.record(MetricsRegistry.PARTICIPANT, "a", 1);
+
+		List<Metric> metrics = registry.getMetrics();
+		assertEquals("a", metrics.get(0).getName());
+		assertEquals("b", metrics.get(1).getName());
+		assertEquals(MetricsRegistry.PHASE_VALIDATE, metrics.get(2).getName());
+	}
+
+	public void testReset() throws Exception
+	{
+		registry.record(MetricsRegistry.PHASE, MetricsRegistry.PHASE_PARSE, 1);
+		registry.reset();
+
+		assertTrue(registry.getMetrics().isEmpty());
+	}
+
+	public void testToCSV() throws Exception
+	{
+		registry.record(MetricsRegistry.PARTICIPANT, "Tidy, HTML", TimeUnit.MILLISECONDS.toNanos(1));
+		registry.recordHit(MetricsRegistry.PARSE_CACHE, "text/css", false);
+
+		String[] lines = registry.toCSV().split("\n");
+		assertEquals(3, lines.length);
+		assertEquals("category,name,count,totalMs,averageMs,maxMs,hitRate", lines[0]);
+		assertEquals("parseCache,text/css,1,0.0,0.0,0.0,0.0", lines[1]);
+		assertEquals("participant,\"Tidy, HTML\",1,1.0,1.0,1.0,", lines[2]);
+	}
+
+	public void testToJSON() throws Exception
+	{
+		registry.record(MetricsRegistry.INDEX_QUERY, "a\"b\\c", TimeUnit.MILLISECONDS.toNanos(1));
+
+		assertEquals("[\n  {\"category\": \"indexQuery\", \"name\": \"a\\\"b\\\\c\", \"count\": 1, "
+				+ "\"totalMs\": 1.0, \"averageMs\": 1.0, \"maxMs\": 1.0}\n]\n", registry.toJSON());
+	}
+
+	public void testEmptyJSON() throws Exception
+	{
+		assertEquals("[\n]\n", registry.toJSON());
+	}
+}
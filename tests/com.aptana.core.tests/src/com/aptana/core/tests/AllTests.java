@@ -12,6 +12,8 @@ import junit.framework.TestSuite;
 
 import ch.randelshofer.quaqua.util.BinaryPListParserTest;
 
+import com.aptana.core.ShellExecutableTest;
+import com.aptana.core.metrics.MetricsRegistryTest;
 import com.aptana.core.util.AllUtilTests;
 import com.aptana.plist.xml.XMLPListParserTest;
 
@@ -26,6 +28,8 @@ public class AllTests
 		suite.addTestSuite(BinaryPListParserTest.class);
 		suite.addTestSuite(XMLPListParserTest.class);
 		suite.addTest(AllUtilTests.suite());
+		suite.addTestSuite(MetricsRegistryTest.class);
+		suite.addTestSuite(ShellExecutableTest.class);
 		// $JUnit-END$
 		return suite;
 	}
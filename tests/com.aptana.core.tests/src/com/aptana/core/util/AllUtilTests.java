@@ -21,6 +21,7 @@ public class AllUtilTests
 		suite.addTestSuite(BrowserUtilTest.class);
 		suite.addTestSuite(ClassUtilTest.class);
 		suite.addTestSuite(CollectionsUtilTest.class);
+		suite.addTestSuite(ContentResultCacheTest.class);
 		suite.addTestSuite(EclipseUtilTest.class);
 		suite.addTestSuite(ExecutableUtilTest.class);
 		suite.addTestSuite(ExpiringMapTests.class);
@@ -0,0 +1,92 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.core.util;
+
+import junit.framework.TestCase;
+
+public class ContentResultCacheTest extends TestCase
+{
+
+	public void testKeyDependsOnContents() throws Exception
+	{
+		assertEquals(ContentResultCache.getKey("a { }"), ContentResultCache.getKey("a { }"));
+		assertFalse(ContentResultCache.getKey("a { }").equals(ContentResultCache.getKey("b { }")));
+	}
+
+	public void testKeyDependsOnQualifiers() throws Exception
+	{
+		String key = ContentResultCache.getKey("var a;", "{\"eqeq\": true}");
+
+		assertEquals(key, ContentResultCache.getKey("var a;", "{\"eqeq\": true}"));
+		assertFalse(key.equals(ContentResultCache.getKey("var a;", "{\"eqeq\": false}")));
+		assertFalse(key.equals(ContentResultCache.getKey("var a;")));
+	}
+
+	public void testNullContentsHaveNoKey() throws Exception
+	{
+		assertNull(ContentResultCache.getKey(null));
+	}
+
+	public void testNullKeyIsNotCached() throws Exception
+	{
+		ContentResultCache<String> cache = new ContentResultCache<String>(10);
+		cache.put(null, "result");
+
+		assertEquals(0, cache.size());
+		assertNull(cache.get(null));
+	}
+
+	public void testGetReturnsStoredResult() throws Exception
+	{
+		ContentResultCache<String> cache = new ContentResultCache<String>(10);
+		String key = ContentResultCache.getKey("contents", "option");
+		cache.put(key, "result");
+
+		assertEquals("result", cache.get(key));
+		assertNull(cache.get(ContentResultCache.getKey("other contents", "option")));
+	}
+
+	public void testLeastRecentlyUsedResultIsDropped() throws Exception
+	{
+		ContentResultCache<String> cache = new ContentResultCache<String>(2);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		// using "a" makes "b" the least recently used
+		cache.get("a");
+		cache.put("c", "3");
+
+		assertEquals(2, cache.size());
+		assertEquals("1", cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals("3", cache.get("c"));
+	}
+
+	public void testHits() throws Exception
+	{
+		ContentResultCache<String> cache = new ContentResultCache<String>(10);
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.getHits());
+
+		cache.put("a", "1");
+		cache.get("a");
+		cache.get("a");
+		assertEquals(2, cache.getHits());
+	}
+
+	public void testClear() throws Exception
+	{
+		ContentResultCache<String> cache = new ContentResultCache<String>(10);
+		cache.put("a", "1");
+		cache.get("a");
+		cache.clear();
+
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+		assertNull(cache.get("a"));
+	}
+}
@@ -29,12 +29,36 @@ public class CoffeeScannerPerformanceTest extends PerformanceTestCase
 	}
 
 	public void testANKI() throws Exception
+	{
+		String src = readANKI();
+		assertScanPerformance(src, 50);
+	}
+
+	/**
+	 * Lexing time should grow linearly with the source size, so ten copies of the file should take about ten times as
+	 * long as a single copy.
+	 */
+	public void testLargeFile() throws Exception
+	{
+		String anki = readANKI();
+		StringBuilder builder = new StringBuilder(anki.length() * 10 + 10);
+		for (int i = 0; i < 10; i++)
+		{
+			builder.append(anki).append('\n');
+		}
+		assertScanPerformance(builder.toString(), 5);
+	}
+
+	private String readANKI() throws Exception
 	{
 		InputStream stream = FileLocator.openStream(Platform.getBundle("com.aptana.editor.coffee.tests"),
 				Path.fromPortableString("performance/anki.coffee"), false);
-		String src = IOUtil.read(stream);
+		return IOUtil.read(stream);
+	}
 
-		for (int i = 0; i < 50; i++)
+	private void assertScanPerformance(String src, int iterations) throws Exception
+	{
+		for (int i = 0; i < iterations; i++)
 		{
 			startMeasuring();
 			fScanner.setSource(src);
@@ -0,0 +1,135 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.IRegion;
+
+public class OccurrenceIndexTest extends TestCase
+{
+
+	private IDocument document;
+	private OccurrenceIndex index;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		document = new Document("var foo = 1;\nfoo(bar, foo);\n// foobar foo");
+		index = new OccurrenceIndex(document);
+		index.install();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		index.uninstall();
+		index = null;
+		document = null;
+		super.tearDown();
+	}
+
+	public void testIsIdentifier()
+	{
+		assertTrue(OccurrenceIndex.isIdentifier("foo"));
+		assertTrue(OccurrenceIndex.isIdentifier("_foo1"));
+		assertFalse(OccurrenceIndex.isIdentifier("foo.bar"));
+		assertFalse(OccurrenceIndex.isIdentifier(""));
+		assertFalse(OccurrenceIndex.isIdentifier(null));
+	}
+
+	public void testBuild()
+	{
+		assertOccurrences("foo", 4, 13, 22, 38);
+		assertOccurrences("bar", 17);
+		assertOccurrences("foobar", 31);
+		assertOccurrences("baz");
+	}
+
+	public void testInsertShiftsFollowingOccurrences() throws Exception
+	{
+		assertOccurrences("foo", 4, 13, 22, 38);
+
+		document.replace(0, 0, "\n\n");
+
+		assertOccurrences("foo", 6, 15, 24, 40);
+	}
+
+	public void testExtendIdentifier() throws Exception
+	{
+		assertOccurrences("foo", 4, 13, 22, 38);
+
+		// "foo(" becomes "foox("
+		document.replace(16, 0, "x");
+
+		assertOccurrences("foo", 4, 23, 39);
+		assertOccurrences("foox", 13);
+	}
+
+	public void testSplitIdentifier() throws Exception
+	{
+		assertOccurrences("foobar", 31);
+
+		document.replace(34, 0, " ");
+
+		assertOccurrences("foobar");
+		assertOccurrences("foo", 4, 13, 22, 31, 39);
+		assertOccurrences("bar", 17, 35);
+	}
+
+	public void testJoinIdentifiers() throws Exception
+	{
+		assertOccurrences("bar", 17);
+
+		// "foo(bar, foo)" becomes "foo(barfoo)"
+		document.replace(20, 2, "");
+
+		assertOccurrences("bar");
+		assertOccurrences("barfoo", 17);
+		assertOccurrences("foo", 4, 13, 36);
+	}
+
+	public void testDeleteAll() throws Exception
+	{
+		assertOccurrences("foo", 4, 13, 22, 38);
+
+		document.set("");
+
+		assertOccurrences("foo");
+	}
+
+	public void testSeveralEditsBetweenLookups() throws Exception
+	{
+		assertOccurrences("foo", 4, 13, 22, 38);
+
+		document.replace(0, 3, "let");
+		document.replace(document.getLength(), 0, " foo");
+		document.replace(13, 3, "f");
+
+		assertOccurrences("foo", 4, 20, 36, 40);
+		assertOccurrences("f", 13);
+		assertOccurrences("let", 0);
+	}
+
+	private void assertOccurrences(String name, int... offsets)
+	{
+		List<IRegion> occurrences = index.getOccurrences(name);
+		assertNotNull(occurrences);
+		assertEquals(offsets.length, occurrences.size());
+		for (int i = 0; i < offsets.length; i++)
+		{
+			assertEquals(offsets[i], occurrences.get(i).getOffset());
+			assertEquals(name.length(), occurrences.get(i).getLength());
+		}
+	}
+}
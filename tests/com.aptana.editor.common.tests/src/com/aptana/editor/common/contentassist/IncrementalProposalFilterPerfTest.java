@@ -0,0 +1,92 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+import java.util.Random;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+import org.eclipse.test.performance.PerformanceTestCase;
+
+/**
+ * Measures typing a name through a list of 10,000 proposals, the way the completion popup filters them on each
+ * keystroke.
+ */
+public class IncrementalProposalFilterPerfTest extends PerformanceTestCase
+{
+
+	private static final String PREFIX = "window.";
+	private static final int PROPOSAL_COUNT = 10000;
+	private static final String TYPED = "getElementsByTagName";
+
+	private ICompletionProposal[] proposals;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+
+		Random random = new Random(1);
+		proposals = new ICompletionProposal[PROPOSAL_COUNT];
+		for (int i = 0; i < PROPOSAL_COUNT - 1; i++)
+		{
+			// names share prefixes, like the members of window or jQuery do
+			StringBuilder name = new StringBuilder();
+			name.append(TYPED.substring(0, random.nextInt(TYPED.length())));
+			for (int j = 0; j < 8; j++)
+			{
+				name.append((char) ('a' + random.nextInt(26)));
+			}
+			proposals[i] = createProposal(name.toString());
+		}
+		proposals[PROPOSAL_COUNT - 1] = createProposal(TYPED);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		proposals = null;
+		super.tearDown();
+	}
+
+	public void testTypeThroughProposals() throws Exception
+	{
+		for (int i = 0; i < 50; i++)
+		{
+			IDocument document = new Document(PREFIX);
+			startMeasuring();
+			IncrementalProposalFilter filter = new IncrementalProposalFilter(proposals);
+			for (int j = 0; j < TYPED.length(); j++)
+			{
+				document.replace(PREFIX.length() + j, 0, TYPED.substring(j, j + 1));
+				filter.filter(document, PREFIX.length() + j + 1, null);
+			}
+			// backspace all the way, and type again
+			for (int j = TYPED.length(); j > 0; j--)
+			{
+				document.replace(PREFIX.length() + j - 1, 1, "");
+				filter.filter(document, PREFIX.length() + j - 1, null);
+			}
+			for (int j = 0; j < TYPED.length(); j++)
+			{
+				document.replace(PREFIX.length() + j, 0, TYPED.substring(j, j + 1));
+				filter.filter(document, PREFIX.length() + j + 1, null);
+			}
+			stopMeasuring();
+			assertEquals(1, filter.filter(document, document.getLength(), null).length);
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
+
+	private ICompletionProposal createProposal(String name)
+	{
+		return new CommonCompletionProposal(name, PREFIX.length(), 0, name.length(), null, name, null, null);
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.contentassist;
+
+import junit.framework.TestCase;
+
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.contentassist.ICompletionProposal;
+
+/**
+ * IncrementalProposalFilterTest
+ */
+public class IncrementalProposalFilterTest extends TestCase
+{
+
+	private static final String PREFIX = "window.";
+
+	public void testFilterAsPrefixGrows() throws Exception
+	{
+		IDocument document = new Document(PREFIX);
+		IncrementalProposalFilter filter = new IncrementalProposalFilter(createProposals("alert", "Array", "atob",
+				"blur", "close", "alertBox"));
+
+		assertProposals(filter.filter(document, PREFIX.length(), null), "alert", "Array", "atob", "blur", "close",
+				"alertBox");
+
+		document.replace(PREFIX.length(), 0, "a");
+		assertProposals(filter.filter(document, PREFIX.length() + 1, null), "alert", "Array", "atob", "alertBox");
+
+		document.replace(PREFIX.length() + 1, 0, "L");
+		assertProposals(filter.filter(document, PREFIX.length() + 2, null), "alert", "alertBox");
+
+		document.replace(PREFIX.length() + 2, 0, "x");
+		assertProposals(filter.filter(document, PREFIX.length() + 3, null));
+	}
+
+	public void testFilterAfterDeletion() throws Exception
+	{
+		IDocument document = new Document(PREFIX + "al");
+		IncrementalProposalFilter filter = new IncrementalProposalFilter(createProposals("alert", "Array", "atob",
+				"blur"));
+
+		assertProposals(filter.filter(document, PREFIX.length() + 2, null), "alert");
+
+		document.replace(PREFIX.length() + 1, 1, "");
+		assertProposals(filter.filter(document, PREFIX.length() + 1, null), "alert", "Array", "atob");
+
+		document.replace(PREFIX.length(), 1, "b");
+		assertProposals(filter.filter(document, PREFIX.length() + 1, null), "blur");
+	}
+
+	public void testFilterBeforeReplacementOffset() throws Exception
+	{
+		IDocument document = new Document(PREFIX);
+		IncrementalProposalFilter filter = new IncrementalProposalFilter(createProposals("alert", "blur"));
+
+		assertProposals(filter.filter(document, PREFIX.length() - 1, null));
+	}
+
+	public void testFilterKeepsOriginalOrder() throws Exception
+	{
+		IDocument document = new Document(PREFIX + "a");
+		IncrementalProposalFilter filter = new IncrementalProposalFilter(createProposals("zeta", "atob", "blur",
+				"alert"));
+
+		assertProposals(filter.filter(document, PREFIX.length() + 1, null), "atob", "alert");
+	}
+
+	private ICompletionProposal[] createProposals(String... names)
+	{
+		ICompletionProposal[] proposals = new ICompletionProposal[names.length];
+		for (int i = 0; i < names.length; i++)
+		{
+			proposals[i] = new CommonCompletionProposal(names[i], PREFIX.length(), 0, names[i].length(), null,
+					names[i], null, null);
+		}
+		return proposals;
+	}
+
+	private void assertProposals(ICompletionProposal[] proposals, String... names)
+	{
+		assertEquals(names.length, proposals.length);
+		for (int i = 0; i < names.length; i++)
+		{
+			assertEquals(names[i], proposals[i].getDisplayString());
+		}
+	}
+}
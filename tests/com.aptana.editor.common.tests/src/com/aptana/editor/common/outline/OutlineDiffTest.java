@@ -0,0 +1,62 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.outline;
+
+import junit.framework.TestCase;
+
+public class OutlineDiffTest extends TestCase
+{
+
+	public void testUnchanged()
+	{
+		assertMatches(new String[] { "a", "b", "c" }, new String[] { "a", "b", "c" }, 0, 1, 2);
+	}
+
+	public void testAdd()
+	{
+		assertMatches(new String[] { "a", "c" }, new String[] { "a", "b", "c" }, 0, -1, 1);
+	}
+
+	public void testRemove()
+	{
+		assertMatches(new String[] { "a", "b", "c" }, new String[] { "a", "c" }, 0, 2);
+	}
+
+	public void testRename()
+	{
+		assertMatches(new String[] { "a", "b", "c" }, new String[] { "a", "x", "c" }, 0, -1, 2);
+	}
+
+	public void testSameKeysMatchedByRelativePosition()
+	{
+		assertMatches(new String[] { "f", "f", "g" }, new String[] { "f", "g" }, 0, 2);
+		assertMatches(new String[] { "f", "g" }, new String[] { "f", "f", "g" }, 0, -1, 1);
+	}
+
+	public void testMove()
+	{
+		// only "c" moved; the others keep their items
+		assertMatches(new String[] { "a", "b", "c", "d" }, new String[] { "c", "a", "b", "d" }, -1, 0, 1, 3);
+	}
+
+	public void testEmpty()
+	{
+		assertMatches(new String[0], new String[] { "a" }, -1);
+		assertMatches(new String[] { "a" }, new String[0]);
+	}
+
+	private void assertMatches(String[] oldKeys, String[] newKeys, int... expected)
+	{
+		int[] matches = OutlineDiff.match(oldKeys, newKeys);
+		assertEquals(expected.length, matches.length);
+		for (int i = 0; i < expected.length; i++)
+		{
+			assertEquals("match of " + newKeys[i], expected[i], matches[i]);
+		}
+	}
+}
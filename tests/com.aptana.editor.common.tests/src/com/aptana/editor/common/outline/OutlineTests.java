@@ -0,0 +1,25 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.outline;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+public class OutlineTests
+{
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(OutlineTests.class.getName());
+		// $JUnit-BEGIN$
+		suite.addTestSuite(OutlineDiffTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+
+}
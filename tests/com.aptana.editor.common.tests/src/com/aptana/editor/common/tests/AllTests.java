@@ -14,6 +14,7 @@ import com.aptana.editor.common.EditorCommonTests;
 import com.aptana.editor.common.contentassist.ContentAssistTests;
 import com.aptana.editor.common.internal.peer.PeerTests;
 import com.aptana.editor.common.internal.scripting.DocumentScopeManagerTest;
+import com.aptana.editor.common.outline.OutlineTests;
 import com.aptana.editor.common.parsing.AllCompositeParserTests;
 import com.aptana.editor.common.scripting.ScriptingInputOutputTest;
 import com.aptana.editor.common.scripting.commands.ScriptingCommandsTests;
@@ -46,6 +47,7 @@ public class AllTests
 		suite.addTestSuite(DocumentScopeManagerTest.class);
 		suite.addTest(ContentAssistTests.suite());
 		suite.addTest(AllCompositeParserTests.suite());
+		suite.addTest(OutlineTests.suite());
 		// $JUnit-END$
 		return suite;
 	}
@@ -15,6 +15,7 @@ import junit.framework.TestSuite;
 
 import com.aptana.core.logging.IdeLog;
 import com.aptana.editor.common.CommonEditorPlugin;
+import com.aptana.editor.common.contentassist.IncrementalProposalFilterPerfTest;
 import com.aptana.editor.common.internal.peer.CharacterPairMatcherPerfTest;
 import com.aptana.editor.common.internal.peer.PeerCharacterCloserPerfTest;
 import com.aptana.editor.common.internal.scripting.DocumentScopeManagerPerformanceTest;
@@ -40,6 +41,7 @@ public class PerformanceTests
 		// $JUnit-BEGIN$
 		suite.addTestSuite(CharacterPairMatcherPerfTest.class);
 		suite.addTestSuite(DocumentScopeManagerPerformanceTest.class);
+		suite.addTestSuite(IncrementalProposalFilterPerfTest.class);
 		suite.addTestSuite(PeerCharacterCloserPerfTest.class);
 		suite.addTestSuite(RubyRegexpFolderPerformanceTest.class);
 		suite.addTestSuite(ThemeingDamagerRepairerPerfTest.class);
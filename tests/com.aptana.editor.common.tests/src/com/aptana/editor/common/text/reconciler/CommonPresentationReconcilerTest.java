@@ -0,0 +1,275 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.editor.common.text.reconciler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITypedRegion;
+import org.eclipse.jface.text.Position;
+import org.eclipse.jface.text.Region;
+import org.eclipse.jface.text.TextAttribute;
+import org.eclipse.jface.text.TextPresentation;
+import org.eclipse.jface.text.TypedPosition;
+import org.eclipse.jface.text.presentation.IPresentationRepairer;
+import org.eclipse.jface.text.rules.DefaultDamagerRepairer;
+import org.eclipse.jface.text.rules.FastPartitioner;
+import org.eclipse.jface.text.rules.IPredicateRule;
+import org.eclipse.jface.text.rules.MultiLineRule;
+import org.eclipse.jface.text.rules.RuleBasedPartitionScanner;
+import org.eclipse.jface.text.rules.RuleBasedScanner;
+import org.eclipse.jface.text.rules.Token;
+import org.eclipse.swt.custom.StyleRange;
+
+import com.aptana.editor.common.ICommonConstants;
+import com.aptana.editor.common.text.rules.NonRuleBasedDamagerRepairer;
+
+public class CommonPresentationReconcilerTest extends TestCase
+{
+
+	private static final String STRING = "string";
+	private static final String STRING_SCOPE = "string.quoted.double";
+
+	/**
+	 * Records whether the thread creating the presentation of a partition held a lock
+	 */
+	private static class LockRecordingRepairer implements IPresentationRepairer
+	{
+		private final Object lock;
+		private final List<Boolean> held = new ArrayList<Boolean>();
+
+		LockRecordingRepairer(Object lock)
+		{
+			this.lock = lock;
+		}
+
+		public void setDocument(IDocument document)
+		{
+		}
+
+		public synchronized void createPresentation(TextPresentation presentation, ITypedRegion damage)
+		{
+			held.add(Thread.holdsLock(lock));
+		}
+
+		synchronized List<Boolean> getHeld()
+		{
+			return new ArrayList<Boolean>(held);
+		}
+	}
+
+	private CommonPresentationReconciler reconciler;
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		reconciler = null;
+		super.tearDown();
+	}
+
+	private IDocument createDocument()
+	{
+		StringBuilder source = new StringBuilder();
+		for (int i = 0; i < 200; i++)
+		{
+			source.append("var a").append(i).append(" = \"value ").append(i).append("\";\n");
+		}
+		IDocument document = new Document(source.toString());
+		RuleBasedPartitionScanner partitionScanner = new RuleBasedPartitionScanner();
+		partitionScanner.setPredicateRules(new IPredicateRule[] { new MultiLineRule("\"", "\"", new Token(STRING)) });
+		FastPartitioner partitioner = new FastPartitioner(partitionScanner, new String[] { STRING });
+		partitioner.connect(document);
+		document.setDocumentPartitioner(partitioner);
+		return document;
+	}
+
+	private void createReconciler(IDocument document, int threads)
+	{
+		reconciler = new CommonPresentationReconciler();
+		reconciler.setScannerThreads(threads);
+
+		RuleBasedScanner scanner = new RuleBasedScanner();
+		scanner.setDefaultReturnToken(new Token(new TextAttribute(null)));
+		DefaultDamagerRepairer defaultRepairer = new DefaultDamagerRepairer(scanner);
+		defaultRepairer.setDocument(document);
+		reconciler.setRepairer(defaultRepairer, IDocument.DEFAULT_CONTENT_TYPE);
+
+		NonRuleBasedDamagerRepairer stringRepairer = new NonRuleBasedDamagerRepairer(new Token(STRING_SCOPE));
+		stringRepairer.setDocument(document);
+		reconciler.setRepairer(stringRepairer, STRING);
+	}
+
+	private TextPresentation createPresentation(IDocument document)
+	{
+		return reconciler.createPresentation(new Region(0, document.getLength()), document, new NullProgressMonitor());
+	}
+
+	private TextPresentation createLockedPresentation(IDocument document)
+	{
+		return reconciler.createLockedPresentation(new Region(0, document.getLength()), document,
+				new NullProgressMonitor());
+	}
+
+	private LockRecordingRepairer recordLock(IDocument document, Object lock)
+	{
+		LockRecordingRepairer repairer = new LockRecordingRepairer(lock);
+		reconciler.setRepairer(repairer, IDocument.DEFAULT_CONTENT_TYPE);
+		return repairer;
+	}
+
+	private List<StyleRange> getStyleRanges(TextPresentation presentation)
+	{
+		List<StyleRange> ranges = new ArrayList<StyleRange>();
+		for (Iterator<?> iterator = presentation.getAllStyleRangeIterator(); iterator.hasNext();)
+		{
+			ranges.add((StyleRange) iterator.next());
+		}
+		return ranges;
+	}
+
+	private int countStringScopes(IDocument document) throws Exception
+	{
+		int count = 0;
+		for (Position position : document.getPositions(ICommonConstants.SCOPE_CATEGORY))
+		{
+			if (((TypedPosition) position).getType().endsWith(STRING_SCOPE))
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public void testSequentialPresentation() throws Exception
+	{
+		IDocument document = createDocument();
+		createReconciler(document, 1);
+
+		TextPresentation presentation = createPresentation(document);
+
+		assertNotNull(presentation);
+		assertFalse(getStyleRanges(presentation).isEmpty());
+		assertEquals(200, countStringScopes(document));
+	}
+
+	public void testParallelPresentationMatchesSequential() throws Exception
+	{
+		IDocument document = createDocument();
+		createReconciler(document, 1);
+		List<StyleRange> sequential = getStyleRanges(createPresentation(document));
+
+		document = createDocument();
+		createReconciler(document, 4);
+		TextPresentation presentation = createPresentation(document);
+
+		assertNotNull(presentation);
+		assertEquals(sequential, getStyleRanges(presentation));
+		assertEquals(200, countStringScopes(document));
+	}
+
+	public void testParallelPresentationOnBackgroundThread() throws Exception
+	{
+		final IDocument document = createDocument();
+		createReconciler(document, 4);
+		final TextPresentation[] presentation = new TextPresentation[1];
+
+		// the workers lock the document to update the scope positions of the string partitions
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				presentation[0] = createPresentation(document);
+			}
+		};
+		thread.start();
+		thread.join(TimeUnit.SECONDS.toMillis(10));
+
+		assertFalse("Presentation should not deadlock", thread.isAlive());
+		assertNotNull(presentation[0]);
+		assertEquals(200, countStringScopes(document));
+	}
+
+	public void testPresentationOfDocumentWithLockObject() throws Exception
+	{
+		Document document = (Document) createDocument();
+		Object lock = new Object();
+		document.setLockObject(lock);
+		createReconciler(document, 4);
+
+		// the background job holds the lock object for the whole slice, so the partitions get scanned sequentially
+		TextPresentation presentation;
+		synchronized (lock)
+		{
+			presentation = createPresentation(document);
+		}
+
+		assertNotNull(presentation);
+		assertFalse(getStyleRanges(presentation).isEmpty());
+		assertEquals(200, countStringScopes(document));
+	}
+
+	public void testSequentialPresentationHoldsDocument() throws Exception
+	{
+		IDocument document = createDocument();
+		createReconciler(document, 1);
+		LockRecordingRepairer repairer = recordLock(document, document);
+
+		assertNotNull(createLockedPresentation(document));
+
+		assertFalse(repairer.getHeld().isEmpty());
+		assertFalse(repairer.getHeld().contains(Boolean.FALSE));
+	}
+
+	public void testSinglePartitionPresentationHoldsDocument() throws Exception
+	{
+		// no string partitions, so there is nothing to scan in parallel
+		IDocument document = new Document("var a = 1;\nvar b = 2;\n");
+		createReconciler(document, 4);
+		LockRecordingRepairer repairer = recordLock(document, document);
+
+		assertNotNull(createLockedPresentation(document));
+
+		assertEquals(1, repairer.getHeld().size());
+		assertTrue(repairer.getHeld().get(0));
+	}
+
+	public void testParallelPresentationDoesNotHoldDocument() throws Exception
+	{
+		IDocument document = createDocument();
+		createReconciler(document, 4);
+		LockRecordingRepairer repairer = recordLock(document, document);
+
+		assertNotNull(createLockedPresentation(document));
+
+		assertFalse(repairer.getHeld().isEmpty());
+		assertFalse(repairer.getHeld().contains(Boolean.TRUE));
+		assertEquals(200, countStringScopes(document));
+	}
+
+	public void testPresentationHoldsLockObject() throws Exception
+	{
+		Document document = (Document) createDocument();
+		Object lock = new Object();
+		document.setLockObject(lock);
+		createReconciler(document, 4);
+		LockRecordingRepairer repairer = recordLock(document, lock);
+
+		assertNotNull(createLockedPresentation(document));
+
+		assertFalse(repairer.getHeld().isEmpty());
+		assertFalse(repairer.getHeld().contains(Boolean.FALSE));
+	}
+}
@@ -17,6 +17,7 @@ public class ReconcilerTests
 	{
 		TestSuite suite = new TestSuite(ReconcilerTests.class.getName());
 		// $JUnit-BEGIN$
+		suite.addTestSuite(CommonPresentationReconcilerTest.class);
 		suite.addTestSuite(CommonReconcilerTest.class);
 		suite.addTestSuite(CommonReconcilingStrategyTest.class);
 		suite.addTestSuite(RubyRegexpFolderTest.class);
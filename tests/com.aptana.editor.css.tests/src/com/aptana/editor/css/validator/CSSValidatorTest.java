@@ -7,6 +7,10 @@
  */
 package com.aptana.editor.css.validator;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.eclipse.core.resources.IMarker;
@@ -226,4 +230,63 @@ public class CSSValidatorTest extends AbstractValidatorTestCase
 		List<IProblem> items = getParseErrors(text);
 		assertEquals(0, items.size());
 	}
+
+	public void testInvalidColorValueReportsError() throws CoreException
+	{
+		String text = "div {\ncolor: foo;\n}";
+
+		List<IProblem> items = getParseErrors(text);
+		assertEquals(1, items.size());
+
+		IProblem item = items.get(0);
+		assertEquals(IMarker.SEVERITY_ERROR, item.getSeverity().intValue());
+		assertEquals(2, item.getLineNumber());
+		assertTrue(item.getMessage(), item.getMessage().indexOf("color") > -1);
+	}
+
+	public void testReportAndDirectProblemsMatch() throws Exception
+	{
+		//@formatter:off
+		String[] sources = new String[] {
+				"div {\ntransition: width 2s;\n}",
+				"div {\n-background-color: #123;\n}",
+				"H1:before {\ncontent: none;\n}",
+				"div {\nbackground-clip: border-box;\nbackground-origin: content-box;\n}",
+				"@font-face {\nsrc: url(\"\");\n}",
+				"@namespace \"\";",
+				"@media only screen and (max-width: 600px) {\n}",
+				"div {\nbackground-color: rgba(255, 255, 255, 0.5);\ncolor: rgba(255, 255, 255, 0.5);\n}",
+				"div {\nbackground-image: linear-gradient(left, #2c072c, #3d243d, #2c072c);\n}",
+				"svg:not(:root) {\n    overflow: hidden;\n}\n",
+				"input:not([type=\"file\"]){}",
+				"div {\ncolor: foo;\n}",
+				"div {\nfoo: bar;\nwidth: -3zz;\n}",
+				"p {\nfont: 12px \"<b>\";\nmargin: 1px 2px 3px 4px 5px;\ncolor: #12;\n}\nq {float: middle}",
+				"div {\ncolor: red;\n}\n}}} @@ {\n" };
+		//@formatter:on
+
+		CSSValidator validator = (CSSValidator) createValidator();
+		URI uri = URI.create("file:/tmp/test.css");
+		List<List<String>> filterSets = new ArrayList<List<String>>();
+		filterSets.add(Collections.<String> emptyList());
+		filterSets.add(Arrays.asList(CSSValidator.DEFAULT_FILTERS));
+		for (List<String> filters : filterSets)
+		{
+			for (String source : sources)
+			{
+				List<IProblem> fromReport = validator.validate(source, uri, uri.toString(), filters, true);
+				List<IProblem> direct = validator.validate(source, uri, uri.toString(), filters, false);
+
+				assertEquals(source, fromReport.size(), direct.size());
+				for (int i = 0; i < direct.size(); i++)
+				{
+					IProblem expected = fromReport.get(i);
+					IProblem actual = direct.get(i);
+					assertEquals(source, expected.getMessage(), actual.getMessage());
+					assertEquals(source, expected.getLineNumber(), actual.getLineNumber());
+					assertEquals(source, expected.getSeverity(), actual.getSeverity());
+				}
+			}
+		}
+	}
 }
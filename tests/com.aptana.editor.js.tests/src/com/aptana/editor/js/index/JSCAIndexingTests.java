@@ -285,6 +285,28 @@ public class JSCAIndexingTests extends JSEditorBasedTests
 		assertUserAgents(p.getUserAgentNames(), "android", "iphone", "ipad", "mobileweb");
 	}
 
+	/**
+	 * Members of a namespace type are written to the index before its nested types have been read. Make sure the
+	 * namespace property still picks up the nested type's user agents.
+	 * 
+	 * @throws CoreException
+	 */
+	public void testNamespaceDeclaredBeforeNestedType() throws CoreException
+	{
+		Index index = indexResource("metadata/namespaceDeclaredFirst.jsca");
+
+		TypeElement api = assertTypeInIndex(index, "Titanium.API", true);
+		assertNotNull(api.getProperty("info"));
+
+		TypeElement t = assertTypeInIndex(index, "Titanium", true);
+		assertNotNull(t.getProperty("version"));
+
+		PropertyElement p = t.getProperty("API");
+		assertNotNull(p);
+
+		assertUserAgents(p.getUserAgentNames(), "android");
+	}
+
 	public void testJSCADeprecatedTypeAsBoolean() throws CoreException
 	{
 		Index index = indexResource("metadata/deprecated_type_boolean.jsca");
@@ -95,6 +95,8 @@ public class JSLintValidatorPerformanceTest extends PerformanceTestCase
 			};
 			// Don't measure reading in string...
 			context.getContents();
+			// ...and don't let memoized results from the previous iteration short-circuit the lint run
+			JSLintValidator.clearResults();
 
 			startMeasuring();
 			validator.buildFile(context, null);
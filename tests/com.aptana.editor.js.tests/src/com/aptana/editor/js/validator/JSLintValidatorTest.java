@@ -3129,4 +3129,40 @@ public class JSLintValidatorTest extends AbstractValidatorTestCase
 		List<IProblem> items = getParseErrors(text);
 		assertProblemExists(items, "document.write can be a form of eval.", 2, IMarker.SEVERITY_WARNING, 24);
 	}
+
+	public void testMemoizedResultsMatchFreshRun() throws CoreException
+	{
+		// @formatter:off
+		String text = "function chris() { return /regexp/i; }";
+		// @formatter:on
+
+		JSLintValidator.clearResults();
+		List<IProblem> fresh = getParseErrors(text);
+		assertEquals(0, JSLintValidator.getResultHits());
+		List<IProblem> memoized = getParseErrors(text);
+		// the second validation didn't run JSLint
+		assertEquals(1, JSLintValidator.getResultHits());
+		assertEquals(fresh.size(), memoized.size());
+		for (int i = 0; i < fresh.size(); i++)
+		{
+			assertProblem(memoized.get(i), fresh.get(i).getMessage(), fresh.get(i).getLineNumber(), fresh.get(i)
+					.getSeverity().intValue(), fresh.get(i).getOffset());
+		}
+	}
+
+	public void testOptionsChangeBypassesMemoizedResults() throws CoreException
+	{
+		// @formatter:off
+		String text = "var a = 1;\n" +
+				"if (a == 1) { a = 2; }";
+		// @formatter:on
+
+		((JSLintValidator) fValidator).setJSONOptions("{\"eqeq\": false}");
+		List<IProblem> items = getParseErrors(text);
+		assertContains(items, "Expected '===' and instead saw '=='.");
+
+		((JSLintValidator) fValidator).setJSONOptions("{\"eqeq\": true}");
+		items = getParseErrors(text);
+		assertDoesntContain(items, "Expected '===' and instead saw '=='.");
+	}
 }
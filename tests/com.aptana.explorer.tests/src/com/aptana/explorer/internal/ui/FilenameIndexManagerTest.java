@@ -0,0 +1,93 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.internal.ui;
+
+import java.io.ByteArrayInputStream;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+
+public class FilenameIndexManagerTest extends TestCase
+{
+
+	private IProject project;
+	private FilenameIndexManager manager;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("filename_index_manager_test");
+		project.create(null);
+		project.open(null);
+		project.getFile("index.html").create(new ByteArrayInputStream(new byte[0]), true, null);
+		manager = new FilenameIndexManager();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			manager.dispose();
+			project.delete(true, null);
+		}
+		finally
+		{
+			manager = null;
+			project = null;
+			super.tearDown();
+		}
+	}
+
+	private Set<IPath> query(FilenameIndex index, String searchText) throws Exception
+	{
+		Pattern pattern = Pattern.compile(Pattern.quote(searchText));
+		Set<IPath> paths;
+		while ((paths = index.getVisiblePaths(pattern, searchText)) == null)
+		{
+			index.join();
+		}
+		return paths;
+	}
+
+	public void testGetIndexReusesIndex() throws Exception
+	{
+		assertSame(manager.getIndex(project), manager.getIndex(project));
+	}
+
+	public void testIndexFollowsResourceChanges() throws Exception
+	{
+		FilenameIndex index = manager.getIndex(project);
+		assertEquals(1, query(index, "index").size());
+
+		IFile file = project.getFile("added.js");
+		file.create(new ByteArrayInputStream(new byte[0]), true, null);
+		assertTrue(query(index, "added").contains(file.getProjectRelativePath()));
+
+		file.delete(true, null);
+		assertTrue(query(index, "added").isEmpty());
+	}
+
+	public void testIndexDroppedWhenProjectCloses() throws Exception
+	{
+		FilenameIndex index = manager.getIndex(project);
+		query(index, "index");
+
+		project.close(null);
+		project.open(null);
+
+		assertNotSame(index, manager.getIndex(project));
+	}
+}
@@ -0,0 +1,151 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.internal.ui;
+
+import java.io.ByteArrayInputStream;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+
+public class FilenameIndexTest extends TestCase
+{
+
+	private IProject project;
+	private FilenameIndex index;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("filename_index_test");
+		project.create(null);
+		project.open(null);
+		createFile("js/app.js");
+		createFile("js/lib/jquery.js");
+		createFile("css/app.css");
+		createFile("index.html");
+		index = new FilenameIndex(project);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			index.dispose();
+			project.delete(true, null);
+		}
+		finally
+		{
+			index = null;
+			project = null;
+			super.tearDown();
+		}
+	}
+
+	private IFile createFile(String path) throws CoreException
+	{
+		IPath relativePath = Path.fromPortableString(path);
+		for (int i = 1; i < relativePath.segmentCount(); i++)
+		{
+			IFolder folder = project.getFolder(relativePath.uptoSegment(i));
+			if (!folder.exists())
+			{
+				folder.create(true, true, null);
+			}
+		}
+		IFile file = project.getFile(relativePath);
+		file.create(new ByteArrayInputStream(new byte[0]), true, null);
+		return file;
+	}
+
+	private Set<IPath> buildAndQuery(String searchText) throws Exception
+	{
+		Pattern pattern = Pattern.compile(Pattern.quote(searchText), Pattern.CASE_INSENSITIVE);
+		Set<IPath> paths;
+		// the first query after a change schedules the build and comes back empty handed
+		while ((paths = index.getVisiblePaths(pattern, searchText)) == null)
+		{
+			index.join();
+		}
+		return paths;
+	}
+
+	public void testNotReadyUntilBuiltInBackground() throws Exception
+	{
+		assertFalse(index.isReady());
+		assertNull(index.getVisiblePaths(Pattern.compile("app"), "app"));
+
+		index.join();
+
+		assertTrue(index.isReady());
+		assertNotNull(index.getVisiblePaths(Pattern.compile("app"), "app"));
+	}
+
+	public void testVisiblePathsIncludeParents() throws Exception
+	{
+		Set<IPath> paths = buildAndQuery("jquery");
+
+		assertEquals(3, paths.size());
+		assertTrue(paths.contains(Path.fromPortableString("js/lib/jquery.js")));
+		assertTrue(paths.contains(Path.fromPortableString("js/lib")));
+		assertTrue(paths.contains(Path.fromPortableString("js")));
+	}
+
+	public void testSearchTextNarrowsCandidates() throws Exception
+	{
+		Pattern pattern = Pattern.compile("app", Pattern.CASE_INSENSITIVE);
+		buildAndQuery("app");
+
+		assertEquals(index.getVisiblePaths(pattern, null), index.getVisiblePaths(pattern, "app"));
+		assertTrue(index.getVisiblePaths(Pattern.compile("zzz"), "zzz").isEmpty());
+	}
+
+	public void testAddedAndRemoved() throws Exception
+	{
+		buildAndQuery("app");
+		IFile file = createFile("js/main.js");
+
+		index.added(file);
+		assertTrue(buildAndQuery("main").contains(file.getProjectRelativePath()));
+
+		index.removed(file);
+		assertTrue(buildAndQuery("main").isEmpty());
+	}
+
+	public void testRemovingFolderRebuildsIndex() throws Exception
+	{
+		buildAndQuery("app");
+		IFolder folder = project.getFolder("css");
+		folder.delete(true, null);
+
+		index.removed(folder);
+
+		assertTrue(buildAndQuery("app.css").isEmpty());
+	}
+
+	public void testChangesDuringBuildAreNotLost() throws Exception
+	{
+		assertNull(index.getVisiblePaths(Pattern.compile("app"), "app"));
+		IResource file = createFile("late.js");
+		index.added(file);
+		index.join();
+
+		assertTrue(buildAndQuery("late").contains(file.getProjectRelativePath()));
+	}
+}
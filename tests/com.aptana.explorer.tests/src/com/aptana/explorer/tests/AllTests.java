@@ -0,0 +1,31 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.explorer.internal.ui.FilenameIndexManagerTest;
+import com.aptana.explorer.internal.ui.FilenameIndexTest;
+import com.aptana.explorer.ui.filter.PathFilterTest;
+
+public class AllTests
+{
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(AllTests.class.getName());
+		// $JUnit-BEGIN$
+		suite.addTestSuite(FilenameIndexManagerTest.class);
+		suite.addTestSuite(FilenameIndexTest.class);
+		suite.addTestSuite(PathFilterTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+
+}
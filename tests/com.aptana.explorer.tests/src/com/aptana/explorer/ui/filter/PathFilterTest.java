@@ -0,0 +1,154 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.explorer.ui.filter;
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.viewers.ITreeContentProvider;
+import org.eclipse.jface.viewers.TreeViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Shell;
+
+public class PathFilterTest extends TestCase
+{
+
+	/**
+	 * Serves the members of the workspace containers
+	 */
+	private static class ResourceContentProvider implements ITreeContentProvider
+	{
+		public Object[] getChildren(Object parentElement)
+		{
+			try
+			{
+				return (parentElement instanceof IContainer) ? ((IContainer) parentElement).members() : new Object[0];
+			}
+			catch (CoreException e)
+			{
+				return new Object[0];
+			}
+		}
+
+		public Object getParent(Object element)
+		{
+			return ((IResource) element).getParent();
+		}
+
+		public boolean hasChildren(Object element)
+		{
+			return getChildren(element).length > 0;
+		}
+
+		public Object[] getElements(Object inputElement)
+		{
+			return getChildren(inputElement);
+		}
+
+		public void dispose()
+		{
+		}
+
+		public void inputChanged(Viewer viewer, Object oldInput, Object newInput)
+		{
+		}
+	}
+
+	private IProject project;
+	private IFolder folder;
+	private IFile app;
+	private IFile lib;
+	private Shell shell;
+	private TreeViewer viewer;
+	private PathFilter filter;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		project = ResourcesPlugin.getWorkspace().getRoot().getProject("path_filter_test");
+		project.create(null);
+		project.open(null);
+		folder = project.getFolder("js");
+		folder.create(true, true, null);
+		app = folder.getFile("app.js");
+		app.create(new ByteArrayInputStream(new byte[0]), true, null);
+		lib = folder.getFile("lib.js");
+		lib.create(new ByteArrayInputStream(new byte[0]), true, null);
+
+		shell = new Shell();
+		viewer = new TreeViewer(shell);
+		viewer.setContentProvider(new ResourceContentProvider());
+		viewer.setInput(project);
+
+		filter = new PathFilter()
+		{
+			@Override
+			protected boolean match(String string)
+			{
+				return string.indexOf("app") != -1;
+			}
+		};
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			shell.dispose();
+			project.delete(true, null);
+		}
+		finally
+		{
+			filter = null;
+			viewer = null;
+			shell = null;
+			project = null;
+			super.tearDown();
+		}
+	}
+
+	public void testVisiblePathsAreLookedUp() throws Exception
+	{
+		Set<IPath> paths = new HashSet<IPath>();
+		paths.add(folder.getProjectRelativePath());
+		paths.add(lib.getProjectRelativePath());
+		filter.setVisiblePaths(paths);
+
+		// the matching is left to whoever computed the paths
+		assertTrue(filter.select(viewer, project, project));
+		assertTrue(filter.select(viewer, project, folder));
+		assertTrue(filter.select(viewer, folder, lib));
+		assertFalse(filter.select(viewer, folder, app));
+	}
+
+	public void testNullVisiblePathsWalksTree() throws Exception
+	{
+		Set<IPath> paths = new HashSet<IPath>();
+		filter.setVisiblePaths(paths);
+		assertFalse(filter.select(viewer, folder, app));
+
+		// the folder is visible because the filter finds a matching child
+		filter.setVisiblePaths(null);
+
+		assertTrue(filter.select(viewer, project, folder));
+		assertTrue(filter.select(viewer, folder, app));
+	}
+}
@@ -3,6 +3,8 @@ package com.aptana.filesystem.s3.tests;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import com.aptana.ide.filesystem.s3.S3FileStoreTest;
+
 public class AllTests
 {
 
@@ -11,6 +13,7 @@ public class AllTests
 		TestSuite suite = new TestSuite(AllTests.class.getName());
 		//$JUnit-BEGIN$
 		suite.addTestSuite(S3ConnectionPointTest.class);
+		suite.addTestSuite(S3FileStoreTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -12,6 +12,8 @@ public class S3ConnectionPointTest extends CommonConnectionTest
 	{
 		S3ConnectionPoint ftpcp = new S3ConnectionPoint();
 		ftpcp.setHost(getConfig().getProperty("s3.host", S3ConnectionPoint.DEFAULT_HOST)); //$NON-NLS-1$
+		// an S3-compatible server listening on another port can stand in for Amazon
+		ftpcp.setPort(Integer.parseInt(getConfig().getProperty("s3.port", "-1"))); //$NON-NLS-1$ //$NON-NLS-2$
 		ftpcp.setLogin(getConfig().getProperty("s3.accessKey", "")); //$NON-NLS-1$ //$NON-NLS-2$
 		String password = getConfig().getProperty("s3.secretAccessKey", ""); //$NON-NLS-1$ //$NON-NLS-2$
 		ftpcp.setPassword(password.toCharArray());
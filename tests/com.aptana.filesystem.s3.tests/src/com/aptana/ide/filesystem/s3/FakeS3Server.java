@@ -0,0 +1,673 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An in-memory stand-in for S3 that speaks just enough of its REST API for {@link S3FileStore}: buckets, objects,
+ * paged listings, copies and multipart uploads. Listings return at most {@link #setPageSize(int)} keys per request, and
+ * objects can report a length other than their actual one so that copies of huge objects can be tested with little
+ * data.
+ */
+class FakeS3Server implements Runnable
+{
+
+	private static final String UTF_8 = "UTF-8";
+	private static final String COPY_SOURCE = "x-amz-copy-source";
+	private static final String COPY_SOURCE_RANGE = "x-amz-copy-source-range";
+
+	private static class Request
+	{
+		String method;
+		String bucket;
+		String key;
+		Map<String, String> args = new HashMap<String, String>();
+		Map<String, String> headers = new HashMap<String, String>();
+		byte[] body;
+	}
+
+	private static class Upload
+	{
+		String bucket;
+		String key;
+		SortedMap<Integer, byte[]> parts = new TreeMap<Integer, byte[]>();
+	}
+
+	private final ServerSocket serverSocket;
+	private final Map<String, SortedMap<String, byte[]>> buckets = new HashMap<String, SortedMap<String, byte[]>>();
+	private final Map<String, Long> reportedLengths = new HashMap<String, Long>();
+	private final Map<String, Upload> uploads = new HashMap<String, Upload>();
+	private final List<Integer> completedUploads = new ArrayList<Integer>();
+	private int pageSize = 1000;
+	private int copyFailure;
+	private boolean copyErrorBody;
+	private boolean completeErrorBody;
+	private final Map<String, Integer> deleteFailures = new HashMap<String, Integer>();
+	private int listRequests;
+	private int nextUploadId;
+
+	FakeS3Server() throws IOException
+	{
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+		Thread thread = new Thread(this, "Fake S3");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+
+	void stop() throws IOException
+	{
+		serverSocket.close();
+	}
+
+	synchronized void setPageSize(int pageSize)
+	{
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Makes all object copies, but not part copies, fail with a status code
+	 *
+	 * @param responseCode
+	 *            0 to let copies succeed again
+	 */
+	synchronized void setCopyFailure(int responseCode)
+	{
+		this.copyFailure = responseCode;
+	}
+
+	/**
+	 * Makes object and part copies fail the way S3 does once it has started to respond, with a 200 whose body is an
+	 * error document
+	 */
+	synchronized void setCopyErrorBody(boolean errorBody)
+	{
+		this.copyErrorBody = errorBody;
+	}
+
+	/**
+	 * Makes completing multipart uploads answer a 200 whose body is an error document
+	 */
+	synchronized void setCompleteErrorBody(boolean errorBody)
+	{
+		this.completeErrorBody = errorBody;
+	}
+
+	/**
+	 * Makes deleting one object fail with a status code
+	 */
+	synchronized void setDeleteFailure(String bucket, String key, int responseCode)
+	{
+		deleteFailures.put(bucket + '/' + key, responseCode);
+	}
+
+	synchronized void createBucket(String bucket)
+	{
+		if (!buckets.containsKey(bucket))
+		{
+			buckets.put(bucket, new TreeMap<String, byte[]>());
+		}
+	}
+
+	synchronized void putObject(String bucket, String key, byte[] data)
+	{
+		createBucket(bucket);
+		buckets.get(bucket).put(key, data);
+	}
+
+	/**
+	 * Makes an object claim to be of some length in HEAD requests and listings
+	 */
+	synchronized void setReportedLength(String bucket, String key, long length)
+	{
+		reportedLengths.put(bucket + '/' + key, length);
+	}
+
+	synchronized byte[] getObject(String bucket, String key)
+	{
+		SortedMap<String, byte[]> objects = buckets.get(bucket);
+		return (objects == null) ? null : objects.get(key);
+	}
+
+	synchronized int getListRequests()
+	{
+		return listRequests;
+	}
+
+	/**
+	 * @return the number of parts of each completed multipart upload
+	 */
+	synchronized List<Integer> getCompletedUploads()
+	{
+		return new ArrayList<Integer>(completedUploads);
+	}
+
+	/**
+	 * @return the number of multipart uploads neither completed nor aborted
+	 */
+	synchronized int getPendingUploads()
+	{
+		return uploads.size();
+	}
+
+	public void run()
+	{
+		while (!serverSocket.isClosed())
+		{
+			final Socket socket;
+			try
+			{
+				socket = serverSocket.accept();
+			}
+			catch (IOException e)
+			{
+				return;
+			}
+			Thread thread = new Thread("Fake S3 request")
+			{
+				@Override
+				public void run()
+				{
+					try
+					{
+						handle(socket);
+					}
+					catch (SocketException e)
+					{
+						// the client went away
+					}
+					catch (IOException e)
+					{
+						e.printStackTrace();
+					}
+					finally
+					{
+						try
+						{
+							socket.close();
+						}
+						catch (IOException e)
+						{
+							// ignore
+						}
+					}
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private void handle(Socket socket) throws IOException
+	{
+		InputStream in = socket.getInputStream();
+		Request request = readRequest(in);
+		if (request == null)
+		{
+			return;
+		}
+		OutputStream out = socket.getOutputStream();
+		if (request.key.length() == 0)
+		{
+			handleBucket(request, out);
+		}
+		else if ("POST".equals(request.method))
+		{
+			handleMultipart(request, out);
+		}
+		else if (request.args.containsKey("uploadId"))
+		{
+			handlePart(request, out);
+		}
+		else
+		{
+			handleObject(request, out);
+		}
+		out.flush();
+	}
+
+	private void handleBucket(Request request, OutputStream out) throws IOException
+	{
+		synchronized (this)
+		{
+			if ("PUT".equals(request.method))
+			{
+				createBucket(request.bucket);
+				respond(out, 200, null);
+				return;
+			}
+			SortedMap<String, byte[]> objects = buckets.get(request.bucket);
+			if (objects == null)
+			{
+				respondError(out, 404, "NoSuchBucket", request.method);
+			}
+			else if ("GET".equals(request.method))
+			{
+				listRequests++;
+				respondXml(out, 200, list(request, objects));
+			}
+			else if ("DELETE".equals(request.method))
+			{
+				buckets.remove(request.bucket);
+				respond(out, 204, null);
+			}
+			else
+			{
+				respond(out, 200, null);
+			}
+		}
+	}
+
+	private String list(Request request, SortedMap<String, byte[]> objects)
+	{
+		String prefix = request.args.containsKey("prefix") ? request.args.get("prefix") : "";
+		String marker = request.args.get("marker");
+		String delimiter = request.args.get("delimiter");
+		int max = pageSize;
+		if (request.args.containsKey("max-keys"))
+		{
+			max = Math.min(max, Integer.parseInt(request.args.get("max-keys")));
+		}
+
+		StringBuilder contents = new StringBuilder();
+		String last = null;
+		String lastPrefix = null;
+		int count = 0;
+		boolean truncated = false;
+		SortedMap<String, byte[]> candidates = (marker == null) ? objects : objects.tailMap(marker);
+		for (Map.Entry<String, byte[]> entry : candidates.entrySet())
+		{
+			String key = entry.getKey();
+			if (key.equals(marker) || !key.startsWith(prefix))
+			{
+				continue;
+			}
+			String common = null;
+			if (delimiter != null)
+			{
+				int index = key.indexOf(delimiter, prefix.length());
+				if (index != -1)
+				{
+					common = key.substring(0, index + delimiter.length());
+					// keys rolled up into the prefix of the marker or the previous entry were listed already
+					if (common.equals(lastPrefix) || (marker != null && common.compareTo(marker) <= 0))
+					{
+						continue;
+					}
+				}
+			}
+			if (count == max)
+			{
+				truncated = true;
+				break;
+			}
+			count++;
+			if (common == null)
+			{
+				contents.append("<Contents><Key>").append(escape(key))
+						.append("</Key><LastModified>2012-01-01T00:00:00.000Z</LastModified><ETag>&quot;")
+						.append(md5(entry.getValue())).append("&quot;</ETag><Size>")
+						.append(getLength(request.bucket, key, entry.getValue()))
+						.append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+				last = key;
+			}
+			else
+			{
+				contents.append("<CommonPrefixes><Prefix>").append(escape(common))
+						.append("</Prefix></CommonPrefixes>");
+				last = common;
+				lastPrefix = common;
+			}
+		}
+
+		StringBuilder xml = new StringBuilder("<ListBucketResult><Name>").append(request.bucket)
+				.append("</Name><Prefix>").append(escape(prefix)).append("</Prefix><MaxKeys>").append(max)
+				.append("</MaxKeys><IsTruncated>").append(truncated).append("</IsTruncated>");
+		if (truncated && delimiter != null)
+		{
+			// like S3, only send the next marker along with a delimiter
+			xml.append("<NextMarker>").append(escape(last)).append("</NextMarker>");
+		}
+		return xml.append(contents).append("</ListBucketResult>").toString();
+	}
+
+	private void handleObject(Request request, OutputStream out) throws IOException
+	{
+		synchronized (this)
+		{
+			SortedMap<String, byte[]> objects = buckets.get(request.bucket);
+			if (objects == null)
+			{
+				respondError(out, 404, "NoSuchBucket", request.method);
+				return;
+			}
+			if ("PUT".equals(request.method))
+			{
+				String source = request.headers.get(COPY_SOURCE);
+				if (source == null)
+				{
+					objects.put(request.key, request.body);
+					respond(out, 200, md5(request.body));
+					return;
+				}
+				if (copyFailure != 0)
+				{
+					respondError(out, copyFailure, "InternalError", request.method);
+					return;
+				}
+				if (copyErrorBody)
+				{
+					respondError(out, 200, "InternalError", request.method);
+					return;
+				}
+				byte[] data = getSource(source);
+				if (data == null)
+				{
+					respondError(out, 404, "NoSuchKey", request.method);
+					return;
+				}
+				objects.put(request.key, data);
+				respondXml(out, 200, "<CopyObjectResult><ETag>&quot;" + md5(data)
+						+ "&quot;</ETag></CopyObjectResult>");
+				return;
+			}
+			if ("DELETE".equals(request.method))
+			{
+				Integer failure = deleteFailures.get(request.bucket + '/' + request.key);
+				if (failure != null)
+				{
+					respondError(out, failure, "AccessDenied", request.method);
+					return;
+				}
+				objects.remove(request.key);
+				respond(out, 204, null);
+				return;
+			}
+			byte[] data = objects.get(request.key);
+			if (data == null)
+			{
+				respondError(out, 404, "NoSuchKey", request.method);
+			}
+			else if ("HEAD".equals(request.method))
+			{
+				writeHead(out, 200, md5(data), getLength(request.bucket, request.key, data));
+			}
+			else
+			{
+				respond(out, 200, md5(data), data);
+			}
+		}
+	}
+
+	private void handleMultipart(Request request, OutputStream out) throws IOException
+	{
+		synchronized (this)
+		{
+			if (request.args.containsKey("uploads"))
+			{
+				Upload upload = new Upload();
+				upload.bucket = request.bucket;
+				upload.key = request.key;
+				String uploadId = "upload" + (++nextUploadId);
+				uploads.put(uploadId, upload);
+				respondXml(out, 200, "<InitiateMultipartUploadResult><UploadId>" + uploadId
+						+ "</UploadId></InitiateMultipartUploadResult>");
+				return;
+			}
+			Upload upload = uploads.get(request.args.get("uploadId"));
+			String body = new String(request.body, UTF_8);
+			if (upload == null || body.split("<Part>", -1).length - 1 != upload.parts.size())
+			{
+				respondError(out, 400, "InvalidPart", request.method);
+				return;
+			}
+			if (completeErrorBody)
+			{
+				respondError(out, 200, "InternalError", request.method);
+				return;
+			}
+			ByteArrayOutputStream data = new ByteArrayOutputStream();
+			for (byte[] part : upload.parts.values())
+			{
+				data.write(part);
+			}
+			putObject(upload.bucket, upload.key, data.toByteArray());
+			uploads.remove(request.args.get("uploadId"));
+			completedUploads.add(upload.parts.size());
+			respondXml(out, 200, "<CompleteMultipartUploadResult><Key>" + escape(upload.key)
+					+ "</Key></CompleteMultipartUploadResult>");
+		}
+	}
+
+	private void handlePart(Request request, OutputStream out) throws IOException
+	{
+		synchronized (this)
+		{
+			Upload upload = uploads.get(request.args.get("uploadId"));
+			if (upload == null)
+			{
+				respondError(out, 404, "NoSuchUpload", request.method);
+				return;
+			}
+			if ("DELETE".equals(request.method))
+			{
+				uploads.remove(request.args.get("uploadId"));
+				respond(out, 204, null);
+				return;
+			}
+			Integer partNumber = Integer.valueOf(request.args.get("partNumber"));
+			String source = request.headers.get(COPY_SOURCE);
+			if (source == null)
+			{
+				upload.parts.put(partNumber, request.body);
+				respond(out, 200, md5(request.body));
+				return;
+			}
+			if (copyErrorBody)
+			{
+				respondError(out, 200, "InternalError", request.method);
+				return;
+			}
+			byte[] data = getSource(source);
+			if (data == null)
+			{
+				respondError(out, 404, "NoSuchKey", request.method);
+				return;
+			}
+			// bytes=first-last, limited to the actual data of objects that report a larger length
+			String[] range = request.headers.get(COPY_SOURCE_RANGE).substring(6).split("-");
+			int start = (int) Math.min(Long.parseLong(range[0]), data.length);
+			int end = (int) Math.min(Long.parseLong(range[1]) + 1, data.length);
+			byte[] part = new byte[end - start];
+			System.arraycopy(data, start, part, 0, part.length);
+			upload.parts.put(partNumber, part);
+			respondXml(out, 200, "<CopyPartResult><ETag>&quot;" + md5(part)
+					+ "&quot;</ETag></CopyPartResult>");
+		}
+	}
+
+	private byte[] getSource(String source)
+	{
+		int index = source.indexOf('/');
+		return getObject(source.substring(0, index), source.substring(index + 1));
+	}
+
+	private long getLength(String bucket, String key, byte[] data)
+	{
+		Long length = reportedLengths.get(bucket + '/' + key);
+		return (length == null) ? data.length : length;
+	}
+
+	private static Request readRequest(InputStream in) throws IOException
+	{
+		String line = readLine(in);
+		if (line == null || line.length() == 0)
+		{
+			return null;
+		}
+		Request request = new Request();
+		String[] parts = line.split(" ");
+		request.method = parts[0];
+		String target = parts[1];
+		int query = target.indexOf('?');
+		String path = (query == -1) ? target : target.substring(0, query);
+		if (query != -1)
+		{
+			for (String arg : target.substring(query + 1).split("&"))
+			{
+				int equals = arg.indexOf('=');
+				if (equals == -1)
+				{
+					request.args.put(URLDecoder.decode(arg, UTF_8), null);
+				}
+				else
+				{
+					request.args.put(URLDecoder.decode(arg.substring(0, equals), UTF_8),
+							URLDecoder.decode(arg.substring(equals + 1), UTF_8));
+				}
+			}
+		}
+		// path calling format: /bucket/key, where the key is URL encoded
+		path = path.substring(1);
+		int slash = path.indexOf('/');
+		request.bucket = (slash == -1) ? path : path.substring(0, slash);
+		request.key = (slash == -1) ? "" : URLDecoder.decode(path.substring(slash + 1), UTF_8);
+
+		int length = 0;
+		while ((line = readLine(in)) != null && line.length() > 0)
+		{
+			int colon = line.indexOf(':');
+			String name = line.substring(0, colon).trim().toLowerCase();
+			String value = line.substring(colon + 1).trim();
+			request.headers.put(name, value);
+			if ("content-length".equals(name))
+			{
+				length = Integer.parseInt(value);
+			}
+		}
+		request.body = new byte[length];
+		int read = 0;
+		while (read < length)
+		{
+			int n = in.read(request.body, read, length - read);
+			if (n == -1)
+			{
+				throw new IOException("Truncated request body");
+			}
+			read += n;
+		}
+		return request;
+	}
+
+	private static String readLine(InputStream in) throws IOException
+	{
+		StringBuilder line = new StringBuilder();
+		int c;
+		while ((c = in.read()) != -1)
+		{
+			if (c == '\n')
+			{
+				return line.toString();
+			}
+			if (c != '\r')
+			{
+				line.append((char) c);
+			}
+		}
+		return (line.length() == 0) ? null : line.toString();
+	}
+
+	private static void respondError(OutputStream out, int code, String errorCode, String method) throws IOException
+	{
+		if ("HEAD".equals(method))
+		{
+			writeHead(out, code, null, 0);
+			return;
+		}
+		respondXml(out, code, "<Error><Code>" + errorCode + "</Code><Message>" + errorCode
+				+ "</Message></Error>");
+	}
+
+	private static void respond(OutputStream out, int code, String eTag) throws IOException
+	{
+		respond(out, code, eTag, new byte[0]);
+	}
+
+	private static void respondXml(OutputStream out, int code, String xml) throws IOException
+	{
+		respond(out, code, null, xml.getBytes(UTF_8));
+	}
+
+	private static void respond(OutputStream out, int code, String eTag, byte[] body) throws IOException
+	{
+		writeHead(out, code, eTag, body.length);
+		if (code != 204)
+		{
+			out.write(body);
+		}
+	}
+
+	private static void writeHead(OutputStream out, int code, String eTag, long length) throws IOException
+	{
+		StringBuilder head = new StringBuilder("HTTP/1.1 ").append(code).append(" Fake\r\n");
+		if (eTag != null)
+		{
+			head.append("ETag: \"").append(eTag).append("\"\r\n");
+		}
+		if (code != 204)
+		{
+			head.append("Content-Length: ").append(length).append("\r\n");
+		}
+		head.append("Connection: close\r\n\r\n");
+		out.write(head.toString().getBytes(UTF_8));
+	}
+
+	private static String escape(String text)
+	{
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+	private static String md5(byte[] data)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest)
+			{
+				hex.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
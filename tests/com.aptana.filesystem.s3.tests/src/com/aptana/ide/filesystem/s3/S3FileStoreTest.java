@@ -0,0 +1,332 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.ide.filesystem.s3;
+
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.runtime.CoreException;
+
+import com.amazon.s3.ListEntry;
+
+public class S3FileStoreTest extends TestCase
+{
+
+	private static final String BUCKET = "bucket";
+
+	/**
+	 * Just above the largest object S3 copies in a single request
+	 */
+	private static final long HUGE_LENGTH = 5L * 1024 * 1024 * 1024 + 1;
+
+	private FakeS3Server server;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		server = new FakeS3Server();
+		server.createBucket(BUCKET);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		server.stop();
+		server = null;
+		super.tearDown();
+	}
+
+	private S3FileStore getStore(String path) throws Exception
+	{
+		return new S3FileStore(new URI("s3", "key:secret", "localhost", server.getPort(), "/" + BUCKET + path, null,
+				null));
+	}
+
+	private static byte[] createData(int length)
+	{
+		byte[] data = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			data[i] = (byte) i;
+		}
+		return data;
+	}
+
+	public void testListEntriesFollowsMarkers() throws Exception
+	{
+		server.setPageSize(2);
+		for (int i = 0; i < 5; i++)
+		{
+			server.putObject(BUCKET, "dir/file" + i, createData(1));
+		}
+		server.putObject(BUCKET, "dir/sub/file", createData(1));
+		server.putObject(BUCKET, "other", createData(1));
+
+		List<ListEntry> entries = getStore("/dir").listEntries();
+
+		Set<String> keys = new HashSet<String>();
+		for (ListEntry entry : entries)
+		{
+			keys.add(entry.key);
+		}
+		assertEquals(new HashSet<String>(Arrays.asList("dir/file0", "dir/file1", "dir/file2", "dir/file3",
+				"dir/file4", "dir/sub/file")), keys);
+		assertEquals(3, server.getListRequests());
+	}
+
+	public void testChildNamesFollowsNextMarkers() throws Exception
+	{
+		server.setPageSize(2);
+		for (int i = 0; i < 4; i++)
+		{
+			server.putObject(BUCKET, "dir/file" + i, createData(1));
+			server.putObject(BUCKET, "dir/sub" + i + "/file", createData(1));
+		}
+		server.putObject(BUCKET, "dir/sub0/deeper/file", createData(1));
+
+		String[] names = getStore("/dir").childNames(EFS.NONE, null);
+
+		Arrays.sort(names);
+		assertEquals(Arrays.asList("file0", "file1", "file2", "file3", "sub0", "sub1", "sub2", "sub3"),
+				Arrays.asList(names));
+		assertEquals(4, server.getListRequests());
+	}
+
+	public void testSmallWriteIsSingleUpload() throws Exception
+	{
+		byte[] data = createData(1000);
+
+		OutputStream out = getStore("/small.bin").openOutputStream(EFS.NONE, null);
+		out.write(data);
+		out.close();
+
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "small.bin")));
+		assertTrue(server.getCompletedUploads().isEmpty());
+	}
+
+	public void testLargeWriteIsMultipartUpload() throws Exception
+	{
+		byte[] data = createData(2 * S3UploadOutputStream.PART_SIZE + 100);
+
+		OutputStream out = getStore("/large.bin").openOutputStream(EFS.NONE, null);
+		// write in chunks that don't line up with the parts
+		for (int offset = 0; offset < data.length; offset += 1000000)
+		{
+			out.write(data, offset, Math.min(1000000, data.length - offset));
+		}
+		out.close();
+
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "large.bin")));
+		assertEquals(Collections.singletonList(3), server.getCompletedUploads());
+		assertEquals(0, server.getPendingUploads());
+	}
+
+	public void testByteWritesAreSingleUpload() throws Exception
+	{
+		byte[] data = createData(100000);
+
+		OutputStream out = getStore("/bytes.bin").openOutputStream(EFS.NONE, null);
+		for (byte b : data)
+		{
+			out.write(b);
+		}
+		out.close();
+
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "bytes.bin")));
+		assertTrue(server.getCompletedUploads().isEmpty());
+	}
+
+	public void testCopyFile() throws Exception
+	{
+		byte[] data = createData(100);
+		server.putObject(BUCKET, "source.bin", data);
+
+		getStore("/source.bin").copy(getStore("/dest.bin"), EFS.NONE, null);
+
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "dest.bin")));
+		assertTrue(server.getCompletedUploads().isEmpty());
+	}
+
+	public void testCopyHugeFileIsMultipartCopy() throws Exception
+	{
+		byte[] data = createData(100);
+		server.putObject(BUCKET, "huge.bin", data);
+		server.setReportedLength(BUCKET, "huge.bin", HUGE_LENGTH);
+
+		getStore("/huge.bin").copy(getStore("/copy.bin"), EFS.NONE, null);
+
+		// ranges of the part size used for uploads, only the first of which holds any actual data
+		long parts = (HUGE_LENGTH + S3UploadOutputStream.PART_SIZE - 1) / S3UploadOutputStream.PART_SIZE;
+		assertEquals(Collections.singletonList((int) parts), server.getCompletedUploads());
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "copy.bin")));
+		assertEquals(0, server.getPendingUploads());
+	}
+
+	public void testFailedCopyThrows() throws Exception
+	{
+		server.putObject(BUCKET, "source.bin", createData(100));
+		server.setCopyFailure(500);
+
+		try
+		{
+			getStore("/source.bin").copy(getStore("/dest.bin"), EFS.NONE, null);
+			fail("A failed copy should throw");
+		}
+		catch (CoreException e)
+		{
+			// expected
+		}
+		assertNull(server.getObject(BUCKET, "dest.bin"));
+	}
+
+	public void testCopyErrorBodyThrows() throws Exception
+	{
+		server.putObject(BUCKET, "source.bin", createData(100));
+		server.setCopyErrorBody(true);
+
+		try
+		{
+			getStore("/source.bin").copy(getStore("/dest.bin"), EFS.NONE, null);
+			fail("A copy that answers 200 with an error should throw");
+		}
+		catch (CoreException e)
+		{
+			// expected
+		}
+		assertNull(server.getObject(BUCKET, "dest.bin"));
+	}
+
+	public void testHugeCopyPartErrorBodyThrows() throws Exception
+	{
+		server.putObject(BUCKET, "huge.bin", createData(100));
+		server.setReportedLength(BUCKET, "huge.bin", HUGE_LENGTH);
+		server.setCopyErrorBody(true);
+
+		try
+		{
+			getStore("/huge.bin").copy(getStore("/copy.bin"), EFS.NONE, null);
+			fail("A part copy that answers 200 with an error should throw");
+		}
+		catch (CoreException e)
+		{
+			// expected
+		}
+		assertNull(server.getObject(BUCKET, "copy.bin"));
+		assertTrue(server.getCompletedUploads().isEmpty());
+		assertEquals(0, server.getPendingUploads());
+	}
+
+	public void testHugeCopyCompleteErrorBodyThrows() throws Exception
+	{
+		server.putObject(BUCKET, "huge.bin", createData(100));
+		server.setReportedLength(BUCKET, "huge.bin", HUGE_LENGTH);
+		server.setCompleteErrorBody(true);
+
+		try
+		{
+			getStore("/huge.bin").copy(getStore("/copy.bin"), EFS.NONE, null);
+			fail("Completing a copy that answers 200 with an error should throw");
+		}
+		catch (CoreException e)
+		{
+			// expected
+		}
+		assertNull(server.getObject(BUCKET, "copy.bin"));
+		assertEquals(0, server.getPendingUploads());
+	}
+
+	public void testFailedChildDeleteThrows() throws Exception
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			server.putObject(BUCKET, "dir/file" + i, createData(1));
+		}
+		server.setDeleteFailure(BUCKET, "dir/file1", 403);
+
+		try
+		{
+			getStore("/dir").delete(EFS.NONE, null);
+			fail("A failed delete of a child should throw");
+		}
+		catch (CoreException e)
+		{
+			assertEquals(EFS.ERROR_DELETE, e.getStatus().getCode());
+		}
+		assertNotNull(server.getObject(BUCKET, "dir/file1"));
+	}
+
+	public void testFailedMoveKeepsSourceFile() throws Exception
+	{
+		byte[] data = createData(100);
+		server.putObject(BUCKET, "source.bin", data);
+		server.setCopyFailure(403);
+
+		try
+		{
+			getStore("/source.bin").move(getStore("/dest.bin"), EFS.NONE, null);
+			fail("A failed move should throw");
+		}
+		catch (CoreException e)
+		{
+			// expected
+		}
+		assertTrue(Arrays.equals(data, server.getObject(BUCKET, "source.bin")));
+	}
+
+	public void testMoveDirectory() throws Exception
+	{
+		server.setPageSize(2);
+		for (int i = 0; i < 3; i++)
+		{
+			server.putObject(BUCKET, "from/file" + i, createData(i + 1));
+		}
+		server.putObject(BUCKET, "from/sub/file", createData(10));
+
+		getStore("/from").move(getStore("/to"), EFS.NONE, null);
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(Arrays.equals(createData(i + 1), server.getObject(BUCKET, "to/file" + i)));
+			assertNull(server.getObject(BUCKET, "from/file" + i));
+		}
+		assertTrue(Arrays.equals(createData(10), server.getObject(BUCKET, "to/sub/file")));
+		assertNull(server.getObject(BUCKET, "from/sub/file"));
+	}
+
+	public void testFailedMoveKeepsSourceDirectory() throws Exception
+	{
+		for (int i = 0; i < 3; i++)
+		{
+			server.putObject(BUCKET, "from/file" + i, createData(i + 1));
+		}
+		server.setCopyFailure(500);
+
+		try
+		{
+			getStore("/from").move(getStore("/to"), EFS.NONE, null);
+			fail("A failed move should throw");
+		}
+		catch (CoreException e)
+		{
+			// expected
+		}
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(Arrays.equals(createData(i + 1), server.getObject(BUCKET, "from/file" + i)));
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the Eclipse Public License (EPL).
+ * Please see the license-epl.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.index.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.filesystem.EFS;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.NullProgressMonitor;
+
+import com.aptana.core.util.FileUtil;
+
+@SuppressWarnings("nls")
+public class ContentIndexTest extends TestCase
+{
+
+	private File indexDir;
+	private Index index;
+
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			if (index != null)
+			{
+				IndexPlugin.getDefault().getIndexManager().removeIndex(index.getRoot());
+				index = null;
+			}
+			if (indexDir != null)
+			{
+				FileUtil.deleteRecursively(indexDir);
+				indexDir = null;
+			}
+		}
+		finally
+		{
+			super.tearDown();
+		}
+	}
+
+	public void testCandidatesOfIndexedFiles() throws Exception
+	{
+		createIndex();
+		URI match = indexFile("match.txt", "function needleInHaystack() {}".getBytes());
+		URI other = indexFile("other.txt", "function haystack() {}".getBytes());
+		URI binary = indexFile("binary.dat", new byte[] { 'x', 0, 'y' });
+
+		// nothing is known until all files of the container have been indexed
+		assertNull(ContentIndex.getCandidates(index, "needle", false));
+
+		ContentIndex.setComplete(index);
+		Set<String> candidates = ContentIndex.getCandidates(index, "NEEDLE", false);
+
+		assertNotNull(candidates);
+		assertTrue(candidates.contains(match.toString()));
+		assertFalse(candidates.contains(other.toString()));
+		// the contents of a binary file aren't indexed, so it is always searched
+		assertTrue(candidates.contains(binary.toString()));
+	}
+
+	public void testOnlyUnindexedFilesAreCandidatesWithoutMatches() throws Exception
+	{
+		createIndex();
+		indexFile("match.txt", "function needleInHaystack() {}".getBytes());
+		URI binary = indexFile("binary.dat", new byte[] { 'x', 0, 'y' });
+		ContentIndex.setComplete(index);
+
+		Set<String> candidates = ContentIndex.getCandidates(index, "missing", false);
+
+		assertEquals(new HashSet<String>(Arrays.asList(binary.toString())), candidates);
+	}
+
+	public void testNoCandidatesWithoutTrigrams() throws Exception
+	{
+		createIndex();
+		indexFile("match.txt", "function needleInHaystack() {}".getBytes());
+		ContentIndex.setComplete(index);
+
+		assertNull(ContentIndex.getCandidates(index, "ne*le", false));
+	}
+
+	private void createIndex() throws IOException
+	{
+		File tmpFile = File.createTempFile("contentIndex", ".index");
+		tmpFile.delete();
+		indexDir = tmpFile;
+		indexDir.mkdirs();
+		index = IndexPlugin.getDefault().getIndexManager().getIndex(indexDir.toURI());
+	}
+
+	private URI indexFile(String name, byte[] contents) throws IOException, CoreException
+	{
+		File file = new File(indexDir, name);
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(contents);
+		}
+		finally
+		{
+			out.close();
+		}
+		URI uri = file.toURI();
+		new ContentIndexingParticipant().index(new FileStoreBuildContext(EFS.getStore(uri)), index,
+				new NullProgressMonitor());
+		return uri;
+	}
+
+	public void testTrigrams()
+	{
+		Set<String> trigrams = ContentIndex.getTrigrams("abcab");
+
+		assertEquals(new HashSet<String>(Arrays.asList("abc", "bca", "cab")), trigrams);
+	}
+
+	public void testTrigramsFoldCase()
+	{
+		assertEquals(ContentIndex.getTrigrams("foobar"), ContentIndex.getTrigrams("FooBAR"));
+	}
+
+	public void testNoTrigramsInShortText()
+	{
+		assertTrue(ContentIndex.getTrigrams("ab").isEmpty());
+	}
+
+	public void testWildcardLiterals()
+	{
+		List<String> literals = ContentIndex.getLiterals("foo*bar?baz\\*qux", false);
+
+		assertEquals(Arrays.asList("foo", "bar", "baz*qux"), literals);
+	}
+
+	public void testRegExLiterals()
+	{
+		List<String> literals = ContentIndex.getLiterals("function\\s+(\\w+)\\.prototype", true);
+
+		assertEquals(Arrays.asList("function", ".prototype"), literals);
+	}
+
+	public void testRegExQuantifierDropsCharacter()
+	{
+		List<String> literals = ContentIndex.getLiterals("colou?r", true);
+
+		assertEquals(Arrays.asList("colo", "r"), literals);
+	}
+
+	public void testRegExCharacterClassEndsLiteral()
+	{
+		List<String> literals = ContentIndex.getLiterals("abc[def]ghi", true);
+
+		assertEquals(Arrays.asList("abc", "ghi"), literals);
+	}
+
+	public void testRegExQuotedLiteral()
+	{
+		List<String> literals = ContentIndex.getLiterals("\\Qa.b*c\\Ed", true);
+
+		assertEquals(Arrays.asList("a.b*cd"), literals);
+	}
+
+	public void testRegExEscapesAreNotLiterals()
+	{
+		List<String> literals = ContentIndex.getLiterals("abc\\x41def", true);
+
+		assertEquals(Arrays.asList("abc", "def"), literals);
+	}
+
+	public void testRegExAlternationHasNoLiterals()
+	{
+		assertNull(ContentIndex.getLiterals("foo|bar", true));
+	}
+
+	public void testRegExCommentsFlagHasNoLiterals()
+	{
+		assertNull(ContentIndex.getLiterals("(?x)foo bar", true));
+	}
+}
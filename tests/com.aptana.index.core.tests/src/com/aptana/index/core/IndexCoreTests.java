@@ -11,6 +11,7 @@ public class IndexCoreTests extends TestCase
 	{
 		TestSuite suite = new TestSuite(IndexCoreTests.class.getName());
 		//$JUnit-BEGIN$
+		suite.addTestSuite(ContentIndexTest.class);
 		suite.addTestSuite(FileStoreBuildContextTest.class);
 		suite.addTestSuite(IndexContainerJobTest.class);
 		suite.addTestSuite(IndexTest.class);
@@ -260,6 +260,75 @@ public class IndexTest extends TestCase
 		// categories/words/files?
 	}
 
+	public void testSymbolTableIsBuiltFromIndex() throws Exception
+	{
+		createIndex("symbol_table_built");
+		index.addEntry("class", "header", new URI("file1.css"));
+		index.addEntry("class", "footer", new URI("file1.css"));
+		index.addEntry("class", "header", new URI("file2.css"));
+		index.addEntry("id", "main", new URI("file2.css"));
+		index.save();
+
+		SymbolTable table = index.getSymbolTable("class");
+		assertEquals(2, table.size());
+		assertEquals(2, table.getWords(null).size());
+		assertTrue(table.getWords(null).contains("header"));
+		assertTrue(table.getWords(null).contains("footer"));
+		assertEquals(2, table.getDocuments("header").size());
+		assertTrue(table.getDocuments("main").isEmpty());
+		assertSame(table, index.getSymbolTable("class"));
+	}
+
+	public void testSymbolTableTracksAddedEntries() throws Exception
+	{
+		createIndex("symbol_table_add");
+		SymbolTable table = index.getSymbolTable("class");
+		assertEquals(0, table.size());
+
+		index.addEntry("class", "header", new URI("file1.css"));
+		index.addEntry("id", "main", new URI("file1.css"));
+
+		assertEquals(1, table.size());
+		assertEquals("header", table.getWords(null).get(0));
+		assertEquals("file1.css", table.getDocuments("header").iterator().next());
+	}
+
+	public void testSymbolTableTracksRemovedDocuments() throws Exception
+	{
+		createIndex("symbol_table_remove");
+		index.addEntry("class", "header", new URI("file1.css"));
+		index.addEntry("class", "footer", new URI("file1.css"));
+		index.addEntry("class", "header", new URI("file2.css"));
+		SymbolTable table = index.getSymbolTable("class");
+
+		index.remove(new URI("file1.css"));
+
+		assertEquals(1, table.size());
+		assertEquals("header", table.getWords(null).get(0));
+		assertEquals(1, table.getDocuments("header").size());
+		assertEquals("file2.css", table.getDocuments("header").iterator().next());
+		assertTrue(table.getDocuments("footer").isEmpty());
+	}
+
+	public void testSymbolTablePrefixIgnoresCase() throws Exception
+	{
+		createIndex("symbol_table_prefix");
+		index.addEntry("class", "navBar", new URI("file1.css"));
+		index.addEntry("class", "NavItem", new URI("file1.css"));
+		index.addEntry("class", "nav", new URI("file1.css"));
+		index.addEntry("class", "footer", new URI("file1.css"));
+		SymbolTable table = index.getSymbolTable("class");
+
+		List<String> words = table.getWords("NAV");
+		assertEquals(3, words.size());
+		assertTrue(words.contains("navBar"));
+		assertTrue(words.contains("NavItem"));
+		assertTrue(words.contains("nav"));
+		assertEquals(1, table.getWords("navb").size());
+		assertTrue(table.getWords("header").isEmpty());
+		assertTrue(table.getDocuments("NAV").isEmpty());
+	}
+
 	public void testSave() throws Exception
 	{
 		// add an entry...
@@ -0,0 +1,10 @@
+require "ruble"
+
+bundle "isolatedCommand" do
+  command "Test" do |cmd|
+    cmd.isolated = true
+    cmd.invoke do
+      "hello"
+    end
+  end
+end
\ No newline at end of file
@@ -449,4 +449,46 @@ public class ScopeSelectorTests extends TestCase
 		assertFalse("Selector shouldn't match, but does",
 				textSourceSelector.matches("text.html.basic source.ruby.embedded.html"));
 	}
+
+	public void testInternedScopesAreShared()
+	{
+		InternedScope scope = InternedScope.intern("source.php string.quoted");
+
+		assertSame(scope, InternedScope.intern("source.php string.quoted"));
+		assertEquals(2, scope.getLength());
+		assertEquals("source.php string.quoted", scope.toString());
+		assertNull(InternedScope.intern(null));
+	}
+
+	public void testRepeatedMatchesKeepMatchResults()
+	{
+		ScopeSelector string = new ScopeSelector("string");
+		ScopeSelector source = new ScopeSelector("source.php");
+
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(string.matches("source.php string.quoted"));
+			assertEquals(Arrays.asList(0, 6), string.getMatchResults());
+
+			assertFalse(string.matches("source.php keyword.control"));
+			assertEquals(Arrays.asList(0, 0), string.getMatchResults());
+
+			assertTrue(source.matches("source.php string.quoted"));
+			assertEquals(Arrays.asList(10, 0), source.getMatchResults());
+		}
+	}
+
+	public void testRejectedScopeReportsNonMatches()
+	{
+		ScopeSelector selector = new ScopeSelector("text.html source.ruby, source.php - string");
+
+		assertFalse(selector.matches("source.js string.quoted.single.js meta.brace"));
+		assertEquals(Arrays.asList(0, 0, 0), selector.getMatchResults());
+
+		assertTrue(selector.matches("text.html.basic source.ruby.embedded.html"));
+		assertEquals(Arrays.asList(9, 11), selector.getMatchResults());
+
+		assertFalse(selector.matches("source.php string.quoted"));
+		assertTrue(selector.matches("source.php keyword"));
+	}
 }
@@ -0,0 +1,176 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.Path;
+
+import com.aptana.scripting.ScriptingContainerPool.PooledContainer;
+import com.aptana.scripting.model.AbstractElement;
+import com.aptana.scripting.model.CommandElement;
+
+public class ScriptingContainerPoolTest extends TestCase
+{
+	private static final String SCRIPT = TestUtils.getFile(new Path("project-bundles/isolatedCommand/bundle.rb"))
+			.getAbsolutePath();
+
+	private ScriptingContainerPool pool;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		pool = new ScriptingContainerPool(1);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			pool.dispose();
+		}
+		finally
+		{
+			pool = null;
+			super.tearDown();
+		}
+	}
+
+	public void testDisabledWithoutContainers() throws Exception
+	{
+		assertTrue(pool.isEnabled());
+		assertFalse(new ScriptingContainerPool(0).isEnabled());
+	}
+
+	public void testReleasedContainerIsReused() throws Exception
+	{
+		PooledContainer container = pool.acquire();
+		pool.release(container);
+
+		PooledContainer again = pool.acquire();
+		pool.release(again);
+
+		assertSame(container, again);
+	}
+
+	public void testAcquireWaitsForRelease() throws Exception
+	{
+		PooledContainer container = pool.acquire();
+		final PooledContainer[] acquired = new PooledContainer[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					acquired[0] = pool.acquire();
+				}
+				catch (InterruptedException e)
+				{
+					// fails below
+				}
+			}
+		};
+
+		try
+		{
+			thread.start();
+			thread.join(500);
+			assertTrue("The pool should be out of containers", thread.isAlive());
+		}
+		finally
+		{
+			pool.release(container);
+		}
+
+		thread.join(5000);
+		assertSame(container, acquired[0]);
+		pool.release(acquired[0]);
+	}
+
+	public void testElementsStayInContainer() throws Exception
+	{
+		PooledContainer container = pool.acquire();
+
+		try
+		{
+			List<AbstractElement> elements = container.getElements(SCRIPT, null);
+			CommandElement command = null;
+
+			for (AbstractElement element : elements)
+			{
+				if (element instanceof CommandElement)
+				{
+					command = (CommandElement) element;
+				}
+			}
+
+			assertNotNull(command);
+			assertEquals("Test", command.getDisplayName());
+			assertSame(container.getRuntime(), command.getRuntime());
+			assertTrue(AbstractElement.getElementsByPath(SCRIPT).isEmpty());
+
+			// the script is only evaluated again once it changes
+			assertSame(elements, container.getElements(SCRIPT, null));
+		}
+		finally
+		{
+			pool.release(container);
+		}
+	}
+
+	public void testElementsRegisteredByOtherThreadsAreNotCollected() throws Exception
+	{
+		final CommandElement[] shared = new CommandElement[1];
+		Thread thread = new Thread()
+		{
+			@Override
+			public void run()
+			{
+				// e.g. the shared container reloading the same script
+				shared[0] = new CommandElement(SCRIPT);
+			}
+		};
+
+		List<AbstractElement> collected;
+		CommandElement isolated;
+
+		AbstractElement.beginCollectingElements();
+
+		try
+		{
+			thread.start();
+			thread.join();
+			isolated = new CommandElement(SCRIPT);
+		}
+		finally
+		{
+			collected = AbstractElement.endCollectingElements();
+		}
+
+		try
+		{
+			assertEquals(1, collected.size());
+			assertSame(isolated, collected.get(0));
+
+			List<AbstractElement> registered = AbstractElement.getElementsByPath(SCRIPT);
+
+			assertEquals(1, registered.size());
+			assertSame(shared[0], registered.get(0));
+		}
+		finally
+		{
+			AbstractElement.unregisterElement(shared[0]);
+		}
+	}
+}
@@ -25,6 +25,7 @@ public class AllTests
 		suite.addTestSuite(ContextTests.class);
 		suite.addTestSuite(CommandBlockRunnerTests.class);
 		suite.addTestSuite(FilterTests.class);
+		suite.addTestSuite(IsolatedCommandBlockRunnerTests.class);
 		suite.addTestSuite(KeyBindingTests.class);
 		suite.addTestSuite(PlatformSpecificCommandTests.class);
 		suite.addTestSuite(SnippetCategoryTests.class);
@@ -6,6 +6,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 import junit.framework.TestCase;
@@ -276,6 +277,52 @@ public class BundleCacherTest extends TestCase
 		assertNull("Expected to not get anything from cache since we updated the translations.", loaded);
 	}
 
+	public void testAddedScriptBlowsAwayBinaryCache() throws Exception
+	{
+		// @formatter:off
+		String fileContents = "require 'ruble'\n\n"
+			+ "bundle {|b| }\n"
+			+ "command 'Hash Pointer - =>' do |cmd|\n"
+			+ "  cmd.key_binding = 'Control+L'\n"
+			+ "  cmd.scope = 'source.ruby'\n"
+			+ "  cmd.invoke do |context|\n"
+			+ "    ' => '\n"
+			+ "  end\n"
+			+ "end\n";
+		// @formatter:on
+
+		createBundleDirectory();
+
+		File bundleRB = writeFile("bundle.rb", fileContents);
+		bundleManager.loadScript(bundleRB, false);
+		nonCached = bundleManager.getBundleFromPath(bundleDirectory);
+		assertNotNull("Failed to load the test bundle into memory from file", nonCached);
+
+		cacher.cache(bundleDirectory, new NullProgressMonitor());
+
+		Locale locale = Locale.getDefault();
+		File binaryCache = new File(bundleDirectory, "cache." + locale.getLanguage() + "_" + locale.getCountry()
+				+ ".bin");
+		assertTrue("Expected the bundle to be cached in binary form", binaryCache.isFile());
+
+		bundleManager.reset();
+
+		// Unchanged files, so the manifest matches
+		List<File> bundleFiles = CollectionsUtil.newList(bundleRB);
+		deserialized = cacher.load(bundleDirectory, bundleFiles, new NullProgressMonitor(), false);
+		assertNotNull("Failed to deserialize the test bundle from the binary cache", deserialized);
+		assertEquals("Desearialized bundle doesn't match original", nonCached.toSource(false),
+				deserialized.toSource(false));
+
+		bundleManager.reset();
+
+		// A script the manifest doesn't know about
+		File commandRB = writeFile("commands/other.rb", "require 'ruble'\n");
+		bundleFiles = CollectionsUtil.newList(bundleRB, commandRB);
+		BundleElement loaded = cacher.load(bundleDirectory, bundleFiles, new NullProgressMonitor(), false);
+		assertNull("Expected to not get anything from cache since a script was added.", loaded);
+	}
+
 	/**
 	 * Compares the bundle generated from loading it from disk through JRuby versus loading from cache YAML file through
 	 * SnakeYAML. The elements in-memory should have the same structure (tested by comparing toString()).
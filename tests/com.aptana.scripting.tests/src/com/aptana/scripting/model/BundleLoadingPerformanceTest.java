@@ -20,6 +20,7 @@ public class BundleLoadingPerformanceTest extends PerformanceTestCase
 	protected void tearDown() throws Exception
 	{
 		System.getProperties().remove("use.bundle.cache");
+		System.getProperties().remove("studio.parallelBundleLoad");
 		super.tearDown();
 	}
 
@@ -48,4 +49,18 @@ public class BundleLoadingPerformanceTest extends PerformanceTestCase
 		commitMeasurements();
 		assertPerformance();
 	}
+
+	public void testLoadingUserBundlesWithCacheSequentially() throws Exception
+	{
+		System.setProperty("use.bundle.cache", Boolean.TRUE.toString());
+		System.setProperty("studio.parallelBundleLoad", Boolean.FALSE.toString());
+		for (int i = 0; i < 25; i++)
+		{
+			startMeasuring();
+			manager.loadBundles();
+			stopMeasuring();
+		}
+		commitMeasurements();
+		assertPerformance();
+	}
 }
@@ -103,4 +103,41 @@ public class FilterTests extends BundleTestBase
 		assertEquals(1, commands.size());
 		assertEquals("Ruby", commands.get(0).getDisplayName());
 	}
+
+	/**
+	 * testScopeFilterWithNestedScope
+	 */
+	public void testScopeFilterWithNestedScope()
+	{
+		ScopeFilter filter = new ScopeFilter("text.html.basic source.css.embedded.html string.double.quoted.css");
+		List<CommandElement> commands = BundleTestBase.getBundleManagerInstance().getExecutableCommands(filter);
+
+		assertNotNull(commands);
+		assertEquals(1, commands.size());
+		assertEquals("CSS String", commands.get(0).getDisplayName());
+	}
+
+	/**
+	 * testScopeFilterFollowsVisibility
+	 */
+	public void testScopeFilterFollowsVisibility()
+	{
+		BundleManager manager = BundleTestBase.getBundleManagerInstance();
+		ScopeFilter filter = new ScopeFilter("source.ruby");
+
+		assertEquals(1, manager.getExecutableCommands(filter).size());
+
+		BundleEntry entry = manager.getBundleEntry("modelFilters");
+		assertNotNull(entry);
+
+		BundleElement bundle = entry.getBundles().get(0);
+		CommandElement ruby = bundle.getCommandByName("Ruby");
+		assertNotNull(ruby);
+
+		bundle.removeChild(ruby);
+		assertEquals(0, manager.getExecutableCommands(filter).size());
+
+		bundle.addChild(ruby);
+		assertEquals(1, manager.getExecutableCommands(filter).size());
+	}
 }
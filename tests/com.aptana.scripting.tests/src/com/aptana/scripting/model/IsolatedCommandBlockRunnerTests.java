@@ -0,0 +1,66 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.scripting.model;
+
+import java.io.ByteArrayOutputStream;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.jruby.Ruby;
+
+import com.aptana.scripting.ScriptingEngine;
+
+public class IsolatedCommandBlockRunnerTests extends BundleTestBase
+{
+	/*
+	 * (non-Javadoc)
+	 * @see com.aptana.scripting.model.BundleTestBase#tearDown()
+	 */
+	@Override
+	protected void tearDown() throws Exception
+	{
+		try
+		{
+			ScriptingEngine.getInstance().disposeContainerPool();
+		}
+		finally
+		{
+			super.tearDown();
+		}
+	}
+
+	public void testRunsInPooledContainer() throws Exception
+	{
+		BundleElement bundle = this.loadBundle("isolatedCommand", BundlePrecedence.PROJECT);
+		CommandElement command = bundle.getCommandByName("Test");
+		assertNotNull(command);
+		assertTrue(command.isIsolated());
+
+		int registered = AbstractElement.getElementsByPath(command.getPath()).size();
+		CommandContext context = new CommandContext(command);
+		context.setOutputStream(new ByteArrayOutputStream());
+		final Ruby[] runtime = new Ruby[1];
+
+		IsolatedCommandBlockRunner runner = new IsolatedCommandBlockRunner(command, context, BundleManager
+				.getInstance().getBundleLoadPaths(bundle.getBundleDirectory()))
+		{
+			@Override
+			protected String executeBlock()
+			{
+				runtime[0] = this.getRuntime();
+				return super.executeBlock();
+			}
+		};
+		runner.run(new NullProgressMonitor());
+
+		assertEquals("hello", runner.getCommandResult().getOutputString());
+		assertNotNull(runtime[0]);
+		assertNotSame(command.getRuntime(), runtime[0]);
+		// the copy of the command evaluated in the pooled container stays out of the model
+		assertEquals(registered, AbstractElement.getElementsByPath(command.getPath()).size());
+	}
+}
@@ -12,6 +12,7 @@ import junit.framework.TestResult;
 import junit.framework.TestSuite;
 
 import com.aptana.scripting.BundleConverterTest;
+import com.aptana.scripting.ScriptingContainerPoolTest;
 
 public class AllTests
 {
@@ -32,6 +33,7 @@ public class AllTests
 		suite.addTest(com.aptana.scope.AllTests.suite());
 		suite.addTest(com.aptana.scope.parsing.AllScopeParsingTests.suite());
 		suite.addTestSuite(BundleConverterTest.class);
+		suite.addTestSuite(ScriptingContainerPoolTest.class);
 		suite.addTestSuite(UnicodeCharsJRubyTest.class);
 		// $JUnit-END$
 		return suite;
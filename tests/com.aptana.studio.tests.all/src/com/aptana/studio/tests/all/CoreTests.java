@@ -38,6 +38,7 @@ public class CoreTests
 		suite.addTest(com.aptana.samples.tests.AllTests.suite());
 		suite.addTest(com.aptana.scripting.tests.AllTests.suite());
 		suite.addTest(com.aptana.jira.core.tests.AllJiraCoreTests.suite());
+		suite.addTest(com.aptana.usage.tests.AllTests.suite());
 		// suite.addTest(com.aptana.syncing.core.tests.AllTests.suite());
 		// $JUnit-END$
 		return suite;
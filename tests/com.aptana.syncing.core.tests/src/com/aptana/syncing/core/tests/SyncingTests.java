@@ -843,6 +843,42 @@ public abstract class SyncingTests extends TestCase
 		assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
 	}
 
+	/**
+	 * testFilesSameSizeCRCsDiffer confirms that equal sizes alone within the time tolerance do not make files match
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFilesSameSizeCRCsDiffer() throws IOException, CoreException
+	{
+		long currentTime = new Date().getTime();
+		this.createClientFile(fileName, currentTime, "abc123"); //$NON-NLS-1$
+		this.createServerFile(fileName, currentTime - 2000, "xyz789"); //$NON-NLS-1$
+
+		VirtualFileSyncPair[] items = this.getSyncItems(true, 5000);
+
+		assertSyncPairLength(1, items);
+		assertEquals(SyncState.CRCMismatch, items[0].getSyncState());
+	}
+
+	/**
+	 * testFilesSameSizeCRCsMatch
+	 * 
+	 * @throws IOException
+	 * @throws ConnectionException
+	 */
+	public void testFilesSameSizeCRCsMatch() throws IOException, CoreException
+	{
+		long currentTime = new Date().getTime();
+		this.createClientFile(fileName, currentTime, "abc123"); //$NON-NLS-1$
+		this.createServerFile(fileName, currentTime - 2000, "abc123"); //$NON-NLS-1$
+
+		VirtualFileSyncPair[] items = this.getSyncItems(true, 5000);
+
+		assertSyncPairLength(1, items);
+		assertEquals(SyncState.ItemsMatch, items[0].getSyncState());
+	}
+
 	/**
 	 * testDirectoryCRCsMatch This confirms that turning on CRC checking doesn't involve directories
 	 * 
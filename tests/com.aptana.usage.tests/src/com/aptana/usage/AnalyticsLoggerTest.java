@@ -0,0 +1,134 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.usage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class AnalyticsLoggerTest extends TestCase
+{
+
+	private static final String TYPE = "test.logger";
+
+	private AnalyticsLogger logger;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		logger = AnalyticsLogger.getInstance();
+		logger.clearEvents();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		logger.clearEvents();
+		logger = null;
+		super.tearDown();
+	}
+
+	private static AnalyticsEvent createEvent(String name, String payload, long dateTime)
+	{
+		return new AnalyticsEvent(TYPE, name, payload, Long.toString(dateTime));
+	}
+
+	private List<AnalyticsEvent> getStoredEvents()
+	{
+		List<AnalyticsEvent> events = new ArrayList<AnalyticsEvent>();
+		for (AnalyticsEvent event : logger.getEvents())
+		{
+			if (TYPE.equals(event.getEventType()))
+			{
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	private static void assertEvent(AnalyticsEvent expected, AnalyticsEvent actual)
+	{
+		assertEquals(expected.getEventType(), actual.getEventType());
+		assertEquals(expected.getEventName(), actual.getEventName());
+		assertEquals(expected.getJSONPayloadString(), actual.getJSONPayloadString());
+		assertEquals(expected.getDateTime(), actual.getDateTime());
+	}
+
+	public void testLogEvents() throws Exception
+	{
+		List<AnalyticsEvent> events = Arrays.asList(createEvent("first", "{}", 1000),
+				createEvent("second", "{\"key\":\"value\"}", 1001), createEvent("third", "{}", 1002));
+
+		logger.logEvents(events);
+
+		List<AnalyticsEvent> stored = getStoredEvents();
+		assertEquals(3, stored.size());
+		for (int i = 0; i < events.size(); i++)
+		{
+			assertEvent(events.get(i), stored.get(i));
+		}
+	}
+
+	public void testLogNoEvents() throws Exception
+	{
+		logger.logEvents(new ArrayList<AnalyticsEvent>());
+
+		assertTrue(getStoredEvents().isEmpty());
+	}
+
+	public void testPayloadWithQuotes() throws Exception
+	{
+		AnalyticsEvent event = createEvent("quoted", "{\"name\":\"it's \\\"quoted\\\"\"}", 1000);
+
+		logger.logEvent(event);
+		List<AnalyticsEvent> stored = getStoredEvents();
+		assertEquals(1, stored.size());
+		assertEvent(event, stored.get(0));
+
+		logger.clearEvent(stored.get(0));
+		assertTrue(getStoredEvents().isEmpty());
+	}
+
+	public void testClearEvents() throws Exception
+	{
+		logger.logEvents(Arrays.asList(createEvent("first", "{}", 1000), createEvent("second", "{}", 1001),
+				createEvent("third", "{}", 1002)));
+
+		logger.clearEvents(getStoredEvents().subList(0, 2));
+
+		List<AnalyticsEvent> stored = getStoredEvents();
+		assertEquals(1, stored.size());
+		assertEquals("third", stored.get(0).getEventName());
+	}
+
+	public void testClearEventsOnlyRemovesMatchingEvents() throws Exception
+	{
+		logger.logEvents(Arrays.asList(createEvent("same", "{}", 1000), createEvent("same", "{}", 1001)));
+
+		// same name and payload, but another time
+		logger.clearEvent(createEvent("same", "{}", 1002));
+		assertEquals(2, getStoredEvents().size());
+
+		logger.clearEvent(createEvent("same", "{}", 1000));
+		List<AnalyticsEvent> stored = getStoredEvents();
+		assertEquals(1, stored.size());
+		assertEquals("1001", stored.get(0).getDateTime());
+	}
+
+	public void testClearAllEvents() throws Exception
+	{
+		logger.logEvents(Arrays.asList(createEvent("first", "{}", 1000), createEvent("second", "{}", 1001)));
+
+		logger.clearEvents();
+
+		assertTrue(getStoredEvents().isEmpty());
+	}
+}
@@ -0,0 +1,288 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.usage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.core.runtime.jobs.Job;
+
+public class StudioAnalyticsTest extends TestCase
+{
+
+	private static final String TYPE = "test.analytics";
+
+	/**
+	 * Prefix of the names of the test events, which tells them apart from any other stored events
+	 */
+	private static final String PREFIX = "test.";
+
+	/**
+	 * Answers each ping with 200 and counts them
+	 */
+	private static class PingServer extends Thread
+	{
+		private final ServerSocket serverSocket;
+		private int pings;
+
+		PingServer() throws IOException
+		{
+			super("Ping server");
+			serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+			setDaemon(true);
+			start();
+		}
+
+		String getURL()
+		{
+			return "http://localhost:" + serverSocket.getLocalPort() + "/track";
+		}
+
+		synchronized int getPings()
+		{
+			return pings;
+		}
+
+		@Override
+		public void run()
+		{
+			while (!serverSocket.isClosed())
+			{
+				try
+				{
+					Socket socket = serverSocket.accept();
+					try
+					{
+						readRequest(socket.getInputStream());
+						synchronized (this)
+						{
+							pings++;
+						}
+						socket.getOutputStream().write(
+								"HTTP/1.1 200 OK\r\nContent-Length: 0\r\nConnection: close\r\n\r\n".getBytes("UTF-8"));
+						socket.getOutputStream().flush();
+					}
+					finally
+					{
+						socket.close();
+					}
+				}
+				catch (IOException e)
+				{
+					// closed
+				}
+			}
+		}
+
+		private static void readRequest(InputStream in) throws IOException
+		{
+			int length = 0;
+			StringBuilder line = new StringBuilder();
+			int c;
+			while ((c = in.read()) != -1)
+			{
+				if (c != '\n')
+				{
+					line.append((char) c);
+					continue;
+				}
+				String header = line.toString().trim();
+				line.setLength(0);
+				if (header.length() == 0)
+				{
+					break;
+				}
+				if (header.toLowerCase().startsWith("content-length:"))
+				{
+					length = Integer.parseInt(header.substring(15).trim());
+				}
+			}
+			for (int i = 0; i < length && in.read() != -1; i++)
+			{
+				// discards the body
+			}
+		}
+
+		void close() throws IOException
+		{
+			serverSocket.close();
+		}
+	}
+
+	private PingServer server;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		super.setUp();
+		AnalyticsLogger.getInstance().clearEvents();
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		if (server != null)
+		{
+			server.close();
+			server = null;
+		}
+		AnalyticsLogger.getInstance().clearEvents();
+		super.tearDown();
+	}
+
+	/**
+	 * @return the URL of a port nothing listens on, so every ping fails and the events get stored
+	 */
+	private static String getUnreachableURL() throws IOException
+	{
+		ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName("localhost"));
+		int port = socket.getLocalPort();
+		socket.close();
+		return "http://localhost:" + port + "/track";
+	}
+
+	private static AnalyticsEvent createEvent(String name)
+	{
+		return new AnalyticsEvent(TYPE, PREFIX + name, (Map<String, String>) null);
+	}
+
+	private static List<AnalyticsEvent> getStoredEvents()
+	{
+		List<AnalyticsEvent> events = new ArrayList<AnalyticsEvent>();
+		for (AnalyticsEvent event : AnalyticsLogger.getInstance().getEvents())
+		{
+			if (event.getEventName().startsWith(PREFIX))
+			{
+				events.add(event);
+			}
+		}
+		return events;
+	}
+
+	public void testQueuedEventsAreStoredWhenTheyCantBeSent() throws Exception
+	{
+		StudioAnalytics analytics = new StudioAnalytics(getUnreachableURL());
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(analytics.queue(createEvent("event" + i)));
+		}
+		// nothing is sent or stored until the queue is flushed
+		assertTrue(getStoredEvents().isEmpty());
+
+		analytics.stop();
+
+		List<AnalyticsEvent> stored = getStoredEvents();
+		assertEquals(3, stored.size());
+		assertEquals(PREFIX + "event0", stored.get(0).getEventName());
+	}
+
+	public void testFullQueueIsFlushedByJob() throws Exception
+	{
+		StudioAnalytics analytics = new StudioAnalytics(getUnreachableURL());
+		for (int i = 0; i <= StudioAnalytics.QUEUE_CAPACITY; i++)
+		{
+			assertTrue(analytics.queue(createEvent("event" + i)));
+		}
+
+		// the event that didn't fit had the job run right away with everything that was queued
+		analytics.join();
+
+		assertEquals(StudioAnalytics.QUEUE_CAPACITY + 1, getStoredEvents().size());
+		analytics.stop();
+		assertEquals(StudioAnalytics.QUEUE_CAPACITY + 1, getStoredEvents().size());
+	}
+
+	public void testOverflowDropsOldestEvents() throws Exception
+	{
+		StudioAnalytics analytics = new StudioAnalytics(getUnreachableURL());
+		int count = StudioAnalytics.OVERFLOW_CAPACITY + StudioAnalytics.QUEUE_CAPACITY + 10;
+		// keeps the job from catching up
+		Job.getJobManager().suspend();
+		try
+		{
+			for (int i = 0; i < count; i++)
+			{
+				assertTrue(analytics.queue(createEvent("event" + i)));
+			}
+		}
+		finally
+		{
+			Job.getJobManager().resume();
+		}
+		analytics.join();
+		analytics.stop();
+
+		List<AnalyticsEvent> stored = getStoredEvents();
+		assertTrue(stored.size() <= StudioAnalytics.OVERFLOW_CAPACITY + StudioAnalytics.QUEUE_CAPACITY);
+		List<String> names = new ArrayList<String>();
+		for (AnalyticsEvent event : stored)
+		{
+			names.add(event.getEventName());
+		}
+		assertFalse(names.contains(PREFIX + "event0"));
+		assertTrue(names.contains(PREFIX + "event" + (count - 1)));
+	}
+
+	public void testFeatureEventInOverflowQueuedOnce() throws Exception
+	{
+		StudioAnalytics analytics = new StudioAnalytics(getUnreachableURL());
+		Job.getJobManager().suspend();
+		try
+		{
+			assertTrue(analytics.queue(new FeatureEvent(PREFIX + "feature", null)));
+			// fills the queue, which moves the feature event to the overflow
+			for (int i = 0; i < StudioAnalytics.QUEUE_CAPACITY; i++)
+			{
+				assertTrue(analytics.queue(createEvent("event" + i)));
+			}
+			assertFalse(analytics.queue(new FeatureEvent(PREFIX + "feature", null)));
+		}
+		finally
+		{
+			Job.getJobManager().resume();
+		}
+		analytics.join();
+		analytics.stop();
+
+		assertEquals(StudioAnalytics.QUEUE_CAPACITY + 1, getStoredEvents().size());
+	}
+
+	public void testFeatureEventQueuedOnce() throws Exception
+	{
+		StudioAnalytics analytics = new StudioAnalytics(getUnreachableURL());
+		assertTrue(analytics.queue(new FeatureEvent(PREFIX + "feature", null)));
+		assertFalse(analytics.queue(new FeatureEvent(PREFIX + "feature", null)));
+		assertTrue(analytics.queue(new FeatureEvent(PREFIX + "otherFeature", null)));
+
+		analytics.stop();
+
+		assertEquals(2, getStoredEvents().size());
+	}
+
+	public void testStopSendsQueuedEvents() throws Exception
+	{
+		server = new PingServer();
+		StudioAnalytics analytics = new StudioAnalytics(server.getURL());
+		analytics.queue(createEvent("studio.end"));
+		analytics.queue(createEvent("another"));
+
+		analytics.stop();
+
+		assertEquals(2, server.getPings());
+		assertEquals(200, analytics.getLastResponseCode());
+		assertTrue(getStoredEvents().isEmpty());
+	}
+}
@@ -0,0 +1,29 @@
+/**
+ * Aptana Studio
+ * Copyright (c) 2005-2012 by Appcelerator, Inc. All Rights Reserved.
+ * Licensed under the terms of the GNU Public License (GPL) v3 (with exceptions).
+ * Please see the license.html included with this distribution for details.
+ * Any modifications to this file must keep this entire header intact.
+ */
+package com.aptana.usage.tests;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import com.aptana.usage.AnalyticsLoggerTest;
+import com.aptana.usage.StudioAnalyticsTest;
+
+public class AllTests
+{
+
+	public static Test suite()
+	{
+		TestSuite suite = new TestSuite(AllTests.class.getName());
+		// $JUnit-BEGIN$
+		suite.addTestSuite(AnalyticsLoggerTest.class);
+		suite.addTestSuite(StudioAnalyticsTest.class);
+		// $JUnit-END$
+		return suite;
+	}
+
+}
@@ -73,4 +73,102 @@ public class LocalWebServerTest extends TestCase
 			}
 		}
 	}
+
+	public void testConditionalGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(EFS.getLocalFileSystem().fromLocalFile(dir).toURI());
+			URL url = new URL(webServer.getBaseURL(), "index.html"); //$NON-NLS-1$
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setUseCaches(false);
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			String eTag = connection.getHeaderField("ETag"); //$NON-NLS-1$
+			String lastModified = connection.getHeaderField("Last-Modified"); //$NON-NLS-1$
+			assertNotNull(eTag);
+			assertNotNull(lastModified);
+			connection.getInputStream().close();
+
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setUseCaches(false);
+			connection.setRequestProperty("If-None-Match", eTag); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setUseCaches(false);
+			connection.setRequestProperty("If-Modified-Since", lastModified); //$NON-NLS-1$
+			assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, connection.getResponseCode());
+
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setUseCaches(false);
+			connection.setRequestProperty("If-None-Match", "\"other\""); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+			assertEquals(PAGE_CONTENTS, readContents(connection));
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	public void testRangeGet() throws IOException, CoreException
+	{
+		File dir = createDocumentRoot();
+		LocalWebServer webServer = null;
+		try
+		{
+			webServer = new LocalWebServer(EFS.getLocalFileSystem().fromLocalFile(dir).toURI());
+			URL url = new URL(webServer.getBaseURL(), "index.html"); //$NON-NLS-1$
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setUseCaches(false);
+			connection.setRequestProperty("Range", "bytes=6-11"); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(HttpURLConnection.HTTP_PARTIAL, connection.getResponseCode());
+			assertEquals("bytes 6-11/" + PAGE_CONTENTS.length(), connection.getHeaderField("Content-Range")); //$NON-NLS-1$ //$NON-NLS-2$
+			assertEquals(PAGE_CONTENTS.substring(6, 12), readContents(connection));
+
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setUseCaches(false);
+			connection.setRequestProperty("Range", "bytes=" + PAGE_CONTENTS.length() + "-"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			assertEquals(416, connection.getResponseCode());
+		}
+		finally
+		{
+			if (webServer != null)
+			{
+				webServer.stop(true, new NullProgressMonitor());
+			}
+		}
+	}
+
+	private File createDocumentRoot() throws IOException
+	{
+		File dir = File.createTempFile(getClass().getSimpleName(), "temp"); //$NON-NLS-1$
+		assertTrue(dir.delete());
+		assertTrue(dir.mkdir());
+		File file = new File(dir, "index.html"); //$NON-NLS-1$
+		assertTrue(file.createNewFile());
+		OutputStreamWriter w = new OutputStreamWriter(new FileOutputStream(file));
+		w.write(PAGE_CONTENTS);
+		w.close();
+		return dir;
+	}
+
+	private static String readContents(HttpURLConnection connection) throws IOException
+	{
+		InputStreamReader in = new InputStreamReader(connection.getInputStream());
+		StringBuffer sb = new StringBuffer();
+		int n;
+		char[] cbuf = new char[1024];
+		while ((n = in.read(cbuf)) > 0)
+		{
+			sb.append(new String(cbuf, 0, n));
+		}
+		in.close();
+		return sb.toString();
+	}
 }